@@ -18,6 +18,7 @@ import java.io.FileNotFoundException;
 import java.io.InputStream;
 import java.io.FileInputStream;
 import java.io.File;
+import java.io.UncheckedIOException;
 
 import org.yaml.snakeyaml.Yaml;
 import java.util.Map;
@@ -82,6 +83,11 @@ public class ConfigParser {
                     System.out.println("Constructor for class could not be invoked: " + (String)data.get("role") + ", please check the role key.");
                     System.exit(1);
                 }
+                catch (UncheckedIOException uioe)
+                {
+                    System.out.println("Role could not be started: " + uioe.getMessage() + ", " + uioe.getCause().getMessage());
+                    System.exit(1);
+                }
             }
             catch (NullPointerException npe)
             {
@@ -0,0 +1,145 @@
+/**
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.corfudb.infrastructure;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Group commit for a SegmentedLogStore.
+ *
+ * Writers append to the store and then register with the committer, which hands out a ticket. A single
+ * background thread forces the store once for every batch of registered writes, and wakes up the writers
+ * whose tickets are covered. When there is nothing to force, the thread parks; registering a write only
+ * unparks that thread, so it does not wake the writers waiting for an earlier batch.
+ *
+ * A batch is forced as soon as it holds maxBatch writes, or when the oldest write in it has waited
+ * maxLatency microseconds, whichever comes first.
+ */
+public class GroupCommitter implements Runnable {
+
+    private static final Logger log = LoggerFactory.getLogger(GroupCommitter.class);
+
+    /** The default number of writes forced together. */
+    public static final int DEFAULT_MAX_BATCH = 256;
+
+    /** The default time a write waits for its batch to fill, in microseconds. */
+    public static final int DEFAULT_MAX_LATENCY = 0;
+
+    final SegmentedLogStore store;
+    final int maxBatch;
+    final long maxLatencyNanos;
+
+    private final AtomicLong requested = new AtomicLong();     // tickets handed out
+    private long durable = 0;       // tickets covered by a completed force, guarded by this
+    private volatile Thread committer = null;
+    private IOException failure = null;
+
+    /**
+     * Create a group committer.
+     * @param store         The store to force.
+     * @param maxBatch      The maximum number of writes to force together.
+     * @param maxLatency    The maximum time a write waits for its batch to fill, in microseconds.
+     */
+    public GroupCommitter(SegmentedLogStore store, int maxBatch, int maxLatency)
+    {
+        this.store = store;
+        this.maxBatch = Math.max(1, maxBatch);
+        this.maxLatencyNanos = TimeUnit.MICROSECONDS.toNanos(maxLatency);
+    }
+
+    /**
+     * Register a write which has been appended to the store.
+     * @return  A ticket to wait on for the write to become durable.
+     */
+    public long register()
+    {
+        long ticket = requested.incrementAndGet();
+        LockSupport.unpark(committer);
+        return ticket;
+    }
+
+    /**
+     * Wait until the write with the given ticket has been forced to persistent storage.
+     * @param ticket        The ticket returned by register().
+     * @throws IOException  If the force failed.
+     */
+    public synchronized void awaitDurable(long ticket)
+        throws IOException, InterruptedException
+    {
+        while (durable < ticket)
+        {
+            if (failure != null) { throw failure; }
+            wait();
+        }
+    }
+
+    /**
+     * Wait until every write registered so far has been forced to persistent storage.
+     * @throws IOException  If the force failed.
+     */
+    public void sync()
+        throws IOException, InterruptedException
+    {
+        awaitDurable(requested.get());
+    }
+
+    @Override
+    public void run()
+    {
+        committer = Thread.currentThread();
+        for (;;)
+        {
+            // only this thread advances durable, so it may read it without the lock.
+            while (requested.get() == durable)
+            {
+                LockSupport.park(this);
+                if (Thread.interrupted()) { return; }
+            }
+            long deadline = System.nanoTime() + maxLatencyNanos;
+            long remaining;
+            while (requested.get() - durable < maxBatch && (remaining = deadline - System.nanoTime()) > 0)
+            {
+                LockSupport.parkNanos(this, remaining);
+                if (Thread.interrupted()) { return; }
+            }
+            long target = requested.get();
+
+            try {
+                store.force();
+            } catch (IOException e) {
+                log.error("forcing sync to persistent store failed", e);
+                synchronized (this)
+                {
+                    failure = e;
+                    notifyAll();
+                }
+                return;
+            }
+
+            synchronized (this)
+            {
+                log.trace("forced batch of {} writes", target - durable);
+                durable = target;
+                notifyAll();
+            }
+        }
+    }
+}
@@ -0,0 +1,649 @@
+/**
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.corfudb.infrastructure;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.cliffc.high_scale_lib.NonBlockingHashMapLong;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import org.corfudb.infrastructure.thrift.ErrorCode;
+import org.corfudb.infrastructure.thrift.ExtntInfo;
+import org.corfudb.infrastructure.thrift.ExtntMarkType;
+import org.corfudb.infrastructure.thrift.ExtntWrap;
+
+/**
+ * A persistent log store made of fixed-size, memory-mapped segment files.
+ *
+ * Each segment is a pair of files in the store directory: "<n>.seg" holds the extent data and "<n>.idx" is
+ * an append-only index of fixed-size records (log offset, position, length, mark type) describing the extents
+ * stored in the segment. Extents are appended at the tail of the current segment; when it fills up, a new
+ * segment is started. Reads are served as slices of the mapping, without copying.
+ *
+ * An index record is only written once the data it covers has been forced, so after a crash the index never
+ * points at data which was not made durable. Recovery also checks each record against the data it covers, and
+ * drops records whose data is missing.
+ *
+ * Trimming drops the index entries below the trim mark and unlinks every sealed segment whose extents all lie
+ * below it, so space is reclaimed a whole segment at a time. The trim mark itself is kept in the "trim" file.
+ */
+public class SegmentedLogStore {
+
+    private static final Logger log = LoggerFactory.getLogger(SegmentedLogStore.class);
+
+    /** The default size of a segment file, in bytes. */
+    public static final int DEFAULT_SEGMENT_SIZE = 64 * 1024 * 1024;
+
+    /** Index record: log offset (long), position (int), length (int), mark type (int). */
+    static final int INDEX_RECORD_SIZE = 20;
+
+    static final String SEGMENT_SUFFIX = ".seg";
+    static final String INDEX_SUFFIX = ".idx";
+    static final String TRIM_FILE = "trim";
+
+    final File dir;
+    final int segmentSize;
+
+    final ConcurrentSkipListMap<Long, Segment> segments = new ConcurrentSkipListMap<Long, Segment>();
+    final NonBlockingHashMapLong<Extent> index = new NonBlockingHashMapLong<Extent>();
+
+    volatile Segment current;
+    volatile long trimMark = 0;
+    final AtomicLong highestOffset = new AtomicLong(-1L);
+
+    /**
+     * A single segment, which is a mapped data file and its index file.
+     */
+    static class Segment {
+        final long id;
+        final File dataFile;
+        final File indexFile;
+        final FileChannel dataChannel;
+        final FileChannel indexChannel;
+        final MappedByteBuffer data;
+        final int capacity;
+        /* The size of the data file when it was opened, before mapping it extended the file. */
+        final long durableSize;
+        /* Index records of extents whose data has not been forced yet. */
+        final ConcurrentLinkedQueue<ByteBuffer> pendingIndex = new ConcurrentLinkedQueue<ByteBuffer>();
+
+        final AtomicInteger tail = new AtomicInteger(0);
+        final AtomicLong indexTail;
+        final AtomicLong maxOffset = new AtomicLong(-1L);
+        final AtomicInteger writers = new AtomicInteger(0);
+        final AtomicBoolean dirty = new AtomicBoolean(false);
+        volatile boolean sealed = false;
+
+        Segment(File dir, long id, int capacity) throws IOException
+        {
+            this.id = id;
+            this.dataFile = new File(dir, id + SEGMENT_SUFFIX);
+            this.indexFile = new File(dir, id + INDEX_SUFFIX);
+            this.dataChannel = new RandomAccessFile(dataFile, "rw").getChannel();
+            this.indexChannel = new RandomAccessFile(indexFile, "rw").getChannel();
+            this.durableSize = dataChannel.size();
+            this.capacity = Math.max(capacity, (int) durableSize);
+            this.data = dataChannel.map(FileChannel.MapMode.READ_WRITE, 0, this.capacity);
+            this.indexTail = new AtomicLong(indexChannel.size());
+        }
+
+        /**
+         * Reserve space at the tail of the segment.
+         * @param length    The number of bytes to reserve.
+         * @return          The position of the reserved space, or -1 if the segment does not have enough room.
+         */
+        int reserve(int length)
+        {
+            for (;;)
+            {
+                int t = tail.get();
+                if (t + length > capacity) { return -1; }
+                if (tail.compareAndSet(t, t + length)) { return t; }
+            }
+        }
+
+        /**
+         * Queue the index record of an extent. It is written by the next force(), after the data.
+         */
+        void appendIndex(long offset, int position, int length, ExtntMarkType et)
+        {
+            ByteBuffer rec = ByteBuffer.allocate(INDEX_RECORD_SIZE);
+            rec.putLong(offset);
+            rec.putInt(position);
+            rec.putInt(length);
+            rec.putInt(et.getValue());
+            rec.flip();
+            pendingIndex.add(rec);
+        }
+
+        /**
+         * Force the data, then write and force the index records of the extents it covers. Records queued
+         * while the data is forced may cover data which was not, so they are left for the next force.
+         */
+        synchronized void force() throws IOException
+        {
+            List<ByteBuffer> records = new ArrayList<ByteBuffer>();
+            for (ByteBuffer rec = pendingIndex.poll(); rec != null; rec = pendingIndex.poll())
+            {
+                records.add(rec);
+            }
+            data.force();
+            for (ByteBuffer rec : records)
+            {
+                long p = indexTail.getAndAdd(INDEX_RECORD_SIZE);
+                while (rec.hasRemaining())
+                {
+                    p += indexChannel.write(rec, p);
+                }
+            }
+            indexChannel.force(false);
+        }
+
+        void close() throws IOException
+        {
+            dataChannel.close();
+            indexChannel.close();
+        }
+    }
+
+    /**
+     * The location of an extent within a segment.
+     */
+    static class Extent {
+        final Segment segment;
+        final int position;
+        final int length;
+        final ExtntMarkType et;
+
+        Extent(Segment segment, int position, int length, ExtntMarkType et)
+        {
+            this.segment = segment;
+            this.position = position;
+            this.length = length;
+            this.et = et;
+        }
+    }
+
+    /**
+     * Open a segmented log store.
+     * @param dir           The directory holding the segment files.
+     * @param segmentSize   The size of each segment file, in bytes.
+     * @param recover       If true, recover the contents of the directory, otherwise start with an empty store.
+     * @throws IOException  If the store could not be opened.
+     */
+    public SegmentedLogStore(String dir, int segmentSize, boolean recover)
+        throws IOException
+    {
+        this.dir = new File(dir);
+        this.segmentSize = segmentSize;
+        if (!this.dir.isDirectory() && !this.dir.mkdirs())
+        {
+            throw new IOException("Unable to create log store directory " + dir);
+        }
+
+        if (recover)
+        {
+            recover();
+        }
+        else
+        {
+            clear();
+        }
+        if (current == null)
+        {
+            current = new Segment(this.dir, 0, segmentSize);
+            segments.put(current.id, current);
+        }
+        log.info("Log store at {} opened, {} segment(s), trim mark={}, highest offset={}",
+                dir, segments.size(), trimMark, highestOffset.get());
+    }
+
+    /**
+     * Append an extent to the store.
+     * @param offset        The log offset of the extent.
+     * @param bufs          The pages of the extent.
+     * @param et            The mark type of the extent.
+     * @return              OK if the extent was written, ERR_TRIMMED if the offset is trimmed, or
+     *                      ERR_OVERWRITE if it is already written.
+     * @throws IOException  If the index could not be written.
+     */
+    public ErrorCode append(long offset, List<ByteBuffer> bufs, ExtntMarkType et)
+        throws IOException
+    {
+        if (offset < trimMark)
+        {
+            log.info("append({}) is below trim mark {}", offset, trimMark);
+            return ErrorCode.ERR_TRIMMED;
+        }
+        if (index.containsKey(offset))
+        {
+            log.info("append would overwrite {}", offset);
+            return ErrorCode.ERR_OVERWRITE;
+        }
+
+        int length = 0;
+        if (bufs.size() > 0)
+        {
+            length = Integer.BYTES;
+            for (ByteBuffer b : bufs)
+            {
+                length += Integer.BYTES + b.remaining();
+            }
+        }
+
+        Segment seg;
+        int position;
+        for (;;)
+        {
+            seg = current;
+            seg.writers.incrementAndGet();
+            if (seg.sealed && seg != current)
+            {
+                // lost a race with a segment roll, retry on the new segment.
+                seg.writers.decrementAndGet();
+                continue;
+            }
+            position = seg.reserve(length);
+            if (position != -1)
+            {
+                break;
+            }
+            seg.writers.decrementAndGet();
+            roll(seg, length);
+        }
+
+        try {
+            if (length > 0)
+            {
+                ByteBuffer dst = seg.data.duplicate();
+                dst.position(position);
+                dst.putInt(bufs.size());
+                for (ByteBuffer b : bufs)
+                {
+                    dst.putInt(b.remaining());
+                    dst.put(b.duplicate());
+                }
+            }
+
+            if (index.putIfAbsent(offset, new Extent(seg, position, length, et)) != null)
+            {
+                // someone else won the race for this offset, the space we reserved is simply wasted.
+                log.info("append would overwrite {}", offset);
+                return ErrorCode.ERR_OVERWRITE;
+            }
+            seg.appendIndex(offset, position, length, et);
+            seg.maxOffset.accumulateAndGet(offset, Math::max);
+            seg.dirty.set(true);
+            highestOffset.accumulateAndGet(offset, Math::max);
+            return ErrorCode.OK;
+        }
+        finally {
+            seg.writers.decrementAndGet();
+        }
+    }
+
+    /**
+     * Read an extent from the store. The pages returned are slices of the mapped segment.
+     * @param offset    The log offset to read.
+     * @return          The extent, wrapped with its meta-info and error code.
+     */
+    public ExtntWrap read(long offset)
+    {
+        ExtntWrap wr = new ExtntWrap();
+        wr.setCtnt(new ArrayList<ByteBuffer>());
+        if (offset < trimMark)
+        {
+            wr.setErr(ErrorCode.ERR_TRIMMED);
+            wr.setInf(new ExtntInfo(offset, 0, ExtntMarkType.EX_TRIMMED));
+            return wr;
+        }
+        Extent e = index.get(offset);
+        if (e == null)
+        {
+            wr.setErr(ErrorCode.ERR_UNWRITTEN);
+            wr.setInf(new ExtntInfo(offset, 0, ExtntMarkType.EX_EMPTY));
+            return wr;
+        }
+
+        wr.setInf(new ExtntInfo(offset, pageCount(e), e.et));
+        if (e.et == ExtntMarkType.EX_FILLED)
+        {
+            wr.setErr(ErrorCode.OK);
+            ByteBuffer src = e.segment.data.duplicate();
+            src.position(e.position);
+            int count = src.getInt();
+            for (int i = 0; i < count; i++)
+            {
+                int len = src.getInt();
+                ByteBuffer page = src.slice();
+                page.limit(len);
+                wr.addToCtnt(page);
+                src.position(src.position() + len);
+            }
+        }
+        else if (e.et == ExtntMarkType.EX_SKIP)
+        {
+            wr.setErr(ErrorCode.OK_SKIP);
+        }
+        else
+        {
+            wr.setErr(ErrorCode.ERR_TRIMMED);
+        }
+        return wr;
+    }
+
+    /**
+     * Read the meta-info of an extent.
+     * @param offset    The log offset to read.
+     * @param inf       The meta-info record to fill in.
+     * @return          An error code describing the state of the extent.
+     */
+    public ErrorCode readMeta(long offset, ExtntInfo inf)
+    {
+        inf.setMetaFirstOff(offset);
+        inf.setMetaLength(0);
+        if (offset < trimMark)
+        {
+            inf.setFlag(ExtntMarkType.EX_TRIMMED);
+            return ErrorCode.ERR_TRIMMED;
+        }
+        Extent e = index.get(offset);
+        if (e == null)
+        {
+            inf.setFlag(ExtntMarkType.EX_EMPTY);
+            return ErrorCode.ERR_UNWRITTEN;
+        }
+        inf.setFlag(e.et);
+        inf.setMetaLength(pageCount(e));
+        switch (e.et) {
+            case EX_FILLED: return ErrorCode.OK;
+            case EX_TRIMMED: return ErrorCode.ERR_TRIMMED;
+            default: return ErrorCode.ERR_UNWRITTEN;
+        }
+    }
+
+    private int pageCount(Extent e)
+    {
+        return e.length == 0 ? 0 : e.segment.data.getInt(e.position);
+    }
+
+    /**
+     * Trim the store, discarding every extent below the given offset and unlinking the segments which
+     * no longer hold any live extent.
+     * @param toOffset      The new trim mark.
+     * @throws IOException  If the trim mark could not be persisted.
+     */
+    public synchronized void trim(long toOffset)
+        throws IOException
+    {
+        if (toOffset <= trimMark)
+        {
+            return;
+        }
+        trimMark = toOffset;
+        writeTrimMark();
+
+        Iterator<Long> it = index.keySet().iterator();
+        while (it.hasNext())
+        {
+            if (it.next() < toOffset)
+            {
+                it.remove();
+            }
+        }
+
+        for (Segment seg : segments.values())
+        {
+            if (seg.sealed && seg.writers.get() == 0 && seg.maxOffset.get() < toOffset)
+            {
+                log.info("Unlinking segment {}, highest offset {} is below trim mark {}",
+                        seg.id, seg.maxOffset.get(), toOffset);
+                segments.remove(seg.id);
+                seg.close();
+                seg.dataFile.delete();
+                seg.indexFile.delete();
+            }
+        }
+    }
+
+    /**
+     * Force all segments written since the last call to persistent storage.
+     * @return              True if any segment was forced.
+     * @throws IOException  If a segment could not be forced.
+     */
+    public boolean force()
+        throws IOException
+    {
+        boolean forced = false;
+        for (Segment seg : segments.values())
+        {
+            if (seg.dirty.getAndSet(false))
+            {
+                seg.force();
+                forced = true;
+            }
+        }
+        return forced;
+    }
+
+    public long getTrimMark()
+    {
+        return trimMark;
+    }
+
+    public long getHighestOffset()
+    {
+        return highestOffset.get();
+    }
+
+    /**
+     * Close the store, forcing any outstanding writes.
+     * @throws IOException  If a segment could not be forced or closed.
+     */
+    public synchronized void close()
+        throws IOException
+    {
+        force();
+        for (Segment seg : segments.values())
+        {
+            seg.close();
+        }
+    }
+
+    /**
+     * Seal the given segment and start a new one, unless someone else already has.
+     */
+    private synchronized void roll(Segment full, int length)
+        throws IOException
+    {
+        if (current != full)
+        {
+            return;
+        }
+        Segment next = new Segment(dir, full.id + 1, Math.max(segmentSize, length));
+        segments.put(next.id, next);
+        full.sealed = true;
+        current = next;
+        log.debug("Sealed segment {} at {} bytes, started segment {}", full.id, full.tail.get(), next.id);
+    }
+
+    private void writeTrimMark()
+        throws IOException
+    {
+        try (RandomAccessFile f = new RandomAccessFile(new File(dir, TRIM_FILE), "rw"))
+        {
+            f.seek(0);
+            f.writeLong(trimMark);
+            f.getChannel().force(false);
+        }
+    }
+
+    private void clear()
+        throws IOException
+    {
+        File[] files = dir.listFiles();
+        if (files != null)
+        {
+            for (File f : files)
+            {
+                if (f.getName().endsWith(SEGMENT_SUFFIX) || f.getName().endsWith(INDEX_SUFFIX))
+                {
+                    f.delete();
+                }
+            }
+        }
+        writeTrimMark();
+    }
+
+    private void recover()
+        throws IOException
+    {
+        File trimFile = new File(dir, TRIM_FILE);
+        if (trimFile.length() >= Long.BYTES)
+        {
+            try (RandomAccessFile f = new RandomAccessFile(trimFile, "r"))
+            {
+                trimMark = f.readLong();
+            }
+        }
+        else
+        {
+            log.info("no trim mark saved, setting initial trim=0");
+            writeTrimMark();
+        }
+
+        File[] files = dir.listFiles();
+        if (files != null)
+        {
+            for (File f : files)
+            {
+                String name = f.getName();
+                if (name.endsWith(SEGMENT_SUFFIX))
+                {
+                    long id = Long.parseLong(name.substring(0, name.length() - SEGMENT_SUFFIX.length()));
+                    segments.put(id, new Segment(dir, id, segmentSize));
+                }
+            }
+        }
+
+        for (Segment seg : segments.values())
+        {
+            recoverSegment(seg);
+            seg.sealed = true;
+        }
+
+        Map.Entry<Long, Segment> last = segments.lastEntry();
+        if (last != null)
+        {
+            current = last.getValue();
+            current.sealed = false;
+        }
+    }
+
+    private void recoverSegment(Segment seg)
+        throws IOException
+    {
+        long size = seg.indexChannel.size();
+        ByteBuffer idx = ByteBuffer.allocate((int) size);
+        while (idx.hasRemaining())
+        {
+            if (seg.indexChannel.read(idx, idx.position()) < 0) { break; }
+        }
+        idx.flip();
+
+        int tail = 0;
+        while (idx.remaining() >= INDEX_RECORD_SIZE)
+        {
+            long offset = idx.getLong();
+            int position = idx.getInt();
+            int length = idx.getInt();
+            ExtntMarkType et = ExtntMarkType.findByValue(idx.getInt());
+            if (et == null || et == ExtntMarkType.EX_EMPTY)
+            {
+                // a record that was never completely written.
+                continue;
+            }
+            if (!isDurable(seg, position, length))
+            {
+                // the index record was made durable, but not the data it covers.
+                log.warn("Dropping index record for {} in segment {}, its data is missing", offset, seg.id);
+                continue;
+            }
+            tail = Math.max(tail, position + length);
+            seg.maxOffset.accumulateAndGet(offset, Math::max);
+            if (offset >= trimMark)
+            {
+                index.put(offset, new Extent(seg, position, length, et));
+                highestOffset.accumulateAndGet(offset, Math::max);
+            }
+        }
+        seg.tail.set(tail);
+        seg.indexTail.set(size - (size % INDEX_RECORD_SIZE));
+        log.debug("Recovered segment {}, tail={}, highest offset={}", seg.id, tail, seg.maxOffset.get());
+    }
+
+    /**
+     * Check that the data an index record covers is in the segment: within the data file as it was found,
+     * and framed as the record says (a page count, then the length of each page before its bytes).
+     */
+    private static boolean isDurable(Segment seg, int position, int length)
+    {
+        if (length == 0)
+        {
+            return true;
+        }
+        if (position < 0 || length < Integer.BYTES || (long) position + length > seg.durableSize)
+        {
+            return false;
+        }
+        int end = position + length;
+        int p = position;
+        int count = seg.data.getInt(p);
+        p += Integer.BYTES;
+        if (count <= 0)
+        {
+            return false;
+        }
+        for (int i = 0; i < count; i++)
+        {
+            if (p + Integer.BYTES > end)
+            {
+                return false;
+            }
+            int len = seg.data.getInt(p);
+            if (len < 0 || len > end - p - Integer.BYTES)
+            {
+                return false;
+            }
+            p += Integer.BYTES + len;
+        }
+        return p == end;
+    }
+}
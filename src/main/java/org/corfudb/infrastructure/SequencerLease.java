@@ -0,0 +1,148 @@
+/**
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.corfudb.infrastructure;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A durable lease on a range of tokens for a sequencer.
+ *
+ * The lease persists an upper bound on every token the sequencer has issued. Before a token at or past
+ * the bound is issued, the bound is moved forward by a whole chunk and forced to disk, so the file is
+ * written once per chunk of tokens rather than once per token. A sequencer which restarts resumes from the
+ * saved bound: it may skip up to a chunk of tokens (which become holes), but never issues a token twice,
+ * and does not need to ask the log units where the log ends. The lease also saves where the tokens it may
+ * have skipped start, so a restarted sequencer can fill them in bulk instead of leaving readers to find
+ * them one at a time.
+ */
+public class SequencerLease {
+
+    private static final Logger log = LoggerFactory.getLogger(SequencerLease.class);
+
+    /** The default number of tokens reserved every time the lease is extended. */
+    public static final long DEFAULT_CHUNK = 1L << 12;
+
+    final File file;
+    final long chunk;
+
+    /* Every token below the bound may have been issued; the bound is always durable. */
+    private volatile long bound = 0;
+
+    /* Every token below this had been issued when the bound was last extended. */
+    private volatile long issued = 0;
+
+    /**
+     * Open a lease, recovering the bound saved in its file, if any.
+     * @param file          The file the bound is saved in.
+     * @param chunk         The number of tokens to reserve every time the lease is extended.
+     * @throws IOException  If the file could not be read or created.
+     */
+    public SequencerLease(File file, long chunk)
+        throws IOException
+    {
+        this.file = file;
+        this.chunk = Math.max(1, chunk);
+        if (file.length() >= Long.BYTES)
+        {
+            try (RandomAccessFile f = new RandomAccessFile(file, "r"))
+            {
+                bound = f.readLong();
+                issued = file.length() >= 2 * Long.BYTES ? f.readLong() : Math.max(0, bound - this.chunk);
+            }
+            log.info("Recovered sequencer lease from {}, resuming at {}", file, bound);
+        }
+        else
+        {
+            log.info("No sequencer lease saved in {}, starting at 0", file);
+            writeBound(0, 0);
+        }
+    }
+
+    /**
+     * Get the bound of the lease, which is where a recovered sequencer resumes issuing tokens.
+     * @return              The first token not covered by the lease.
+     */
+    public long getBound()
+    {
+        return bound;
+    }
+
+    /**
+     * Get the first token a sequencer resuming from this lease may have skipped. Every token below it was
+     * issued before the lease was last extended; tokens from it up to the bound may never have been issued.
+     * @return              The first token which may have been skipped.
+     */
+    public long getSkippedFrom()
+    {
+        return issued;
+    }
+
+    /**
+     * Make sure the lease covers every token below an address, extending it if needed. Tokens must not be
+     * handed out until this returns.
+     * @param end           The address, exclusive, to cover.
+     * @throws IOException  If the new bound could not be saved.
+     */
+    public void cover(long end)
+        throws IOException
+    {
+        if (end > bound)
+        {
+            extend(end);
+        }
+    }
+
+    private synchronized void extend(long end)
+        throws IOException
+    {
+        if (end > bound)
+        {
+            long next = end + chunk;
+            writeBound(next, end);
+            log.debug("Extended sequencer lease to {}", next);
+            bound = next;
+            issued = end;
+        }
+    }
+
+    /**
+     * Drop the lease, because the log was reset.
+     * @throws IOException  If the bound could not be saved.
+     */
+    public synchronized void reset()
+        throws IOException
+    {
+        writeBound(0, 0);
+        bound = 0;
+        issued = 0;
+    }
+
+    private void writeBound(long next, long end)
+        throws IOException
+    {
+        try (RandomAccessFile f = new RandomAccessFile(file, "rw"))
+        {
+            f.seek(0);
+            f.writeLong(next);
+            f.writeLong(end);
+            f.getChannel().force(false);
+        }
+    }
+}
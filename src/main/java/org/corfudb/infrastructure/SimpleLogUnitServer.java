@@ -15,14 +15,14 @@
 // @author Dahlia Malkhi
 //
 // implement a cyclic stream store: logically infinite stream sequence mapped onto a UNICAPACITY array of fixed-entrys
+// (in rammode; when persisting to disk, the stream is kept in a SegmentedLogStore)
 package org.corfudb.infrastructure;
 
-import java.io.FileNotFoundException;
 import java.io.IOException;
-import java.io.RandomAccessFile;
 import java.nio.ByteBuffer;
-import java.nio.channels.FileChannel;
 import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.StampedLock;
 
 import org.apache.thrift.TMultiplexedProcessor;
 import org.apache.thrift.protocol.TBinaryProtocol;
@@ -33,8 +33,6 @@ import org.apache.thrift.transport.TTransport;
 import org.slf4j.*;
 import org.apache.thrift.TException;
 import org.apache.thrift.server.TServer;
-import org.apache.thrift.server.TThreadPoolServer;
-import org.apache.thrift.transport.TServerSocket;
 
 import org.corfudb.infrastructure.thrift.SimpleLogUnitService;
 import org.corfudb.infrastructure.thrift.SimpleLogUnitConfigService;
@@ -50,27 +48,40 @@ public class SimpleLogUnitServer implements SimpleLogUnitService.Iface, ICorfuDB
 	private Logger log = LoggerFactory.getLogger(SimpleLogUnitServer.class);
 
     List<Integer> masterIncarnation = null;
-    protected int UNITCAPACITY = 100000; // capacity in PAGESIZE units, i.e. UNITCAPACITY*PAGESIZE bytes
+    protected int UNITCAPACITY = 100000; // capacity in PAGESIZE units, i.e. UNITCAPACITY*PAGESIZE bytes (rammode only)
     protected int PORT=-1;	// REQUIRED: port number this unit listens on
-    protected String DRIVENAME = null; // where to persist data (unless rammode is on)
+    protected String DRIVENAME = null; // directory where to persist data (unless rammode is on)
+    protected int SEGMENTSIZE = SegmentedLogStore.DEFAULT_SEGMENT_SIZE; // size of each segment file, in bytes
+    protected int SYNCBATCH = GroupCommitter.DEFAULT_MAX_BATCH; // max writes forced to disk together
+    protected int SYNCLATENCY = GroupCommitter.DEFAULT_MAX_LATENCY; // max time (us) a write waits for its batch to fill
     protected boolean RAMMODE = true; // command line switch: work in memory (no data persistence)
     protected boolean RECOVERY = false; // command line switch: indicate whether we load stream from disk on startup
     protected boolean REBUILD = false;
-    boolean simFailure = false;
+    volatile boolean simFailure = false;
     protected String rebuildnode = null;
+    protected Map<String,Object> serverConfig = null; // selects the thrift server mode, see ThriftServerFactory
 
     protected int PAGESIZE;
 
 
 	private int ckmark = 0; // start offset of latest checkpoint. TODO: persist!!
 
-	private FileChannel DriveChannel = null;
-	private Object DriveLck = new Object();
+	private SegmentedLogStore segmentStore = null; // use when not in rammode
+	private GroupCommitter committer = null; // forces segmentStore writes in batches
 
-    private long gcmark = 0; // pages up to 'gcmark' have been evicted; note, we must have gcmark <= CM.trimmark
+    private volatile long gcmark = 0; // pages up to 'gcmark' have been evicted; note, we must have gcmark <= CM.trimmark
 	private int lowwater = 0, highwater = 0, freewater = -1;
 
-    long highWatermark = -1L;
+    final AtomicLong highWatermark = new AtomicLong(-1L);
+
+    // concurrency in rammode: the extent map is guarded by lock-stripes over the (cyclic) map index,
+    // page allocation by allocLck. trimming and resetting rearrange the whole store, so they take
+    // storeLck exclusively, while appends and reads share it.
+    // in disk mode, the SegmentedLogStore is thread-safe on its own and none of these locks are taken.
+    private static final int STRIPES = 256;
+    private final Object[] stripeLcks = new Object[STRIPES];
+    private final Object allocLck = new Object();
+    private final StampedLock storeLck = new StampedLock();
 
 	private ByteBuffer[] inmemoryStore; // use in rammode
 	private byte map[] = null;
@@ -101,6 +112,9 @@ public class SimpleLogUnitServer implements SimpleLogUnitService.Iface, ICorfuDB
 
     public SimpleLogUnitServer() {
         //default constructor
+        for (int i = 0; i < STRIPES; i++) {
+            stripeLcks[i] = new Object();
+        }
     }
 
     public void simulateFailure(boolean fail, long length)
@@ -128,10 +142,10 @@ public class SimpleLogUnitServer implements SimpleLogUnitService.Iface, ICorfuDB
     public Runnable getInstance (final Map<String,Object> config)
     {
         final SimpleLogUnitServer lut = this;
+        lut.serverConfig = config;
 
         //These are required and will throw an exception if not defined.
         lut.RAMMODE = (Boolean) config.get("ramdisk");
-        lut.UNITCAPACITY = (Integer) config.get("capacity");
         lut.PORT = (Integer) config.get("port");
         lut.PAGESIZE = (Integer) config.get("pagesize");
         lut.gcmark = (Integer) config.get("trim");
@@ -139,10 +153,26 @@ public class SimpleLogUnitServer implements SimpleLogUnitService.Iface, ICorfuDB
         masterIncarnation = new ArrayList<Integer>();
         masterIncarnation.add(0);
         //These are not required and will be only populated if given
+        if (config.containsKey("capacity"))
+        {
+            lut.UNITCAPACITY = (Integer) config.get("capacity");
+        }
         if (config.containsKey("drive"))
         {
             lut.DRIVENAME = (String) config.get("drive");
         }
+        if (config.containsKey("segmentsize"))
+        {
+            lut.SEGMENTSIZE = (Integer) config.get("segmentsize");
+        }
+        if (config.containsKey("syncbatch"))
+        {
+            lut.SYNCBATCH = (Integer) config.get("syncbatch");
+        }
+        if (config.containsKey("synclatency"))
+        {
+            lut.SYNCLATENCY = (Integer) config.get("synclatency");
+        }
         if (config.containsKey("recovery"))
         {
             lut.RECOVERY = (Boolean) config.get("recovery");
@@ -171,10 +201,9 @@ public class SimpleLogUnitServer implements SimpleLogUnitService.Iface, ICorfuDB
 		public mapInfo(long logOffset) {
 
 			int mi = mapind(logOffset);
-			mapb.position(mi);
-			physOffset = mapb.getInt();
+			physOffset = mapb.getInt(mi);
 
-			length = mapb.getInt();
+			length = mapb.getInt(mi + intsz);
 			et = ExtntMarkType.findByValue(length & 0x3); length >>= 2;
 		}
 	}
@@ -190,60 +219,52 @@ public class SimpleLogUnitServer implements SimpleLogUnitService.Iface, ICorfuDB
 		return cind * entsz;
 	}
 
-	private void put(int ind, ByteBuffer buf) throws IOException {
-
-        if (RAMMODE) {
-            inmemoryStore[ind] = buf;
-        } else {
-            DriveChannel.position(ind*PAGESIZE);
-            DriveChannel.write(buf);
-        }
+	private Object stripeLck(long logOffset) { // offsets sharing a map entry share a stripe
+		return stripeLcks[(mapind(logOffset) / entsz) % STRIPES];
 	}
 
-	private boolean put(List<ByteBuffer> wbufs) throws IOException {
+	private void put(int ind, ByteBuffer buf) throws IOException {
+        inmemoryStore[ind] = buf;
+	}
 
-		if (wbufs.size() > freewater) {
-			return false;
+	/**
+	 * allocate pages for an extent and store it.
+	 * @return the physical offset of the extent, or -1 if there is no free space
+	 */
+	private int put(List<ByteBuffer> wbufs) throws IOException {
+		int physOffset;
+		synchronized (allocLck) {
+			if (wbufs.size() > freewater) {
+				return -1;
+			}
+			physOffset = highwater;
+			highwater = (highwater + wbufs.size()) % UNITCAPACITY;
+			freewater -= wbufs.size();
 		}
 
+		// the pages we allocated are ours, fill them in without holding allocLck
+		int ind = physOffset;
 		for (int j = 0; j < wbufs.size(); j++) {
-			put(highwater++, wbufs.get(j));
-			if (highwater >= UNITCAPACITY) highwater = 0;
+			put(ind++, wbufs.get(j));
+			if (ind >= UNITCAPACITY) ind = 0;
 		}
-		freewater -= wbufs.size();
-		return true;
+		return physOffset;
 	}
 
 	private ArrayList<ByteBuffer> get(int pos, int sz) throws IOException {
 		ArrayList<ByteBuffer> wbufs = new ArrayList<ByteBuffer>();
-
-        if (RAMMODE) {
-            for (int j = 0; j < sz; j++) {
-                wbufs.add(inmemoryStore[pos++]);
-                if (pos >= UNITCAPACITY) pos = 0;
-            }
-        } else {
-            if (pos + sz > UNITCAPACITY) {
-                ByteBuffer buf1 = ByteBuffer.allocate((UNITCAPACITY - pos) * PAGESIZE),
-                        buf2 = ByteBuffer.allocate(((pos + sz) % UNITCAPACITY) * PAGESIZE);
-                DriveChannel.read(buf1, pos * PAGESIZE);
-                for (int i = 0; i < (UNITCAPACITY - pos); i++)
-                    wbufs.add(ByteBuffer.wrap(buf1.array(), i * PAGESIZE, PAGESIZE));
-                DriveChannel.read(buf2, 0);
-                for (int i = 0; i < (pos + sz) % UNITCAPACITY; i++)
-                    wbufs.add(ByteBuffer.wrap(buf2.array(), i * PAGESIZE, PAGESIZE));
-
-            } else {
-                ByteBuffer buf = ByteBuffer.allocate(sz * PAGESIZE);
-                DriveChannel.read(buf, pos * PAGESIZE);
-                for (int i = 0; i < sz; i++)
-                    wbufs.add(ByteBuffer.wrap(buf.array(), i * PAGESIZE, PAGESIZE));
-            }
+        for (int j = 0; j < sz; j++) {
+            wbufs.add(inmemoryStore[pos++]);
+            if (pos >= UNITCAPACITY) pos = 0;
         }
 		return wbufs;
 	}
 
     public ArrayList<ByteBuffer> mirror() throws IOException {
+        if (!RAMMODE) {
+            // segment files are not mirrored page by page, see SegmentedLogStore
+            throw new IOException("mirror is only supported in rammode");
+        }
         if (highwater <= lowwater)
             return get(lowwater, highwater+UNITCAPACITY-lowwater);
         else
@@ -262,80 +283,64 @@ public class SimpleLogUnitServer implements SimpleLogUnitService.Iface, ICorfuDB
 
 	public ExtntMarkType getET(long logOffset) {
 		int mi = mapind(logOffset) + intsz;
-		mapb.position(mi);
-		int length = mapb.getInt();
+		int length = mapb.getInt(mi);
 		return ExtntMarkType.findByValue(length & 0x3);
 	}
 
 	public void setExtntInfo(long logOffset, int physOffset, int length, ExtntMarkType et) throws IOException {
 		int mi = mapind(logOffset);
-		mapb.position(mi);
-		mapb.putInt(physOffset);
+		mapb.putInt(mi, physOffset);
 		length <<= 2;
         length |= et.getValue();
-		mapb.putInt(length);
+		mapb.putInt(mi + intsz, length);
+	}
+
+	public void trimLogStore(long toOffset) throws IOException {
         if (!RAMMODE) {
-            DriveChannel.position(UNITCAPACITY * PAGESIZE + mi);
-            DriveChannel.write(toArray(logOffset, 1));
+            segmentStore.trim(toOffset);
+            gcmark = segmentStore.getTrimMark();
+            return;
+        }
+
+        long stamp = storeLck.writeLock();
+        try {
+            trimRamStore(toOffset);
+        } finally {
+            storeLck.unlockWrite(stamp);
         }
 	}
 
-	public void trimLogStore(long toOffset) throws IOException {
-		long lasttrim = gcmark, lastcontig = lasttrim;
+	private void trimRamStore(long toOffset) throws IOException {
+		if (toOffset <= gcmark) return;
 
 		log.info("=== trim({}) gcmark={} freewater={} lowwater/highwater={}/{} ===",
 				toOffset, gcmark, freewater, lowwater, highwater);
 
-		// this loop keeps advancing two markers, lasttrim and lastcontig.
-        //
-		// we advance both markers as long as we can free up contiguous space and move  'lowwater'.
-		// lastcontig marks the point that we stop freeing up contiguous space, until we can advance lowwater again.
-		// when we can move lowwater again, we go back to sweeping entries from the lastcontig mark.
-        //
-        // eventually, gcmark is set to the highest contiguous mark which we have freed.
-        // entries above gcmark which were freed are marked internally with EX_TRIMMMED, but gcmark remains below them
-        //
-		while (lasttrim < toOffset) {
-            mapInfo minf = new mapInfo(lasttrim);
-            if (minf.et == ExtntMarkType.EX_FILLED && minf.physOffset == lowwater) {
-                log.info("trim {} sz={}", lasttrim, minf.length);
-                // TODO in RAMMODE, do we need to free up blocks?
-                lowwater += minf.length;
-                freewater += minf.length;
-                if (lowwater >= UNITCAPACITY) lowwater %= UNITCAPACITY;
-
-                // go back now to lastcontig mark
-                while (lastcontig < lasttrim) {
-                    minf = new mapInfo(lasttrim);
-                    if (minf.et == ExtntMarkType.EX_FILLED && minf.physOffset == lowwater) {
-                        log.info("trim {} sz={}", lasttrim, minf.length);
-                        // TODO in RAMMODE, do we need to free up blocks?
-                        lowwater += minf.length;
-                        freewater += minf.length;
-                        if (lowwater >= UNITCAPACITY) lowwater %= UNITCAPACITY;
-                        lastcontig++;
-                    } else if (minf.et != ExtntMarkType.EX_FILLED) {
-                        lastcontig++;
-                    } else
-                        break;
+        // release every extent below the trim mark. its pages are dropped from the store right away, so the
+        // memory is reclaimed, and its map entry is emptied for the extent UNITCAPACITY further on to reuse.
+        // nothing more than UNITCAPACITY past gcmark can have been written, see appendExtntLogStore.
+        long end = Math.min(toOffset, gcmark + UNITCAPACITY);
+		for (long off = gcmark; off < end; off++) {
+            mapInfo minf = new mapInfo(off);
+            if (minf.et == ExtntMarkType.EX_FILLED) {
+                int pos = minf.physOffset;
+                for (int j = 0; j < minf.length; j++) {
+                    inmemoryStore[pos++] = null;
+                    if (pos >= UNITCAPACITY) pos = 0;
                 }
-
-                // now release the extent at 'lasttrim'
-                if (lastcontig == lasttrim) {
-                    setExtntInfo(lasttrim, 0, 0, ExtntMarkType.EX_EMPTY);
-                    lastcontig++;
-                } else {
-                    setExtntInfo(lasttrim, 0, 0, ExtntMarkType.EX_TRIMMED);
-                }
-            } else if (minf.et != ExtntMarkType.EX_FILLED) {
-                if (lastcontig == lasttrim) lastcontig++;
             }
-
-            lasttrim++;
+            setExtntInfo(off, 0, 0, ExtntMarkType.EX_EMPTY);
         }
+		gcmark = toOffset;
 
-		gcmark = lastcontig;
-        writegcmark();
+        // pages are allocated cyclically in the order they were written, which need not be the order of their
+        // offsets, so the allocator can only reuse the freed pages up to the first page which is still in use.
+        synchronized (allocLck) {
+            while (freewater < UNITCAPACITY && inmemoryStore[lowwater] == null) {
+                lowwater = (lowwater + 1) % UNITCAPACITY;
+                freewater++;
+            }
+        }
 
 		log.info("=== done trim({}) new gcmark={} freewater={} lowwater/highwater={}/{} ===",
 				toOffset, gcmark, freewater, lowwater, highwater);
@@ -344,46 +349,71 @@ public class SimpleLogUnitServer implements SimpleLogUnitService.Iface, ICorfuDB
 
 	public ErrorCode appendExtntLogStore(long logOffset, List<ByteBuffer> wbufs, ExtntMarkType et)
         throws IOException {
-        //TODO: figure out trim story..
-		//if (logOffset < CM.getTrimmark())             return ErrorCode.ERR_OVERWRITE;
-        //if ((logOffset-CM.getTrimmark()) >= UNITCAPACITY) {
-        //    setExtntInfo(logOffset, 0, 0, et);
-        //    return ErrorCode.ERR_FULL;
-       // }
-
-        ExtntMarkType oldet = getET(logOffset);
-        if (oldet != ExtntMarkType.EX_EMPTY) {
-            log.info("append would overwrite {} marked-{}", logOffset, oldet);
-            return ErrorCode.ERR_OVERWRITE;
-        }
-		int physOffset = highwater;
-		if (!put(wbufs)) {
-			log.info("no free space for append({})", logOffset);
-            setExtntInfo(logOffset, 0, 0, et);
-			return ErrorCode.ERR_FULL;
-		}
-		setExtntInfo(logOffset, physOffset, wbufs.size(), et);
-		return ErrorCode.OK;
+        if (!RAMMODE) {
+            return segmentStore.append(logOffset, wbufs, et);
+        }
+
+        long stamp = storeLck.readLock();
+        try {
+            if (logOffset < gcmark) {
+                return ErrorCode.ERR_TRIMMED;
+            }
+            if (logOffset - gcmark >= UNITCAPACITY) {
+                // the map is cyclic: the entry for this offset is still taken by the one UNITCAPACITY before it.
+                log.info("append({}) is too far past trim mark {}", logOffset, gcmark);
+                return ErrorCode.ERR_FULL;
+            }
+            synchronized (stripeLck(logOffset)) {
+                ExtntMarkType oldet = getET(logOffset);
+                if (oldet != ExtntMarkType.EX_EMPTY) {
+                    log.info("append would overwrite {} marked-{}", logOffset, oldet);
+                    return ErrorCode.ERR_OVERWRITE;
+                }
+                int physOffset = put(wbufs);
+                if (physOffset == -1) {
+                    log.info("no free space for append({})", logOffset);
+                    setExtntInfo(logOffset, 0, 0, et);
+                    return ErrorCode.ERR_FULL;
+                }
+                setExtntInfo(logOffset, physOffset, wbufs.size(), et);
+                return ErrorCode.OK;
+            }
+        } finally {
+            storeLck.unlockRead(stamp);
+        }
 	}
 
 	public ExtntWrap getExtntLogStore(long logOffset) throws IOException {
+        if (!RAMMODE) {
+            return segmentStore.read(logOffset);
+        }
+
 		ExtntWrap wr = new ExtntWrap();
-//TODO : figure out trim story
-/*
-		if (logOffset < CM.getTrimmark()) {
-			wr.setErr(ErrorCode.ERR_TRIMMED);
-			wr.setCtnt(new ArrayList<ByteBuffer>());
-		} else if ((logOffset-CM.getTrimmark()) >= UNITCAPACITY) {
-			wr.setErr(ErrorCode.ERR_UNWRITTEN);
-			wr.setCtnt(new ArrayList<ByteBuffer>());
-		} else {
-        */
-			mapInfo minf = new mapInfo(logOffset);
+			mapInfo minf;
+			ArrayList<ByteBuffer> ctnt = null;
+			long stamp = storeLck.readLock();
+			try {
+				if (logOffset < gcmark) {
+					wr.setErr(ErrorCode.ERR_TRIMMED);
+					wr.setCtnt(new ArrayList<ByteBuffer>());
+					return wr;
+				} else if ((logOffset-gcmark) >= UNITCAPACITY) {
+					wr.setErr(ErrorCode.ERR_UNWRITTEN);
+					wr.setCtnt(new ArrayList<ByteBuffer>());
+					return wr;
+				}
+				synchronized (stripeLck(logOffset)) {
+					minf = new mapInfo(logOffset);
+					if (minf.et == ExtntMarkType.EX_FILLED) ctnt = get(minf.physOffset, minf.length);
+				}
+			} finally {
+				storeLck.unlockRead(stamp);
+			}
 			wr.setInf(new ExtntInfo(logOffset, minf.length, minf.et));
 			log.debug("read phys {}->{}, {}", minf.physOffset, minf.length, minf.et);
 			if (minf.et == ExtntMarkType.EX_FILLED) {
 				wr.setErr(ErrorCode.OK);
-				wr.setCtnt(get(minf.physOffset, minf.length));
+				wr.setCtnt(ctnt);
 				log.debug("ctnt {}", wr.getCtnt());
 			} else if (minf.et == ExtntMarkType.EX_SKIP) {
 				wr.setErr(ErrorCode.OK_SKIP);
@@ -392,21 +422,30 @@ public class SimpleLogUnitServer implements SimpleLogUnitService.Iface, ICorfuDB
 			} else if (minf.et == ExtntMarkType.EX_TRIMMED) {
 				wr.setErr(ErrorCode.ERR_TRIMMED);
 			}
-		//}
 		return wr;
 	}
 
 	public ErrorCode getExtntInfoLogStore(long logOffset, ExtntInfo inf) {
-        // TODO: figure out trim story
-        /*
-		if (logOffset < CM.getTrimmark()) {
-			inf.setFlag(ExtntMarkType.EX_TRIMMED);
-            return ErrorCode.ERR_TRIMMED;
-		} else if ((logOffset-CM.getTrimmark()) >= UNITCAPACITY) {
-			inf.setFlag(ExtntMarkType.EX_EMPTY);
-            return ErrorCode.ERR_UNWRITTEN;
-		} else {*/
-			mapInfo minf = new mapInfo(logOffset);
+        if (!RAMMODE) {
+            return segmentStore.readMeta(logOffset, inf);
+        }
+
+			mapInfo minf;
+			long stamp = storeLck.readLock();
+			try {
+				if (logOffset < gcmark) {
+					inf.setFlag(ExtntMarkType.EX_TRIMMED);
+					return ErrorCode.ERR_TRIMMED;
+				} else if ((logOffset-gcmark) >= UNITCAPACITY) {
+					inf.setFlag(ExtntMarkType.EX_EMPTY);
+					return ErrorCode.ERR_UNWRITTEN;
+				}
+				synchronized (stripeLck(logOffset)) {
+					minf = new mapInfo(logOffset);
+				}
+			} finally {
+				storeLck.unlockRead(stamp);
+			}
             inf.setFlag(minf.et);
             inf.setMetaFirstOff(logOffset);
             inf.setMetaLength(minf.length);
@@ -417,37 +456,14 @@ public class SimpleLogUnitServer implements SimpleLogUnitService.Iface, ICorfuDB
                 case EX_SKIP: return ErrorCode.ERR_UNWRITTEN;
                 default: log.error("internal error in getExtntInfoLogStore"); return ErrorCode.ERR_BADPARAM;
             }
-		//}
 	}
 
-    private void writegcmark() throws IOException {
-        // TODO what about persisting the configuration??
-        if (!RAMMODE) {
-            DriveChannel.position(UNITCAPACITY * PAGESIZE + UNITCAPACITY * entsz);
-            byte[] ser = Util.ObjectSerialize(new Long(gcmark));
-            DriveChannel.write(ByteBuffer.wrap(ser));
-        }
-    }
-
     private void recover() throws Exception {
-
-        long filesz =  DriveChannel.size();
-        int sz = Util.ObjectSerialize(new Long(0)).length; // size of extra info after bitmap
-
-        DriveChannel.position(UNITCAPACITY*PAGESIZE);
-        ByteBuffer bb = ByteBuffer.allocate(UNITCAPACITY*entsz);
-        DriveChannel.read(bb);
-        ByteBuffer tb = ByteBuffer.allocate(sz);
-        DriveChannel.position(UNITCAPACITY*PAGESIZE+ UNITCAPACITY*entsz);
-        if (DriveChannel.read(tb) == sz) {
-            gcmark = ((Long) Util.ObjectDeserialize(tb.array())).longValue();
-            log.debug("trimmark recovered: {}", gcmark);
-        } else {
-            log.info("no gcmark saved, setting initial trim=0");
-            gcmark=0;
-            writegcmark();
-        }
-        initLogStore(bb.array(), UNITCAPACITY);
+        // the segment store has already replayed its index files, just pick up its marks
+        gcmark = segmentStore.getTrimMark();
+        highWatermark.set(segmentStore.getHighestOffset());
+        log.debug("trimmark recovered: {}, highest address recovered: {}", gcmark, highWatermark);
+        initLogStore(UNITCAPACITY);
     }
 /*
     private void rebuildfromnode() throws Exception {
@@ -503,14 +519,17 @@ public class SimpleLogUnitServer implements SimpleLogUnitService.Iface, ICorfuDB
 	 * we make great effort for the write to either succeed in full, or not leave any partial garbage behind.
 	 * this means that we first check if all the pages to be written are free, and that the incoming entry contains content for each page.
 	 * in the event of some error in the middle, we reset any values we already set.
+	 *
+	 * when persisting to disk, the write is acknowledged only once the batch it was committed with is durable.
 	 */
 	@Override
-	synchronized public ErrorCode write(UnitServerHdr hdr, List<ByteBuffer> ctnt, ExtntMarkType et) throws org.apache.thrift.TException {
+	public ErrorCode write(UnitServerHdr hdr, List<ByteBuffer> ctnt, ExtntMarkType et) throws org.apache.thrift.TException {
 
         if (simFailure)
         {
             throw new TException("Simulated failure mode!");
         }
+
         if (Util.compareIncarnations(hdr.getEpoch(), masterIncarnation) < 0) {
             log.info("write request has stale incarnation={} cur incarnation={}",
                     hdr.getEpoch(), masterIncarnation);
@@ -518,14 +537,28 @@ public class SimpleLogUnitServer implements SimpleLogUnitService.Iface, ICorfuDB
         }
 
 		log.debug("write({} size={} marktype={})", hdr.off, ctnt.size(), et);
+        ErrorCode ec;
         try {
-            ErrorCode ec = appendExtntLogStore(hdr.off, ctnt, et);
-            highWatermark = Long.max(highWatermark, hdr.off);
-            return ec;
+            ec = appendExtntLogStore(hdr.off, ctnt, et);
+            if (ec == ErrorCode.OK) {
+                highWatermark.accumulateAndGet(hdr.off, Long::max);
+            }
         } catch (IOException e) {
             e.printStackTrace();
             return ErrorCode.ERR_IO;
         }
+        if (RAMMODE || ec != ErrorCode.OK) {
+            return ec;
+        }
+
+        // concurrent writers waiting here join the same batch
+        try {
+            committer.awaitDurable(committer.register());
+        } catch (IOException | InterruptedException e) {
+            log.error("write({}) could not be forced to persistent store", hdr.off, e);
+            return ErrorCode.ERR_IO;
+        }
+        return ec;
     }
 
 	/**
@@ -538,7 +571,7 @@ public class SimpleLogUnitServer implements SimpleLogUnitService.Iface, ICorfuDB
 	 * @throws TException
 	 */
 	@Override
-	synchronized public ErrorCode fix(UnitServerHdr hdr) throws TException {
+	public ErrorCode fix(UnitServerHdr hdr) throws TException {
         if (simFailure)
         {
             throw new TException("Simulated failure mode!");
@@ -563,7 +596,7 @@ public class SimpleLogUnitServer implements SimpleLogUnitService.Iface, ICorfuDB
 	 *  @param a CorfuHeader describing the range to read
 	 */
 	@Override
-	synchronized public ExtntWrap read(UnitServerHdr hdr) throws org.apache.thrift.TException {
+	public ExtntWrap read(UnitServerHdr hdr) throws org.apache.thrift.TException {
         if (simFailure)
         {
             throw new TException("Simulated failure mode!");
@@ -578,6 +611,111 @@ public class SimpleLogUnitServer implements SimpleLogUnitService.Iface, ICorfuDB
         }
     }
 
+	/**
+	 * write a batch of single-page extents.
+	 * each extent is written as if by write(); when persisting to disk, the whole batch is forced once.
+	 *
+	 * @param epoch the epoch of the request
+	 * @param offsets the offsets to write
+	 * @param ctnt the page to write at each offset
+	 * @param et the mark type of the extents
+	 * @return an error code for each offset
+	 */
+	@Override
+	public List<ErrorCode> multiWrite(List<Integer> epoch, List<Long> offsets, List<ByteBuffer> ctnt, ExtntMarkType et)
+			throws org.apache.thrift.TException {
+        if (simFailure)
+        {
+            throw new TException("Simulated failure mode!");
+        }
+        ArrayList<ErrorCode> ecs = new ArrayList<ErrorCode>(offsets.size());
+        if (Util.compareIncarnations(epoch, masterIncarnation) < 0) {
+            log.info("multiWrite request has stale incarnation={} cur incarnation={}", epoch, masterIncarnation);
+            for (int i = 0; i < offsets.size(); i++) ecs.add(ErrorCode.ERR_STALEEPOCH);
+            return ecs;
+        }
+        if (offsets.size() != ctnt.size()) {
+            for (int i = 0; i < offsets.size(); i++) ecs.add(ErrorCode.ERR_BADPARAM);
+            return ecs;
+        }
+
+		log.debug("multiWrite({} entries from {} marktype={})", offsets.size(), offsets.isEmpty() ? -1 : offsets.get(0), et);
+        boolean written = false;
+        for (int i = 0; i < offsets.size(); i++) {
+            try {
+                ErrorCode ec = appendExtntLogStore(offsets.get(i), Collections.singletonList(ctnt.get(i)), et);
+                if (ec == ErrorCode.OK) {
+                    highWatermark.accumulateAndGet(offsets.get(i), Long::max);
+                    written = true;
+                }
+                ecs.add(ec);
+            } catch (IOException e) {
+                e.printStackTrace();
+                ecs.add(ErrorCode.ERR_IO);
+            }
+        }
+        if (RAMMODE || !written) {
+            return ecs;
+        }
+
+        try {
+            committer.awaitDurable(committer.register());
+        } catch (IOException | InterruptedException e) {
+            log.error("multiWrite could not be forced to persistent store", e);
+            for (int i = 0; i < ecs.size(); i++) {
+                if (ecs.get(i) == ErrorCode.OK) ecs.set(i, ErrorCode.ERR_IO);
+            }
+        }
+        return ecs;
+    }
+
+	/**
+	 * read a batch of extents, each as if by read().
+	 *
+	 * @param epoch the epoch of the request
+	 * @param offsets the offsets to read
+	 * @return the extent at each offset
+	 */
+	@Override
+	public List<ExtntWrap> multiRead(List<Integer> epoch, List<Long> offsets) throws org.apache.thrift.TException {
+        if (simFailure)
+        {
+            throw new TException("Simulated failure mode!");
+        }
+        ArrayList<ExtntWrap> wraps = new ArrayList<ExtntWrap>(offsets.size());
+        boolean stale = Util.compareIncarnations(epoch, masterIncarnation) < 0;
+		log.debug("multiRead({} entries)", offsets.size());
+        for (Long off : offsets) {
+            if (stale) {
+                wraps.add(genWrap(ErrorCode.ERR_STALEEPOCH));
+                continue;
+            }
+            try {
+                wraps.add(getExtntLogStore(off));
+            } catch (IOException e) {
+                e.printStackTrace();
+                wraps.add(genWrap(ErrorCode.ERR_IO));
+            }
+        }
+        return wraps;
+    }
+
+	/**
+	 * read count consecutive extents starting at hdr.off, each as if by read().
+	 *
+	 * @param hdr epoch and first offset to read
+	 * @param count the number of offsets to read
+	 * @return the extent at each offset
+	 */
+	@Override
+	public List<ExtntWrap> readRange(UnitServerHdr hdr, int count) throws org.apache.thrift.TException {
+        ArrayList<Long> offsets = new ArrayList<Long>(Math.max(count, 0));
+        for (int i = 0; i < count; i++) {
+            offsets.add(hdr.off + i);
+        }
+        return multiRead(hdr.getEpoch(), offsets);
+    }
+
 	/* read the meta-info record at specified offset
 	 *
 	 * @param off- the offset to read from
@@ -588,7 +726,7 @@ public class SimpleLogUnitServer implements SimpleLogUnitService.Iface, ICorfuDB
 	 * @see CorfuUnitServer.Iface#readmeta(long)
 	 */
 	@Override
-	synchronized public ExtntWrap readmeta(UnitServerHdr hdr) {
+	public ExtntWrap readmeta(UnitServerHdr hdr) {
         if (Util.compareIncarnations(hdr.getEpoch(), masterIncarnation) < 0) return genWrap(ErrorCode.ERR_STALEEPOCH);
 		log.debug("readmeta({})", hdr.off);
 		ExtntInfo inf = new ExtntInfo();
@@ -599,54 +737,79 @@ public class SimpleLogUnitServer implements SimpleLogUnitService.Iface, ICorfuDB
 	 * wait until any previously written stream entries have been forced to persistent store
 	 */
     @Override
-	synchronized public void sync() throws org.apache.thrift.TException {
+	public void sync() throws org.apache.thrift.TException {
         if (simFailure)
         {
             throw new TException("Simulated failure mode!");
         }
-    	synchronized(DriveLck) { try { DriveLck.wait(); } catch (Exception e) {
-    		log.error("forcing sync to persistent store failed, quitting");
-    		System.exit(1);
-    	}}
+        if (RAMMODE) {
+            return;
+        }
+        try {
+            committer.sync();
+        } catch (Exception e) {
+            log.error("forcing sync to persistent store failed, quitting");
+            System.exit(1);
+        }
     }
 
 	@Override
-	synchronized public long querytrim() {
-        //return CM.getTrimmark();
-        //TODO figure out trim story
-        return 0;
-        }
+	public long querytrim() {
+        return RAMMODE ? gcmark : segmentStore.getTrimMark();
+    }
 
     @Override
-    synchronized public long highestAddress()
+    public long highestAddress()
     throws TException {
         if (simFailure)
         {
             throw new TException("Simulated failure mode!");
         }
-        return highWatermark;
+        return highWatermark.get();
     }
     @Override
-    synchronized public void reset() {
+    public void reset() {
         log.debug("Reset requested, resetting state");
+        long stamp = storeLck.writeLock();
         try {
         if (RAMMODE)
         {
             inmemoryStore = new ByteBuffer[UNITCAPACITY];
             initLogStore(UNITCAPACITY);
-            writegcmark();
-            highWatermark = -1L;
+            lowwater = highwater = 0;
+            gcmark = 0;
+            highWatermark.set(-1L);
         }
         }
         catch (Exception e)
         {
             log.error("Error during reset", e);
         }
+        finally
+        {
+            storeLck.unlockWrite(stamp);
+        }
     }
 
 	@Override
 	synchronized public long queryck() {	return ckmark; }
 
+	/**
+	 * prefix-trim the log, releasing the space of every extent below an offset
+	 * @param hdr epoch and offset, exclusive, to trim to
+	 * @return OK if succeeds, ERR_IO if the trim mark could not be persisted
+	 * @throws TException
+	 */
+	@Override
+	public ErrorCode trim(UnitServerHdr hdr) throws TException {
+        if (simFailure)
+        {
+            throw new TException("Simulated failure mode!");
+        }
+        if (Util.compareIncarnations(hdr.getEpoch(), masterIncarnation) < 0) return ErrorCode.ERR_STALEEPOCH;
+        return trim(hdr.off);
+	}
+
 	ErrorCode trim(long toOffset) {
         try {
             trimLogStore(toOffset);
@@ -654,22 +817,6 @@ public class SimpleLogUnitServer implements SimpleLogUnitService.Iface, ICorfuDB
             e.printStackTrace();
             return ErrorCode.ERR_IO;
         }
-        if (!RAMMODE) {
-	    	try {
-	    	   	log.debug("forcing bitmap and gcmark to disk");
-	    	   	synchronized(DriveLck) {
-	    	   		try { DriveLck.wait(); } catch (InterruptedException e) {
-		        		log.error("forcing sync to persistent store failed, quitting");
-		        		System.exit(1);
-	    	   		}
-	        	}
-	    	    writegcmark();
-			} catch (IOException e) {
-				log.error("writing gcmark failed");
-				e.printStackTrace();
-				return ErrorCode.ERR_IO;
-			}
-    	}
     	return ErrorCode.OK;
 	}
 
@@ -770,41 +917,33 @@ public class SimpleLogUnitServer implements SimpleLogUnitService.Iface, ICorfuDB
     ////////////////////////////////////////////////////////////////////////////////////
 
 
+    /**
+     * Open the store the log is persisted to, when not in rammode.
+     * @return the store in DRIVENAME
+     * @throws IOException if the store could not be opened or recovered
+     */
+    SegmentedLogStore openStore() throws IOException {
+        return new SegmentedLogStore(DRIVENAME, SEGMENTSIZE, RECOVERY);
+    }
+
     public void serverloop() throws Exception {
 
         log.warn("@C@ CorfuLoggingUnit starting");
 
         if (!RAMMODE) {
             try {
-                RandomAccessFile f = new RandomAccessFile(DRIVENAME, "rw");
-                if (!RECOVERY) f.setLength(0);
-                DriveChannel = f.getChannel();
-            } catch (FileNotFoundException e) {
-                e.printStackTrace();
-                System.exit(1); // not much to do without storage...
+                segmentStore = openStore();
             } catch (IOException e) {
                 e.printStackTrace();
                 System.exit(1); // not much to do without storage...
             }
 
-            // fork off a thread to constantly force syncing to disk
+            // fork off a thread to force batches of writes to disk
             //
-            new Thread(new Runnable() {
-                @Override
-                public void run() {
-                    for (; ; ) {
-                        try {
-                            DriveChannel.force(false);
-                            synchronized (DriveLck) {
-                                DriveLck.notifyAll();
-                            }
-                            Thread.sleep(1);
-                        } catch (Exception e) {
-                            e.printStackTrace();
-                        }
-                    }
-                }
-            }).start();
+            committer = new GroupCommitter(segmentStore, SYNCBATCH, SYNCLATENCY);
+            Thread t = new Thread(committer, "logunit-groupcommit");
+            t.setDaemon(true);
+            t.start();
         } else {
             inmemoryStore = new ByteBuffer[UNITCAPACITY];
         }
@@ -817,23 +956,19 @@ public class SimpleLogUnitServer implements SimpleLogUnitService.Iface, ICorfuDB
             //rebuildfromnode();
         } else {
             initLogStore(UNITCAPACITY);
-            writegcmark();
         }
 
         TServer server;
-        TServerSocket serverTransport;
         System.out.println("run..");
 
         try {
-            serverTransport = new TServerSocket(PORT);
-
             LogUnitConfigServiceImpl cnfg = new LogUnitConfigServiceImpl();
 
             TMultiplexedProcessor mprocessor = new TMultiplexedProcessor();
             mprocessor.registerProcessor("SUNIT", new SimpleLogUnitService.Processor<SimpleLogUnitServer>(this));
             mprocessor.registerProcessor("CONFIG", new SimpleLogUnitConfigService.Processor<LogUnitConfigServiceImpl>(cnfg));
 
-            server = new TThreadPoolServer(new TThreadPoolServer.Args(serverTransport).processor(mprocessor));
+            server = ThriftServerFactory.createServer(serverConfig, PORT, mprocessor);
             System.out.println("Starting Corfu storage unit server on multiplexed port " + PORT);
 
             server.serve();
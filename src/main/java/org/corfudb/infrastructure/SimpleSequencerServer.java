@@ -15,14 +15,15 @@
 
 package org.corfudb.infrastructure;
 
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.util.Timer;
 import java.util.TimerTask;
 import java.util.concurrent.atomic.AtomicLong;
 
 import org.apache.thrift.TException;
 import org.apache.thrift.server.TServer;
-import org.apache.thrift.server.TThreadPoolServer;
-import org.apache.thrift.transport.TServerSocket;
 import org.apache.thrift.transport.TTransportException;
 
 import org.slf4j.Logger;
@@ -35,10 +36,23 @@ import java.util.Map;
 public class SimpleSequencerServer implements SimpleSequencerService.Iface, ICorfuDBServer {
 
     private int port = 0;
+    private Map<String,Object> config = null;
     private Logger log = LoggerFactory.getLogger(SimpleSequencerServer.class);
 
 	AtomicLong pos = new AtomicLong(0);
     boolean simFailure;
+    SequencerLease lease = null;
+
+    /**
+     * Issue tokens from a durable lease, so that a restarted sequencer resumes past every token it
+     * issued before. The sequence resumes from the bound of the lease.
+     * @param lease         The lease to issue tokens from.
+     */
+    void useLease(SequencerLease lease)
+    {
+        this.lease = lease;
+        pos = new AtomicLong(lease.getBound());
+    }
 
 	@Override
 	public long nextpos(int range) throws TException {
@@ -48,6 +62,15 @@ public class SimpleSequencerServer implements SimpleSequencerService.Iface, ICor
             throw new TException("Simulated failure mode!");
         }
 		long ret = pos.getAndAdd(range);
+        if (lease != null)
+        {
+            try {
+                lease.cover(ret + range);
+            } catch (IOException e) {
+                log.error("Unable to extend sequencer lease", e);
+                throw new TException(e);
+            }
+        }
 		return ret;
 	}
 
@@ -55,6 +78,14 @@ public class SimpleSequencerServer implements SimpleSequencerService.Iface, ICor
     public void reset() throws TException {
         log.info("Reset requested, setting sequence to 0");
         simFailure = false;
+        if (lease != null)
+        {
+            try {
+                lease.reset();
+            } catch (IOException e) {
+                throw new TException(e);
+            }
+        }
         pos = new AtomicLong(0);
     }
 
@@ -64,6 +95,14 @@ public class SimpleSequencerServer implements SimpleSequencerService.Iface, ICor
         {
             throw new TException("Simulated failure mode!");
         }
+        if (lease != null)
+        {
+            try {
+                lease.cover(lowbound);
+            } catch (IOException e) {
+                throw new TException(e);
+            }
+        }
         pos.set(lowbound);
     }
 
@@ -79,11 +118,23 @@ public class SimpleSequencerServer implements SimpleSequencerService.Iface, ICor
     public Runnable getInstance(final Map<String,Object> config)
     {
         final SimpleSequencerServer st = this;
+        if (config.containsKey("lease"))
+        {
+            long chunk = config.containsKey("leasechunk") ?
+                    ((Number) config.get("leasechunk")).longValue() : SequencerLease.DEFAULT_CHUNK;
+            try {
+                st.useLease(new SequencerLease(new File((String) config.get("lease")), chunk));
+            } catch (IOException e) {
+                // issuing tokens without the lease could reuse them after a restart.
+                throw new UncheckedIOException("Unable to open sequencer lease " + config.get("lease"), e);
+            }
+        }
         return new Runnable()
         {
             @Override
             public void run() {
                 st.port = (Integer) config.get("port");
+                st.config = config;
                 while (true) {
                     st.serverloop();
                 }
@@ -117,14 +168,12 @@ public class SimpleSequencerServer implements SimpleSequencerService.Iface, ICor
 	public void serverloop() {
 
         TServer server;
-        TServerSocket serverTransport;
         SimpleSequencerService.Processor<SimpleSequencerServer> processor;
         log.debug("Simple sequencer entering service loop.");
         try {
-            serverTransport = new TServerSocket(port);
             processor =
                     new SimpleSequencerService.Processor<SimpleSequencerServer>(this);
-            server = new TThreadPoolServer(new TThreadPoolServer.Args(serverTransport).processor(processor));
+            server = ThriftServerFactory.createServer(config, port, processor);
             log.info("Simple sequencer starting on port " + port);
             server.serve();
         } catch (TTransportException e) {
@@ -0,0 +1,416 @@
+/**
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.corfudb.infrastructure;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * The stream tails of a streaming sequencer: the last address issued to each stream.
+ *
+ * Streams are keyed by their 128-bit ID, held as two longs in an open-addressed table, so issuing a token
+ * neither parses nor allocates a key. Issuing tokens for a stream takes no lock: the stream's tail is
+ * claimed with a single CAS, the global tail advances with a single atomic add, and the new tail is
+ * published with a volatile store, which releases the claim. Claiming the tail keeps the global tokens of
+ * a stream in the same order as its tails, so backpointers always point backwards. Tokens for several
+ * streams are issued by claiming their tails in ID order, so one global token covers all of them.
+ *
+ * The table grows when it is three-quarters full. The thread which grows it freezes every slot of the old
+ * table as it copies it; threads which run into a frozen slot wait for the new table and retry.
+ */
+public class StreamTailTable {
+
+    /** The stream has no previous entry. */
+    public static final long NO_PREVIOUS = -1L;
+
+    /** The previous entry of the stream is not known, because the tails were lost. */
+    public static final long UNKNOWN_PREVIOUS = -2L;
+
+    /** The default number of slots the table starts with. */
+    public static final int DEFAULT_CAPACITY = 1024;
+
+    /* Tail values which are never addresses: a claimed tail, and a tail moved to a new table. */
+    static final long BUSY = Long.MIN_VALUE;
+    static final long MOVED = Long.MIN_VALUE + 1;
+
+    /* Slot states. A slot is only ever claimed once, and its key never changes after it is published. */
+    static final int EMPTY = 0;
+    static final int CLAIMING = 1;
+    static final int USED = 2;
+    static final int FROZEN = 3;
+
+    /** Visits the streams of a table. */
+    public interface StreamVisitor {
+        void visit(long msb, long lsb, long tail);
+    }
+
+    static final class Table {
+        final int mask;
+        final long[] keys;
+        final AtomicIntegerArray states;
+        final AtomicLongArray tails;
+        final AtomicInteger used = new AtomicInteger();
+
+        Table(int capacity)
+        {
+            this.mask = capacity - 1;
+            this.keys = new long[capacity * 2];
+            this.states = new AtomicIntegerArray(capacity);
+            this.tails = new AtomicLongArray(capacity);
+        }
+
+        int capacity()
+        {
+            return mask + 1;
+        }
+    }
+
+    final AtomicLong global;
+    private volatile Table table;
+    private volatile long initialTail = NO_PREVIOUS;
+
+    /**
+     * Create a stream tail table.
+     * @param global        The global tail, which is the next token to issue.
+     * @param capacity      The number of slots to start with, rounded up to a power of two.
+     */
+    public StreamTailTable(AtomicLong global, int capacity)
+    {
+        this.global = global;
+        this.table = new Table(roundUp(capacity));
+    }
+
+    private static int roundUp(int capacity)
+    {
+        int c = 2;
+        while (c < capacity)
+        {
+            c <<= 1;
+        }
+        return c;
+    }
+
+    private static int hash(long msb, long lsb)
+    {
+        long h = (msb ^ lsb) * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+
+    /**
+     * Forget every stream tail. Streams seen after this start with the given tail.
+     * @param tail          NO_PREVIOUS if the log is empty, or UNKNOWN_PREVIOUS if the tails were lost.
+     */
+    public synchronized void clear(long tail)
+    {
+        initialTail = tail;
+        table = new Table(table.capacity());
+    }
+
+    /**
+     * Get the number of streams in the table.
+     * @return              The number of streams tokens have been issued or queried for.
+     */
+    public int size()
+    {
+        return table.used.get();
+    }
+
+    /**
+     * Get whether the table holds every stream tokens were issued to.
+     * @return              False, if the table was cleared because the tails were lost.
+     */
+    public boolean isComplete()
+    {
+        return initialTail != UNKNOWN_PREVIOUS;
+    }
+
+    /**
+     * Visit every stream in the table. The table is not grown or cleared during the visit; a stream
+     * inserted while it runs may be missed, but only once the visit has started.
+     * @param visitor       Called with the ID of each stream, as its most and least significant bits,
+     *                      and its tail, which is NO_PREVIOUS if the stream was only queried.
+     */
+    public synchronized void forEachStream(StreamVisitor visitor)
+    {
+        Table t = table;
+        for (int slot = 0; slot <= t.mask; slot++)
+        {
+            int state = t.states.get(slot);
+            while (state == CLAIMING)
+            {
+                Thread.yield();
+                state = t.states.get(slot);
+            }
+            if (state == USED)
+            {
+                long tail = t.tails.get(slot);
+                while (tail == BUSY)
+                {
+                    Thread.yield();
+                    tail = t.tails.get(slot);
+                }
+                visitor.visit(t.keys[2 * slot], t.keys[2 * slot + 1], tail);
+            }
+        }
+    }
+
+    /**
+     * Issue global tokens for a set of streams, together with the previous address issued to each of them.
+     * @param msbs          The most significant bits of the stream IDs.
+     * @param lsbs          The least significant bits of the stream IDs.
+     * @param range         The number of tokens to issue. 0 returns the current global tail and stream tails.
+     * @param previous      Filled in with the previous address of each stream, NO_PREVIOUS or UNKNOWN_PREVIOUS.
+     * @return              The first token issued.
+     */
+    public long next(long[] msbs, long[] lsbs, int range, long[] previous)
+    {
+        int n = msbs.length;
+        if (range == 0)
+        {
+            for (int i = 0; i < n; i++)
+            {
+                previous[i] = peek(msbs[i], lsbs[i]);
+            }
+            return global.get();
+        }
+        if (n == 1)
+        {
+            return nextSingle(msbs[0], lsbs[0], range, previous);
+        }
+
+        // claim the tails in ID order, so two requests for overlapping streams never wait on each other.
+        Integer[] order = new Integer[n];
+        for (int i = 0; i < n; i++)
+        {
+            order[i] = i;
+        }
+        Arrays.sort(order, (a, b) -> {
+            int c = Long.compare(msbs[a], msbs[b]);
+            return c != 0 ? c : Long.compare(lsbs[a], lsbs[b]);
+        });
+
+        int[] slots = new int[n];
+        while (true)
+        {
+            Table t = table;
+            int claimed = 0;
+            boolean moved = false;
+            for (; claimed < n; claimed++)
+            {
+                int i = order[claimed];
+                if (claimed > 0 && msbs[i] == msbs[order[claimed - 1]] && lsbs[i] == lsbs[order[claimed - 1]])
+                {
+                    // the same stream twice: it was claimed already.
+                    slots[i] = -1;
+                    continue;
+                }
+                int slot = locate(t, msbs[i], lsbs[i]);
+                long tail = slot < 0 ? MOVED : claim(t, slot);
+                if (tail == MOVED)
+                {
+                    moved = true;
+                    break;
+                }
+                slots[i] = slot;
+                previous[i] = tail;
+            }
+            if (moved)
+            {
+                // let the table be grown: put back the tails claimed so far, and start over.
+                for (int c = 0; c < claimed; c++)
+                {
+                    int i = order[c];
+                    if (slots[i] >= 0)
+                    {
+                        t.tails.set(slots[i], previous[i]);
+                    }
+                }
+                grow(t);
+                continue;
+            }
+
+            long position = global.getAndAdd(range);
+            for (int c = 0; c < n; c++)
+            {
+                int i = order[c];
+                if (slots[i] >= 0)
+                {
+                    t.tails.set(slots[i], position + range - 1);
+                }
+                else
+                {
+                    previous[i] = previous[order[c - 1]];
+                }
+            }
+            return position;
+        }
+    }
+
+    private long nextSingle(long msb, long lsb, int range, long[] previous)
+    {
+        while (true)
+        {
+            Table t = table;
+            int slot = locate(t, msb, lsb);
+            long tail = slot < 0 ? MOVED : claim(t, slot);
+            if (tail == MOVED)
+            {
+                grow(t);
+                continue;
+            }
+            long position = global.getAndAdd(range);
+            t.tails.set(slot, position + range - 1);
+            previous[0] = tail;
+            return position;
+        }
+    }
+
+    private long peek(long msb, long lsb)
+    {
+        while (true)
+        {
+            Table t = table;
+            int slot = locate(t, msb, lsb);
+            if (slot >= 0)
+            {
+                long tail = t.tails.get(slot);
+                while (tail == BUSY)
+                {
+                    Thread.yield();
+                    tail = t.tails.get(slot);
+                }
+                if (tail != MOVED)
+                {
+                    return tail;
+                }
+            }
+            grow(t);
+        }
+    }
+
+    /**
+     * Claim the tail of a slot, waiting for any other claim on it to be released.
+     * @return              The tail, or MOVED if the slot was moved to a new table.
+     */
+    private static long claim(Table t, int slot)
+    {
+        int spins = 0;
+        while (true)
+        {
+            long tail = t.tails.get(slot);
+            if (tail == MOVED)
+            {
+                return MOVED;
+            }
+            if (tail != BUSY && t.tails.compareAndSet(slot, tail, BUSY))
+            {
+                return tail;
+            }
+            if (++spins > 64)
+            {
+                Thread.yield();
+            }
+        }
+    }
+
+    /**
+     * Find the slot of a stream, inserting it if it is not in the table yet.
+     * @return              The slot, or -1 if the table is being grown or has to be.
+     */
+    private int locate(Table t, long msb, long lsb)
+    {
+        int start = hash(msb, lsb) & t.mask;
+        for (int probe = 0; probe <= t.mask; probe++)
+        {
+            int slot = (start + probe) & t.mask;
+            int state = t.states.get(slot);
+            while (state == CLAIMING)
+            {
+                Thread.yield();
+                state = t.states.get(slot);
+            }
+            if (state == FROZEN)
+            {
+                return -1;
+            }
+            if (state == USED)
+            {
+                if (t.keys[2 * slot] == msb && t.keys[2 * slot + 1] == lsb)
+                {
+                    return slot;
+                }
+                continue;
+            }
+            if (t.states.compareAndSet(slot, EMPTY, CLAIMING))
+            {
+                t.keys[2 * slot] = msb;
+                t.keys[2 * slot + 1] = lsb;
+                t.tails.set(slot, initialTail);
+                t.states.set(slot, USED);
+                // the caller grows the table, once it holds no claims the grower would wait for.
+                return t.used.incrementAndGet() > t.capacity() / 4 * 3 ? -1 : slot;
+            }
+            // another stream took the slot, look at it again.
+            probe--;
+        }
+        return -1;
+    }
+
+    /**
+     * Replace a table with one twice its size, unless it was replaced already. Must not be called while
+     * holding a claim on a tail.
+     */
+    private synchronized void grow(Table t)
+    {
+        if (table != t)
+        {
+            return;
+        }
+        Table bigger = new Table(t.capacity() * 2);
+        for (int slot = 0; slot <= t.mask; slot++)
+        {
+            int state;
+            while ((state = t.states.get(slot)) != USED && !t.states.compareAndSet(slot, EMPTY, FROZEN))
+            {
+                Thread.yield();
+            }
+            if (state != USED)
+            {
+                continue;
+            }
+            long tail;
+            while ((tail = t.tails.get(slot)) == BUSY || !t.tails.compareAndSet(slot, tail, MOVED))
+            {
+                Thread.yield();
+            }
+            long msb = t.keys[2 * slot];
+            long lsb = t.keys[2 * slot + 1];
+            int to = hash(msb, lsb) & bigger.mask;
+            while (bigger.states.get(to) != EMPTY)
+            {
+                to = (to + 1) & bigger.mask;
+            }
+            bigger.keys[2 * to] = msb;
+            bigger.keys[2 * to + 1] = lsb;
+            bigger.tails.set(to, tail);
+            bigger.states.set(to, USED);
+            bigger.used.incrementAndGet();
+        }
+        table = bigger;
+    }
+}
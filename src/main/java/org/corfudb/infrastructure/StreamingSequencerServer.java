@@ -15,145 +15,136 @@
 
 package org.corfudb.infrastructure;
 
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.util.Timer;
 import java.util.TimerTask;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.atomic.AtomicLong;
 
 import org.apache.thrift.TException;
 import org.apache.thrift.server.TServer;
-import org.apache.thrift.server.TThreadPoolServer;
-import org.apache.thrift.transport.TServerSocket;
 import org.apache.thrift.transport.TTransportException;
 
 import org.corfudb.runtime.CorfuDBRuntime;
+import org.corfudb.runtime.TrimmedException;
+import org.corfudb.runtime.entries.IStreamEntry;
+import org.corfudb.runtime.entries.SimpleStreamEntry;
+import org.corfudb.runtime.view.HoleFiller;
+import org.corfudb.runtime.view.WriteOnceAddressSpace;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import org.corfudb.infrastructure.thrift.MultiStreamToken;
+import org.corfudb.infrastructure.thrift.StreamID;
 import org.corfudb.infrastructure.thrift.StreamingSequencerService;
 import org.corfudb.infrastructure.thrift.StreamSequence;
+import org.corfudb.infrastructure.thrift.StreamToken;
 
-import org.corfudb.runtime.view.IWriteOnceAddressSpace;
-import org.corfudb.runtime.view.CachedWriteOnceAddressSpace;
-import org.corfudb.runtime.entries.CorfuDBStreamMoveEntry;
-
+import java.util.ArrayList;
+import java.util.List;
 import java.util.UUID;
 import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
-import java.lang.Math;
-import java.util.concurrent.CompletableFuture;
-
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
 
 public class StreamingSequencerServer implements StreamingSequencerService.Iface, ICorfuDBServer {
 
     private int port = 0;
+    private Map<String,Object> config = null;
     private String configmasterURL = "";
     private Logger log = LoggerFactory.getLogger(StreamingSequencerServer.class);
     private CorfuDBRuntime c;
-    private IWriteOnceAddressSpace woas;
     private boolean simFailure = false;
-    private ExecutorService tp = Executors.newCachedThreadPool();
-    class StreamData {
-
-        public StreamData(UUID streamID) {
-            this.streamID = streamID;
-            this.lastPos = new AtomicLong();
-        }
+	final AtomicLong pos = new AtomicLong(0);
+    SequencerLease lease = null;
 
-        AtomicLong internalPos = null;
-        AtomicLong lastPos = null;
-        Long max = 0L;
-        UUID streamID;
-        int allocation = 10;
+    /* The tokens a sequencer restarted from its lease may have skipped, which are filled once it is up. */
+    volatile long skippedFrom = 0;
+    volatile long skippedTo = 0;
 
-        synchronized void setAllocationSize(int size)
-        {
-            if (size < 2) { size = 2; }
-            this.allocation = size;
-        }
-
-        synchronized void allocate()
-        {
-            if (internalPos == null)
-            {
-                Long newPos = pos.getAndAdd(allocation);
-                internalPos = new AtomicLong(newPos);
-                max = newPos + allocation - 1;
-                log.debug("Stream  " + streamID + "allocation start at " + newPos + " to " + max);
-            }
-        }
+    /** The previous address of a stream is not known, because the sequencer was recovered. */
+    public static final long UNKNOWN_PREVIOUS = StreamTailTable.UNKNOWN_PREVIOUS;
 
-        synchronized StreamSequence reallocate(StreamSequence s, int range)
-        {
-            if (s.position >= max)
-            {
-                Long newPos = pos.getAndAdd(allocation);
-                internalPos = new AtomicLong(newPos);
-                final long oldPos = s.position;
-                CompletableFuture<Void> cf = CompletableFuture.runAsync(() -> {
-                try {
-                    CorfuDBStreamMoveEntry cdsme = new CorfuDBStreamMoveEntry(streamID, null, null, newPos, -1, -1);
-                    log.debug("Writing move entry from " + oldPos + " to " + newPos + " for stream " + streamID);
-                    woas.write(oldPos, cdsme);
-                    lastPos.accumulateAndGet(oldPos, (cur, given) -> { return Math.max(cur,given);} );
+    final StreamTailTable tails = new StreamTailTable(pos, StreamTailTable.DEFAULT_CAPACITY);
 
-                    log.debug("Finished writing move entry.");
-                } catch (Exception ie)
-                {
-                    log.warn("Error placing move entry: ", ie);
-                }
-                }, tp);
-                max = newPos + allocation - 1;
-                s.position = internalPos.getAndAdd(range);
-                s.totalTokens = Math.min(range, (int)(max-s.position));
-                lastPos.accumulateAndGet(s.position, (cur, given) -> { return Math.max(cur,given);} );
-                log.debug("Reallocation for " + streamID + " new range " + s.position + " - " + max);
-            }
-            else
-            {
-                s.position = internalPos.getAndAdd(range);
-                lastPos.accumulateAndGet(s.position, (cur, given) -> { return Math.max(cur,given);} );
-                s.totalTokens = Math.min(range, (int)(max-s.position));
-            }
+    /* The low-water marks the owners of the streams published, see lowwatermark(). */
+    final Map<UUID, Long> lowWaterMarks = new ConcurrentHashMap<UUID, Long>();
 
-            return s;
-        }
+    /**
+     * Issue global tokens for a stream, together with the previous address issued to that stream.
+     * The previous address is -1 if the stream has no entries, and UNKNOWN_PREVIOUS if the tails were
+     * lost when the sequencer was recovered. The backpointers of a stream always point backwards.
+     * @param streamID      The stream to issue tokens for.
+     * @param range         The number of tokens to issue. 0 returns the current position and the tail.
+     * @return              The first token issued and the previous address of the stream.
+     */
+    @Override
+    public StreamToken nextbackpos(String streamID, int range) throws TException {
+        UUID id = UUID.fromString(streamID);
+        return nextstreamtoken(new StreamID(id.getMostSignificantBits(), id.getLeastSignificantBits()), range);
+    }
 
-        StreamSequence getToken(int range)
+    /**
+     * Issue global tokens for a stream, together with the previous address issued to that stream, as
+     * nextbackpos() does, with the stream ID passed in binary.
+     * @param streamID      The stream to issue tokens for.
+     * @param range         The number of tokens to issue. 0 returns the current position and the tail.
+     * @return              The first token issued and the previous address of the stream.
+     */
+    @Override
+    public StreamToken nextstreamtoken(StreamID streamID, int range) throws TException {
+        if (simFailure)
         {
-            StreamSequence s = new StreamSequence();
-            if (range == 0) {s.position = lastPos.get(); return s;}
-            if (internalPos == null) { allocate(); }
-            s.position = internalPos.getAndAdd(range);
-            s.totalTokens = Math.min(range, (int)(max-s.position));
-            if (s.position >= max)
-            {
-                return reallocate(s, range);
-            }
-            lastPos.accumulateAndGet(s.position, (cur, given) -> { return Math.max(cur,given);} );
-            return s;
+            throw new TException("Simulated failure mode!");
         }
+        long[] previous = new long[1];
+        long position = tails.next(new long[] {streamID.msb}, new long[] {streamID.lsb}, range, previous);
+        return new StreamToken(cover(position, range), previous[0]);
     }
-	AtomicLong pos = new AtomicLong(0);
-    Map<String, StreamData> streamMap = new ConcurrentHashMap<String, StreamData>();
 
+    /**
+     * Issue global tokens which belong to several streams at once, together with the previous address
+     * issued to each stream. The tokens become the tail of every one of the streams.
+     * @param streamIDs     The streams to issue tokens for.
+     * @param range         The number of tokens to issue. 0 returns the current position and the tails.
+     * @return              The first token issued, and the previous address of each stream, in the same order.
+     */
     @Override
-    public StreamSequence nextstreampos(String streamID, int range) throws TException {
+    public MultiStreamToken nextmultistreampos(List<StreamID> streamIDs, int range) throws TException {
         if (simFailure)
         {
             throw new TException("Simulated failure mode!");
         }
-        StreamData sd = streamMap.get(streamID);
-        if (sd == null)
+        int n = streamIDs.size();
+        long[] msbs = new long[n];
+        long[] lsbs = new long[n];
+        for (int i = 0; i < n; i++)
+        {
+            msbs[i] = streamIDs.get(i).msb;
+            lsbs[i] = streamIDs.get(i).lsb;
+        }
+        long[] previous = new long[n];
+        long position = n == 0 ? pos.getAndAdd(range) : tails.next(msbs, lsbs, range, previous);
+        List<Long> backpointers = new ArrayList<Long>(n);
+        for (long p : previous)
         {
-            log.debug("Registering new stream " + streamID);
-            StreamData sd_temp = new StreamData(UUID.fromString(streamID));
-            sd = streamMap.putIfAbsent(streamID, sd_temp);
-            if (sd == null) { sd = sd_temp; }
-            sd.allocate();
+            backpointers.add(p);
         }
-        return sd.getToken(range);
+        return new MultiStreamToken(cover(position, range), backpointers);
+    }
+
+    /**
+     * Issue global tokens for a stream. The tokens become the tail of the stream, as the tokens of
+     * nextstreamtoken() do, so entries written at them are found by following the backpointers of the stream.
+     * @param streamID      The stream to issue tokens for.
+     * @param range         The number of tokens to issue. 0 returns the current position.
+     * @return              The first token issued, and the number of tokens issued.
+     */
+    @Override
+    public StreamSequence nextstreampos(String streamID, int range) throws TException {
+        UUID id = UUID.fromString(streamID);
+        StreamToken t = nextstreamtoken(new StreamID(id.getMostSignificantBits(), id.getLeastSignificantBits()), range);
+        return new StreamSequence(t.position, range);
     }
 
     @Override
@@ -178,29 +169,77 @@ public class StreamingSequencerServer implements StreamingSequencerService.Iface
             this.simFailure = fail;
         }
     }
+    /**
+     * Streams are no longer allocated blocks of tokens: every token of a stream is issued from the
+     * global sequence, so the allocation size is ignored.
+     */
     @Override
     public void setAllocationSize(String streamID, int size) throws TException {
         if (simFailure)
         {
             throw new TException("Simulated failure mode!");
         }
-        StreamData sd = streamMap.get(streamID);
-        if (sd == null)
+    }
+
+    /**
+     * Publish the low-water mark of a stream. A mark lower than the one published before is ignored.
+     * @param streamID      The stream.
+     * @param address       The address below which no reader of the stream needs its entries.
+     */
+    @Override
+    public void setlowwatermark(StreamID streamID, long address) throws TException {
+        if (simFailure)
         {
-            log.debug("Registering new stream " + streamID);
-            StreamData sd_temp = new StreamData(UUID.fromString(streamID));
-            sd = streamMap.putIfAbsent(streamID, sd_temp);
-            if (sd == null) { sd = sd_temp; }
+            throw new TException("Simulated failure mode!");
         }
-        log.debug("Setting " + streamID + " allocation size to " + size);
-        sd.setAllocationSize(size);
+        lowWaterMarks.merge(new UUID(streamID.msb, streamID.lsb), address, Math::max);
+    }
+
+    /**
+     * Get the point the log can safely be trimmed to: the lowest low-water mark of every stream tokens
+     * were issued to, where a stream which has not published a mark holds the point at 0. Entries on
+     * ALL_STREAMS belong to every stream, so they are covered by the marks of the others. Once the
+     * stream tails are lost, the streams with entries below the recovered position are not known, so
+     * the point stays at 0 until the sequencer is reset.
+     * @return              The address, exclusive, the log can be trimmed to.
+     */
+    @Override
+    public long lowwatermark() throws TException {
+        if (simFailure)
+        {
+            throw new TException("Simulated failure mode!");
+        }
+        if (!tails.isComplete())
+        {
+            return 0;
+        }
+        // a stream the visit misses is first issued tokens at or above the current position.
+        long[] point = {pos.get()};
+        tails.forEachStream((msb, lsb, tail) -> {
+            UUID stream = new UUID(msb, lsb);
+            if (tail != StreamTailTable.NO_PREVIOUS && !stream.equals(IStreamEntry.ALL_STREAMS))
+            {
+                point[0] = Math.min(point[0], lowWaterMarks.getOrDefault(stream, 0L));
+            }
+        });
+        return point[0];
     }
 
     @Override
     public void reset() throws TException {
         log.info("Reset requested, resetting maps and counters...");
-        streamMap = new ConcurrentHashMap<String, StreamData>();
-        pos = new AtomicLong(0);
+        tails.clear(StreamTailTable.NO_PREVIOUS);
+        lowWaterMarks.clear();
+        if (lease != null)
+        {
+            try {
+                lease.reset();
+            } catch (IOException e) {
+                throw new TException(e);
+            }
+        }
+        skippedFrom = skippedTo = 0;
+        pos.set(0);
         simFailure = false;
     }
 
@@ -211,16 +250,100 @@ public class StreamingSequencerServer implements StreamingSequencerService.Iface
             throw new TException("Simulated failure mode!");
         }
 		// if (pos % 10000 == 0) System.out.println("issue token " + pos + "...");
-		long ret = pos.getAndAdd(range);
+		long ret = issue(range);
 		return ret;
 	}
 
+    /**
+     * Issue tokens from a durable lease, so that a restarted sequencer resumes past every token it
+     * issued before. The sequence resumes from the bound of the lease, with the stream tails unknown,
+     * and the tokens the sequencer may have skipped are recorded to be filled, see fillSkipped().
+     * @param lease         The lease to issue tokens from.
+     */
+    void useLease(SequencerLease lease)
+    {
+        this.lease = lease;
+        if (lease.getBound() > 0)
+        {
+            tails.clear(StreamTailTable.UNKNOWN_PREVIOUS);
+            skippedFrom = lease.getSkippedFrom();
+            skippedTo = lease.getBound();
+        }
+        pos.set(lease.getBound());
+    }
+
+    /**
+     * Fill the tokens a restarted sequencer may have skipped with junk entries, in one pass, so readers
+     * do not have to wait for each of them to be found and filled as a hole. An address which a writer
+     * got its entry to before the restart keeps that entry.
+     * @param addressSpace  The address space to fill the tokens in.
+     */
+    void fillSkipped(WriteOnceAddressSpace addressSpace)
+    {
+        long from = skippedFrom;
+        long to = skippedTo;
+        if (from >= to)
+        {
+            return;
+        }
+        log.info("Filling tokens {} to {} which may have been skipped on restart", from, to - 1);
+        byte[] junk = SimpleStreamEntry.holeEntry();
+        for (long address = from; address < to; address++)
+        {
+            try {
+                addressSpace.fill(address, junk);
+            } catch (TrimmedException te) {
+                // nothing left to fill.
+            }
+        }
+        skippedFrom = skippedTo = 0;
+    }
+
+    /**
+     * Take global tokens, extending the lease first if they are not covered by it yet.
+     * @param range         The number of tokens to take.
+     * @return              The first token taken.
+     */
+    long issue(int range) throws TException
+    {
+        return cover(pos.getAndAdd(range), range);
+    }
+
+    /**
+     * Extend the lease to cover tokens which were taken, before they are handed out.
+     * @param ret           The first token taken.
+     * @param range         The number of tokens taken.
+     * @return              The first token taken.
+     */
+    long cover(long ret, int range) throws TException
+    {
+        if (lease != null)
+        {
+            try {
+                lease.cover(ret + range);
+            } catch (IOException e) {
+                log.error("Unable to extend sequencer lease", e);
+                throw new TException(e);
+            }
+        }
+        return ret;
+    }
+
     @Override
     public void recover(long lowbound) throws TException {
         if (simFailure)
         {
             throw new TException("Simulated failure mode!");
         }
+        if (lease != null)
+        {
+            try {
+                lease.cover(lowbound);
+            } catch (IOException e) {
+                throw new TException(e);
+            }
+        }
+        tails.clear(StreamTailTable.UNKNOWN_PREVIOUS);
         pos.set(lowbound);
     }
 
@@ -236,15 +359,40 @@ public class StreamingSequencerServer implements StreamingSequencerService.Iface
     public Runnable getInstance(final Map<String,Object> config)
     {
         final StreamingSequencerServer st = this;
+        if (config.containsKey("lease"))
+        {
+            long chunk = config.containsKey("leasechunk") ?
+                    ((Number) config.get("leasechunk")).longValue() : SequencerLease.DEFAULT_CHUNK;
+            try {
+                st.useLease(new SequencerLease(new File((String) config.get("lease")), chunk));
+            } catch (IOException e) {
+                // issuing tokens without the lease could reuse them after a restart.
+                throw new UncheckedIOException("Unable to open sequencer lease " + config.get("lease"), e);
+            }
+        }
         return new Runnable()
         {
             @Override
             public void run() {
                 st.port = (Integer) config.get("port");
+                st.config = config;
                 st.configmasterURL = (String) config.get("configmaster");
                 st.c = CorfuDBRuntime.getRuntime(st.configmasterURL);
                 st.c.startViewManager();
-                st.woas = new CachedWriteOnceAddressSpace(st.c);
+                if (st.skippedFrom < st.skippedTo)
+                {
+                    Thread filler = new Thread(() -> {
+                        try {
+                            // writers which took tokens before the restart get as long as any hole gets.
+                            Thread.sleep(HoleFiller.DEFAULT_TIMEOUT);
+                            st.fillSkipped(new WriteOnceAddressSpace(st.c));
+                        } catch (InterruptedException ie) {
+                            // not filled; readers fill the holes they find.
+                        }
+                    }, "lease-fill");
+                    filler.setDaemon(true);
+                    filler.start();
+                }
                 while (true) {
                     st.serverloop();
                 }
@@ -255,14 +403,12 @@ public class StreamingSequencerServer implements StreamingSequencerService.Iface
 	public void serverloop() {
 
         TServer server;
-        TServerSocket serverTransport;
         StreamingSequencerService.Processor<StreamingSequencerServer> processor;
         log.debug("Streaming sequencer entering service loop.");
         try {
-            serverTransport = new TServerSocket(port);
             processor =
                     new StreamingSequencerService.Processor<StreamingSequencerServer>(this);
-            server = new TThreadPoolServer(new TThreadPoolServer.Args(serverTransport).processor(processor));
+            server = ThriftServerFactory.createServer(config, port, processor);
             log.info("Streaming sequencer starting on port " + port);
             server.serve();
         } catch (TTransportException e) {
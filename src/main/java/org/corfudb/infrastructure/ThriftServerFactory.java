@@ -0,0 +1,118 @@
+/**
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.corfudb.infrastructure;
+
+import java.util.Map;
+
+import org.apache.thrift.TProcessor;
+import org.apache.thrift.server.THsHaServer;
+import org.apache.thrift.server.TServer;
+import org.apache.thrift.server.TThreadPoolServer;
+import org.apache.thrift.server.TThreadedSelectorServer;
+import org.apache.thrift.transport.TNonblockingServerSocket;
+import org.apache.thrift.transport.TServerSocket;
+import org.apache.thrift.transport.TTransportException;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Builds the Thrift server for a CorfuDB server, according to its configuration.
+ *
+ * The "servermode" key selects the server:
+ *  threadpool (default) - a blocking TThreadPoolServer, one worker thread per connection.
+ *  hsha                 - a half-sync/half-async THsHaServer: a single selector thread does the I/O
+ *                         and hands complete requests to a bounded worker pool.
+ *  selector             - a TThreadedSelectorServer, which spreads the I/O over several selector threads.
+ *
+ * The non-blocking modes use the framed transport, so clients must connect with "transport=framed".
+ * The "workers" key sets the size of the worker pool in the non-blocking modes. In threadpool mode it
+ * caps the number of connections served, and is unbounded unless given. The "selectors" key sets the
+ * number of selector threads in selector mode.
+ */
+public class ThriftServerFactory {
+
+    private static final Logger log = LoggerFactory.getLogger(ThriftServerFactory.class);
+
+    public static final String MODE_THREADPOOL = "threadpool";
+    public static final String MODE_HSHA = "hsha";
+    public static final String MODE_SELECTOR = "selector";
+
+    public static final int DEFAULT_WORKERS = 4 * Runtime.getRuntime().availableProcessors();
+    public static final int DEFAULT_SELECTORS = 2;
+
+    /**
+     * Create a server for the given processor.
+     * @param config        The server configuration.
+     * @param port          The port to listen on.
+     * @param processor     The processor which serves requests.
+     * @return              A server, which has not been started yet.
+     * @throws TTransportException  If the port could not be bound.
+     */
+    public static TServer createServer(Map<String,Object> config, int port, TProcessor processor)
+        throws TTransportException
+    {
+        String mode = MODE_THREADPOOL;
+        Integer workers = null;
+        int selectors = DEFAULT_SELECTORS;
+        if (config != null)
+        {
+            if (config.containsKey("servermode"))
+            {
+                mode = (String) config.get("servermode");
+            }
+            if (config.containsKey("workers"))
+            {
+                workers = (Integer) config.get("workers");
+            }
+            if (config.containsKey("selectors"))
+            {
+                selectors = (Integer) config.get("selectors");
+            }
+        }
+
+        if (workers == null && !mode.equals(MODE_THREADPOOL))
+        {
+            workers = DEFAULT_WORKERS;
+        }
+
+        switch (mode)
+        {
+            case MODE_THREADPOOL:
+                log.debug("Creating thread pool server on port {}", port);
+                TThreadPoolServer.Args args = new TThreadPoolServer.Args(new TServerSocket(port));
+                if (workers != null)
+                {
+                    // the pool cannot have fewer threads than it starts with.
+                    args.minWorkerThreads(Math.min(args.minWorkerThreads, workers)).maxWorkerThreads(workers);
+                }
+                return new TThreadPoolServer(args.processor(processor));
+            case MODE_HSHA:
+                log.debug("Creating half-sync/half-async server on port {}, {} workers", port, workers);
+                return new THsHaServer(new THsHaServer.Args(new TNonblockingServerSocket(port))
+                        .workerThreads(workers)
+                        .processor(processor));
+            case MODE_SELECTOR:
+                log.debug("Creating threaded selector server on port {}, {} selectors, {} workers",
+                        port, selectors, workers);
+                return new TThreadedSelectorServer(new TThreadedSelectorServer.Args(new TNonblockingServerSocket(port))
+                        .selectorThreads(selectors)
+                        .workerThreads(workers)
+                        .processor(processor));
+            default:
+                throw new IllegalArgumentException("Unknown server mode " + mode);
+        }
+    }
+}
@@ -18,6 +18,9 @@ package org.corfudb.runtime;
 import org.corfudb.runtime.protocols.configmasters.MemoryConfigMasterProtocol;
 import org.corfudb.runtime.stream.IStream;
 import org.corfudb.runtime.view.*;
+import com.codahale.metrics.MetricRegistry;
+import com.googlecode.concurrentlinkedhashmap.ConcurrentLinkedHashMap;
+import org.corfudb.runtime.protocols.sequencers.BackpointerToken;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -43,6 +46,10 @@ import org.corfudb.runtime.protocols.configmasters.IConfigMaster;
 /**
  * Note, the following imports require Java 8
  */
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.locks.StampedLock;
 
 /**
@@ -68,6 +75,27 @@ public class CorfuDBRuntime implements AutoCloseable {
     private static final HashMap<String, CorfuDBRuntime> s_rts = new HashMap();
 
     private ICorfuDBInstance localInstance;
+    private final MetricRegistry metrics = new MetricRegistry();
+    private TokenCoalescer tokenCoalescer = null;
+    private final Map<UUID, TokenCoalescer> streamCoalescers =
+            new ConcurrentLinkedHashMap.Builder<UUID, TokenCoalescer>()
+                    .maximumWeightedCapacity(MAX_STREAM_COALESCERS)
+                    .build();
+    private long cacheCapacity = AddressSpaceCache.DEFAULT_CAPACITY;
+    private volatile ICompressionCodec compressionCodec = CompressionCodecs.LZ;
+    private volatile int compressionThreshold = CompressionCodecs.DEFAULT_THRESHOLD;
+    private volatile ReadPolicy readPolicy = ReadPolicy.TAIL;
+    private AddressSpaceCache<byte[]> addressSpaceCache = null;
+    private AddressSpaceCache<Object> objectCache = null;
+    private HoleFiller holeFiller = null;
+    private LogTrimmer logTrimmer = null;
+    private final Map<String, ExecutorService> pools = new HashMap<String, ExecutorService>();
+
+    /** The most streams a runtime keeps token coalescers for; the least recently used one is dropped first. */
+    public static final int MAX_STREAM_COALESCERS = 1024;
+
+    /** The number of threads in each of the thread pools of a runtime. */
+    public static final int POOL_THREADS = Math.max(4, 2 * Runtime.getRuntime().availableProcessors());
 
     private static final Logger log = LoggerFactory.getLogger(CorfuDBRuntime.class);
 
@@ -167,6 +195,192 @@ public class CorfuDBRuntime implements AutoCloseable {
         return localInstance;
     }
 
+    /**
+     * Get the metrics registry for this runtime.
+     * @return              The registry which components of this runtime report to.
+     */
+    public MetricRegistry getMetrics()
+    {
+        return metrics;
+    }
+
+    /**
+     * Set the capacity of the caches of this runtime. Caches which have already
+     * been created keep their capacity.
+     * @param bytes         The maximum number of bytes each cache holds.
+     */
+    public synchronized void setCacheCapacity(long bytes)
+    {
+        cacheCapacity = bytes;
+    }
+
+    /**
+     * Set how objects written through the address spaces of this runtime are compressed.
+     * Objects are read back with whichever codec they were written with.
+     * @param codec         The codec to compress with, or null to not compress.
+     * @param threshold     The size below which objects are not compressed, in bytes.
+     */
+    public void setCompression(ICompressionCodec codec, int threshold)
+    {
+        compressionCodec = codec;
+        compressionThreshold = threshold;
+    }
+
+    /**
+     * Get the codec objects written through the address spaces of this runtime are compressed with.
+     * @return              The codec, or null if objects are not compressed.
+     */
+    public ICompressionCodec getCompressionCodec()
+    {
+        return compressionCodec;
+    }
+
+    /**
+     * Get the size below which objects written through this runtime are not compressed.
+     * @return              The threshold, in bytes.
+     */
+    public int getCompressionThreshold()
+    {
+        return compressionThreshold;
+    }
+
+    /**
+     * Set how the address spaces of this runtime choose which replica to read an entry from. The default,
+     * TAIL, reads every entry from the tail of its chain.
+     * @param policy        The read policy to use.
+     */
+    public void setReadPolicy(ReadPolicy policy)
+    {
+        readPolicy = policy;
+    }
+
+    /**
+     * Get how the address spaces of this runtime choose which replica to read an entry from.
+     * @return              The read policy.
+     */
+    public ReadPolicy getReadPolicy()
+    {
+        return readPolicy;
+    }
+
+    /**
+     * Get the cache of log entries for this runtime, used by the cached address spaces.
+     * @return              The log entry cache for this runtime.
+     */
+    public synchronized AddressSpaceCache<byte[]> getAddressSpaceCache()
+    {
+        if (addressSpaceCache == null)
+        {
+            addressSpaceCache = new AddressSpaceCache<byte[]>(cacheCapacity, metrics,
+                    MetricRegistry.name(AddressSpaceCache.class, "entries"));
+        }
+        return addressSpaceCache;
+    }
+
+    /**
+     * Get the cache of deserialized log entries for this runtime, used by the object cached address spaces.
+     * @return              The deserialized log entry cache for this runtime.
+     */
+    public synchronized AddressSpaceCache<Object> getObjectCache()
+    {
+        if (objectCache == null)
+        {
+            objectCache = new AddressSpaceCache<Object>(cacheCapacity, metrics,
+                    MetricRegistry.name(AddressSpaceCache.class, "objects"));
+        }
+        return objectCache;
+    }
+
+    /**
+     * Get the hole filler for this runtime. Streams opened through this runtime report the unwritten
+     * addresses they stop at to it, and it fills those which stay unwritten past its timeout.
+     * @return              The hole filler for this runtime.
+     */
+    public synchronized HoleFiller getHoleFiller()
+    {
+        if (holeFiller == null)
+        {
+            final StreamingSequencer sequencer = new StreamingSequencer(this);
+            holeFiller = new HoleFiller(new WriteOnceAddressSpace(this), sequencer::getCurrent,
+                    metrics, MetricRegistry.name(HoleFiller.class, "holes"));
+        }
+        return holeFiller;
+    }
+
+    /**
+     * Get the log trimmer for this runtime. Streams opened through this runtime publish their low-water
+     * marks through it, and once enabled, it trims the log to the lowest mark of every stream in the log.
+     * @return              The log trimmer for this runtime.
+     */
+    public synchronized LogTrimmer getLogTrimmer()
+    {
+        if (logTrimmer == null)
+        {
+            logTrimmer = new LogTrimmer(new WriteOnceAddressSpace(this), new StreamingSequencer(this), metrics,
+                    MetricRegistry.name(LogTrimmer.class, "log"));
+        }
+        return logTrimmer;
+    }
+
+    /**
+     * Get a thread pool owned by this runtime. Pools are created on first use, hold at most
+     * POOL_THREADS daemon threads, and are shut down when the runtime is closed.
+     * @param name          The name of the pool, which its threads are named after.
+     * @return              The pool, or null if the runtime is closed.
+     */
+    public synchronized ExecutorService getPool(String name)
+    {
+        if (closed)
+        {
+            return null;
+        }
+        return pools.computeIfAbsent(name, n -> {
+            ThreadPoolExecutor pool = new ThreadPoolExecutor(POOL_THREADS, POOL_THREADS, 60L, TimeUnit.SECONDS,
+                    new LinkedBlockingQueue<Runnable>(), r -> {
+                        Thread t = new Thread(r, n);
+                        t.setDaemon(true);
+                        return t;
+                    });
+            pool.allowCoreThreadTimeOut(true);
+            return pool;
+        });
+    }
+
+    /**
+     * Get the token coalescer for this runtime. Global tokens requested by concurrent
+     * appenders through this runtime are issued by a shared sequencer request.
+     * @return              The token coalescer for this runtime.
+     */
+    public synchronized TokenCoalescer getTokenCoalescer()
+    {
+        if (tokenCoalescer == null)
+        {
+            final Sequencer sequencer = new Sequencer(this);
+            tokenCoalescer = new TokenCoalescer(
+                    n -> new BackpointerToken(sequencer.issue(n), BackpointerToken.UNKNOWN_PREVIOUS),
+                    metrics, MetricRegistry.name(Sequencer.class, "tokens"));
+        }
+        return tokenCoalescer;
+    }
+
+    /**
+     * Get the token coalescer for a stream. Tokens for the stream requested by concurrent
+     * appenders through this runtime are issued by a shared sequencer request, and chained
+     * together by their backpointers. Only the coalescers of the MAX_STREAM_COALESCERS most recently
+     * used streams are kept; a stream whose coalescer was dropped gets a new one, which is safe since
+     * every batch takes the backpointer of its first token from the sequencer.
+     * @param streamID      The stream to get the coalescer for.
+     * @return              The token coalescer for the stream.
+     */
+    public TokenCoalescer getTokenCoalescer(UUID streamID)
+    {
+        return streamCoalescers.computeIfAbsent(streamID, id -> {
+            final StreamingSequencer sequencer = new StreamingSequencer(this);
+            return new TokenCoalescer(n -> sequencer.issueBackpointer(id, n),
+                    metrics, MetricRegistry.name(StreamingSequencer.class, "stream-tokens"));
+        });
+    }
+
     /**
      * Opens a stream given the type of stream to open.
      * @param streamID      The UUID of the stream.
@@ -389,7 +603,19 @@ public class CorfuDBRuntime implements AutoCloseable {
     public void close()
     {
         closed = true;
-        viewManagerThread.interrupt();
+        synchronized (this)
+        {
+            if (holeFiller != null)
+            {
+                holeFiller.close();
+            }
+            pools.values().forEach(ExecutorService::shutdownNow);
+            pools.clear();
+        }
+        if (viewManagerThread != null)
+        {
+            viewManagerThread.interrupt();
+        }
     }
     /**
      * Retrieves a runnable that provides a view manager thread. The view
@@ -2,17 +2,43 @@ package org.corfudb.runtime.collections;
 import org.corfudb.runtime.smr.ICorfuDBObject;
 import org.corfudb.runtime.smr.ISMREngine;
 import org.corfudb.runtime.smr.ISMREngineCommand;
+import org.corfudb.runtime.smr.SMRCommandTable;
 import org.corfudb.runtime.smr.SimpleSMREngine;
 import org.corfudb.runtime.stream.IStream;
 
 import java.util.*;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * Created by mwei on 5/29/15.
  */
 public class CDBArrayList<T> implements ICorfuDBObject<CDBArrayList<T>>, List<T>, RandomAccess {
 
+    static final int ADD = 0;
+    static final int REMOVE = 1;
+    static final int ADD_ALL = 2;
+    static final int ADD_ALL_AT = 3;
+    static final int REMOVE_ALL = 4;
+    static final int RETAIN_ALL = 5;
+    static final int CLEAR = 6;
+    static final int SET = 7;
+    static final int ADD_AT = 8;
+    static final int REMOVE_AT = 9;
+
+    /* The mutations of the list, as they are logged. */
+    @SuppressWarnings("unchecked")
+    static final SMRCommandTable<ArrayList> commands = new SMRCommandTable<ArrayList>(2, "CDBArrayList")
+            .register(ADD, (list, args) -> list.add(args[0]))
+            .register(REMOVE, (list, args) -> list.remove(args[0]))
+            .register(ADD_ALL, (list, args) -> list.addAll((Collection) args[0]))
+            .register(ADD_ALL_AT, (list, args) -> list.addAll((int) args[0], (Collection) args[1]))
+            .register(REMOVE_ALL, (list, args) -> list.removeAll((Collection) args[0]))
+            .register(RETAIN_ALL, (list, args) -> list.retainAll((Collection) args[0]))
+            .register(CLEAR, (list, args) -> { list.clear(); return null; })
+            .register(SET, (list, args) -> list.set((int) args[0], args[1]))
+            .register(ADD_AT, (list, args) -> { list.add((int) args[0], args[1]); return null; })
+            .register(REMOVE_AT, (list, args) -> list.remove((int) args[0]));
+
     transient ISMREngine<ArrayList<T>> smr;
     UUID streamID;
 
@@ -21,7 +47,7 @@ public class CDBArrayList<T> implements ICorfuDBObject<CDBArrayList<T>>, List<T>
     {
         try {
             streamID = stream.getStreamID();
-            smr = smrClass.getConstructor(IStream.class, Class.class).newInstance(stream, ConcurrentHashMap.class);
+            smr = smrClass.getConstructor(IStream.class, Class.class).newInstance(stream, ArrayList.class);
         }
         catch (Exception e)
         {
@@ -227,12 +253,22 @@ public class CDBArrayList<T> implements ICorfuDBObject<CDBArrayList<T>>, List<T>
     @Override
     @SuppressWarnings("unchecked")
     public boolean add(T t) {
-        mutatorHelper((ISMREngineCommand<ArrayList>) (list, opts) -> {
-            list.add(t);
-        });
+        mutatorHelper(commands.command(ADD, t));
         return true;
     }
 
+    /**
+     * Appends the specified element to the end of this list, without waiting
+     * for the mutation to be written. See add(Object).
+     *
+     * @param t element to be appended to this list
+     * @return a future which completes with <tt>true</tt> once the element is appended.
+     */
+    @SuppressWarnings("unchecked")
+    public CompletableFuture<Boolean> addAsync(T t) {
+        return mutatorAccessorHelperAsync(commands.command(ADD, t)).thenApply(v -> (Boolean) v);
+    }
+
     /**
      * Removes the first occurrence of the specified element from this list,
      * if it is present (optional operation).  If this list does not contain
@@ -256,9 +292,7 @@ public class CDBArrayList<T> implements ICorfuDBObject<CDBArrayList<T>>, List<T>
      */
     @Override
     public boolean remove(Object o) {
-        return (boolean) mutatorAccessorHelper((ISMREngineCommand<ArrayList>) (list, opts) -> {
-            opts.getReturnResult().complete(list.remove(o));
-        });
+        return (boolean) mutatorAccessorHelper(commands.command(REMOVE, o));
     }
 
     /**
@@ -311,9 +345,7 @@ public class CDBArrayList<T> implements ICorfuDBObject<CDBArrayList<T>>, List<T>
     @Override
     @SuppressWarnings("unchecked")
     public boolean addAll(Collection<? extends T> c) {
-        return (boolean) mutatorAccessorHelper((ISMREngineCommand<ArrayList>) (list, opts) -> {
-            opts.getReturnResult().complete(list.addAll(c));
-        });
+        return (boolean) mutatorAccessorHelper(commands.command(ADD_ALL, new ArrayList<T>(c)));
     }
 
     /**
@@ -346,9 +378,7 @@ public class CDBArrayList<T> implements ICorfuDBObject<CDBArrayList<T>>, List<T>
     @Override
     @SuppressWarnings("unchecked")
     public boolean addAll(int index, Collection<? extends T> c) {
-        return (boolean) mutatorAccessorHelper((ISMREngineCommand<ArrayList>) (list, opts) -> {
-            opts.getReturnResult().complete(list.addAll(index, c));
-        });
+        return (boolean) mutatorAccessorHelper(commands.command(ADD_ALL_AT, index, new ArrayList<T>(c)));
     }
 
     /**
@@ -372,9 +402,7 @@ public class CDBArrayList<T> implements ICorfuDBObject<CDBArrayList<T>>, List<T>
     @Override
     @SuppressWarnings("unchecked")
     public boolean removeAll(Collection<?> c) {
-        return (boolean) mutatorAccessorHelper((ISMREngineCommand<ArrayList>) (list, opts) -> {
-            opts.getReturnResult().complete(list.removeAll(c));
-        });
+        return (boolean) mutatorAccessorHelper(commands.command(REMOVE_ALL, new ArrayList<Object>(c)));
     }
 
     /**
@@ -400,9 +428,7 @@ public class CDBArrayList<T> implements ICorfuDBObject<CDBArrayList<T>>, List<T>
     @Override
     @SuppressWarnings("unchecked")
     public boolean retainAll(Collection<?> c) {
-        return (boolean) mutatorAccessorHelper((ISMREngineCommand<ArrayList>) (list, opts) -> {
-            opts.getReturnResult().complete(list.retainAll(c));
-        });
+        return (boolean) mutatorAccessorHelper(commands.command(RETAIN_ALL, new ArrayList<Object>(c)));
     }
 
     /**
@@ -414,9 +440,7 @@ public class CDBArrayList<T> implements ICorfuDBObject<CDBArrayList<T>>, List<T>
      */
     @Override
     public void clear() {
-        mutatorHelper((ISMREngineCommand<ArrayList>) (list, opts) -> {
-            list.clear();
-        });
+        mutatorHelper(commands.command(CLEAR));
     }
 
     /**
@@ -456,9 +480,7 @@ public class CDBArrayList<T> implements ICorfuDBObject<CDBArrayList<T>>, List<T>
     @Override
     @SuppressWarnings("unchecked")
     public T set(int index, T element) {
-        return (T) mutatorAccessorHelper((ISMREngineCommand<ArrayList>) (list, opts) -> {
-            opts.getReturnResult().complete(list.set(index, element));
-        });
+        return (T) mutatorAccessorHelper(commands.command(SET, index, element));
     }
 
     /**
@@ -483,9 +505,7 @@ public class CDBArrayList<T> implements ICorfuDBObject<CDBArrayList<T>>, List<T>
     @Override
     @SuppressWarnings("unchecked")
     public void add(int index, T element) {
-        mutatorHelper((ISMREngineCommand<ArrayList>) (list, opts) -> {
-            list.add(index, element);
-        });
+        mutatorHelper(commands.command(ADD_AT, index, element));
     }
 
     /**
@@ -504,9 +524,7 @@ public class CDBArrayList<T> implements ICorfuDBObject<CDBArrayList<T>>, List<T>
     @Override
     @SuppressWarnings("unchecked")
     public T remove(int index) {
-        return (T) mutatorAccessorHelper((ISMREngineCommand<ArrayList>) (list, opts) -> {
-            list.remove(index);
-        });
+        return (T) mutatorAccessorHelper(commands.command(REMOVE_AT, index));
     }
 
     /**
@@ -4,9 +4,11 @@ import org.corfudb.runtime.smr.*;
 import org.corfudb.runtime.stream.IStream;
 
 import java.util.Collection;
+import java.util.HashMap;
 import java.util.Map;
 import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.function.Function;
 import java.util.function.Supplier;
@@ -16,6 +18,19 @@ import java.util.function.Supplier;
  */
 public class CDBSimpleMap<K,V> implements ICorfuDBObject<CDBSimpleMap<K,V>>, Map<K,V> {
 
+    static final int PUT = 0;
+    static final int REMOVE = 1;
+    static final int PUT_ALL = 2;
+    static final int CLEAR = 3;
+
+    /* The mutations of the map, as they are logged. */
+    @SuppressWarnings("unchecked")
+    static final SMRCommandTable<ConcurrentHashMap> commands = new SMRCommandTable<ConcurrentHashMap>(1, "CDBSimpleMap")
+            .register(PUT, (map, args) -> map.put(args[0], args[1]))
+            .register(REMOVE, (map, args) -> map.remove(args[0]))
+            .register(PUT_ALL, (map, args) -> { map.putAll((Map) args[0]); return null; })
+            .register(CLEAR, (map, args) -> { map.clear(); return null; });
+
     transient ISMREngine<ConcurrentHashMap> smr;
     UUID streamID;
 
@@ -173,11 +188,21 @@ public class CDBSimpleMap<K,V> implements ICorfuDBObject<CDBSimpleMap<K,V>>, Map
     @Override
     @SuppressWarnings("unchecked")
     public V put(K key, V value) {
-        return (V) mutatorAccessorHelper(
-                (ISMREngineCommand<ConcurrentHashMap>) (map, opts) -> {
-                    opts.getReturnResult().complete(map.put(key, value));
-                }
-        );
+        return (V) mutatorAccessorHelper(commands.command(PUT, key, value));
+    }
+
+    /**
+     * Associates the specified value with the specified key in this map, without waiting
+     * for the mutation to be written. See put(Object, Object).
+     *
+     * @param key   key with which the specified value is to be associated
+     * @param value value to be associated with the specified key
+     * @return a future which completes with the previous value associated with <tt>key</tt>,
+     * or <tt>null</tt> if there was no mapping for <tt>key</tt>, once the mutation is applied.
+     */
+    @SuppressWarnings("unchecked")
+    public CompletableFuture<V> putAsync(K key, V value) {
+        return mutatorAccessorHelperAsync(commands.command(PUT, key, value)).thenApply(v -> (V) v);
     }
 
     /**
@@ -213,9 +238,20 @@ public class CDBSimpleMap<K,V> implements ICorfuDBObject<CDBSimpleMap<K,V>>, Map
     @Override
     @SuppressWarnings("unchecked")
     public V remove(Object key) {
-        return (V) mutatorAccessorHelper((ISMREngineCommand<ConcurrentHashMap>) (map, opts) -> {
-            opts.getReturnResult().complete(map.remove(key));
-        });
+        return (V) mutatorAccessorHelper(commands.command(REMOVE, key));
+    }
+
+    /**
+     * Removes the mapping for a key from this map if it is present, without waiting
+     * for the mutation to be written. See remove(Object).
+     *
+     * @param key key whose mapping is to be removed from the map
+     * @return a future which completes with the previous value associated with <tt>key</tt>,
+     * or <tt>null</tt> if there was no mapping for <tt>key</tt>, once the mutation is applied.
+     */
+    @SuppressWarnings("unchecked")
+    public CompletableFuture<V> removeAsync(Object key) {
+        return mutatorAccessorHelperAsync(commands.command(REMOVE, key)).thenApply(v -> (V) v);
     }
 
     /**
@@ -240,9 +276,7 @@ public class CDBSimpleMap<K,V> implements ICorfuDBObject<CDBSimpleMap<K,V>>, Map
     @Override
     @SuppressWarnings("unchecked")
     public void putAll(Map<? extends K, ? extends V> m) {
-        mutatorHelper((ISMREngineCommand<ConcurrentHashMap>) (map,opts) -> {
-            map.putAll(m);
-        });
+        mutatorHelper(commands.command(PUT_ALL, new HashMap<K,V>(m)));
     }
 
     /**
@@ -254,9 +288,7 @@ public class CDBSimpleMap<K,V> implements ICorfuDBObject<CDBSimpleMap<K,V>>, Map
      */
     @Override
     public void clear() {
-        mutatorHelper((ISMREngineCommand<ConcurrentHashMap>) (map, opts) -> {
-            map.clear();
-        });
+        mutatorHelper(commands.command(CLEAR));
     }
 
     /**
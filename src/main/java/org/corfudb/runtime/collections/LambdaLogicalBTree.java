@@ -15,6 +15,19 @@ import java.util.concurrent.ConcurrentHashMap;
 public class LambdaLogicalBTree<K extends Comparable<K>, V>
         extends AbstractLambdaBTree<K, V> {
 
+    static final int PUT = 0;
+    static final int REMOVE = 1;
+    static final int UPDATE = 2;
+    static final int CLEAR = 3;
+
+    /* The mutations of the tree, as they are logged. */
+    @SuppressWarnings("unchecked")
+    static final SMRCommandTable<BTree> commands = new SMRCommandTable<BTree>(3, "LambdaLogicalBTree")
+            .register(PUT, (tree, args) -> tree.put((Comparable) args[0], args[1]))
+            .register(REMOVE, (tree, args) -> tree.remove((Comparable) args[0]))
+            .register(UPDATE, (tree, args) -> tree.update((Comparable) args[0], args[1]))
+            .register(CLEAR, (tree, args) -> { tree.clear(); return null; });
+
     transient ISMREngine<BTree> smr;
     ITransaction tx;
     UUID streamID;
@@ -118,9 +131,7 @@ public class LambdaLogicalBTree<K extends Comparable<K>, V>
      * @param value
      */
     public V put(K key, V value) {
-        return (V) mutatorAccessorHelper((ISMREngineCommand<BTree>) (map, opts) -> {
-            opts.getReturnResult().complete(map.put(key, value));
-        });
+        return (V) mutatorAccessorHelper(commands.command(PUT, key, value));
     }
 
     /**
@@ -131,11 +142,7 @@ public class LambdaLogicalBTree<K extends Comparable<K>, V>
      */
     @Override
     public V remove(K key) {
-        return (V) mutatorAccessorHelper(
-                (ISMREngineCommand<BTree>) (map, opts) -> {
-                    opts.getReturnResult().complete(map.remove(key));
-                }
-        );
+        return (V) mutatorAccessorHelper(commands.command(REMOVE, key));
     }
 
     /**
@@ -144,20 +151,14 @@ public class LambdaLogicalBTree<K extends Comparable<K>, V>
      * @param value
      */
     public boolean update(K key, V value) {
-        return (boolean) mutatorAccessorHelper(
-                (ISMREngineCommand<BTree>) (map, opts) -> {
-                    opts.getReturnResult().complete(map.update(key, value));
-                }
-        );
+        return (boolean) mutatorAccessorHelper(commands.command(UPDATE, key, value));
     }
 
     /**
      * clear the tree
      */
     public void clear() {
-        mutatorHelper((ISMREngineCommand<BTree>) (map, opts) -> {
-            map.clear();
-        });
+        mutatorHelper(commands.command(CLEAR));
     }
 
     /**
@@ -1,5 +1,6 @@
 package org.corfudb.runtime.entries;
 
+import org.corfudb.runtime.protocols.sequencers.BackpointerToken;
 import org.corfudb.runtime.stream.ITimestamp;
 
 import java.util.List;
@@ -12,6 +13,12 @@ import java.util.UUID;
  */
 public interface IStreamEntry extends Comparable<IStreamEntry> {
 
+    /**
+     * The stream which entries belonging to every stream are chained on, such as
+     * deferred transactions. Stream readers follow this chain as well as their own.
+     */
+    UUID ALL_STREAMS = new UUID(0L, 0L);
+
     /**
      * Gets the list of of the streams this entry belongs to.
      * @return  The list of streams this entry belongs to.
@@ -43,6 +50,25 @@ public interface IStreamEntry extends Comparable<IStreamEntry> {
      */
     Object getPayload();
 
+    /**
+     * Gets the address of the previous entry in a stream this entry was chained on.
+     * @param stream    The stream to get the backpointer for.
+     * @return          The previous address in the stream, BackpointerToken.NO_PREVIOUS if this is
+     *                  the first entry of the stream, or BackpointerToken.UNKNOWN_PREVIOUS if the
+     *                  entry does not carry a backpointer for the stream.
+     */
+    default long getBackpointer(UUID stream) {
+        return BackpointerToken.UNKNOWN_PREVIOUS;
+    }
+
+    /**
+     * Gets the size of the entry on the log.
+     * @return          The size of the log entry, in bytes, or 0 if it is not known.
+     */
+    default int getSize() {
+        return 0;
+    }
+
     /**
      * Compares the entries, using the timestamp.
      * @param entry
@@ -1,31 +1,202 @@
 package org.corfudb.runtime.entries;
 
+import org.corfudb.runtime.protocols.sequencers.BackpointerToken;
+import org.corfudb.runtime.smr.SMRCommand;
 import org.corfudb.runtime.stream.ITimestamp;
 import org.corfudb.runtime.stream.SimpleTimestamp;
 
 import java.beans.Transient;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
 import java.io.Serializable;
+import java.nio.ByteBuffer;
 import java.util.*;
 
 /**
+ * A stream entry. On the log, a stream entry is written as a fixed header followed
+ * by the serialized payload:
+ *
+ *  magic (int) | type (byte) | timestamp (long) | stream count (short) |
+ *  for each stream: stream id (2 longs), backpointer (long) | payload
+ *
+ * Readers decode the header only, so entries of other streams are skipped without
+ * deserializing their payload. Commands (TYPE_COMMAND) are written in their own compact
+ * encoding; other payloads are serialized. The payload is deserialized on the first call to getPayload().
+ *
  * Created by mwei on 4/30/15.
  */
 public class SimpleStreamEntry implements IStreamEntry, Serializable{
 
+    /** Marks a log entry which starts with a stream entry header. */
+    public static final int HEADER_MAGIC = 0xC0DB5E01;
+
+    /** The payload is the data of the stream entry. */
+    public static final byte TYPE_DATA = 0;
+
+    /** The payload is a transaction, which is itself the stream entry. */
+    public static final byte TYPE_TRANSACTION = 1;
+
+    /** The payload is a checkpoint of an object built from the stream. */
+    public static final byte TYPE_CHECKPOINT = 2;
+
+    /** The payload is an SMRCommand, in its own encoding rather than serialized. */
+    public static final byte TYPE_COMMAND = 3;
+
+    /** The entry belongs to no stream: a hole which was filled because its writer never wrote it. */
+    public static final byte TYPE_HOLE = 4;
+
+    static final int FIXED_HEADER_SIZE = 4 + 1 + 8 + 2;
+    static final int STREAM_HEADER_SIZE = 8 + 8 + 8;
+
     public List<UUID> id;
     public Serializable payload;
     public transient ITimestamp timestamp;
+    public long[] backpointers;
+    public byte type = TYPE_DATA;
+
+    /* The serialized payload, when the entry was decoded from the log and the payload
+     * has not been deserialized yet.
+     */
+    transient byte[] data;
+    transient int payloadOffset;
+    transient int size;
 
     public SimpleStreamEntry(UUID id, Serializable payload, SimpleTimestamp timestamp)
     {
        this(Collections.singletonList(id), payload, timestamp);
     }
 
+    public SimpleStreamEntry(UUID id, Serializable payload, SimpleTimestamp timestamp, long backpointer)
+    {
+       this(Collections.singletonList(id), payload, timestamp);
+       this.backpointers[0] = backpointer;
+    }
+
     public SimpleStreamEntry(List<UUID> id, Serializable payload, SimpleTimestamp timestamp)
     {
         this.id = id;
         this.payload = payload;
         this.timestamp = timestamp;
+        this.backpointers = new long[id.size()];
+        Arrays.fill(this.backpointers, BackpointerToken.UNKNOWN_PREVIOUS);
+    }
+
+    /**
+     * Serialize this entry in the on-log format: the header followed by the serialized payload.
+     *
+     * @return The serialized entry.
+     */
+    public byte[] serialize()
+        throws IOException
+    {
+        if (type == TYPE_DATA && payload instanceof SMRCommand)
+        {
+            type = TYPE_COMMAND;
+        }
+        int headerSize = FIXED_HEADER_SIZE + STREAM_HEADER_SIZE * id.size();
+        if (type == TYPE_COMMAND)
+        {
+            // the command is encoded after room for the header, so the entry is copied out only once.
+            ByteBuffer entry = ((SMRCommand<?>) payload).encode(headerSize);
+            writeHeader(entry);
+            return Arrays.copyOf(entry.array(), entry.limit());
+        }
+        try (ByteArrayOutputStream bs = new ByteArrayOutputStream())
+        {
+            ByteBuffer header = ByteBuffer.allocate(headerSize);
+            writeHeader(header);
+            bs.write(header.array());
+            try (ObjectOutputStream out = new ObjectOutputStream(bs))
+            {
+                out.writeObject(payload);
+            }
+            return bs.toByteArray();
+        }
+    }
+
+    private void writeHeader(ByteBuffer header)
+    {
+        header.putInt(HEADER_MAGIC);
+        header.put(type);
+        header.putLong(timestamp == null ? -1L : ((SimpleTimestamp) timestamp).address);
+        header.putShort((short) id.size());
+        for (int i = 0; i < id.size(); i++)
+        {
+            header.putLong(id.get(i).getMostSignificantBits());
+            header.putLong(id.get(i).getLeastSignificantBits());
+            header.putLong(backpointers[i]);
+        }
+    }
+
+    /**
+     * Get the entry written to fill a hole. It has a header with no streams, so readers skip it
+     * without deserializing anything.
+     *
+     * @return The serialized hole entry.
+     */
+    public static byte[] holeEntry()
+    {
+        ByteBuffer header = ByteBuffer.allocate(FIXED_HEADER_SIZE);
+        header.putInt(HEADER_MAGIC);
+        header.put(TYPE_HOLE);
+        header.putLong(-1L);
+        header.putShort((short) 0);
+        return header.array();
+    }
+
+    /**
+     * Check whether a log entry is the entry written to fill a hole.
+     *
+     * @param data The log entry.
+     * @return True, if the entry fills a hole.
+     */
+    public static boolean isHole(byte[] data)
+    {
+        return data != null && data.length == FIXED_HEADER_SIZE
+                && ByteBuffer.wrap(data).getInt() == HEADER_MAGIC && data[4] == TYPE_HOLE;
+    }
+
+    /**
+     * Decode the header of an entry read from the log. The payload is not deserialized.
+     *
+     * @param data The log entry.
+     * @return The stream entry, or null if the log entry does not start with a stream entry header.
+     */
+    public static SimpleStreamEntry deserializeHeader(byte[] data)
+    {
+        if (data == null || data.length < FIXED_HEADER_SIZE)
+        {
+            return null;
+        }
+        ByteBuffer header = ByteBuffer.wrap(data);
+        if (header.getInt() != HEADER_MAGIC)
+        {
+            return null;
+        }
+        byte type = header.get();
+        long timestamp = header.getLong();
+        int count = header.getShort();
+        if (count < 0 || data.length < FIXED_HEADER_SIZE + STREAM_HEADER_SIZE * count)
+        {
+            return null;
+        }
+        List<UUID> ids = new ArrayList<UUID>(count);
+        long[] backpointers = new long[count];
+        for (int i = 0; i < count; i++)
+        {
+            ids.add(new UUID(header.getLong(), header.getLong()));
+            backpointers[i] = header.getLong();
+        }
+        SimpleStreamEntry entry = new SimpleStreamEntry(ids, null, timestamp == -1L ? null : new SimpleTimestamp(timestamp));
+        entry.type = type;
+        entry.backpointers = backpointers;
+        entry.data = data;
+        entry.payloadOffset = header.position();
+        entry.size = data.length;
+        return entry;
     }
 
     /**
@@ -46,7 +217,19 @@ public class SimpleStreamEntry implements IStreamEntry, Serializable{
      */
     @Override
     public boolean containsStream(UUID stream) {
-        return id.contains(stream);
+        return id.contains(stream) || id.contains(ALL_STREAMS);
+    }
+
+    /**
+     * Gets the address of the previous entry in a stream this entry was chained on.
+     *
+     * @param stream The stream to get the backpointer for.
+     * @return The previous address in the stream, or UNKNOWN_PREVIOUS if the entry is not chained on it.
+     */
+    @Override
+    public long getBackpointer(UUID stream) {
+        int i = id.indexOf(stream);
+        return i == -1 ? BackpointerToken.UNKNOWN_PREVIOUS : backpointers[i];
     }
 
     /**
@@ -76,9 +259,52 @@ public class SimpleStreamEntry implements IStreamEntry, Serializable{
      */
     @Override
     public Object getPayload() {
+        if (payload == null && data != null && type == TYPE_COMMAND)
+        {
+            try {
+                payload = SMRCommand.decode(data, payloadOffset);
+                data = null;
+            }
+            catch (IOException | ClassNotFoundException e)
+            {
+                throw new RuntimeException("Unable to decode stream entry command", e);
+            }
+        }
+        else if (payload == null && data != null)
+        {
+            try (ObjectInputStream ois = new ObjectInputStream(
+                    new ByteArrayInputStream(data, payloadOffset, data.length - payloadOffset)))
+            {
+                payload = (Serializable) ois.readObject();
+                data = null;
+            }
+            catch (IOException | ClassNotFoundException e)
+            {
+                throw new RuntimeException("Unable to deserialize stream entry payload", e);
+            }
+        }
         return payload;
     }
 
+    /**
+     * Gets the type of this entry.
+     *
+     * @return TYPE_DATA, TYPE_TRANSACTION, TYPE_CHECKPOINT or TYPE_COMMAND.
+     */
+    public byte getType() {
+        return type;
+    }
+
+    /**
+     * Gets the size of this entry on the log.
+     *
+     * @return The size of the log entry this entry was decoded from, or 0 if it was not read from the log.
+     */
+    @Override
+    public int getSize() {
+        return size;
+    }
+
     @Override
     public boolean equals(Object o) {
         return (o instanceof SimpleStreamEntry) && getTimestamp().equals(((SimpleStreamEntry) o).getTimestamp());
@@ -20,6 +20,7 @@ import org.slf4j.LoggerFactory;
 
 import org.apache.thrift.protocol.TBinaryProtocol;
 import org.apache.thrift.protocol.TProtocol;
+import org.apache.thrift.transport.TFramedTransport;
 import org.apache.thrift.transport.TSocket;
 import org.apache.thrift.transport.TTransport;
 import org.apache.thrift.TServiceClient;
@@ -28,6 +29,8 @@ import org.apache.commons.pool.impl.GenericObjectPool;
 import org.apache.commons.pool.impl.GenericObjectPool.Config;
 import org.apache.commons.pool.BasePoolableObjectFactory;
 
+import java.util.Map;
+
 /**
  * This class implements a pooled Thrift client which other protocols may use.
  * Somewhat based on http://vincentdevillers.blogspot.com/2013/11/pooling-thrift-client.html
@@ -38,6 +41,11 @@ public class PooledThriftClient<T extends TServiceClient> implements AutoCloseab
 {
     private final static Logger log = LoggerFactory.getLogger(PooledThriftClient.class);
 
+    /** The server string option which selects the transport, i.e. "transport=framed". */
+    public static final String TRANSPORT_OPTION = "transport";
+    /** The framed transport, which servers in a non-blocking mode require. */
+    public static final String TRANSPORT_FRAMED = "framed";
+
     private final GenericObjectPool<T> pool;
 
     public PooledThriftClient(ClientFactory<T> factory, Config config, String host, int port)
@@ -45,6 +53,25 @@ public class PooledThriftClient<T extends TServiceClient> implements AutoCloseab
         this(factory, new BinaryOverSocketProtocolFactory(host, port), config);
     }
 
+    /**
+     * Create a pooled client, selecting the transport from the server string options.
+     * @param options   The options of the server string, see TRANSPORT_OPTION.
+     */
+    public PooledThriftClient(ClientFactory<T> factory, Config config, String host, int port, Map<String,String> options)
+    {
+        this(factory, new BinaryOverSocketProtocolFactory(host, port, isFramed(options)), config);
+    }
+
+    /**
+     * Check whether the server string options select the framed transport.
+     * @param options   The options of the server string.
+     * @return          True, if the framed transport should be used.
+     */
+    public static boolean isFramed(Map<String,String> options)
+    {
+        return options != null && TRANSPORT_FRAMED.equals(options.get(TRANSPORT_OPTION));
+    }
+
     @SuppressWarnings("rawtypes")
     public PooledThriftClient(ClientFactory<T> factory, ProtocolFactory pfactory, Config config)
     {
@@ -92,15 +119,26 @@ public class PooledThriftClient<T extends TServiceClient> implements AutoCloseab
     public static class BinaryOverSocketProtocolFactory implements ProtocolFactory {
             private String host;
             private int port;
+            private boolean framed;
 
             public BinaryOverSocketProtocolFactory(String host, int port)
+            {
+                this(host, port, false);
+            }
+
+            public BinaryOverSocketProtocolFactory(String host, int port, boolean framed)
             {
                 this.host = host;
                 this.port = port;
+                this.framed = framed;
             }
 
             public TProtocol make() {
                 TTransport transport = new TSocket(host,port);
+                if (framed)
+                {
+                    transport = new TFramedTransport(transport);
+                }
                 try {
                 transport.open();
                 } catch (Exception e)
@@ -33,6 +33,8 @@ import org.apache.commons.pool.impl.GenericObjectPool.Config;
 
 import java.util.Map;
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
 
 import java.nio.ByteBuffer;
 
@@ -98,7 +100,8 @@ public class CorfuDBSimpleLogUnitProtocol implements IServerProtocol, IWriteOnce
                     },
                     new Config(),
                     host,
-                    port
+                    port,
+                    options
             );
         }
         catch (Exception ex)
@@ -138,18 +141,7 @@ public class CorfuDBSimpleLogUnitProtocol implements IServerProtocol, IWriteOnce
             ErrorCode ec = client.write(new UnitServerHdr(epochlist, address), byteList, ExtntMarkType.EX_FILLED);
             thriftPool.returnResourceObject(client);
             success = true;
-            if (ec.equals(ErrorCode.ERR_OVERWRITE))
-            {
-                throw new OverwriteException("Overwrite error", address);
-            }
-            else if (ec.equals(ErrorCode.ERR_TRIMMED))
-            {
-                throw new TrimmedException("Trim error", address);
-            }
-            else if(ec.equals(ErrorCode.ERR_STALEEPOCH))
-            {
-                throw new NetworkException("Writing to log unit in wrong epoch", this, address, false);
-            }
+            checkWrite(ec, address);
         }
         catch (TException e)
         {
@@ -165,6 +157,34 @@ public class CorfuDBSimpleLogUnitProtocol implements IServerProtocol, IWriteOnce
         }
     }
 
+    /**
+     * Turn the error code the log unit returned for a write into the exception it stands for. Only OK
+     * means the entry was written: any other code means it may not be durable.
+     * @param ec        The error code returned for the address.
+     * @param address   The address written.
+     */
+    private void checkWrite(ErrorCode ec, long address)
+    throws OverwriteException, TrimmedException, NetworkException
+    {
+        if (ec.equals(ErrorCode.OK))
+        {
+            return;
+        }
+        else if (ec.equals(ErrorCode.ERR_OVERWRITE))
+        {
+            throw new OverwriteException("Overwrite error", address);
+        }
+        else if (ec.equals(ErrorCode.ERR_TRIMMED))
+        {
+            throw new TrimmedException("Trim error", address);
+        }
+        else if (ec.equals(ErrorCode.ERR_STALEEPOCH))
+        {
+            throw new NetworkException("Writing to log unit in wrong epoch", this, address, false);
+        }
+        throw new NetworkException("Log unit failed the write with " + ec, this, address, true);
+    }
+
     public byte[] read(long address)
     throws UnwrittenException, TrimmedException, NetworkException
     {
@@ -184,8 +204,7 @@ public class CorfuDBSimpleLogUnitProtocol implements IServerProtocol, IWriteOnce
             {
                 throw new TrimmedException("Trim error", address);
             }
-            data = new byte[wrap.getCtnt().get(0).remaining()];
-            wrap.getCtnt().get(0).get(data);
+            data = unwrap(wrap.getCtnt().get(0));
             success = true;
             thriftPool.returnResourceObject(client);
         }
@@ -203,10 +222,159 @@ public class CorfuDBSimpleLogUnitProtocol implements IServerProtocol, IWriteOnce
         return data;
     }
 
-    public void trim(long address)
+    @Override
+    public void multiWrite(Map<Long, byte[]> entries)
+    throws OverwriteException, TrimmedException, NetworkException
+    {
+        if (entries.isEmpty()) { return; }
+        ArrayList<Long> offsets = new ArrayList<Long>(entries.size());
+        ArrayList<ByteBuffer> byteList = new ArrayList<ByteBuffer>(entries.size());
+        for (Map.Entry<Long, byte[]> e : entries.entrySet())
+        {
+            offsets.add(e.getKey());
+            byteList.add(ByteBuffer.wrap(e.getValue()));
+        }
+
+        SimpleLogUnitService.Client client = thriftPool.getResource();
+        boolean success = false;
+        boolean broken = false;
+        try {
+            ArrayList<Integer> epochlist = new ArrayList<Integer>();
+            epochlist.add(epoch.intValue());
+            List<ErrorCode> ecs = client.multiWrite(epochlist, offsets, byteList, ExtntMarkType.EX_FILLED);
+            thriftPool.returnResourceObject(client);
+            success = true;
+            for (int i = 0; i < ecs.size(); i++)
+            {
+                checkWrite(ecs.get(i), offsets.get(i));
+            }
+        }
+        catch (TException e)
+        {
+            broken = true;
+            thriftPool.returnBrokenResource(client);
+            throw new NetworkException("Error writing to log unit: " + e.getMessage(), this, offsets.get(0), true);
+        }
+        finally {
+            if (!success && !broken)
+            {
+                thriftPool.returnResourceObject(client);
+            }
+        }
+    }
+
+    @Override
+    public Map<Long, byte[]> multiRead(List<Long> addresses)
+    throws NetworkException
+    {
+        if (addresses.isEmpty()) { return new HashMap<Long, byte[]>(); }
+        SimpleLogUnitService.Client client = thriftPool.getResource();
+        try {
+            ArrayList<Integer> epochlist = new ArrayList<Integer>();
+            epochlist.add(epoch.intValue());
+            List<ExtntWrap> wraps = client.multiRead(epochlist, addresses);
+            thriftPool.returnResourceObject(client);
+            return unwrapBatch(addresses, wraps);
+        }
+        catch (TException e)
+        {
+            thriftPool.returnBrokenResource(client);
+            throw new NetworkException("Error connecting to endpoint: " + e.getMessage(), this);
+        }
+    }
+
+    @Override
+    public Map<Long, byte[]> readRange(long address, int count)
+    throws NetworkException
+    {
+        ArrayList<Long> addresses = new ArrayList<Long>(count);
+        for (long i = address; i < address + count; i++)
+        {
+            addresses.add(i);
+        }
+        if (addresses.isEmpty()) { return new HashMap<Long, byte[]>(); }
+        SimpleLogUnitService.Client client = thriftPool.getResource();
+        try {
+            ArrayList<Integer> epochlist = new ArrayList<Integer>();
+            epochlist.add(epoch.intValue());
+            List<ExtntWrap> wraps = client.readRange(new UnitServerHdr(epochlist, address), count);
+            thriftPool.returnResourceObject(client);
+            return unwrapBatch(addresses, wraps);
+        }
+        catch (TException e)
+        {
+            thriftPool.returnBrokenResource(client);
+            throw new NetworkException("Error connecting to endpoint: " + e.getMessage(), this);
+        }
+    }
+
+    private Map<Long, byte[]> unwrapBatch(List<Long> addresses, List<ExtntWrap> wraps)
     throws NetworkException
     {
+        HashMap<Long, byte[]> results = new HashMap<Long, byte[]>();
+        for (int i = 0; i < wraps.size(); i++)
+        {
+            ExtntWrap wrap = wraps.get(i);
+            if (wrap.err.equals(ErrorCode.ERR_STALEEPOCH))
+            {
+                throw new NetworkException("Reading from log unit in wrong epoch", this, addresses.get(i), false);
+            }
+            else if (wrap.err.equals(ErrorCode.OK))
+            {
+                results.put(addresses.get(i), unwrap(wrap.getCtnt().get(0)));
+            }
+        }
+        return results;
+    }
+
+    /**
+     * Get the contents of a buffer returned by Thrift. Thrift usually hands back a buffer
+     * wrapping an array of its own, which is returned without copying.
+     */
+    private static byte[] unwrap(ByteBuffer b)
+    {
+        if (b.hasArray() && b.arrayOffset() == 0 && b.position() == 0 && b.remaining() == b.array().length)
+        {
+            return b.array();
+        }
+        byte[] data = new byte[b.remaining()];
+        b.get(data);
+        return data;
+    }
 
+    public void trim(long address)
+    throws NetworkException
+    {
+        SimpleLogUnitService.Client client = thriftPool.getResource();
+        boolean success = false;
+        boolean broken = false;
+        try {
+            ArrayList<Integer> epochlist = new ArrayList<Integer>();
+            epochlist.add(epoch.intValue());
+            ErrorCode ec = client.trim(new UnitServerHdr(epochlist, address));
+            thriftPool.returnResourceObject(client);
+            success = true;
+            if (ec.equals(ErrorCode.ERR_STALEEPOCH))
+            {
+                throw new NetworkException("Trimming log unit in wrong epoch", this, address, false);
+            }
+            else if (!ec.equals(ErrorCode.OK))
+            {
+                throw new NetworkException("Error trimming log unit: " + ec, this, address, false);
+            }
+        }
+        catch (TException e)
+        {
+            broken = true;
+            thriftPool.returnBrokenResource(client);
+            throw new NetworkException("Error trimming log unit: " + e.getMessage(), this, address, true);
+        }
+        finally {
+            if (!success && !broken)
+            {
+                thriftPool.returnResourceObject(client);
+            }
+        }
     }
 
     /**
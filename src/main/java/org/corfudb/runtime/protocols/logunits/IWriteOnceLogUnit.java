@@ -21,6 +21,11 @@ import org.corfudb.runtime.TrimmedException;
 import org.corfudb.runtime.OverwriteException;
 import org.corfudb.runtime.protocols.IServerProtocol;
 
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
 /**
  * This interface represents the simplest type of stream unit.
  * Write once stream units provide these simple features:
@@ -41,6 +46,114 @@ public interface IWriteOnceLogUnit extends IServerProtocol {
     byte[] read(long address) throws UnwrittenException, TrimmedException, NetworkException;
     void trim(long address) throws NetworkException;
 
+    /**
+     * Write a batch of entries. Units which support batching write the whole batch in a single request,
+     * otherwise the entries are written one at a time.
+     * @param entries               A map from the addresses to write to their payloads.
+     * @throws OverwriteException   If any of the addresses has already been written to. Other entries
+     *                              in the batch may or may not have been written.
+     * @throws TrimmedException     If any of the addresses has been trimmed.
+     * @throws NetworkException     If the log unit could not be contacted.
+     */
+    default void multiWrite(Map<Long, byte[]> entries) throws OverwriteException, TrimmedException, NetworkException
+    {
+        for (Map.Entry<Long, byte[]> e : entries.entrySet())
+        {
+            write(e.getKey(), e.getValue());
+        }
+    }
+
+    /**
+     * Read a batch of addresses. Units which support batching read the whole batch in a single request,
+     * otherwise the addresses are read one at a time.
+     * @param addresses             The addresses to read.
+     * @return                      A map from address to payload. Addresses which are unwritten or trimmed
+     *                              are left out, read them individually to find out why.
+     * @throws NetworkException     If the log unit could not be contacted.
+     */
+    default Map<Long, byte[]> multiRead(List<Long> addresses) throws NetworkException
+    {
+        HashMap<Long, byte[]> results = new HashMap<Long, byte[]>();
+        for (Long address : addresses)
+        {
+            try {
+                results.put(address, read(address));
+            }
+            catch (UnwrittenException | TrimmedException e)
+            {
+                //left out of the results
+            }
+        }
+        return results;
+    }
+
+    /**
+     * Read a range of consecutive addresses, see multiRead.
+     * @param address               The first address to read.
+     * @param count                 The number of addresses to read.
+     * @return                      A map from address to payload, for the addresses which are written.
+     * @throws NetworkException     If the log unit could not be contacted.
+     */
+    default Map<Long, byte[]> readRange(long address, int count) throws NetworkException
+    {
+        ArrayList<Long> addresses = new ArrayList<Long>(count);
+        for (long i = address; i < address + count; i++)
+        {
+            addresses.add(i);
+        }
+        return multiRead(addresses);
+    }
+
+    /** The most times fix() tries to write an address before it gives up. */
+    int MAX_FIX_ATTEMPTS = 8;
+
+    /**
+     * Fix an address: write the given junk entry to it, unless it has already been written, in which
+     * case the entry which is there is kept. Either way, the address is written once this returns.
+     *
+     * The unit's own fix operation, if it has one, is not used: a Thrift log unit marks the address
+     * skipped and reads it back as OK_SKIP, which CorfuDBSimpleLogUnitProtocol.read() does not handle.
+     * @param address               The address to fix.
+     * @param junk                  The entry to write if the address is unwritten.
+     * @return                      The entry the address now holds.
+     * @throws TrimmedException     If the address has been trimmed.
+     * @throws NetworkException     If the log unit could not be contacted, or it kept reporting the address
+     *                              as both written and unwritten for MAX_FIX_ATTEMPTS attempts.
+     */
+    default byte[] fix(long address, byte[] junk) throws TrimmedException, NetworkException
+    {
+        long backoff = 1;
+        for (int attempt = 0; attempt < MAX_FIX_ATTEMPTS; attempt++)
+        {
+            if (attempt > 0)
+            {
+                try {
+                    Thread.sleep(backoff);
+                } catch (InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                    break;
+                }
+                backoff *= 2;
+            }
+            try {
+                write(address, junk);
+                return junk;
+            }
+            catch (OverwriteException oe)
+            {
+                try {
+                    return read(address);
+                }
+                catch (UnwrittenException ue)
+                {
+                    //the address was written to and freed again (by a trim?), try again.
+                }
+            }
+        }
+        throw new NetworkException("Unable to fix an address which is reported both written and unwritten",
+                this, address, true);
+    }
+
     /**
      * Gets the highest address written to this log unit. Some units may not support this operation and
      * will throw an UnsupportedOperationException
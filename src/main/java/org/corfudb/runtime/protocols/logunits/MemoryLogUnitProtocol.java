@@ -9,6 +9,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
@@ -25,7 +26,7 @@ public class MemoryLogUnitProtocol implements IServerProtocol, IWriteOnceLogUnit
     private String host;
     private Integer port;
     private Long epoch;
-    private Long trimMark;
+    private volatile long trimMark;
     private boolean simFailure = false;
 
     private ConcurrentMap<Long, byte[]> memoryArray;
@@ -187,6 +188,30 @@ public class MemoryLogUnitProtocol implements IServerProtocol, IWriteOnceLogUnit
         return data;
     }
 
+    /**
+     * Read a batch of addresses from the logunit.
+     * @param addresses             The addresses to read.
+     * @return                      A map from address to payload, for the addresses which are written.
+     * @throws NetworkException     If there is a network problem (not thrown by memory implementation).
+     */
+    @Override
+    public Map<Long, byte[]> multiRead(List<Long> addresses) throws NetworkException {
+        if (simFailure)
+        {
+            throw new NetworkException("Unit in simulated failure mode!", this);
+        }
+        HashMap<Long, byte[]> results = new HashMap<Long, byte[]>();
+        for (Long address : addresses)
+        {
+            byte[] data;
+            if (address >= trimMark && (data = memoryArray.get(address)) != null)
+            {
+                results.put(address, data);
+            }
+        }
+        return results;
+    }
+
     /**
      * Trim the logunit.
      * @param address               The address, exclusive, to prefix-trim to.
@@ -194,11 +219,16 @@ public class MemoryLogUnitProtocol implements IServerProtocol, IWriteOnceLogUnit
      * @throws NetworkException
      */
     @Override
-    public void trim(long address) throws NetworkException {
-        trimMark = address;
-        for (long i = 0; i < address; i++)
+    public synchronized void trim(long address) throws NetworkException {
+        if (simFailure)
         {
-            memoryArray.remove(address);
+            throw new NetworkException("Unit in simulated failure mode!", this, address, false);
+        }
+        if (address <= trimMark)
+        {
+            return;
         }
+        trimMark = address;
+        memoryArray.keySet().removeIf(a -> a < address);
     }
 }
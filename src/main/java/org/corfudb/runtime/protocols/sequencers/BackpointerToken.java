@@ -0,0 +1,40 @@
+/**
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.corfudb.runtime.protocols.sequencers;
+
+/**
+ * A token issued for a stream, together with the previous address issued to that stream.
+ */
+public class BackpointerToken {
+
+    /** The stream has no previous entry. */
+    public static final long NO_PREVIOUS = -1L;
+
+    /** The previous entry of the stream is not known, and readers must scan for it. */
+    public static final long UNKNOWN_PREVIOUS = -2L;
+
+    /** The first token issued. */
+    public final long position;
+
+    /** The previous address issued to the stream, NO_PREVIOUS or UNKNOWN_PREVIOUS. */
+    public final long previous;
+
+    public BackpointerToken(long position, long previous)
+    {
+        this.position = position;
+        this.previous = previous;
+    }
+}
@@ -82,7 +82,8 @@ public class CorfuDBSimpleSequencerProtocol implements IServerProtocol, ISimpleS
                     },
                     new Config(),
                     host,
-                    port
+                    port,
+                    options
             );
         }
         catch (Exception ex)
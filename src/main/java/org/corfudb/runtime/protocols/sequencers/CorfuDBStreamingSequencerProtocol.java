@@ -18,12 +18,17 @@ package org.corfudb.runtime.protocols.sequencers;
 import org.corfudb.runtime.protocols.IServerProtocol;
 import org.corfudb.runtime.protocols.PooledThriftClient;
 import org.corfudb.runtime.NetworkException;
+import org.corfudb.infrastructure.thrift.MultiStreamToken;
 import org.corfudb.infrastructure.thrift.StreamingSequencerService;
+import org.corfudb.infrastructure.thrift.StreamID;
 import org.corfudb.infrastructure.thrift.StreamSequence;
+import org.corfudb.infrastructure.thrift.StreamToken;
 
 import org.apache.thrift.protocol.TProtocol;
 import org.apache.commons.pool.impl.GenericObjectPool.Config;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
 
 import org.slf4j.Logger;
@@ -84,7 +89,8 @@ public class CorfuDBStreamingSequencerProtocol implements IServerProtocol, ISimp
                     },
                     new Config(),
                     host,
-                    port
+                    port,
+                    options
             );
         }
         catch (Exception ex)
@@ -111,6 +117,53 @@ public class CorfuDBStreamingSequencerProtocol implements IServerProtocol, ISimp
         }
     }
 
+    public BackpointerToken sequenceGetNextBackpointer(UUID stream, int numTokens)
+    throws NetworkException
+    {
+        StreamingSequencerService.Client client = null;
+        try {
+            client = thriftPool.getResource();
+            StreamToken ret = client.nextstreamtoken(
+                    new StreamID(stream.getMostSignificantBits(), stream.getLeastSignificantBits()), numTokens);
+            thriftPool.returnResourceObject(client);
+            return new BackpointerToken(ret.position, ret.previous);
+        }
+        catch (Exception e)
+        {
+            log.warn("Exception getting next sequence", e);
+            if (client != null ) {thriftPool.returnBrokenResource(client);}
+            throw new NetworkException("Couldn't connect to endpoint!", this);
+        }
+    }
+
+    public List<BackpointerToken> sequenceGetNextBackpointers(List<UUID> streams, int numTokens)
+    throws NetworkException
+    {
+        StreamingSequencerService.Client client = null;
+        try {
+            client = thriftPool.getResource();
+            List<StreamID> ids = new ArrayList<StreamID>(streams.size());
+            for (UUID stream : streams)
+            {
+                ids.add(new StreamID(stream.getMostSignificantBits(), stream.getLeastSignificantBits()));
+            }
+            MultiStreamToken ret = client.nextmultistreampos(ids, numTokens);
+            thriftPool.returnResourceObject(client);
+            List<BackpointerToken> tokens = new ArrayList<BackpointerToken>(ret.previous.size());
+            for (long previous : ret.previous)
+            {
+                tokens.add(new BackpointerToken(ret.position, previous));
+            }
+            return tokens;
+        }
+        catch (Exception e)
+        {
+            log.warn("Exception getting next sequence", e);
+            if (client != null ) {thriftPool.returnBrokenResource(client);}
+            throw new NetworkException("Couldn't connect to endpoint!", this);
+        }
+    }
+
     public long sequenceGetCurrent(UUID stream)
     throws NetworkException
     {
@@ -248,6 +301,40 @@ public class CorfuDBStreamingSequencerProtocol implements IServerProtocol, ISimp
         }
     }
 
+    public void setLowWaterMark(UUID stream, long address)
+    throws NetworkException
+    {
+        StreamingSequencerService.Client client = null;
+        try {
+            client = thriftPool.getResource();
+            client.setlowwatermark(
+                    new StreamID(stream.getMostSignificantBits(), stream.getLeastSignificantBits()), address);
+            thriftPool.returnResourceObject(client);
+        }
+        catch (Exception e)
+        {
+            if (client != null ) {thriftPool.returnBrokenResource(client);}
+            throw new NetworkException("Couldn't connect to endpoint!", this);
+        }
+    }
+
+    public long getLowWaterMark()
+    throws NetworkException
+    {
+        StreamingSequencerService.Client client = null;
+        try {
+            client = thriftPool.getResource();
+            long ret = client.lowwatermark();
+            thriftPool.returnResourceObject(client);
+            return ret;
+        }
+        catch (Exception e)
+        {
+            if (client != null ) {thriftPool.returnBrokenResource(client);}
+            throw new NetworkException("Couldn't connect to endpoint!", this);
+        }
+    }
+
     /**
      * Simulates a failure by causing the node to not respond.
      * If not implemented, will throw an UnsupportedOperation exception.
@@ -17,6 +17,7 @@ package org.corfudb.runtime.protocols.sequencers;
 import org.corfudb.runtime.NetworkException;
 import org.corfudb.runtime.protocols.IServerProtocol;
 
+import java.util.List;
 import java.util.UUID;
 
 /**
@@ -28,5 +29,37 @@ public interface IStreamSequencer extends IServerProtocol {
     long sequenceGetNext(UUID stream, int count) throws NetworkException;
     long sequenceGetCurrent(UUID stream) throws NetworkException;
     void setAllocationSize(UUID stream, int count) throws NetworkException;
+
+    /**
+     * Issue global tokens for a stream, together with the previous address issued to the stream.
+     * @param stream    The stream to issue tokens for.
+     * @param count     The number of tokens to issue. 0 returns the current position and the stream tail.
+     * @return          The first token issued, and the backpointer for it.
+     */
+    BackpointerToken sequenceGetNextBackpointer(UUID stream, int count) throws NetworkException;
+
+    /**
+     * Issue global tokens which belong to several streams at once, together with the previous address
+     * issued to each of the streams. The tokens become the tail of every one of the streams.
+     * @param streams   The streams to issue tokens for.
+     * @param count     The number of tokens to issue. 0 returns the current position and the stream tails.
+     * @return          A backpointer token for each stream, in the order of streams, all with the same position.
+     */
+    List<BackpointerToken> sequenceGetNextBackpointers(List<UUID> streams, int count) throws NetworkException;
+
+    /**
+     * Publish the low-water mark of a stream. A mark lower than the one published before is ignored.
+     * @param stream    The stream.
+     * @param address   The address below which no reader of the stream needs its entries.
+     */
+    void setLowWaterMark(UUID stream, long address) throws NetworkException;
+
+    /**
+     * Get the point the log can safely be trimmed to: the lowest low-water mark of every stream tokens
+     * were issued to, other than ALL_STREAMS. A stream which has not published a mark holds the point at 0.
+     * @return          The address, exclusive, the log can be trimmed to, or 0 if the sequencer has lost
+     *                  track of the streams it issued tokens to, because it was recovered.
+     */
+    long getLowWaterMark() throws NetworkException;
 }
 
@@ -1,12 +1,16 @@
 package org.corfudb.runtime.protocols.sequencers;
 
 import org.corfudb.runtime.NetworkException;
+import org.corfudb.runtime.entries.IStreamEntry;
 import org.corfudb.runtime.protocols.IServerProtocol;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.TreeSet;
 import java.util.UUID;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.atomic.AtomicLong;
@@ -21,6 +25,9 @@ public class MemorySequencerProtocol implements IStreamSequencer, ISimpleSequenc
     private String host;
     private Integer port;
     private AtomicLong sequenceNumber;
+    private ConcurrentHashMap<UUID, AtomicLong> streamTails = new ConcurrentHashMap<UUID, AtomicLong>();
+    private ConcurrentHashMap<UUID, Long> lowWaterMarks = new ConcurrentHashMap<UUID, Long>();
+    private volatile boolean recovered = false;
     private Long epoch;
     public static ConcurrentHashMap<Integer, MemorySequencerProtocol> memorySequencers =
             new ConcurrentHashMap<Integer, MemorySequencerProtocol>();
@@ -112,6 +119,9 @@ public class MemorySequencerProtocol implements IStreamSequencer, ISimpleSequenc
     @Override
     public void reset(long epoch) throws NetworkException {
         sequenceNumber.set(0);
+        streamTails.clear();
+        lowWaterMarks.clear();
+        recovered = false;
     }
 
     @Override
@@ -131,12 +141,14 @@ public class MemorySequencerProtocol implements IStreamSequencer, ISimpleSequenc
 
     @Override
     public void recover(long lastPos) throws NetworkException {
+        recovered = true;
+        streamTails.clear();
         sequenceNumber.set(lastPos);
     }
 
     @Override
     public long sequenceGetNext(UUID stream, int count) throws NetworkException {
-        return sequenceNumber.getAndAccumulate(count, (p, n) -> n + p);
+        return sequenceGetNextBackpointer(stream, count).position;
     }
 
     @Override
@@ -144,8 +156,84 @@ public class MemorySequencerProtocol implements IStreamSequencer, ISimpleSequenc
         return sequenceNumber.get();
     }
 
+    @Override
+    public BackpointerToken sequenceGetNextBackpointer(UUID stream, int count) throws NetworkException {
+        AtomicLong tail = streamTails.computeIfAbsent(stream, k -> new AtomicLong(recovered ?
+                BackpointerToken.UNKNOWN_PREVIOUS : BackpointerToken.NO_PREVIOUS));
+        synchronized (tail)
+        {
+            if (count == 0)
+            {
+                return new BackpointerToken(sequenceNumber.get(), tail.get());
+            }
+            long position = sequenceNumber.getAndAdd(count);
+            return new BackpointerToken(position, tail.getAndSet(position + count - 1));
+        }
+    }
+
+    @Override
+    public List<BackpointerToken> sequenceGetNextBackpointers(List<UUID> streams, int count) throws NetworkException {
+        // lock the tails in stream order, so requests for overlapping streams cannot deadlock.
+        List<UUID> sorted = new ArrayList<UUID>(new TreeSet<UUID>(streams));
+        List<AtomicLong> tails = new ArrayList<AtomicLong>();
+        for (UUID stream : sorted)
+        {
+            tails.add(streamTails.computeIfAbsent(stream, k -> new AtomicLong(recovered ?
+                    BackpointerToken.UNKNOWN_PREVIOUS : BackpointerToken.NO_PREVIOUS)));
+        }
+        Map<UUID, Long> previous = new HashMap<UUID, Long>();
+        long position = issueLocked(sorted, tails, 0, count, previous);
+        List<BackpointerToken> tokens = new ArrayList<BackpointerToken>(streams.size());
+        for (UUID stream : streams)
+        {
+            tokens.add(new BackpointerToken(position, previous.get(stream)));
+        }
+        return tokens;
+    }
+
+    private long issueLocked(List<UUID> streams, List<AtomicLong> tails, int i, int count, Map<UUID, Long> previous)
+    {
+        if (i == tails.size())
+        {
+            return count == 0 ? sequenceNumber.get() : sequenceNumber.getAndAdd(count);
+        }
+        synchronized (tails.get(i))
+        {
+            long position = issueLocked(streams, tails, i + 1, count, previous);
+            previous.put(streams.get(i), count == 0 ? tails.get(i).get() : tails.get(i).getAndSet(position + count - 1));
+            return position;
+        }
+    }
+
     @Override
     public void setAllocationSize(UUID stream, int count) throws NetworkException {
 
     }
+
+    @Override
+    public void setLowWaterMark(UUID stream, long address) throws NetworkException {
+        lowWaterMarks.merge(stream, address, Math::max);
+    }
+
+    @Override
+    public long getLowWaterMark() throws NetworkException {
+        if (recovered)
+        {
+            return 0;
+        }
+        // a stream first seen after this has its entries at or above the current position.
+        long point = sequenceNumber.get();
+        for (Map.Entry<UUID, AtomicLong> e : streamTails.entrySet())
+        {
+            synchronized (e.getValue())
+            {
+                // streams which were only queried have no entries, and ALL_STREAMS is covered by every stream.
+                if (e.getValue().get() != BackpointerToken.NO_PREVIOUS && !e.getKey().equals(IStreamEntry.ALL_STREAMS))
+                {
+                    point = Math.min(point, lowWaterMarks.getOrDefault(e.getKey(), 0L));
+                }
+            }
+        }
+        return point;
+    }
 }
@@ -2,11 +2,13 @@ package org.corfudb.runtime.smr;
 
 import org.corfudb.runtime.CorfuDBRuntime;
 import org.corfudb.runtime.entries.IStreamEntry;
+import org.corfudb.runtime.entries.SimpleStreamEntry;
 import org.corfudb.runtime.stream.IStream;
 import org.corfudb.runtime.stream.ITimestamp;
 import org.corfudb.runtime.stream.SimpleStream;
 import org.corfudb.runtime.stream.SimpleTimestamp;
-import org.corfudb.runtime.view.ISequencer;
+import org.corfudb.runtime.protocols.sequencers.BackpointerToken;
+import org.corfudb.runtime.view.IStreamingSequencer;
 import org.corfudb.runtime.view.IWriteOnceAddressSpace;
 import org.corfudb.runtime.view.StreamingSequencer;
 import org.corfudb.runtime.view.WriteOnceAddressSpace;
@@ -26,7 +28,9 @@ import java.util.concurrent.CompletableFuture;
  *
  * This means that while deferred transactions are guaranteed to execute, every single
  * stream must execute the deferred transaction to determine whether the transaction
- * will affect it.
+ * will affect it, unless the streams it may affect are registered (see registerStream())
+ * before it is proposed. A transaction with registered streams is written once, with a
+ * single token, as an entry of just those streams, and only their readers execute it.
  *
  * Created by mwei on 5/3/15.
  */
@@ -88,7 +92,14 @@ public class DeferredTransaction implements ITransaction, IStreamEntry, Serializ
      */
     @Override
     public void registerStream(UUID stream) {
-        //streamList.add(stream);
+        if (streamList == null)
+        {
+            streamList = new ArrayList<UUID>();
+        }
+        if (!streamList.contains(stream))
+        {
+            streamList.add(stream);
+        }
     }
 
     /**
@@ -151,24 +162,41 @@ public class DeferredTransaction implements ITransaction, IStreamEntry, Serializ
     throws IOException
     {
         /* The simple transaction just assumes that everything is on the same log,
-         * so picking the next valid sequence is acceptable.
+         * so picking the next valid sequence is acceptable. Unless its streams were
+         * registered, it may affect any stream, so it is chained on ALL_STREAMS for
+         * stream readers to find.
          */
-        ISequencer sequencer = new StreamingSequencer(runtime);
+        IStreamingSequencer sequencer = new StreamingSequencer(runtime);
         IWriteOnceAddressSpace woas = new WriteOnceAddressSpace(runtime);
-        Long sequence = sequencer.getNext();
-        woas.write(sequence, this);
-        return new SimpleTimestamp(sequence);
+        if (streamList != null && !streamList.isEmpty())
+        {
+            List<BackpointerToken> tokens = sequencer.getNextBackpointers(streamList, 1);
+            SimpleTimestamp timestamp = new SimpleTimestamp(tokens.get(0).position);
+            SimpleStreamEntry entry = new SimpleStreamEntry(streamList, this, timestamp);
+            for (int i = 0; i < tokens.size(); i++)
+            {
+                entry.backpointers[i] = tokens.get(i).previous;
+            }
+            entry.type = SimpleStreamEntry.TYPE_TRANSACTION;
+            woas.write(timestamp.address, entry.serialize());
+            return timestamp;
+        }
+        BackpointerToken token = sequencer.getNextBackpointer(ALL_STREAMS, 1);
+        SimpleTimestamp timestamp = new SimpleTimestamp(token.position);
+        SimpleStreamEntry entry = new SimpleStreamEntry(ALL_STREAMS, this, timestamp, token.previous);
+        entry.type = SimpleStreamEntry.TYPE_TRANSACTION;
+        woas.write(token.position, entry.serialize());
+        return timestamp;
     }
 
     /**
      * Gets the list of of the streams this entry belongs to.
      *
-     * @return The list of streams this entry belongs to.
+     * @return The list of streams this entry belongs to, or null if it may belong to any stream.
      */
     @Override
     public List<UUID> getStreamIds() {
-        return null;
-        //return streamList;
+        return streamList;
     }
 
     /**
@@ -179,8 +207,7 @@ public class DeferredTransaction implements ITransaction, IStreamEntry, Serializ
      */
     @Override
     public boolean containsStream(UUID stream) {
-        return true;
-        //return streamList.contains(stream);
+        return streamList == null || streamList.contains(stream);
     }
 
     /**
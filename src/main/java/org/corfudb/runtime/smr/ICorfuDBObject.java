@@ -31,7 +31,7 @@ public interface ICorfuDBObject<T> extends Serializable {
         ITransaction tx = getUnderlyingTransaction();
         if (tx != null)
         {
-            return tx.getEngine(getStreamID(), getUnderlyingType());
+            return tx.getEngine(this);
         }
 
         //We need this until we implement custom serialization
@@ -133,6 +133,41 @@ public interface ICorfuDBObject<T> extends Serializable {
         return o.join();
     }
 
+    /**
+     * Called whenever an object is to be mutated, without waiting for the mutation to be written.
+     * @param command       The command to be executed.
+     * @return              A future which completes once the command has been written.
+     */
+    @SuppressWarnings("unchecked")
+    default CompletableFuture<Void> mutatorHelperAsync(ISMREngineCommand command)
+    {
+        return getSMREngine().proposeAsync(command, null, false).thenApply(ts -> null);
+    }
+
+    /**
+     * Called whenever an object will be both mutated and accessed, without waiting for the
+     * mutation. Once the command is written, the engine is synced up to it on the thread which
+     * completed the proposal.
+     * @param command       The command to be executed.
+     * @return              A future which completes with the result of the access.
+     */
+    @SuppressWarnings("unchecked")
+    default CompletableFuture<Object> mutatorAccessorHelperAsync(ISMREngineCommand command)
+    {
+        CompletableFuture<Object> o = new CompletableFuture<Object>();
+        ISMREngine engine = getSMREngine();
+        CompletableFuture<ITimestamp> proposal = engine.proposeAsync(command, o, false);
+        if (!isAutomaticallyPlayedBack())
+        {
+            proposal.thenAccept(ts -> engine.sync((ITimestamp) ts));
+        }
+        proposal.exceptionally(e -> {
+            o.completeExceptionally(e);
+            return null;
+        });
+        return o;
+    }
+
     /**
      * Handles upcalls, if implemented. When an SMR engine encounters
      * a upcall, it calls this handler. This default upcall handler
@@ -0,0 +1,17 @@
+package org.corfudb.runtime.smr;
+
+/**
+ * Applies an encoded command to the object of an SMR engine.
+ * See SMRCommandTable.
+ */
+@FunctionalInterface
+public interface ISMRCommandHandler<T>
+{
+    /**
+     * Apply a command.
+     * @param object        The object the engine is acting on.
+     * @param args          The arguments the command was logged with.
+     * @return              The result of the command, which completes the proposer's completion.
+     */
+    Object apply(T object, Object[] args);
+}
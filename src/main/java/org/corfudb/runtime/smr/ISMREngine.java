@@ -88,6 +88,26 @@ public interface ISMREngine<T> {
         return propose(command, null, false);
     }
 
+    /**
+     * Propose a new command to the SMR engine, without waiting for it to be written. A caller may
+     * keep many proposals in flight; the completion is fulfilled once the command is applied.
+     * The default implementation proposes synchronously.
+     * @param command       A lambda (BiConsumer) representing the command to be proposed.
+     *
+     * @param completion    A completable future which will be fulfilled once the command is proposed,
+     *                      which is to be completed by the command.
+     *
+     * @param readOnly      Whether or not the command is read only.
+     *
+     * @return              A future which completes with the timestamp the command was proposed to,
+     *                      once the command has been written.
+     */
+    default CompletableFuture<ITimestamp> proposeAsync(ISMREngineCommand<T> command, CompletableFuture<Object> completion,
+                                                      boolean readOnly)
+    {
+        return CompletableFuture.completedFuture(propose(command, completion, readOnly));
+    }
+
     /**
      * Checkpoint the current state of the SMR engine.
      * @return              The timestamp the checkpoint was inserted at.
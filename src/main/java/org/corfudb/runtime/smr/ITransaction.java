@@ -23,6 +23,16 @@ public interface ITransaction {
      */
     ISMREngine getEngine(UUID streamID, Class<?> objClass);
 
+    /**
+     * Returns an SMR engine for an object accessed in a transactional context.
+     * @param object    The object being accessed.
+     * @return          The SMR engine to be used for the object in a transactional context.
+     */
+    default ISMREngine getEngine(ICorfuDBObject<?> object)
+    {
+        return getEngine(object.getStreamID(), object.getUnderlyingType());
+    }
+
     /**
      * Registers a stream to be part of a transactional context.
      * @param stream    A stream that will be joined into this transaction.
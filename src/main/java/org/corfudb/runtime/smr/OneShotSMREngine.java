@@ -147,7 +147,7 @@ public class OneShotSMREngine<T> implements ISMREngine<T> {
             throws IOException
     {
         SMRCheckpoint<T> checkpoint = new SMRCheckpoint<T>(streamPointer, underlyingObject);
-        return stream.append(checkpoint);
+        return stream.appendCheckpoint(checkpoint);
     }
 
     /**
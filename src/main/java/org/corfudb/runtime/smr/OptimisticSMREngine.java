@@ -0,0 +1,150 @@
+package org.corfudb.runtime.smr;
+
+import org.corfudb.runtime.CorfuDBRuntime;
+import org.corfudb.runtime.stream.ITimestamp;
+
+import java.io.IOException;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * This SMR engine is designed for use for optimistic transactions only.
+ * It executes SMR operations against a private copy of an object, taken at
+ * a given version of its stream, and records them in the transaction instead
+ * of writing them to the log.
+ *
+ * Accessors record the version as the read version of the stream, mutators
+ * are added to the write set of the transaction.
+ */
+public class OptimisticSMREngine<T> implements ISMREngine<T> {
+
+    class OptimisticSMREngineOptions implements ISMREngineOptions
+    {
+        CompletableFuture<Object> returnResult;
+
+        public OptimisticSMREngineOptions(CompletableFuture<Object> returnResult)
+        {
+            this.returnResult = returnResult;
+        }
+        public CompletableFuture<Object> getReturnResult()
+        {
+            return this.returnResult;
+        }
+        public CorfuDBRuntime getRuntime() { return transaction.getRuntime(); }
+    }
+
+    final OptimisticTransaction transaction;
+    final UUID streamID;
+    final ITimestamp version;
+    T underlyingObject;
+
+    public OptimisticSMREngine(OptimisticTransaction transaction, UUID streamID, ITimestamp version, T object)
+    {
+        this.transaction = transaction;
+        this.streamID = streamID;
+        this.version = version;
+        this.underlyingObject = object;
+    }
+
+    /**
+     * Get the underlying object. The object is a copy private to the transaction.
+     *
+     * @return The object maintained by the SMR engine.
+     */
+    @Override
+    public T getObject() {
+        return underlyingObject;
+    }
+
+    /**
+     * Set the underlying object. This method should ONLY be used by a TX engine to
+     * restore state.
+     *
+     * @param object
+     */
+    @Override
+    public void setObject(T object) {
+        underlyingObject = object;
+    }
+
+    /**
+     * Synchronize the SMR engine to a given timestamp. The copy stays at the version
+     * it was taken at, so every read of the transaction sees the same state.
+     *
+     * @param ts The timestamp to synchronize to, or null, to synchronize to the most
+     *           recent version.
+     */
+    @Override
+    public void sync(ITimestamp ts) {
+        // Always at the read version.
+    }
+
+    /**
+     * Checkpoint the current state of the SMR engine.
+     *
+     * @return The timestamp the checkpoint was inserted at.
+     */
+    @Override
+    public ITimestamp checkpoint()
+            throws IOException
+    {
+        throw new UnsupportedOperationException("Checkpointing not supported!");
+    }
+
+    /**
+     * Propose a new command to the SMR engine. The command is applied to the copy right away.
+     * A command which returns a result has read the object, so the stream is added to the read
+     * set; a command which is not read only is added to the write set.
+     *
+     * @param command    A lambda (BiConsumer) representing the command to be proposed.
+     *                   The first argument of the lambda is the object the engine is acting on.
+     *                   The second argument of the lambda contains some TX that the engine
+     * @param completion A completable future which will be fulfilled once the command is proposed,
+     *                   which is to be completed by the command.
+     * @param readOnly   Whether or not the command is read only.
+     * @return The version the copy was taken at.
+     */
+    @Override
+    public ITimestamp propose(ISMREngineCommand<T> command, CompletableFuture<Object> completion, boolean readOnly) {
+        if (readOnly || completion != null)
+        {
+            transaction.recordRead(streamID, version);
+        }
+        command.accept(underlyingObject, new OptimisticSMREngineOptions(completion));
+        if (!readOnly)
+        {
+            transaction.recordWrite(streamID, command);
+        }
+        return version;
+    }
+
+    /**
+     * Get the timestamp of the most recently proposed command.
+     *
+     * @return The version the copy was taken at.
+     */
+    @Override
+    public ITimestamp getLastProposal() {
+        return version;
+    }
+
+    /**
+     * Pass through to check for the underlying stream.
+     *
+     * @return The version the copy was taken at.
+     */
+    @Override
+    public ITimestamp check() {
+        return version;
+    }
+
+    /**
+     * Get the underlying stream ID.
+     *
+     * @return A UUID representing the ID for the underlying stream.
+     */
+    @Override
+    public UUID getStreamID() {
+        return streamID;
+    }
+}
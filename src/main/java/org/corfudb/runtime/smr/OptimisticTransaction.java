@@ -2,34 +2,75 @@ package org.corfudb.runtime.smr;
 
 import org.corfudb.runtime.CorfuDBRuntime;
 import org.corfudb.runtime.entries.IStreamEntry;
+import org.corfudb.runtime.entries.SimpleStreamEntry;
+import org.corfudb.runtime.protocols.sequencers.BackpointerToken;
+import org.corfudb.runtime.stream.IStream;
 import org.corfudb.runtime.stream.ITimestamp;
+import org.corfudb.runtime.stream.SimpleStream;
+import org.corfudb.runtime.stream.SimpleTimestamp;
+import org.corfudb.runtime.view.IStreamingSequencer;
+import org.corfudb.runtime.view.IWriteOnceAddressSpace;
+import org.corfudb.runtime.view.StreamingSequencer;
+import org.corfudb.runtime.view.WriteOnceAddressSpace;
 
 import java.io.IOException;
 import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.UUID;
 import java.util.concurrent.CompletableFuture;
 
 /**
+ * An optimistic transaction executes speculatively when it is proposed, and is validated
+ * when it is replayed.
+ *
+ * The transaction command runs against a private copy of each object it accesses, taken from
+ * the local SMR engine of the object (see SimpleSMREngine.snapshot()). The position the copy
+ * was taken at is recorded as the read version of each stream the command reads, and each
+ * mutation is applied to the copy and recorded in the write set. If the command returns true,
+ * a commit record holding the read versions and the write set is appended to the streams written,
+ * with a single token. The tails of the streams read, as of that token, are recorded with it.
+ *
+ * The transaction commits if no stream it read was issued an entry after its read version and
+ * before the commit record. Since the tails are in the record, every replica comes to the same
+ * decision without reading the log, and a committed record is replayed by applying its write set:
+ * the transaction command is never written, and is never executed again. A stream whose tail is
+ * not known, because the sequencer lost it, aborts the transaction; the record is chained on such
+ * a stream, so the next transaction finds its tail.
+ *
  * Created by mwei on 5/6/15.
  */
 public class OptimisticTransaction implements ITransaction, IStreamEntry, Serializable {
 
-    ITransactionCommand transaction;
+    transient ITransactionCommand transaction;
     List<UUID> streamList;
+    Map<UUID, Long> readVersions;
+    Map<UUID, Long> tails;
+    Map<UUID, List<ISMREngineCommand>> writeSet;
     ITimestamp timestamp;
     transient CorfuDBRuntime runtime;
-    transient ISMREngine executingEngine;
+    transient Map<UUID, OptimisticSMREngine> engines;
+    transient CompletableFuture<Object> returnResult;
 
-    class OptimisticTransactionOptions implements ITransactionOptions
+    class OptimisticTransactionOptions implements ITransactionOptions, ISMREngine.ISMREngineOptions
     {
+        CompletableFuture<Object> returnResult;
 
-        public OptimisticTransactionOptions() {
+        public OptimisticTransactionOptions(CompletableFuture<Object> returnResult) {
+            this.returnResult = returnResult;
         }
 
         @Override
         public CompletableFuture<Object> getReturnResult() {
-            return null;
+            return returnResult;
+        }
+
+        @Override
+        public CorfuDBRuntime getRuntime() {
+            return runtime;
         }
     }
 
@@ -48,7 +89,7 @@ public class OptimisticTransaction implements ITransaction, IStreamEntry, Serial
      */
     @Override
     public List<UUID> getStreamIds() {
-        return null;
+        return streamList;
     }
 
     /**
@@ -59,7 +100,7 @@ public class OptimisticTransaction implements ITransaction, IStreamEntry, Serial
      */
     @Override
     public boolean containsStream(UUID stream) {
-        return false;
+        return streamList != null && (streamList.contains(stream) || streamList.contains(ALL_STREAMS));
     }
 
     /**
@@ -69,17 +110,17 @@ public class OptimisticTransaction implements ITransaction, IStreamEntry, Serial
      */
     @Override
     public ITimestamp getTimestamp() {
-        return null;
+        return timestamp;
     }
 
     /**
      * Set the timestamp.
      *
-     * @param ts
+     * @param ts    The new timestamp of the entry.
      */
     @Override
     public void setTimestamp(ITimestamp ts) {
-
+        timestamp = ts;
     }
 
     /**
@@ -89,23 +130,76 @@ public class OptimisticTransaction implements ITransaction, IStreamEntry, Serial
      */
     @Override
     public Object getPayload() {
-        return null;
+        return this;
     }
 
     /**
-     * Returns an SMR engine for a transactional context.
+     * Returns an SMR engine for a transactional context, over a copy of the object
+     * replayed from its stream.
      *
      * @param streamID The streamID the SMR engine should run on.
      * @param objClass The class that the SMR engine runs against.
      * @return The SMR engine to be used for a transactional context.
      */
     @Override
+    @SuppressWarnings("unchecked")
     public ISMREngine getEngine(UUID streamID, Class<?> objClass) {
-        return null;
+        OptimisticSMREngine engine = engines.get(streamID);
+        if (engine == null)
+        {
+            IStream stream = runtime.openStream(streamID, SimpleStream.class);
+            SimpleSMREngine replay = new SimpleSMREngine(stream, objClass);
+            replay.setCheckpointInterval(0, 0);
+            replay.sync(null);
+            engine = new OptimisticSMREngine(this, streamID, replay.streamPointer, replay.getObject());
+            engines.put(streamID, engine);
+        }
+        return engine;
+    }
+
+    /**
+     * Returns an SMR engine for an object accessed in a transactional context, over a copy
+     * of the object taken from its local SMR engine, if it has one.
+     *
+     * @param object The object being accessed.
+     * @return The SMR engine to be used for the object in a transactional context.
+     */
+    @Override
+    @SuppressWarnings("unchecked")
+    public ISMREngine getEngine(ICorfuDBObject<?> object) {
+        ISMREngine local = object.getUnderlyingSMREngine();
+        if (!engines.containsKey(object.getStreamID()) && local instanceof SimpleSMREngine)
+        {
+            Pair<ITimestamp, Object> snapshot = ((SimpleSMREngine) local).snapshot();
+            engines.put(object.getStreamID(),
+                    new OptimisticSMREngine(this, object.getStreamID(), snapshot.first, snapshot.second));
+        }
+        return getEngine(object.getStreamID(), object.getUnderlyingType());
     }
 
     /**
-     * Registers a stream to be part of a transactional context.
+     * Record that the transaction read a stream.
+     *
+     * @param stream  The stream read.
+     * @param version The position of the stream the read was made at.
+     */
+    void recordRead(UUID stream, ITimestamp version) {
+        readVersions.putIfAbsent(stream, ((SimpleTimestamp) version).address);
+    }
+
+    /**
+     * Record a mutation the transaction made to a stream.
+     *
+     * @param stream  The stream written.
+     * @param command The command to apply when the transaction commits.
+     */
+    void recordWrite(UUID stream, ISMREngineCommand command) {
+        writeSet.computeIfAbsent(stream, k -> new ArrayList<ISMREngineCommand>()).add(command);
+    }
+
+    /**
+     * Registers a stream to be part of a transactional context. Optimistic transactions find
+     * the streams they read and write as they execute, so registering a stream has no effect.
      *
      * @param stream A stream that will be joined into this transaction.
      */
@@ -122,27 +216,41 @@ public class OptimisticTransaction implements ITransaction, IStreamEntry, Serial
      */
     @Override
     public void setCorfuDBRuntime(CorfuDBRuntime runtime) {
-
+        this.runtime = runtime;
     }
 
     /**
-     * Set the command to be executed for this transaction.
+     * Set the command to be executed for this transaction. The command is only executed
+     * when the transaction is proposed; returning false aborts the transaction.
      *
      * @param transaction The command(s) to be executed for this transaction.
      */
     @Override
     public void setTransaction(ITransactionCommand transaction) {
-
+        this.transaction = transaction;
     }
 
     /**
-     * Execute this command on a specific SMR engine.
+     * Execute this command on a specific SMR engine. If the transaction committed, the
+     * mutations it made to the stream of the engine are applied to the object.
      *
      * @param engine The SMR engine to run this command on.
      */
     @Override
+    @SuppressWarnings("unchecked")
     public void executeTransaction(ISMREngine engine) {
-
+        List<ISMREngineCommand> commands = writeSet == null ? null : writeSet.get(engine.getStreamID());
+        if (commands == null || !isCommitted())
+        {
+            return;
+        }
+        try (TransactionalContext tx = new TransactionalContext(engine, timestamp, runtime))
+        {
+            for (ISMREngineCommand command : commands)
+            {
+                command.accept(engine.getObject(), new OptimisticTransactionOptions(null));
+            }
+        }
     }
 
     /**
@@ -152,19 +260,131 @@ public class OptimisticTransaction implements ITransaction, IStreamEntry, Serial
      */
     @Override
     public ITransactionCommand getTransaction() {
-        return null;
+        return this.transaction;
+    }
+
+    /**
+     * Returns the result the command completed, if any, when it executed.
+     *
+     * @return A future, completed by the command through its options.
+     */
+    public CompletableFuture<Object> getReturnResult() {
+        return returnResult;
+    }
+
+    /**
+     * Returns whether the transaction committed. The decision only depends on the read versions
+     * and the stream tails in the commit record, so every replica of the record makes the same one.
+     *
+     * @return True, if the transaction has been proposed, or read from the log, and committed.
+     */
+    public boolean isCommitted() {
+        if (tails == null)
+        {
+            return false;
+        }
+        long all = tails.getOrDefault(ALL_STREAMS, BackpointerToken.NO_PREVIOUS);
+        for (Map.Entry<UUID, Long> read : readVersions.entrySet())
+        {
+            long tail = tails.getOrDefault(read.getKey(), BackpointerToken.UNKNOWN_PREVIOUS);
+            if (tail == BackpointerToken.UNKNOWN_PREVIOUS || tail > read.getValue() ||
+                    all == BackpointerToken.UNKNOWN_PREVIOUS || all > read.getValue())
+            {
+                return false;
+            }
+        }
+        return true;
     }
 
     /**
-     * Propose to the SMR engine(s) for the transaction to be executed.
+     * Propose to the SMR engine(s) for the transaction to be executed. The command is executed
+     * speculatively, and the commit record is appended to the streams it wrote to. Whether the
+     * transaction committed is known as soon as this returns, see isCommitted().
      *
-     * @return The timestamp that the transaction was proposed at.
-     * This timestamp should be a valid timestamp for all streams
-     * that the transaction belongs to, otherwise, the transaction
-     * will abort.
+     * @return The timestamp that the transaction was proposed at, or null if nothing had to be
+     * written: the command aborted, or only read, in which case the reads are validated directly.
      */
     @Override
-    public ITimestamp propose() throws IOException {
-        return null;
+    public ITimestamp propose()
+    throws IOException
+    {
+        engines = new HashMap<UUID, OptimisticSMREngine>();
+        readVersions = new HashMap<UUID, Long>();
+        writeSet = new LinkedHashMap<UUID, List<ISMREngineCommand>>();
+        tails = null;
+        returnResult = new CompletableFuture<Object>();
+        try (TransactionalContext tx = new TransactionalContext(this))
+        {
+            if (!transaction.apply(new OptimisticTransactionOptions(returnResult)))
+            {
+                return null;
+            }
+        }
+        finally
+        {
+            engines = null;
+        }
+
+        /* Entries chained on ALL_STREAMS (such as deferred transactions) belong to every stream
+         * read, so its tail is checked as well. A stream with an unknown tail is added to the
+         * streams the record is chained on, so the sequencer learns its tail.
+         */
+        IStreamingSequencer sequencer = new StreamingSequencer(runtime);
+        tails = new HashMap<UUID, Long>();
+        streamList = new ArrayList<UUID>(writeSet.keySet());
+        List<UUID> checked = new ArrayList<UUID>();
+        for (UUID stream : readVersions.keySet())
+        {
+            if (!writeSet.containsKey(stream))
+            {
+                checked.add(stream);
+            }
+        }
+        if (!readVersions.isEmpty())
+        {
+            checked.add(ALL_STREAMS);
+            List<BackpointerToken> current = sequencer.getNextBackpointers(checked, 0);
+            for (int i = 0; i < checked.size(); i++)
+            {
+                tails.put(checked.get(i), current.get(i).previous);
+                if (current.get(i).previous == BackpointerToken.UNKNOWN_PREVIOUS)
+                {
+                    streamList.add(checked.get(i));
+                }
+            }
+            checked.removeAll(streamList);
+        }
+        if (streamList.isEmpty())
+        {
+            // nothing to write: the reads are valid if no stream read has moved since.
+            return null;
+        }
+
+        List<BackpointerToken> tokens = sequencer.getNextBackpointers(streamList, 1);
+        SimpleTimestamp ts = new SimpleTimestamp(tokens.get(0).position);
+        for (int i = 0; i < streamList.size(); i++)
+        {
+            tails.put(streamList.get(i), tokens.get(i).previous);
+        }
+        if (!checked.isEmpty())
+        {
+            // every token issued to these streams before the record is covered by their tails now.
+            List<BackpointerToken> current = sequencer.getNextBackpointers(checked, 0);
+            for (int i = 0; i < checked.size(); i++)
+            {
+                tails.put(checked.get(i), current.get(i).previous);
+            }
+        }
+
+        IWriteOnceAddressSpace woas = new WriteOnceAddressSpace(runtime);
+        SimpleStreamEntry entry = new SimpleStreamEntry(streamList, this, ts);
+        for (int i = 0; i < tokens.size(); i++)
+        {
+            entry.backpointers[i] = tokens.get(i).previous;
+        }
+        entry.type = SimpleStreamEntry.TYPE_TRANSACTION;
+        woas.write(ts.address, entry.serialize());
+        timestamp = ts;
+        return ts;
     }
 }
@@ -1,20 +1,57 @@
 package org.corfudb.runtime.smr;
 
 import org.corfudb.runtime.stream.ITimestamp;
+import org.corfudb.runtime.view.Serializer;
 
+import java.io.IOException;
 import java.io.Serializable;
 
 /**
+ * A checkpoint of an SMR object: the state of the object after applying every entry of the
+ * stream up to and including the checkpoint timestamp.
+ *
+ * The object is serialized when the checkpoint is created, so the engine only needs to hold
+ * its lock while taking the snapshot, not while the checkpoint is written.
+ *
  * Created by mwei on 5/6/15.
  */
 public class SMRCheckpoint<T> implements Serializable {
     ITimestamp checkpoint;
-    T underlyingObject;
+    byte[] state;
 
     public SMRCheckpoint(ITimestamp ts, T object)
+        throws IOException
     {
         checkpoint = ts;
-        underlyingObject = object;
+        state = Serializer.serialize(object);
     }
 
+    /**
+     * Get the timestamp the checkpoint was taken at.
+     * @return          The last timestamp applied to the object in the checkpoint.
+     */
+    public ITimestamp getTimestamp()
+    {
+        return checkpoint;
+    }
+
+    /**
+     * Get a copy of the object in the checkpoint.
+     * @return          The object, as it was when the checkpoint was taken.
+     */
+    @SuppressWarnings("unchecked")
+    public T getObject()
+        throws IOException, ClassNotFoundException
+    {
+        return (T) Serializer.deserialize(state);
+    }
+
+    /**
+     * Get the size of the object in the checkpoint.
+     * @return          The size of the serialized object, in bytes.
+     */
+    public int getSize()
+    {
+        return state.length;
+    }
 }
@@ -0,0 +1,94 @@
+package org.corfudb.runtime.smr;
+
+import org.corfudb.runtime.view.Serializer;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * A command encoded as an opcode of a command table and its arguments. On the log, a command
+ * is written as:
+ *
+ *  table id (short) | opcode (short) | arguments (Kryo serialized Object[])
+ *
+ * which is much smaller and cheaper to decode than a serialized lambda, and does not depend on
+ * the names the compiler gives to lambda classes.
+ */
+public class SMRCommand<T> implements ISMREngineCommand<T> {
+
+    short table;
+    short opcode;
+    Object[] args;
+
+    SMRCommand(short table, short opcode, Object[] args)
+    {
+        this.table = table;
+        this.opcode = opcode;
+        this.args = args;
+    }
+
+    /**
+     * Apply the command to an object, and complete the proposer's completion with its result.
+     * @param object        The object the engine is acting on.
+     * @param opts          The options of the engine.
+     */
+    @Override
+    @SuppressWarnings("unchecked")
+    public void accept(T object, ISMREngine.ISMREngineOptions opts)
+    {
+        Object result = ((SMRCommandTable<T>) SMRCommandTable.get(table)).apply(opcode, object, args);
+        if (opts != null && opts.getReturnResult() != null)
+        {
+            opts.getReturnResult().complete(result);
+        }
+    }
+
+    /**
+     * Encode the command in its on-log format.
+     * @return              The encoded command.
+     */
+    public byte[] encode()
+        throws IOException
+    {
+        ByteBuffer b = encode(0);
+        return Arrays.copyOf(b.array(), b.limit());
+    }
+
+    /**
+     * Encode the command into the serializer's buffer, after a header written by the caller.
+     * The buffer is only valid until the next object is serialized on this thread.
+     * @param headroom      The number of bytes to leave before the command.
+     * @return              A buffer over the header and the command, with its position at 0.
+     */
+    public ByteBuffer encode(int headroom)
+        throws IOException
+    {
+        ByteBuffer b = Serializer.serialize(args, headroom + 4);
+        b.putShort(headroom, table);
+        b.putShort(headroom + 2, opcode);
+        return b;
+    }
+
+    /**
+     * Decode a command.
+     * @param data          The buffer containing the encoded command.
+     * @param offset        The offset of the command in the buffer.
+     * @return              The command.
+     */
+    public static SMRCommand<?> decode(byte[] data, int offset)
+        throws IOException, ClassNotFoundException
+    {
+        ByteBuffer b = ByteBuffer.wrap(data, offset, data.length - offset);
+        short table = b.getShort();
+        short opcode = b.getShort();
+        Object[] args = (Object[]) Serializer.deserialize(data, b.position(), b.remaining());
+        return new SMRCommand<Object>(table, opcode, args);
+    }
+
+    @Override
+    public String toString()
+    {
+        return "SMRCommand(" + SMRCommandTable.get(table).name + ":" + opcode + ")";
+    }
+}
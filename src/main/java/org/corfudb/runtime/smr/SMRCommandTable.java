@@ -0,0 +1,105 @@
+package org.corfudb.runtime.smr;
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A table of the commands an object type logs. Instead of a serialized lambda, a command is
+ * logged as the id of its table, an opcode and its arguments (see SMRCommand). On replay, the
+ * opcode selects the handler which applies the command.
+ *
+ * Table ids and opcodes are part of the log format: they must be unique and must not change
+ * once entries have been written with them.
+ */
+public class SMRCommandTable<T> {
+
+    static final ConcurrentHashMap<Short, SMRCommandTable<?>> tables = new ConcurrentHashMap<Short, SMRCommandTable<?>>();
+
+    final short id;
+    final String name;
+    volatile ISMRCommandHandler<T>[] handlers;
+
+    /**
+     * Create and register a command table.
+     * @param id            The id of the table, which is logged with every command.
+     * @param name          The name of the table, for diagnostics.
+     */
+    @SuppressWarnings("unchecked")
+    public SMRCommandTable(int id, String name)
+    {
+        this.id = (short) id;
+        this.name = name;
+        this.handlers = new ISMRCommandHandler[0];
+        SMRCommandTable<?> existing = tables.putIfAbsent(this.id, this);
+        if (existing != null)
+        {
+            throw new IllegalStateException("Command table id " + id + " of " + name + " is already used by " + existing.name);
+        }
+    }
+
+    /**
+     * Remove the table, so its id can be used by another table. Commands of the table which are
+     * still in the log can no longer be applied.
+     */
+    public void unregister()
+    {
+        tables.remove(id, this);
+    }
+
+    /**
+     * Register the handler of an opcode.
+     * @param opcode        The opcode.
+     * @param handler       The handler which applies the command.
+     * @return              This table.
+     */
+    public synchronized SMRCommandTable<T> register(int opcode, ISMRCommandHandler<T> handler)
+    {
+        if (opcode < handlers.length && handlers[opcode] != null)
+        {
+            throw new IllegalStateException("Opcode " + opcode + " of " + name + " is already registered");
+        }
+        ISMRCommandHandler<T>[] h = Arrays.copyOf(handlers, Math.max(handlers.length, opcode + 1));
+        h[opcode] = handler;
+        handlers = h;
+        return this;
+    }
+
+    /**
+     * Create a command to propose.
+     * @param opcode        The opcode of the command.
+     * @param args          The arguments of the command, which must be serializable with Kryo.
+     * @return              The command.
+     */
+    public SMRCommand<T> command(int opcode, Object... args)
+    {
+        return new SMRCommand<T>(id, (short) opcode, args);
+    }
+
+    /**
+     * Apply a command to an object.
+     */
+    Object apply(short opcode, T object, Object[] args)
+    {
+        ISMRCommandHandler<T>[] h = handlers;
+        if (opcode < 0 || opcode >= h.length || h[opcode] == null)
+        {
+            throw new IllegalStateException("Unknown opcode " + opcode + " for " + name);
+        }
+        return h[opcode].apply(object, args);
+    }
+
+    /**
+     * Get a registered table.
+     * @param id            The id of the table.
+     * @return              The table.
+     */
+    static SMRCommandTable<?> get(short id)
+    {
+        SMRCommandTable<?> table = tables.get(id);
+        if (table == null)
+        {
+            throw new IllegalStateException("Unknown command table " + id);
+        }
+        return table;
+    }
+}
@@ -1,11 +1,16 @@
 package org.corfudb.runtime.smr;
 
+import org.cliffc.high_scale_lib.NonBlockingHashMapLong;
 import org.corfudb.runtime.CorfuDBRuntime;
+import org.corfudb.runtime.HoleEncounteredException;
 import org.corfudb.runtime.OutOfSpaceException;
+import org.corfudb.runtime.TrimmedException;
 import org.corfudb.runtime.entries.CorfuDBEntry;
 import org.corfudb.runtime.entries.IStreamEntry;
+import org.corfudb.runtime.entries.SimpleStreamEntry;
 import org.corfudb.runtime.stream.IStream;
 import org.corfudb.runtime.stream.ITimestamp;
+import org.corfudb.runtime.view.Serializer;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -14,24 +19,58 @@ import java.io.Serializable;
 import java.lang.reflect.Constructor;
 import java.lang.reflect.InvocationTargetException;
 import java.util.Arrays;
-import java.util.HashMap;
 import java.util.UUID;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.function.BiConsumer;
 
 /**
+ * An SMR engine which applies the commands of a stream, in order, to a single object.
+ *
+ * On the first sync, the engine restores the object from the most recent checkpoint on the
+ * stream, and only replays the commands after it. The engine appends checkpoints in the
+ * background once it has applied a number of commands, or bytes of commands, since the last
+ * checkpoint it has seen (see setCheckpointInterval()). If trimming is enabled (see
+ * setTrimOnCheckpoint()), the engine trims the stream up to each checkpoint it appends, so the log
+ * trimmer of the runtime may release the entries it covers. An engine which is behind the trim point
+ * of the log restores from the checkpoint, and completes its own proposals which the checkpoint
+ * covers exceptionally, since their commands can no longer be replayed.
+ *
+ * Any number of threads may propose to and sync the same engine. Proposals do not take the
+ * engine lock: the completion of a command is registered in a lock-free table, keyed by the
+ * address of the command, before the command is written, and the thread which applies the
+ * command completes it. Commands are applied, and read only commands run, under the engine lock.
+ *
  * Created by mwei on 5/1/15.
  */
 public class SimpleSMREngine<T> implements ISMREngine<T> {
 
     private final Logger log = LoggerFactory.getLogger(SimpleSMREngine.class);
 
+    public static final long DEFAULT_CHECKPOINT_COMMANDS = 10000;
+    public static final long DEFAULT_CHECKPOINT_BYTES = 16 * 1024 * 1024;
+
+    /** The longest sync waits before reading again at an entry which is still being written, in milliseconds. */
+    public static final long MAX_HOLE_BACKOFF = 64;
+
     IStream stream;
     T underlyingObject;
-    public ITimestamp streamPointer;
-    ITimestamp lastProposal;
+    public volatile ITimestamp streamPointer;
+    final AtomicReference<ITimestamp> lastProposal = new AtomicReference<ITimestamp>();
     Class<T> type;
-    HashMap<ITimestamp, CompletableFuture<Object>> completionTable;
+    /* Completions of the commands proposed by this engine, by the address of the command. */
+    NonBlockingHashMapLong<CompletableFuture<Object>> completionTable;
+
+    volatile boolean restored = false;
+    long checkpointCommands = DEFAULT_CHECKPOINT_COMMANDS;
+    long checkpointBytes = DEFAULT_CHECKPOINT_BYTES;
+    long commandsSinceCheckpoint = 0;
+    long bytesSinceCheckpoint = 0;
+    volatile boolean checkpointing = false;
+    boolean trimOnCheckpoint = false;
 
     class SimpleSMREngineOptions implements ISMREngineOptions
     {
@@ -60,7 +99,7 @@ public class SimpleSMREngine<T> implements ISMREngine<T> {
             this.stream = stream;
             this.type = type;
             streamPointer = stream.getCurrentPosition();
-            completionTable = new HashMap<ITimestamp, CompletableFuture<Object>>();
+            completionTable = new NonBlockingHashMapLong<CompletableFuture<Object>>();
             Constructor<T> ctor = findConstructor(type, args);
             underlyingObject = ctor.newInstance(args);
         }
@@ -91,6 +130,129 @@ public class SimpleSMREngine<T> implements ISMREngine<T> {
         underlyingObject = object;
     }
 
+    /**
+     * Set how often the engine appends a checkpoint in the background.
+     *
+     * @param commands  The number of commands to apply between checkpoints, or 0 to not count commands.
+     * @param bytes     The number of bytes of commands to apply between checkpoints, or 0 to not count bytes.
+     */
+    public void setCheckpointInterval(long commands, long bytes) {
+        synchronized (this) {
+            checkpointCommands = commands;
+            checkpointBytes = bytes;
+        }
+    }
+
+    /**
+     * Set whether the engine trims the stream up to each checkpoint it appends. Trimming is off by default.
+     * @param trim      True, to trim the stream after each checkpoint.
+     */
+    public void setTrimOnCheckpoint(boolean trim) {
+        trimOnCheckpoint = trim;
+    }
+
+    /**
+     * Restore the object from the most recent checkpoint on the stream, and move the stream past it.
+     * The object is not restored if the engine has already read past the checkpoint. A command proposed
+     * by this engine, which is still waiting for its completion, and is covered by the checkpoint, would
+     * never be applied by this engine: unless the log is trimmed past it, the object is not restored, and
+     * the command is replayed instead. Otherwise, it is completed exceptionally with the trimmed exception.
+     *
+     * @param trimmed   The exception reading the stream failed with, or null if it has not been trimmed.
+     *
+     * @return True, if the object was restored.
+     */
+    @SuppressWarnings("unchecked")
+    boolean restore(TrimmedException trimmed) {
+        restored = true;
+        try {
+            IStreamEntry entry = stream.readLastCheckpoint();
+            if (entry == null)
+            {
+                return false;
+            }
+            SMRCheckpoint<T> checkpoint = (SMRCheckpoint<T>) entry.getPayload();
+            if (checkpoint.getTimestamp().compareTo(streamPointer) <= 0)
+            {
+                return false;
+            }
+            for (long proposal : completionTable.keySet())
+            {
+                if (proposal <= checkpoint.getTimestamp().getAddress())
+                {
+                    if (trimmed == null)
+                    {
+                        return false;
+                    }
+                    CompletableFuture<Object> completion = completionTable.remove(proposal);
+                    if (completion != null)
+                    {
+                        completion.completeExceptionally(trimmed);
+                    }
+                }
+            }
+            underlyingObject = checkpoint.getObject();
+            stream.seek(checkpoint.getTimestamp());
+            streamPointer = stream.getCurrentPosition();
+            log.debug("Restored stream {} from checkpoint at {}", stream.getStreamID(), entry.getTimestamp());
+            return true;
+        } catch (Exception e) {
+            log.warn("Unable to restore from checkpoint, replaying stream {}", stream.getStreamID(), e);
+            return false;
+        }
+    }
+
+    /**
+     * Returns whether an entry is a checkpoint. Checkpoints are skipped during replay.
+     */
+    private static boolean isCheckpoint(IStreamEntry entry) {
+        if (entry instanceof SimpleStreamEntry)
+        {
+            return ((SimpleStreamEntry) entry).getType() == SimpleStreamEntry.TYPE_CHECKPOINT;
+        }
+        return entry.getPayload() instanceof SMRCheckpoint;
+    }
+
+    /**
+     * Append a checkpoint in the background, on the checkpoint pool of the runtime, if enough commands
+     * have been applied since the last one. Without a runtime, the checkpoint is appended right away.
+     */
+    private void checkpointIfNeeded() {
+        if (checkpointing)
+        {
+            return;
+        }
+        if ((checkpointCommands > 0 && commandsSinceCheckpoint >= checkpointCommands) ||
+                (checkpointBytes > 0 && bytesSinceCheckpoint >= checkpointBytes))
+        {
+            checkpointing = true;
+            Runnable task = () -> {
+                try {
+                    checkpoint();
+                } catch (Exception e) {
+                    log.warn("Unable to checkpoint stream {}", stream.getStreamID(), e);
+                } finally {
+                    checkpointing = false;
+                }
+            };
+            CorfuDBRuntime runtime = stream.getRuntime();
+            ExecutorService pool = runtime == null ? null : runtime.getPool("smr-checkpoint");
+            try {
+                if (pool == null)
+                {
+                    task.run();
+                }
+                else
+                {
+                    pool.submit(task);
+                }
+            } catch (RejectedExecutionException ree) {
+                // the runtime was closed.
+                checkpointing = false;
+            }
+        }
+    }
+
     /**
      * Synchronize the SMR engine to a given timestamp, or pass null to synchronize
      * the SMR engine as far as possible.
@@ -99,46 +261,105 @@ public class SimpleSMREngine<T> implements ISMREngine<T> {
      *           recent version.
      */
     @Override
-    @SuppressWarnings("unchecked")
     public void sync(ITimestamp ts) {
+        if (ts != null && restored && ts.compareTo(streamPointer) <= 0) {
+            // another thread has already applied ts.
+            return;
+        }
         synchronized (this) {
-            if (ts == null) {
-                ts = stream.check();
-                if (ts.compareTo(streamPointer) <= 0) {
-                    //we've already read to the most recent position, no need to keep reading.
+            if (!restored) {
+                restore(null);
+            }
+            try {
+                syncStream(ts);
+            } finally {
+                checkpointIfNeeded();
+            }
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private void syncStream(ITimestamp ts) {
+        if (ts == null) {
+            ts = stream.check();
+            if (ts.compareTo(streamPointer) <= 0) {
+                //we've already read to the most recent position, no need to keep reading.
+                return;
+            }
+        }
+        long backoff = 0;
+        while (ts.compareTo(streamPointer) > 0) {
+            try {
+                IStreamEntry entry = stream.readNextEntry();
+                if (entry == null)
+                {
+                    // we've reached the end of this stream.
                     return;
                 }
-            }
-            while (ts.compareTo(streamPointer) > 0) {
-                try {
-                    IStreamEntry entry = stream.readNextEntry();
-                    if (entry == null)
-                    {
-                        // we've reached the end of this stream.
-                        return;
-                    }
-                    if (entry instanceof ITransaction)
-                    {
-                        ITransaction transaction = (ITransaction) entry;
-                        transaction.setCorfuDBRuntime(stream.getRuntime());
-                        transaction.executeTransaction(this);
-                    }
-                    else {
-                        try (TransactionalContext tc = new TransactionalContext(this, entry.getTimestamp(), stream.getRuntime())) {
-                            ISMREngineCommand<T> function = (ISMREngineCommand<T>) entry.getPayload();
-                            ITimestamp entryTS = entry.getTimestamp();
-                            CompletableFuture<Object> completion = completionTable.getOrDefault(entryTS, null);
-                            completionTable.remove(entryTS);
-                            // log.warn("syncing entry-" + entryTS + " cf=" + completion + (bStaleCompletion?" (stale)":""));
-                            function.accept(underlyingObject, new SimpleSMREngineOptions(completion));
-                        }
+                backoff = 0;
+                if (isCheckpoint(entry))
+                {
+                    // someone has checkpointed the object up to here.
+                    commandsSinceCheckpoint = 0;
+                    bytesSinceCheckpoint = 0;
+                }
+                else if (entry instanceof ITransaction)
+                {
+                    ITransaction transaction = (ITransaction) entry;
+                    transaction.setCorfuDBRuntime(stream.getRuntime());
+                    transaction.executeTransaction(this);
+                }
+                else {
+                    try (TransactionalContext tc = new TransactionalContext(this, entry.getTimestamp(), stream.getRuntime())) {
+                        ISMREngineCommand<T> function = (ISMREngineCommand<T>) entry.getPayload();
+                        ITimestamp entryTS = entry.getTimestamp();
+                        CompletableFuture<Object> completion = completionTable.remove(entryTS.getAddress());
+                        // log.warn("syncing entry-" + entryTS + " cf=" + completion + (bStaleCompletion?" (stale)":""));
+                        function.accept(underlyingObject, new SimpleSMREngineOptions(completion));
                     }
-                } catch (Exception e) {
-                    log.error("exception during sync: ", e);
-                    log.warn("CJR: why is it ok to suppress an exception during sync?");
+                    commandsSinceCheckpoint++;
+                    bytesSinceCheckpoint += entry.getSize();
+                }
+            } catch (TrimmedException te) {
+                // the log was trimmed past the entries we have not applied yet, so a checkpoint after them covers them.
+                if (!restore(te))
+                {
+                    log.error("Stream {} is trimmed at {}, and no checkpoint covers it", stream.getStreamID(), te.getMessage());
+                    return;
                 }
-                streamPointer = stream.getCurrentPosition();
+            } catch (HoleEncounteredException he) {
+                // an entry before ts has a token but is still being written, for example by an
+                // asynchronous proposal.
+                // back off, up to MAX_HOLE_BACKOFF, until it is written or the hole filler fills it.
+                backoff = Math.min(Math.max(1, backoff * 2), MAX_HOLE_BACKOFF);
+                log.trace("{} during sync, retrying in {} ms", he.getMessage(), backoff);
+                try {
+                    Thread.sleep(backoff);
+                } catch (InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            } catch (Exception e) {
+                log.error("exception during sync: ", e);
+                log.warn("CJR: why is it ok to suppress an exception during sync?");
             }
+            streamPointer = stream.getCurrentPosition();
+        }
+    }
+
+    /**
+     * Synchronize the SMR engine as far as possible, and copy the object, so a transaction can
+     * execute against it without holding the engine lock.
+     *
+     * @return              The position the engine had read to, and a deep copy of the object at
+     *                      that position.
+     */
+    @SuppressWarnings("unchecked")
+    public Pair<ITimestamp, T> snapshot() {
+        sync(null);
+        synchronized (this)
+        {
+            return new Pair<ITimestamp, T>(streamPointer, (T) Serializer.copy(underlyingObject));
         }
     }
 
@@ -161,14 +382,14 @@ public class SimpleSMREngine<T> implements ISMREngine<T> {
     public ITimestamp propose(ISMREngineCommand<T> command, CompletableFuture<Object> completion, boolean readOnly) {
         if (readOnly)
         {
-            command.accept(underlyingObject, new SimpleSMREngineOptions(completion));
-            return streamPointer;
+            synchronized (this)
+            {
+                command.accept(underlyingObject, new SimpleSMREngineOptions(completion));
+                return streamPointer;
+            }
         }
         try {
-            ITimestamp t = stream.append(command);
-            if (completion != null) { completionTable.put(t, completion); }
-            lastProposal = t;
-            return t;
+            return proposeAsync(command, completion, false).join();
         }
         catch (Exception e)
         {
@@ -179,7 +400,60 @@ public class SimpleSMREngine<T> implements ISMREngine<T> {
     }
 
     /**
-     * Checkpoint the current state of the SMR engine.
+     * Propose a new command to the SMR engine, without waiting for it to be written. The
+     * completion is registered as soon as the command has a timestamp, before it is written,
+     * so a sync by another thread cannot apply the command without completing it.
+     *
+     * @param command       A lambda (BiConsumer) representing the command to be proposed.
+     *
+     * @param completion    A completable future which will be fulfilled once the command is proposed,
+     *                      which is to be completed by the command. If the command cannot be
+     *                      written, it is completed exceptionally.
+     *
+     * @param readOnly      Whether or not the command is read only.
+     *
+     * @return              A future which completes with the timestamp the command was proposed at,
+     *                      once the command has been written.
+     */
+    @Override
+    public CompletableFuture<ITimestamp> proposeAsync(ISMREngineCommand<T> command, CompletableFuture<Object> completion,
+                                                      boolean readOnly) {
+        if (readOnly)
+        {
+            return CompletableFuture.completedFuture(propose(command, completion, true));
+        }
+        final long[] reserved = new long[] { Long.MIN_VALUE };
+        return stream.appendAsync(command, t -> {
+            reserved[0] = t.getAddress();
+            if (completion != null && reserved[0] != Long.MIN_VALUE) { completionTable.put(reserved[0], completion); }
+        }).whenCompleteAsync((t, e) -> {
+            if (e != null)
+            {
+                log.warn("Proposal to stream {} failed", stream.getStreamID(), e);
+                if (reserved[0] != Long.MIN_VALUE) { completionTable.remove(reserved[0]); }
+                if (completion != null) { completion.completeExceptionally(e); }
+            }
+            else
+            {
+                lastProposal.accumulateAndGet(t, (last, next) -> last == null || next.compareTo(last) > 0 ? next : last);
+            }
+        }, proposalPool());
+    }
+
+    /**
+     * Get the pool the futures of asynchronous proposals complete on, which belongs to the runtime.
+     * Callers sync the engine when their proposal completes, and a sync waits for every earlier
+     * entry, so it must not hold a thread of the pool those entries are still waiting to be written on.
+     */
+    private Executor proposalPool() {
+        CorfuDBRuntime runtime = stream.getRuntime();
+        Executor pool = runtime == null ? null : runtime.getPool("smr-proposal");
+        return pool == null ? Runnable::run : pool;
+    }
+
+    /**
+     * Checkpoint the current state of the SMR engine. The engine is only locked while the
+     * object is serialized, not while the checkpoint is appended.
      *
      * @return The timestamp the checkpoint was inserted at.
      */
@@ -187,8 +461,19 @@ public class SimpleSMREngine<T> implements ISMREngine<T> {
     public ITimestamp checkpoint()
         throws IOException
     {
-        SMRCheckpoint<T> checkpoint = new SMRCheckpoint<T>(streamPointer, underlyingObject);
-        return stream.append(checkpoint);
+        SMRCheckpoint<T> checkpoint;
+        synchronized (this)
+        {
+            checkpoint = new SMRCheckpoint<T>(streamPointer, underlyingObject);
+            commandsSinceCheckpoint = 0;
+            bytesSinceCheckpoint = 0;
+        }
+        ITimestamp ts = stream.appendCheckpoint(checkpoint);
+        if (trimOnCheckpoint)
+        {
+            stream.trim(stream.getNextTimestamp(checkpoint.getTimestamp()));
+        }
+        return ts;
     }
 
     /**
@@ -198,7 +483,7 @@ public class SimpleSMREngine<T> implements ISMREngine<T> {
      */
     @Override
     public ITimestamp getLastProposal() {
-        return lastProposal;
+        return lastProposal.get();
     }
 
     /**
@@ -14,10 +14,12 @@ public class TimeTravelSMREngine<T> extends SimpleSMREngine<T> {
 
     ITimestamp lockTS;
 
-    public TimeTravelSMREngine(IStream stream, Class<T> type) { super(stream, type); }
+    public TimeTravelSMREngine(IStream stream, Class<T> type) { this(stream, type, new Object[0]); }
     public TimeTravelSMREngine(IStream stream, Class<T> type, Object[] initArgs)
     {
         super(stream, type, initArgs);
+        // travelling back needs the entries before the checkpoints.
+        trimOnCheckpoint = false;
     }
 
     /**
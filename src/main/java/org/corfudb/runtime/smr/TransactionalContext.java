@@ -19,6 +19,11 @@ public class TransactionalContext implements AutoCloseable {
      */
     public static ThreadLocal<ITransaction> currentTX = ThreadLocal.withInitial(() -> null);
 
+    /**
+     * The transaction of the enclosing context, which is restored when this context is closed.
+     */
+    final ITransaction previousTX = currentTX.get();
+
     /**
      * Create a new transactional context.
      * @param transaction   The transaction to execute this context under.
@@ -49,10 +54,11 @@ public class TransactionalContext implements AutoCloseable {
     }
 
     /**
-     * Closes this transactional context, releasing the currentTX held by the thread local.
+     * Closes this transactional context, restoring the currentTX of the enclosing context, if any.
+     * An engine which replays a transaction while syncing for another one must not end it.
      */
     @Override
     public void close() {
-        currentTX.set(null);
+        currentTX.set(previousTX);
     }
 }
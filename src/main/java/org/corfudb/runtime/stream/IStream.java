@@ -26,6 +26,8 @@ import java.io.Serializable;
 import java.util.List;
 import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
 
 /**
  *  A stream interface.
@@ -68,6 +70,60 @@ public interface IStream extends AutoCloseable {
         throw new RuntimeException("multi-stream append not supported by this IStream implementation.");
     }
 
+    /**
+     * Append an object to the stream asynchronously, so that a caller can keep several appends
+     * in flight. Streams which support this issue the append without blocking the caller; the
+     * default implementation appends synchronously.
+     *
+     * @param data      A serializable object to append to the stream.
+     *
+     * @param reserved  Called with the timestamp the object will be written at, before it is written.
+     *
+     * @return          A future which completes with the timestamp of the entry once it is written.
+     */
+    default CompletableFuture<ITimestamp> appendAsync(Serializable data, Consumer<ITimestamp> reserved) {
+        CompletableFuture<ITimestamp> f = new CompletableFuture<ITimestamp>();
+        try {
+            ITimestamp ts = append(data);
+            reserved.accept(ts);
+            f.complete(ts);
+        } catch (Exception e) {
+            f.completeExceptionally(e);
+        }
+        return f;
+    }
+
+    /**
+     * Append a checkpoint of an object built from this stream. Streams which support checkpoints
+     * mark the entry so that readLastCheckpoint() can find it without replaying the stream.
+     *
+     * @param checkpoint    The checkpoint to append.
+     *
+     * @return              A timestamp, which reflects the physical position and the epoch the data was written in.
+     */
+    default ITimestamp appendCheckpoint(Serializable checkpoint)
+            throws OutOfSpaceException, IOException {
+        return append(checkpoint);
+    }
+
+    /**
+     * Find the most recent checkpoint appended to this stream.
+     *
+     * @return              The entry containing the checkpoint, or null, if there is no checkpoint
+     *                      or the stream does not support checkpoints.
+     */
+    default IStreamEntry readLastCheckpoint()
+            throws TrimmedException, IOException {
+        return null;
+    }
+
+    /**
+     * Move the stream to a position, so that the next entry read is the first entry after it.
+     *
+     * @param ts            The position to move to.
+     */
+    void seek(ITimestamp ts);
+
    /**
      * Read the next entry in the stream as a IStreamEntry. This function
      * retrieves the next entry in the stream, or null, if there are no more entries in the stream.
@@ -77,6 +77,17 @@ public interface ITimestamp extends Comparable<ITimestamp>
         return false;
     }
 
+    /**
+     * Gets the address of the log entry this timestamp refers to, so that timestamps can be
+     * indexed without boxing.
+     *
+     * @return          The address, or Long.MIN_VALUE if the timestamp does not refer to a single address.
+     */
+    default long getAddress()
+    {
+        return Long.MIN_VALUE;
+    }
+
     /**
      * Default comparator for ITimestamp.
      *
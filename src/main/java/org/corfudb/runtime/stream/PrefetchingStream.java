@@ -0,0 +1,293 @@
+package org.corfudb.runtime.stream;
+
+import org.corfudb.runtime.CorfuDBRuntime;
+import org.corfudb.runtime.TrimmedException;
+import org.corfudb.runtime.UnwrittenException;
+import org.corfudb.runtime.entries.IStreamEntry;
+import org.corfudb.runtime.entries.SimpleStreamEntry;
+import org.corfudb.runtime.view.ISequencer;
+import org.corfudb.runtime.view.IWriteOnceAddressSpace;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * A simple stream which reads ahead, so the latency of its reads overlaps with processing the current entry.
+ * While the stream follows backpointers, every entry read ahead issues the read of the entry its backpointers
+ * (of this stream and of ALL_STREAMS) point to, so reads run down the chains ahead of the stream. While the
+ * stream scans, it issues an asynchronous batched read (multiRead) for the next addresses instead.
+ *
+ * At most depth reads are outstanding, and no new reads are issued while the entries which have been
+ * read ahead but not consumed take more than budget bytes. Outstanding reads are cancelled when the
+ * stream changes direction, and when it is closed. Reads ahead run on a pool of the runtime, and a stream
+ * without a runtime does not read ahead.
+ */
+public class PrefetchingStream extends SimpleStream implements IStream {
+
+    private static final Logger log = LoggerFactory.getLogger(PrefetchingStream.class);
+
+    public static final int DEFAULT_DEPTH = 16;
+    public static final long DEFAULT_BUDGET = 4 * 1024 * 1024;
+
+    final int depth;
+    final long budget;
+
+    /* Reads issued ahead of the stream, by address. Guards the state of the reads ahead, which is also
+     * updated from the pool as they complete, while the stream itself is locked by a reader.
+     */
+    final TreeMap<Long, Future<byte[]>> prefetched = new TreeMap<Long, Future<byte[]>>();
+    final List<Future<?>> batches = new ArrayList<Future<?>>();
+    long lastAddress = -1;
+    boolean forward = true;
+    boolean closed = false;
+
+    public PrefetchingStream(UUID streamID, ISequencer sequencer, IWriteOnceAddressSpace addressSpace, CorfuDBRuntime runtime) {
+        this(streamID, sequencer, addressSpace, runtime, DEFAULT_DEPTH, DEFAULT_BUDGET);
+    }
+
+    /**
+     * Open a prefetching stream.
+     * @param streamID          The id of the stream
+     * @param sequencer         A streaming sequencer to use
+     * @param addressSpace      A write once address space to use
+     * @param depth             The maximum number of reads to issue ahead of the stream.
+     * @param budget            The maximum number of bytes to hold in entries read ahead.
+     */
+    public PrefetchingStream(UUID streamID, ISequencer sequencer, IWriteOnceAddressSpace addressSpace, CorfuDBRuntime runtime,
+                             int depth, long budget) {
+        super(streamID, sequencer, addressSpace, runtime);
+        this.depth = depth;
+        this.budget = budget;
+    }
+
+    public PrefetchingStream(UUID streamID, CorfuDBRuntime runtime)
+    {
+        super(streamID, runtime);
+        this.depth = DEFAULT_DEPTH;
+        this.budget = DEFAULT_BUDGET;
+    }
+
+    @Override
+    protected byte[] readBytes(long address, long low, long high) throws UnwrittenException, TrimmedException {
+        Future<byte[]> f;
+        synchronized (prefetched)
+        {
+            // a jump ahead starts a walk down the backpointers from a tail, not a scan.
+            forward = address >= lastAddress && address - lastAddress <= depth;
+            lastAddress = address;
+            f = prefetched.remove(address);
+            // reads behind the direction we are reading in will not be used.
+            cancel(forward ? prefetched.headMap(address) : prefetched.tailMap(address, false));
+            if (forward)
+            {
+                prefetch(address, low, high);
+            }
+        }
+
+        byte[] data = null;
+        if (f != null)
+        {
+            try {
+                data = f.get();
+            } catch (ExecutionException ee) {
+                log.trace("Read ahead of address {} failed, reading again.", address, ee.getCause());
+            } catch (InterruptedException | CancellationException e) {
+                log.trace("Read ahead of address {} interrupted, reading again.", address);
+            }
+        }
+        if (data == null)
+        {
+            // unwritten entries may have been written since they were read ahead, so read again.
+            data = super.readBytes(address, low, high);
+            if (!forward)
+            {
+                follow(address, data, low, high);
+            }
+        }
+        return data;
+    }
+
+    /**
+     * Issue reads for the addresses following an address, for a stream which is scanning forwards.
+     */
+    private void prefetch(long address, long low, long high)
+    {
+        long buffered = buffered();
+        final List<Long> addresses = new ArrayList<Long>();
+        final List<CompletableFuture<byte[]>> reads = new ArrayList<CompletableFuture<byte[]>>();
+        for (int i = 1; i <= depth && prefetched.size() < depth && buffered < budget; i++)
+        {
+            long next = address + i;
+            if (next < low || next >= high)
+            {
+                break;
+            }
+            if (!prefetched.containsKey(next))
+            {
+                CompletableFuture<byte[]> read = new CompletableFuture<byte[]>();
+                prefetched.put(next, read);
+                addresses.add(next);
+                reads.add(read);
+            }
+        }
+        if (addresses.isEmpty())
+        {
+            return;
+        }
+
+        batches.removeIf(Future::isDone);
+        Future<?> batch = submit(() -> {
+            try {
+                // unwritten and trimmed entries are left out, and complete with null.
+                Map<Long, byte[]> results = addressSpace.multiRead(addresses);
+                for (int i = 0; i < addresses.size(); i++)
+                {
+                    reads.get(i).complete(results.get(addresses.get(i)));
+                }
+            } catch (Exception e) {
+                reads.forEach(r -> r.completeExceptionally(e));
+            }
+        });
+        if (batch == null)
+        {
+            addresses.forEach(prefetched::remove);
+            return;
+        }
+        batches.add(batch);
+    }
+
+    /**
+     * Issue the reads of the entries the backpointers of an entry point to, for a stream which is
+     * following backpointers. Each of those reads follows the backpointers of its entry in turn once
+     * it completes.
+     * @param address   The address of the entry.
+     * @param data      The entry.
+     */
+    private void follow(long address, byte[] data, long low, long high)
+    {
+        SimpleStreamEntry sse = SimpleStreamEntry.deserializeHeader(data);
+        if (sse == null)
+        {
+            return;
+        }
+        synchronized (prefetched)
+        {
+            if (forward || address > lastAddress)
+            {
+                // the stream has moved on, or is already reading below the entry.
+                return;
+            }
+            for (UUID chain : new UUID[] { streamID, IStreamEntry.ALL_STREAMS })
+            {
+                final long next = sse.getBackpointer(chain);
+                if (next < low || next >= high || next >= address || prefetched.containsKey(next)
+                        || prefetched.size() >= depth || buffered() >= budget)
+                {
+                    continue;
+                }
+                final CompletableFuture<byte[]> read = new CompletableFuture<byte[]>();
+                prefetched.put(next, read);
+                Future<?> task = submit(() -> {
+                    byte[] entry = null;
+                    try {
+                        entry = addressSpace.read(next);
+                    } catch (UnwrittenException | TrimmedException e) {
+                        // complete with null, the stream reads the address itself.
+                    } catch (Exception e) {
+                        read.completeExceptionally(e);
+                        return;
+                    }
+                    read.complete(entry);
+                    if (entry != null)
+                    {
+                        follow(next, entry, low, high);
+                    }
+                });
+                if (task == null)
+                {
+                    prefetched.remove(next);
+                }
+            }
+        }
+    }
+
+    /**
+     * Run a read ahead on the prefetch pool of the runtime.
+     * @return  The future of the read, or null if it could not be issued.
+     */
+    private Future<?> submit(Runnable read)
+    {
+        ExecutorService pool = runtime == null || closed ? null : runtime.getPool("stream-prefetch");
+        if (pool == null)
+        {
+            return null;
+        }
+        try {
+            return pool.submit(read);
+        } catch (RejectedExecutionException ree) {
+            return null;
+        }
+    }
+
+    private long buffered()
+    {
+        long buffered = 0;
+        for (Future<byte[]> f : prefetched.values())
+        {
+            buffered += bufferedSize(f);
+        }
+        return buffered;
+    }
+
+    private static long bufferedSize(Future<byte[]> f)
+    {
+        if (!f.isDone() || f.isCancelled())
+        {
+            return 0;
+        }
+        try {
+            byte[] data = f.get();
+            return data == null ? 0 : data.length;
+        } catch (InterruptedException | ExecutionException e) {
+            return 0;
+        }
+    }
+
+    private static void cancel(Map<Long, Future<byte[]>> reads)
+    {
+        Iterator<Future<byte[]>> i = reads.values().iterator();
+        while (i.hasNext())
+        {
+            i.next().cancel(true);
+            i.remove();
+        }
+    }
+
+    /**
+     * Close the stream, cancelling any reads issued ahead of it.
+     */
+    @Override
+    public void close() {
+        synchronized (prefetched)
+        {
+            closed = true;
+            cancel(prefetched);
+            batches.forEach(b -> b.cancel(true));
+            batches.clear();
+        }
+        super.close();
+    }
+}
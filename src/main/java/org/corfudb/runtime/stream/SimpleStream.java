@@ -3,12 +3,23 @@ package org.corfudb.runtime.stream;
 import org.corfudb.runtime.*;
 import org.corfudb.runtime.entries.IStreamEntry;
 import org.corfudb.runtime.entries.SimpleStreamEntry;
+import org.corfudb.runtime.protocols.sequencers.BackpointerToken;
 import org.corfudb.runtime.view.*;
 
 import java.io.IOException;
 import java.io.Serializable;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeMap;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
 
 /**
  * Created by mwei on 4/30/15.
@@ -21,6 +32,12 @@ public class SimpleStream implements IStream {
     AtomicLong streamPointer;
     transient CorfuDBRuntime runtime;
 
+    /* Entries of this stream which have been located but not returned yet, and the
+     * position the stream pointer moves to once they have all been returned.
+     */
+    transient Deque<IStreamEntry> pending;
+    transient long pendingLimit = 0;
+
     /**
      * Open a simple stream. If the simple stream already exists, it is re-opened.
      * @param streamID          The id of the stream
@@ -53,10 +70,112 @@ public class SimpleStream implements IStream {
      */
     @Override
     public ITimestamp append(Serializable data) throws OutOfSpaceException, IOException {
-        long sequence = sequencer.getNext();
-        SimpleTimestamp timestamp = new SimpleTimestamp(sequence);
-        addressSpace.write(sequence, new SimpleStreamEntry(streamID, data, timestamp));
-        return timestamp;
+        return append(data, SimpleStreamEntry.TYPE_DATA);
+    }
+
+    /**
+     * Append a checkpoint to the stream. The entry is marked as a checkpoint in its header,
+     * so readLastCheckpoint() finds it by following the backpointers of the stream.
+     *
+     * @param checkpoint The checkpoint to append.
+     * @return A timestamp, which reflects the physical position and the epoch the data was written in.
+     */
+    @Override
+    public ITimestamp appendCheckpoint(Serializable checkpoint) throws OutOfSpaceException, IOException {
+        return append(checkpoint, SimpleStreamEntry.TYPE_CHECKPOINT);
+    }
+
+    private ITimestamp append(Serializable data, byte type) throws OutOfSpaceException, IOException {
+        SimpleStreamEntry entry = reserve(data, type);
+        addressSpace.write(((SimpleTimestamp) entry.getTimestamp()).address, entry.serialize());
+        return entry.getTimestamp();
+    }
+
+    /**
+     * Append an object to several streams at once. A single token is issued for all of the streams,
+     * and a single entry is written, chained on the backpointers of each stream, so only the readers
+     * of those streams find it.
+     *
+     * @param data      A serializable object to append.
+     * @param streams   The streams the object is appended to.
+     * @return A timestamp, which reflects the physical position and the epoch the data was written in.
+     */
+    @Override
+    public ITimestamp append(Serializable data, Set<UUID> streams) throws OutOfSpaceException, IOException {
+        if (streams.isEmpty())
+        {
+            throw new IllegalArgumentException("An entry must be appended to at least one stream");
+        }
+        List<UUID> ids = new ArrayList<UUID>(streams);
+        SimpleStreamEntry entry;
+        if (sequencer instanceof IStreamingSequencer)
+        {
+            List<BackpointerToken> tokens = ((IStreamingSequencer) sequencer).getNextBackpointers(ids, 1);
+            entry = new SimpleStreamEntry(ids, data, new SimpleTimestamp(tokens.get(0).position));
+            for (int i = 0; i < ids.size(); i++)
+            {
+                entry.backpointers[i] = tokens.get(i).previous;
+            }
+        }
+        else
+        {
+            entry = new SimpleStreamEntry(ids, data, new SimpleTimestamp(sequencer.getNext()));
+        }
+        addressSpace.write(((SimpleTimestamp) entry.getTimestamp()).address, entry.serialize());
+        return entry.getTimestamp();
+    }
+
+    /**
+     * Get a token for an entry of this stream.
+     * @return The entry, with the timestamp and backpointer of the token.
+     */
+    private SimpleStreamEntry reserve(Serializable data, byte type) {
+        SimpleStreamEntry entry;
+        if (sequencer instanceof IStreamingSequencer)
+        {
+            BackpointerToken token = ((IStreamingSequencer) sequencer).getNextBackpointer(streamID, 1);
+            entry = new SimpleStreamEntry(streamID, data, new SimpleTimestamp(token.position), token.previous);
+        }
+        else
+        {
+            entry = new SimpleStreamEntry(streamID, data, new SimpleTimestamp(sequencer.getNext()));
+        }
+        entry.type = type;
+        return entry;
+    }
+
+    /**
+     * Append an object to the stream asynchronously. The token is requested from a pool thread,
+     * so concurrent appends are coalesced into a single sequencer request, and the entry is
+     * written with the asynchronous write of the address space.
+     *
+     * @param data     A serializable object to append to the stream.
+     * @param reserved Called with the timestamp the object will be written at, before it is written.
+     * @return A future which completes with the timestamp of the entry once it is written.
+     */
+    @Override
+    public CompletableFuture<ITimestamp> appendAsync(Serializable data, Consumer<ITimestamp> reserved) {
+        return CompletableFuture.supplyAsync(() -> {
+            SimpleStreamEntry entry = reserve(data, SimpleStreamEntry.TYPE_DATA);
+            byte[] bytes;
+            try {
+                bytes = entry.serialize();
+            } catch (IOException e) {
+                throw new CompletionException(e);
+            }
+            reserved.accept(entry.getTimestamp());
+            return addressSpace.writeAsync(((SimpleTimestamp) entry.getTimestamp()).address, bytes)
+                    .thenApply(v -> entry.getTimestamp());
+        }, appendPool()).thenCompose(write -> write);
+    }
+
+    /**
+     * Get the pool asynchronous appends request their tokens from, which belongs to the runtime.
+     * Without a runtime, tokens are requested before appendAsync() returns.
+     */
+    private Executor appendPool() {
+        Executor pool = runtime == null ? null : runtime.getPool("stream-append");
+        return pool == null ? Runnable::run : pool;
     }
 
 
@@ -69,30 +188,218 @@ public class SimpleStream implements IStream {
      */
     @Override
     public IStreamEntry readNextEntry() throws HoleEncounteredException, TrimmedException, IOException {
-        long current = sequencer.getCurrent();
         synchronized (this)
         {
-            for (long i = streamPointer.get(); i < current; i++) {
-                try {
-                    IStreamEntry sse = (IStreamEntry) addressSpace.readObject(i);
-                    sse.setTimestamp(new SimpleTimestamp(i));
-                    streamPointer.set(i+1);
-                    if (sse.containsStream(streamID)) {
-                        return sse;
-                    }
-                } catch (ClassNotFoundException | ClassCastException e) {
-                    //ignore, not a entry we understand.
-                }
-                catch (UnwrittenException ue)
+            if (pending == null)
+            {
+                pending = new ArrayDeque<IStreamEntry>();
+            }
+            if (pending.isEmpty())
+            {
+                locateEntries();
+            }
+            IStreamEntry sse = pending.pollFirst();
+            if (sse == null)
+            {
+                streamPointer.set(Math.max(streamPointer.get(), pendingLimit));
+                return null;
+            }
+            streamPointer.set(((SimpleTimestamp) sse.getTimestamp()).address + 1);
+            return unwrap(sse);
+        }
+    }
+
+    /**
+     * Locate the entries of this stream after the stream pointer, by following the backpointers
+     * of this stream and of ALL_STREAMS back from their tails. Where a chain is broken (an entry
+     * without a backpointer, or a sequencer which does not track streams), the rest of the range
+     * is scanned instead. Entries at or after a hole are not returned until the hole is written.
+     */
+    private void locateEntries() throws HoleEncounteredException, TrimmedException, IOException {
+        long start = streamPointer.get();
+        BackpointerToken own;
+        BackpointerToken all;
+        if (sequencer instanceof IStreamingSequencer)
+        {
+            // read our tail first: any token of ours issued before the current position is then at or before it.
+            own = ((IStreamingSequencer) sequencer).getNextBackpointer(streamID, 0);
+            all = ((IStreamingSequencer) sequencer).getNextBackpointer(IStreamEntry.ALL_STREAMS, 0);
+        }
+        else
+        {
+            own = new BackpointerToken(sequencer.getCurrent(), BackpointerToken.UNKNOWN_PREVIOUS);
+            all = new BackpointerToken(own.position, BackpointerToken.NO_PREVIOUS);
+        }
+        long limit = own.position;
+        TreeMap<Long, IStreamEntry> found = new TreeMap<Long, IStreamEntry>();
+        long[] hole = new long[] { limit };
+
+        long scanTo = Math.max(walk(streamID, own.previous, start, limit, found, hole),
+                               walk(IStreamEntry.ALL_STREAMS, all.previous, start, limit, found, hole));
+        for (long i = start; i < Math.min(scanTo, hole[0]); i++)
+        {
+            if (found.containsKey(i)) { continue; }
+            try {
+                IStreamEntry sse = read(i, start, scanTo);
+                if (sse != null && sse.containsStream(streamID))
                 {
-                    //hole, should fill.
-                    throw new HoleEncounteredException(ue.address);
+                    found.put(i, sse);
                 }
+            } catch (UnwrittenException ue) {
+                hole[0] = i;
             }
         }
+
+        found.tailMap(hole[0], true).clear();
+        if (found.isEmpty() && hole[0] < limit)
+        {
+            reportHole(hole[0]);
+            throw new HoleEncounteredException(hole[0]);
+        }
+        pending.addAll(found.values());
+        pendingLimit = hole[0];
+    }
+
+    /**
+     * Report an address the stream stopped at because it is unwritten to the hole filler of the runtime,
+     * which fills it if it stays unwritten, so the stream can move past it.
+     */
+    private void reportHole(long address) {
+        if (runtime != null)
+        {
+            runtime.getHoleFiller().report(address);
+        }
+    }
+
+    /**
+     * Follow a chain of backpointers back to the start address.
+     * @return  The address below which the chain is not known, and must be scanned.
+     */
+    private long walk(UUID chain, long address, long start, long limit, TreeMap<Long, IStreamEntry> found, long[] hole)
+            throws TrimmedException, IOException {
+        while (address >= start)
+        {
+            IStreamEntry sse;
+            try {
+                sse = read(address, start, limit);
+            } catch (UnwrittenException ue) {
+                hole[0] = Math.min(hole[0], address);
+                return address;
+            }
+            if (sse != null && address < limit && sse.containsStream(streamID))
+            {
+                found.put(address, sse);
+            }
+            long previous = sse == null ? BackpointerToken.UNKNOWN_PREVIOUS : sse.getBackpointer(chain);
+            if (previous == BackpointerToken.UNKNOWN_PREVIOUS)
+            {
+                return address;
+            }
+            address = previous;
+        }
+        return address == BackpointerToken.UNKNOWN_PREVIOUS ? limit : start;
+    }
+
+    /**
+     * Read the entry at an address. Only the header of the entry is decoded, unless the entry
+     * was written without a header.
+     * @param low       The lowest address the stream expects to read next.
+     * @param high      The address below which the stream expects to read next.
+     */
+    private IStreamEntry read(long address, long low, long high) throws UnwrittenException, TrimmedException, IOException {
+        try {
+            IStreamEntry sse = SimpleStreamEntry.deserializeHeader(readBytes(address, low, high));
+            if (sse == null)
+            {
+                sse = (IStreamEntry) addressSpace.readObject(address);
+            }
+            sse.setTimestamp(new SimpleTimestamp(address));
+            return sse;
+        } catch (ClassNotFoundException | ClassCastException e) {
+            //not a entry we understand.
+            return null;
+        }
+    }
+
+    /**
+     * Read the raw log entry at an address. The stream will read from addresses in [low, high) next,
+     * which subclasses may use to read ahead.
+     * @param address   The address to read.
+     * @param low       The lowest address the stream expects to read next.
+     * @param high      The address below which the stream expects to read next.
+     * @return          The log entry at the address.
+     */
+    protected byte[] readBytes(long address, long low, long high) throws UnwrittenException, TrimmedException {
+        return addressSpace.read(address);
+    }
+
+    /**
+     * Returns the entry to hand to the reader. A transaction is its own stream entry,
+     * so its payload is deserialized and returned instead.
+     */
+    private IStreamEntry unwrap(IStreamEntry sse) {
+        if (sse instanceof SimpleStreamEntry && ((SimpleStreamEntry) sse).getType() == SimpleStreamEntry.TYPE_TRANSACTION)
+        {
+            IStreamEntry tx = (IStreamEntry) sse.getPayload();
+            tx.setTimestamp(sse.getTimestamp());
+            return tx;
+        }
+        return sse;
+    }
+
+    /**
+     * Find the most recent checkpoint appended to this stream, by following the backpointers of
+     * the stream back from its tail. Only the headers of the entries are decoded on the way.
+     *
+     * @return The entry containing the checkpoint, or null, if there is no checkpoint, or the
+     * backpointers of the stream are broken before one is found.
+     */
+    @Override
+    public IStreamEntry readLastCheckpoint() throws TrimmedException, IOException {
+        if (!(sequencer instanceof IStreamingSequencer))
+        {
+            return null;
+        }
+        long address = ((IStreamingSequencer) sequencer).getNextBackpointer(streamID, 0).previous;
+        while (address >= 0)
+        {
+            IStreamEntry sse;
+            try {
+                sse = read(address, 0, address);
+            } catch (UnwrittenException ue) {
+                return null;
+            }
+            if (sse == null)
+            {
+                return null;
+            }
+            if (sse instanceof SimpleStreamEntry && ((SimpleStreamEntry) sse).getType() == SimpleStreamEntry.TYPE_CHECKPOINT)
+            {
+                return sse;
+            }
+            address = sse.getBackpointer(streamID);
+        }
         return null;
     }
 
+    /**
+     * Move the stream to a position, so that the next entry read is the first entry after it.
+     *
+     * @param ts The position to move to.
+     */
+    @Override
+    public void seek(ITimestamp ts) {
+        synchronized (this)
+        {
+            if (pending != null)
+            {
+                pending.clear();
+            }
+            pendingLimit = 0;
+            streamPointer.set(((SimpleTimestamp) ts).address + 1);
+        }
+    }
+
     /**
      * Given a timestamp, reads the entry at the timestamp
      *
@@ -102,17 +409,18 @@ public class SimpleStream implements IStream {
     @Override
     public IStreamEntry readEntry(ITimestamp timestamp) throws HoleEncounteredException, TrimmedException, IOException {
         try {
-            IStreamEntry sse = (IStreamEntry) addressSpace.readObject(((SimpleTimestamp)timestamp).address);
-            sse.setTimestamp(new SimpleTimestamp(((SimpleTimestamp)timestamp).address));
+            long address = ((SimpleTimestamp)timestamp).address;
+            IStreamEntry sse = read(address, address, address + 1);
+            if (sse == null) {
+                throw new HoleEncounteredException(((SimpleTimestamp)timestamp).address);
+            }
             if (sse.containsStream(streamID)) {
-                return sse;
+                return unwrap(sse);
             }
-        } catch (ClassNotFoundException | ClassCastException e) {
-            throw new HoleEncounteredException(((SimpleTimestamp)timestamp).address);
         }
         catch (UnwrittenException ue)
         {
-            //hole, should fill.
+            reportHole(((SimpleTimestamp)timestamp).address);
             throw new HoleEncounteredException(ue.address);
         }
         throw new HoleEncounteredException(((SimpleTimestamp)timestamp).address);
@@ -166,15 +474,31 @@ public class SimpleStream implements IStream {
     }
 
     /**
-     * Requests a trim on this stream. This function informs the configuration master that the
-     * position on this stream is trimmable, and moves the start position of this stream to the
-     * new position.
+     * Requests a trim on this stream. This function publishes the position as the low-water mark of
+     * this stream through the log trimmer of the runtime, and moves the start position of this stream
+     * to the new position. The log is trimmed once every stream in the log has a mark past it.
      *
-     * @param address
+     * @param address The position before which the entries of this stream are no longer needed.
      */
     @Override
     public void trim(ITimestamp address) {
-
+        long mark = ((SimpleTimestamp) address).address;
+        synchronized (this)
+        {
+            if (streamPointer.get() < mark)
+            {
+                if (pending != null)
+                {
+                    pending.clear();
+                }
+                pendingLimit = 0;
+                streamPointer.set(mark);
+            }
+        }
+        if (runtime != null)
+        {
+            runtime.getLogTrimmer().reportLowWaterMark(streamID, mark);
+        }
     }
 
 
@@ -44,6 +44,16 @@ public class SimpleTimestamp implements ITimestamp, Serializable {
         throw new ClassCastException("Unknown timestamp!");
     }
 
+    /**
+     * Gets the address of the log entry this timestamp refers to.
+     *
+     * @return The address.
+     */
+    @Override
+    public long getAddress() {
+        return address;
+    }
+
     @Override
     public boolean equals(Object o)
     {
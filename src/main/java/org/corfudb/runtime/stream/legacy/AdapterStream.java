@@ -128,6 +128,22 @@ public class AdapterStream implements IAdapterStream
         return ret;
     }
 
+    /**
+     * Move the stream to a position, so that the next entry read is the first entry after it.
+     *
+     * @param ts The position to move to.
+     */
+    @Override
+    public void seek(ITimestamp ts) {
+        long address = ts instanceof Timestamp ? ((Timestamp) ts).pos : ((SimpleTimestamp) ts).address;
+        biglock.lock();
+        try {
+            curpos = address + 1;
+        } finally {
+            biglock.unlock();
+        }
+    }
+
     public ITimestamp checkTail()
     {
         long tcurtail = seq.getCurrent(streamuuid);
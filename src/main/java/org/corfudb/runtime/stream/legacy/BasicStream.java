@@ -114,6 +114,21 @@ public class BasicStream implements IStream
         return ret;
     }
 
+    /**
+     * Move the stream to a position, so that the next entry read is the first entry after it.
+     *
+     * @param ts The position to move to.
+     */
+    @Override
+    public void seek(ITimestamp ts) {
+        biglock.lock();
+        try {
+            curpos = ((SimpleTimestamp) ts).address + 1;
+        } finally {
+            biglock.unlock();
+        }
+    }
+
 //    public ITimestamp checkTail()
 //    {
 //        long tcurtail = seq.getCurrent(streamid);
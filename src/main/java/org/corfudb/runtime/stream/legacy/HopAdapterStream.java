@@ -187,6 +187,16 @@ class HopAdapterStream implements IAdapterStream
         return null;
     }
 
+    /**
+     * Move the stream to a position, so that the next entry read is the first entry after it.
+     *
+     * @param ts The position to move to.
+     */
+    @Override
+    public void seek(ITimestamp ts) {
+        hopstream.seek(ts);
+    }
+
     public ITimestamp checkTail()
     {
         ITimestamp curtail = hopstream.check();
@@ -1,11 +1,31 @@
 package org.corfudb.runtime.view;
 
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
 import com.googlecode.concurrentlinkedhashmap.ConcurrentLinkedHashMap;
-import java.util.concurrent.ConcurrentMap;
+import com.googlecode.concurrentlinkedhashmap.EntryWeigher;
+import com.googlecode.concurrentlinkedhashmap.EvictionListener;
+
+import java.util.Objects;
 import java.util.UUID;
 
-public class AddressSpaceCache
+/**
+ * A cache of log entries, keyed by log and address, and bounded by the size of the entries it holds.
+ * Each runtime owns its caches (see CorfuDBRuntime.getAddressSpaceCache()), and reports hits, misses,
+ * evictions and the number of bytes held to the runtime's metrics registry.
+ *
+ * The cached value may be the entry itself or an object deserialized from it; either way it is weighed
+ * by the size of the entry, plus a fixed overhead for the key.
+ */
+public class AddressSpaceCache<V>
 {
+    /** The default capacity of a cache, in bytes. */
+    public static final long DEFAULT_CAPACITY = 64 * 1024 * 1024;
+
+    /** The approximate size of a key and its map node, in bytes. */
+    static final int ENTRY_OVERHEAD = 64;
+
     public static class CacheAddress {
         public UUID log;
         public Long physicalPos;
@@ -17,7 +37,7 @@ public class AddressSpaceCache
         @Override
         public int hashCode()
         {
-            return this.physicalPos.intValue();
+            return 31 * Objects.hashCode(log) + physicalPos.hashCode();
         }
         @Override
         public boolean equals(Object o)
@@ -25,7 +45,7 @@ public class AddressSpaceCache
             if(o instanceof CacheAddress)
             {
                 CacheAddress c = (CacheAddress) o;
-                if (c.log.equals(log) && c.physicalPos.equals(physicalPos))
+                if (Objects.equals(c.log, log) && c.physicalPos.equals(physicalPos))
                 {
                     return true;
                 }
@@ -35,19 +55,100 @@ public class AddressSpaceCache
         }
     }
 
-    public static ConcurrentMap<CacheAddress, byte[]> Cache = new ConcurrentLinkedHashMap.Builder<CacheAddress, byte[]>()
-                                                                                        .maximumWeightedCapacity(4000)
-                                                                                        .build();
+    static class CachedValue<V> {
+        final V value;
+        final int weight;
+        CachedValue(V value, int weight)
+        {
+            this.value = value;
+            this.weight = weight;
+        }
+    }
+
+    private final ConcurrentLinkedHashMap<CacheAddress, CachedValue<V>> cache;
+    private final Meter hits;
+    private final Meter misses;
+    private final Meter evictions;
+
+    /**
+     * Create a cache.
+     * @param capacity      The maximum number of bytes to hold.
+     * @param metrics       The registry to report to.
+     * @param name          The name the metrics are registered under.
+     */
+    public AddressSpaceCache(long capacity, MetricRegistry metrics, String name)
+    {
+        this.hits = metrics.meter(MetricRegistry.name(name, "hits"));
+        this.misses = metrics.meter(MetricRegistry.name(name, "misses"));
+        this.evictions = metrics.meter(MetricRegistry.name(name, "evictions"));
+        this.cache = new ConcurrentLinkedHashMap.Builder<CacheAddress, CachedValue<V>>()
+                .maximumWeightedCapacity(capacity)
+                .weigher(new EntryWeigher<CacheAddress, CachedValue<V>>() {
+                    @Override
+                    public int weightOf(CacheAddress key, CachedValue<V> value) {
+                        return value.weight;
+                    }
+                })
+                .listener(new EvictionListener<CacheAddress, CachedValue<V>>() {
+                    @Override
+                    public void onEviction(CacheAddress key, CachedValue<V> value) {
+                        evictions.mark();
+                    }
+                })
+                .build();
+        // a cache replacing another one under the same name takes over its gauges.
+        metrics.remove(MetricRegistry.name(name, "bytes"));
+        metrics.remove(MetricRegistry.name(name, "entries"));
+        metrics.register(MetricRegistry.name(name, "bytes"), (Gauge<Long>) cache::weightedSize);
+        metrics.register(MetricRegistry.name(name, "entries"), (Gauge<Integer>) cache::size);
+    }
 
-    public static void put(UUID log, Long physicalPos, byte[] payload)
+    /**
+     * Cache an entry. Entries in the log are write once, so an entry which is already cached is kept.
+     * @param log           The log the entry belongs to.
+     * @param physicalPos   The address of the entry.
+     * @param payload       The value to cache.
+     * @param size          The size of the entry, in bytes.
+     */
+    public void put(UUID log, Long physicalPos, V payload, int size)
     {
         CacheAddress c = new CacheAddress(log, physicalPos);
-        Cache.putIfAbsent(c, payload);
+        cache.putIfAbsent(c, new CachedValue<V>(payload, size + ENTRY_OVERHEAD));
     }
 
-    public static byte[] get(UUID log, Long physicalPos)
+    /**
+     * Get a cached entry.
+     * @param log           The log the entry belongs to.
+     * @param physicalPos   The address of the entry.
+     * @return              The cached value, or null, if the entry is not cached.
+     */
+    public V get(UUID log, Long physicalPos)
     {
         CacheAddress c = new CacheAddress(log, physicalPos);
-        return Cache.get(c);
+        CachedValue<V> v = cache.get(c);
+        if (v == null)
+        {
+            misses.mark();
+            return null;
+        }
+        hits.mark();
+        return v.value;
+    }
+
+    /**
+     * Remove every entry from the cache.
+     */
+    public void clear()
+    {
+        cache.clear();
+    }
+
+    /**
+     * Get the number of bytes the cache holds.
+     * @return              The total weight of the cached entries.
+     */
+    public long getWeightedSize()
+    {
+        return cache.weightedSize();
     }
 }
@@ -20,8 +20,13 @@ import org.corfudb.runtime.CorfuDBRuntime;
 import org.corfudb.runtime.protocols.IServerProtocol;
 import org.corfudb.runtime.protocols.logunits.IWriteOnceLogUnit;
 
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 
+import com.codahale.metrics.MetricRegistry;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -43,12 +48,14 @@ public class CachedWriteOnceAddressSpace implements IWriteOnceAddressSpace {
     private UUID logID;
     private CorfuDBView view;
     private Supplier<CorfuDBView> getView;
+    private AddressSpaceCache<byte[]> cache;
 
 	private final Logger log = LoggerFactory.getLogger(CachedWriteOnceAddressSpace.class);
 
     public CachedWriteOnceAddressSpace(CorfuDBRuntime client)
     {
         this.client = client;
+        this.cache = client.getAddressSpaceCache();
         this.getView = () ->  {
             return this.client.getView();
         };
@@ -58,6 +65,7 @@ public class CachedWriteOnceAddressSpace implements IWriteOnceAddressSpace {
     public CachedWriteOnceAddressSpace(CorfuDBRuntime client, UUID logID)
     {
         this.client = client;
+        this.cache = client.getAddressSpaceCache();
         this.logID = logID;
         this.getView = () -> {
             try {
@@ -74,16 +82,47 @@ public class CachedWriteOnceAddressSpace implements IWriteOnceAddressSpace {
     public CachedWriteOnceAddressSpace(CorfuDBView view)
     {
         this.view = view;
+        this.cache = new AddressSpaceCache<byte[]>(AddressSpaceCache.DEFAULT_CAPACITY, new MetricRegistry(),
+                MetricRegistry.name(CachedWriteOnceAddressSpace.class, "cache"));
         this.getView = () -> {
             return this.view;
         };
         this.logID = getView.get().getUUID();
     }
 
+    /**
+     * Replace the cache used by this address space.
+     * @param cache     The cache to use.
+     */
+    public void setCache(AddressSpaceCache<byte[]> cache)
+    {
+        this.cache = cache;
+    }
+
+    /**
+     * Write an entry asynchronously, on the async write pool of the runtime.
+     * @param address       The address to write to.
+     * @param data          The payload to write.
+     * @return              A future which completes once the entry is written.
+     */
+    @Override
+    public CompletableFuture<Void> writeAsync(long address, byte[] data)
+    {
+        return writeAsync(address, data, client == null ? null : client.getPool("async-write"));
+    }
+
     public void write(long address, Serializable s)
         throws IOException, OverwriteException, TrimmedException
     {
-        write(address, Serializer.serialize_compressed(s));
+        if (client == null)
+        {
+            write(address, Serializer.serialize_compressed(s));
+        }
+        else
+        {
+            write(address, Serializer.serialize_compressed(s, client.getCompressionCodec(),
+                    client.getCompressionThreshold()));
+        }
     }
 
     public void write(long address, byte[] data)
@@ -92,18 +131,9 @@ public class CachedWriteOnceAddressSpace implements IWriteOnceAddressSpace {
         while (true)
         {
             try {
-                //TODO: handle multiple segments
-                CorfuDBViewSegment segments =  getView.get().getSegments().get(0);
-                int mod = segments.getGroups().size();
-                int groupnum =(int) (address % mod);
-                List<IServerProtocol> chain = segments.getGroups().get(groupnum);
-                //writes have to go to chain in order
-                long mappedAddress = address/mod;
-                for (IServerProtocol unit : chain)
-                {
-                    ((IWriteOnceLogUnit)unit).write(mappedAddress,data);
-                    return;
-                }
+                WriteOnceAddressSpace.write(getView.get().getRoutingTable(), address, data,
+                        WriteOnceAddressSpace.getReplicaPool(client));
+                return;
             }
             catch (NetworkException e)
             {
@@ -113,31 +143,38 @@ public class CachedWriteOnceAddressSpace implements IWriteOnceAddressSpace {
         }
     }
 
+    @Override
+    public void trim(long address)
+    {
+        while (true)
+        {
+            try {
+                WriteOnceAddressSpace.trim(getView.get().getRoutingTable(), address);
+                return;
+            }
+            catch (NetworkException e)
+            {
+                log.warn("Unable to trim, requesting new view.", e);
+                client.invalidateViewAndWait(e);
+            }
+        }
+    }
+
     public byte[] read(long address)
         throws UnwrittenException, TrimmedException
     {
-        //TODO: cache the layout so we don't have to determine it on every write.
-
         while (true)
         {
             try {
                 byte[] data = null;
-                data = AddressSpaceCache.get(logID, address);
+                data = cache.get(logID, address);
                 if (data != null) {
                     return data;
                 }
 
-                //TODO: handle multiple segments
-                CorfuDBViewSegment segments =  getView.get().getSegments().get(0);
-                int mod = segments.getGroups().size();
-                int groupnum =(int) (address % mod);
-                long mappedAddress = address/mod;
-
-                List<IServerProtocol> chain = segments.getGroups().get(groupnum);
-                //reads have to come from last unit in chain
-                IWriteOnceLogUnit wolu = (IWriteOnceLogUnit) chain.get(chain.size() - 1);
-                data = wolu.read(mappedAddress);
-                AddressSpaceCache.put(logID, address, data);
+                data = WriteOnceAddressSpace.read(getView.get().getRoutingTable(), address,
+                        WriteOnceAddressSpace.getReadPolicy(client), WriteOnceAddressSpace.getReplicaPool(client));
+                cache.put(logID, address, data, data.length);
                 return data;
             }
             catch (NetworkException e)
@@ -148,6 +185,64 @@ public class CachedWriteOnceAddressSpace implements IWriteOnceAddressSpace {
         }
     }
 
+    @Override
+    public void multiWrite(Map<Long, byte[]> entries)
+        throws OverwriteException, TrimmedException
+    {
+        while (true)
+        {
+            try {
+                WriteOnceAddressSpace.multiWrite(getView.get().getRoutingTable(), entries,
+                        WriteOnceAddressSpace.getReplicaPool(client));
+                return;
+            }
+            catch (NetworkException e)
+            {
+                log.warn("Unable to write, requesting new view.", e);
+                client.invalidateViewAndWait(e);
+            }
+        }
+    }
+
+    @Override
+    public Map<Long, byte[]> multiRead(List<Long> addresses)
+    {
+        HashMap<Long, byte[]> results = new HashMap<Long, byte[]>();
+        ArrayList<Long> misses = new ArrayList<Long>();
+        for (Long address : addresses)
+        {
+            byte[] data = cache.get(logID, address);
+            if (data != null) {
+                results.put(address, data);
+            }
+            else {
+                misses.add(address);
+            }
+        }
+        if (misses.isEmpty()) {
+            return results;
+        }
+
+        while (true)
+        {
+            try {
+                Map<Long, byte[]> read = WriteOnceAddressSpace.multiRead(getView.get().getRoutingTable(), misses,
+                        WriteOnceAddressSpace.getReadPolicy(client), WriteOnceAddressSpace.getReplicaPool(client));
+                for (Map.Entry<Long, byte[]> e : read.entrySet())
+                {
+                    cache.put(logID, e.getKey(), e.getValue(), e.getValue().length);
+                }
+                results.putAll(read);
+                return results;
+            }
+            catch (NetworkException e)
+            {
+                log.warn("Unable to read, requesting new view.", e);
+                client.invalidateViewAndWait(e);
+            }
+        }
+    }
+
     public Object readObject(long address)
         throws UnwrittenException, TrimmedException, ClassNotFoundException, IOException
     {
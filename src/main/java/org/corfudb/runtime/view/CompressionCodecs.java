@@ -0,0 +1,52 @@
+package org.corfudb.runtime.view;
+
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The registry of compression codecs, by id.
+ */
+public class CompressionCodecs {
+
+    /** Payloads written without compression. */
+    public static final byte NONE = 0;
+
+    /** The default size below which payloads are not compressed, in bytes. */
+    public static final int DEFAULT_THRESHOLD = 1024;
+
+    public static final ICompressionCodec LZ = new LZCodec();
+    public static final ICompressionCodec DEFLATE = new DeflateCodec();
+
+    static final ConcurrentHashMap<Byte, ICompressionCodec> codecs = new ConcurrentHashMap<Byte, ICompressionCodec>();
+
+    static {
+        register(LZ);
+        register(DEFLATE);
+    }
+
+    /**
+     * Register a codec, so that payloads compressed by it can be read.
+     * @param codec         The codec to register.
+     */
+    public static void register(ICompressionCodec codec)
+    {
+        if (codec.getId() == NONE)
+        {
+            throw new IllegalArgumentException("Codec id " + NONE + " is reserved for uncompressed payloads");
+        }
+        ICompressionCodec existing = codecs.putIfAbsent(codec.getId(), codec);
+        if (existing != null && existing.getClass() != codec.getClass())
+        {
+            throw new IllegalArgumentException("Codec id " + codec.getId() + " is already used by " + existing);
+        }
+    }
+
+    /**
+     * Get a codec by its id.
+     * @param id            The id of the codec.
+     * @return              The codec, or null if no codec is registered with that id.
+     */
+    public static ICompressionCodec get(byte id)
+    {
+        return codecs.get(id);
+    }
+}
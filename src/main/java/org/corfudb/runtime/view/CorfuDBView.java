@@ -67,6 +67,7 @@ public class CorfuDBView {
     private List<IServerProtocol> sequencers;
     private List<CorfuDBViewSegment> segments; //eventually this should be upgraded to rangemap or something..
     private List<IServerProtocol> configmasters;
+    private volatile RoutingTable routing;
 
     public CorfuDBView(JsonObject jsonView)
     {
@@ -93,6 +94,14 @@ public class CorfuDBView {
             HashMap<String,Object> tMap = new HashMap<String,Object>();
             tMap.put("start", jo.getJsonNumber("start").longValue());
             tMap.put("sealed", jo.getJsonNumber("sealed").longValue());
+            if (jo.containsKey("replication"))
+            {
+                tMap.put("replication", jo.getString("replication"));
+                if (jo.containsKey("quorum"))
+                {
+                    tMap.put("quorum", jo.getJsonNumber("quorum").longValue());
+                }
+            }
             ArrayList<Map<String, Object>> groupList = new ArrayList<Map<String, Object>>();
             for (JsonValue j2 : jo.getJsonArray("groups"))
             {
@@ -190,6 +199,22 @@ public class CorfuDBView {
         return segments;
     }
 
+    /**
+     * Get the routing table of the layout of this view, which is built on first use and
+     * rebuilt whenever the view changes epoch.
+     * @return          The routing table of this view.
+     */
+    public RoutingTable getRoutingTable()
+    {
+        RoutingTable r = routing;
+        if (r == null || !r.isFor(this))
+        {
+            r = new RoutingTable(this);
+            routing = r;
+        }
+        return r;
+    }
+
     public void moveAllToNewEpoch(long epoch)
     {
         this.epoch = epoch;
@@ -258,6 +283,8 @@ public class CorfuDBView {
             JsonObjectBuilder jsb = Json.createObjectBuilder();
             jsb.add("start", vs.getStart());
             jsb.add("sealed", vs.getSealed());
+            jsb.add("replication", vs.getReplication().name().toLowerCase());
+            jsb.add("quorum", vs.getQuorum());
 
             JsonArrayBuilder groups = Json.createArrayBuilder();
             for (List<IServerProtocol> lsp : vs.getGroups())
@@ -291,7 +318,12 @@ public class CorfuDBView {
         {
             long start = m.get("start").getClass() == Long.class ? (Long) m.get("start") : (Integer) m.get("start");
             long sealed = m.get("sealed").getClass() ==  Long.class ? (Long) m.get("sealed") : (Integer) m.get("sealed");
-            CorfuDBViewSegment vs = new CorfuDBViewSegment(start, sealed, populateGroupsFromList((List<Map<String,Object>>) m.get("groups")));
+            CorfuDBViewSegment.ReplicationMode replication = m.containsKey("replication") ?
+                    CorfuDBViewSegment.ReplicationMode.valueOf(((String) m.get("replication")).toUpperCase()) :
+                    CorfuDBViewSegment.ReplicationMode.CHAIN;
+            int quorum = m.containsKey("quorum") ? ((Number) m.get("quorum")).intValue() : 0;
+            CorfuDBViewSegment vs = new CorfuDBViewSegment(start, sealed, populateGroupsFromList((List<Map<String,Object>>) m.get("groups")),
+                    replication, quorum);
             segments.add(vs);
         }
         return segments;
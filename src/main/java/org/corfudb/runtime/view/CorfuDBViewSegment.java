@@ -32,14 +32,58 @@ import java.util.List;
 public class CorfuDBViewSegment {
     private static final Logger log = LoggerFactory.getLogger(CorfuDBViewSegment.class);
 
+    /**
+     * How writes are replicated to the units of a group.
+     */
+    public enum ReplicationMode {
+        /** Write to each unit in turn, in chain order. Reads come from the last unit of the chain. */
+        CHAIN,
+        /** Write to every unit concurrently, completing when a quorum of units acknowledges. */
+        PARALLEL
+    }
+
     private List<List<IServerProtocol>> groups;
     private long start;
     private long sealed;
+    private ReplicationMode replication;
+    private int quorum;
 
     public CorfuDBViewSegment(long start, long sealed, List<List<IServerProtocol>> groups) {
+        this(start, sealed, groups, ReplicationMode.CHAIN, 0);
+    }
+
+    /**
+     * Create a segment.
+     * @param start         The first address of the segment.
+     * @param sealed        The address the segment was sealed at.
+     * @param groups        The replica groups the addresses of the segment are striped across.
+     * @param replication   How writes are replicated to the units of each group.
+     * @param quorum        In PARALLEL mode, the number of units which must acknowledge a write,
+     *                      or 0 for all of them. A quorum smaller than a group has to be a majority of
+     *                      it, so that two writers can never both reach a quorum of the same address.
+     */
+    public CorfuDBViewSegment(long start, long sealed, List<List<IServerProtocol>> groups,
+                              ReplicationMode replication, int quorum) {
         this.groups = groups;
         this.sealed = sealed;
         this.start = start;
+        this.replication = replication;
+        this.quorum = quorum;
+        if (quorum < 0)
+        {
+            throw new IllegalArgumentException("Quorum must not be negative, but was " + quorum);
+        }
+        if (replication == ReplicationMode.PARALLEL)
+        {
+            for (List<IServerProtocol> group : groups)
+            {
+                if (quorum > 0 && quorum < group.size() && quorum * 2 <= group.size())
+                {
+                    throw new IllegalArgumentException("Quorum " + quorum + " is not a majority of a group of "
+                            + group.size() + " units");
+                }
+            }
+        }
     }
 
     public List<List<IServerProtocol>> getGroups() {
@@ -53,5 +97,22 @@ public class CorfuDBViewSegment {
     public long getSealed() {
         return sealed;
     }
+
+    public ReplicationMode getReplication() {
+        return replication;
+    }
+
+    /**
+     * Get the number of units of a group which must acknowledge a write in PARALLEL mode.
+     * @param groupSize     The number of units in the group.
+     * @return              The quorum, which is the whole group unless a smaller quorum was configured.
+     */
+    public int getQuorum(int groupSize) {
+        return quorum <= 0 ? groupSize : Math.min(quorum, groupSize);
+    }
+
+    public int getQuorum() {
+        return quorum;
+    }
 }
 
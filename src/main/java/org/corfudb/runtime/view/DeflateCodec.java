@@ -0,0 +1,69 @@
+package org.corfudb.runtime.view;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Compresses payloads with deflate. Slow, but compresses large payloads well.
+ * Each thread reuses its deflater and inflater.
+ */
+public class DeflateCodec implements ICompressionCodec {
+
+    static final ThreadLocal<Deflater> deflaters = ThreadLocal.withInitial(Deflater::new);
+    static final ThreadLocal<Inflater> inflaters = ThreadLocal.withInitial(Inflater::new);
+
+    @Override
+    public byte getId()
+    {
+        return 2;
+    }
+
+    @Override
+    public byte[] compress(byte[] src, int offset, int length, int headroom)
+    {
+        Deflater d = deflaters.get();
+        d.reset();
+        d.setInput(src, offset, length);
+        d.finish();
+        // anything which does not fit in fewer bytes than the input is not worth keeping.
+        byte[] out = new byte[headroom + length - 1];
+        int written = headroom;
+        while (!d.finished() && written < out.length)
+        {
+            written += d.deflate(out, written, out.length - written);
+        }
+        return d.finished() ? Arrays.copyOf(out, written) : null;
+    }
+
+    @Override
+    public void decompress(byte[] src, int offset, int length, byte[] dst)
+        throws IOException
+    {
+        Inflater i = inflaters.get();
+        i.reset();
+        i.setInput(src, offset, length);
+        try {
+            int read = 0;
+            while (read < dst.length && !i.finished())
+            {
+                int n = i.inflate(dst, read, dst.length - read);
+                if (n == 0 && (i.needsInput() || i.needsDictionary()))
+                {
+                    throw new IOException("Truncated deflate payload");
+                }
+                read += n;
+            }
+        } catch (DataFormatException e) {
+            throw new IOException("Corrupt deflate payload", e);
+        }
+    }
+
+    @Override
+    public String toString()
+    {
+        return "deflate";
+    }
+}
@@ -0,0 +1,206 @@
+/**
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.corfudb.runtime.view;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+
+import org.corfudb.runtime.TrimmedException;
+import org.corfudb.runtime.entries.SimpleStreamEntry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Fills holes in the log: addresses whose token was issued, but which were never written, because the
+ * writer failed after taking its token. Readers stop at the first unwritten address, so without filling,
+ * every reader of the log stalls at the hole forever.
+ *
+ * Readers report the unwritten addresses they stop at. A background thread checks the reported addresses
+ * periodically, and once an address has been unwritten for longer than the timeout, and is below the tail
+ * of the sequencer (so a token was issued for it), it is fixed on every unit of its group with a junk entry
+ * (see SimpleStreamEntry.holeEntry()), which readers skip. A writer which is merely slow loses its address,
+ * and gets an OverwriteException, just as if another writer had been issued the same token.
+ */
+public class HoleFiller {
+
+    private static final Logger log = LoggerFactory.getLogger(HoleFiller.class);
+
+    /** The default time an address may stay unwritten before it is filled, in milliseconds. */
+    public static final long DEFAULT_TIMEOUT = 1000;
+
+    private static final byte[] HOLE = SimpleStreamEntry.holeEntry();
+
+    private final WriteOnceAddressSpace addressSpace;
+    private final LongSupplier globalTail;
+
+    /* The unwritten addresses reported by readers, and when they were first reported, in nanoseconds. */
+    private final Map<Long, Long> suspects = new ConcurrentHashMap<Long, Long>();
+    private volatile long timeoutNanos = TimeUnit.MILLISECONDS.toNanos(DEFAULT_TIMEOUT);
+    private ScheduledExecutorService checker = null;
+    private boolean closed = false;
+
+    private final Meter reported;
+    private final Meter filled;
+    private final Meter repaired;
+
+    /**
+     * Create a hole filler.
+     * @param addressSpace  The address space to fill holes in.
+     * @param globalTail    Returns the next token the sequencer will issue.
+     * @param metrics       The registry to report filled holes to.
+     * @param name          The name the metrics are registered under.
+     */
+    public HoleFiller(WriteOnceAddressSpace addressSpace, LongSupplier globalTail, MetricRegistry metrics, String name)
+    {
+        this.addressSpace = addressSpace;
+        this.globalTail = globalTail;
+        this.reported = metrics.meter(MetricRegistry.name(name, "reported"));
+        this.filled = metrics.meter(MetricRegistry.name(name, "filled"));
+        this.repaired = metrics.meter(MetricRegistry.name(name, "repaired"));
+    }
+
+    /**
+     * Set how long an address may stay unwritten before it is filled.
+     * @param millis        The timeout, in milliseconds.
+     */
+    public synchronized void setTimeout(long millis)
+    {
+        timeoutNanos = TimeUnit.MILLISECONDS.toNanos(millis);
+        if (checker != null)
+        {
+            // restart the checker, so it checks as often as the new timeout needs.
+            checker.shutdown();
+            checker = null;
+            start();
+        }
+    }
+
+    /**
+     * Get how long an address may stay unwritten before it is filled.
+     * @return              The timeout, in milliseconds.
+     */
+    public long getTimeout()
+    {
+        return TimeUnit.NANOSECONDS.toMillis(timeoutNanos);
+    }
+
+    /**
+     * Report an address which a reader found unwritten. Reporting the same address again does not
+     * restart its timeout.
+     * @param address       The unwritten address.
+     */
+    public void report(long address)
+    {
+        if (suspects.putIfAbsent(address, System.nanoTime()) == null)
+        {
+            reported.mark();
+            start();
+        }
+    }
+
+    /**
+     * Check whether an address has been reported and not filled yet.
+     * @param address       The address.
+     * @return              True, if the address is waiting to be filled.
+     */
+    public boolean isPending(long address)
+    {
+        return suspects.containsKey(address);
+    }
+
+    private synchronized void start()
+    {
+        if (checker == null && !closed)
+        {
+            checker = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread t = new Thread(r, "hole-filler");
+                t.setDaemon(true);
+                return t;
+            });
+            long period = Math.max(timeoutNanos / 4, TimeUnit.MILLISECONDS.toNanos(1));
+            checker.scheduleWithFixedDelay(this::check, period, period, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    /**
+     * Fill the reported addresses which have been unwritten for longer than the timeout.
+     */
+    void check()
+    {
+        try {
+            long now = System.nanoTime();
+            long tail = -1;
+            for (Map.Entry<Long, Long> e : suspects.entrySet())
+            {
+                long address = e.getKey();
+                if (now - e.getValue() < timeoutNanos)
+                {
+                    continue;
+                }
+                if (tail == -1)
+                {
+                    tail = globalTail.getAsLong();
+                }
+                if (address < tail)
+                {
+                    try {
+                        byte[] entry = addressSpace.fill(address, HOLE);
+                        if (entry == HOLE)
+                        {
+                            log.info("Filled hole at address {}", address);
+                            filled.mark();
+                        }
+                        else
+                        {
+                            repaired.mark();
+                        }
+                    }
+                    catch (TrimmedException te)
+                    {
+                        // nothing left to fill.
+                    }
+                }
+                // an address at or past the tail was never issued, so it is not a hole.
+                suspects.remove(address);
+            }
+        }
+        catch (Exception ex)
+        {
+            // leave the remaining addresses for the next check.
+            log.warn("Error filling holes", ex);
+        }
+    }
+
+    /**
+     * Stop filling holes.
+     */
+    public synchronized void close()
+    {
+        closed = true;
+        if (checker != null)
+        {
+            checker.shutdownNow();
+            checker = null;
+        }
+    }
+}
@@ -0,0 +1,38 @@
+package org.corfudb.runtime.view;
+
+import java.io.IOException;
+
+/**
+ * A compression codec for log payloads. Every compressed payload starts with the id of the
+ * codec which compressed it, so payloads written with different codecs can be read back by any
+ * runtime which has those codecs registered (see CompressionCodecs).
+ */
+public interface ICompressionCodec {
+
+    /**
+     * Get the id of this codec, which is written in front of each payload it compresses.
+     * @return              The id of the codec. Ids are part of the log format and must not be reused.
+     */
+    byte getId();
+
+    /**
+     * Compress data.
+     * @param src           The array containing the data to compress.
+     * @param offset        The offset of the data in the array.
+     * @param length        The length of the data.
+     * @param headroom      The number of bytes to leave free at the start of the result, for the caller's header.
+     * @return              The compressed data, after headroom bytes, or null if the data did not
+     *                      compress to fewer than length bytes.
+     */
+    byte[] compress(byte[] src, int offset, int length, int headroom);
+
+    /**
+     * Decompress data.
+     * @param src           The array containing the compressed data.
+     * @param offset        The offset of the compressed data in the array.
+     * @param length        The length of the compressed data.
+     * @param dst           The array to decompress into, which is exactly the size of the original data.
+     */
+    void decompress(byte[] src, int offset, int length, byte[] dst)
+        throws IOException;
+}
@@ -1,5 +1,9 @@
 package org.corfudb.runtime.view;
 
+import org.corfudb.runtime.protocols.sequencers.BackpointerToken;
+
+import java.util.ArrayList;
+import java.util.List;
 import java.util.UUID;
 
 /**
@@ -35,6 +39,38 @@ public interface IStreamingSequencer extends ISequencer {
      */
     long getNext(UUID stream, int numTokens);
 
+    /**
+     * This function returns tokens for a stream, together with the previous address
+     * issued to the stream. Sequencers which do not track streams return global tokens
+     * with an unknown backpointer.
+     * @param stream        The stream ID to return tokens for.
+     * @param numTokens     The number of tokens to issue. 0 returns the current position and the stream tail.
+     * @return              The next token in the sequence, and its backpointer.
+     */
+    default BackpointerToken getNextBackpointer(UUID stream, int numTokens)
+    {
+        return new BackpointerToken(getNext(null, numTokens), BackpointerToken.UNKNOWN_PREVIOUS);
+    }
+
+    /**
+     * This function returns tokens which belong to several streams at once, together with the previous
+     * address issued to each of the streams. Sequencers which do not track streams return global tokens
+     * with unknown backpointers.
+     * @param streams       The stream IDs to return tokens for.
+     * @param numTokens     The number of tokens to issue. 0 returns the current position and the stream tails.
+     * @return              A token for each stream, in the order of streams, all at the same position.
+     */
+    default List<BackpointerToken> getNextBackpointers(List<UUID> streams, int numTokens)
+    {
+        long position = getNext(null, numTokens);
+        List<BackpointerToken> tokens = new ArrayList<BackpointerToken>(streams.size());
+        for (int i = 0; i < streams.size(); i++)
+        {
+            tokens.add(new BackpointerToken(position, BackpointerToken.UNKNOWN_PREVIOUS));
+        }
+        return tokens;
+    }
+
     /**
      * Shim function for non-streaming requests. This function
      * passes null for the stream ID.
@@ -46,4 +82,24 @@ public interface IStreamingSequencer extends ISequencer {
     {
         return getNext(null, numTokens);
     }
+
+    /**
+     * Publish the low-water mark of a stream, the address below which no reader of the stream needs
+     * its entries. Sequencers which do not track streams ignore it.
+     * @param stream        The stream ID to publish the mark for.
+     * @param address       The low-water mark.
+     */
+    default void setLowWaterMark(UUID stream, long address)
+    {
+    }
+
+    /**
+     * Get the point the log can safely be trimmed to: the lowest low-water mark published for any
+     * stream tokens were issued to. Sequencers which do not track streams cannot tell, and return 0.
+     * @return              The address, exclusive, the log can be trimmed to.
+     */
+    default long getLowWaterMark()
+    {
+        return 0;
+    }
 }
@@ -21,12 +21,20 @@ import org.corfudb.runtime.UnwrittenException;
 
 import java.io.IOException;
 import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
 
 /**
  * This interface represents a view on write-once address spaces.
  */
 
 public interface IWriteOnceAddressSpace {
+
     void write(long address, Serializable s)
     throws IOException, OverwriteException, TrimmedException;
 
@@ -39,5 +47,103 @@ public interface IWriteOnceAddressSpace {
     Object readObject(long address)
     throws UnwrittenException, TrimmedException, ClassNotFoundException, IOException;
 
-}
+    /**
+     * Write a batch of entries, using as few requests to the log units as possible.
+     * @param entries               A map from the addresses to write to their payloads.
+     * @throws OverwriteException   If any of the addresses has already been written to. Other entries
+     *                              in the batch may or may not have been written.
+     * @throws TrimmedException     If any of the addresses has been trimmed.
+     */
+    default void multiWrite(Map<Long, byte[]> entries)
+    throws OverwriteException, TrimmedException
+    {
+        for (Map.Entry<Long, byte[]> e : entries.entrySet())
+        {
+            write(e.getKey(), e.getValue());
+        }
+    }
+
+    /**
+     * Read a batch of addresses, using as few requests to the log units as possible.
+     * @param addresses     The addresses to read.
+     * @return              A map from address to payload. Addresses which are unwritten or trimmed
+     *                      are left out, read them individually to find out why.
+     */
+    default Map<Long, byte[]> multiRead(List<Long> addresses)
+    {
+        HashMap<Long, byte[]> results = new HashMap<Long, byte[]>();
+        for (Long address : addresses)
+        {
+            try {
+                results.put(address, read(address));
+            }
+            catch (UnwrittenException | TrimmedException e)
+            {
+                //left out of the results
+            }
+        }
+        return results;
+    }
+
+    /**
+     * Read a range of consecutive addresses, see multiRead.
+     * @param address       The first address to read.
+     * @param count         The number of addresses to read.
+     * @return              A map from address to payload, for the addresses which are written.
+     */
+    default Map<Long, byte[]> readRange(long address, int count)
+    {
+        ArrayList<Long> addresses = new ArrayList<Long>(count);
+        for (long i = address; i < address + count; i++)
+        {
+            addresses.add(i);
+        }
+        return multiRead(addresses);
+    }
 
+    /**
+     * Prefix-trim the address space: every address below the given one is released on the log units
+     * which store it, and reading or writing it throws TrimmedException from then on.
+     * @param address       The address, exclusive, to trim to.
+     */
+    default void trim(long address)
+    {
+        throw new UnsupportedOperationException("trim not supported by this address space.");
+    }
+
+    /**
+     * Write an entry asynchronously. Address spaces which belong to a runtime write on a pool of the
+     * runtime, others write the entry before returning.
+     * @param address       The address to write to.
+     * @param data          The payload to write.
+     * @return              A future which completes once the entry is written, or completes exceptionally
+     *                      with the OverwriteException or TrimmedException the write failed with.
+     */
+    default CompletableFuture<Void> writeAsync(long address, byte[] data)
+    {
+        return writeAsync(address, data, null);
+    }
+
+    /**
+     * Write an entry asynchronously on an executor.
+     * @param address       The address to write to.
+     * @param data          The payload to write.
+     * @param executor      The executor to write on, or null to write the entry before returning.
+     * @return              A future which completes once the entry is written, or completes exceptionally
+     *                      with the OverwriteException or TrimmedException the write failed with.
+     */
+    default CompletableFuture<Void> writeAsync(long address, byte[] data, Executor executor)
+    {
+        Runnable write = () -> {
+            try {
+                write(address, data);
+            }
+            catch (OverwriteException | TrimmedException e)
+            {
+                throw new CompletionException(e);
+            }
+        };
+        return executor == null ? CompletableFuture.runAsync(write, Runnable::run)
+                                : CompletableFuture.runAsync(write, executor);
+    }
+}
@@ -0,0 +1,186 @@
+package org.corfudb.runtime.view;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * A fast LZ77 codec, in the style of LZ4. It finds matches through a small hash table of the
+ * last position each 4 byte sequence was seen at, and does not search any further, so it
+ * compresses less than deflate but is many times faster, which suits small, repetitive payloads.
+ *
+ * The compressed data is a series of sequences, each of which is:
+ *
+ *  token (byte: literal length << 4 | match length - 4) | extra literal length bytes |
+ *  literals | match offset (2 bytes, little endian) | extra match length bytes
+ *
+ * where a length of 15 in the token continues in extra bytes, which are added up until a byte
+ * other than 255. The last sequence has literals only; the decoder knows the original size and
+ * stops after it.
+ */
+public class LZCodec implements ICompressionCodec {
+
+    static final int MIN_MATCH = 4;
+    static final int MAX_OFFSET = 65535;
+    static final int HASH_BITS = 12;
+
+    /* The last bytes of the input are always literals, so matches can be read 4 bytes at a time. */
+    static final int LAST_LITERALS = 5;
+
+    static final ThreadLocal<int[]> tables = ThreadLocal.withInitial(() -> new int[1 << HASH_BITS]);
+
+    @Override
+    public byte getId()
+    {
+        return 1;
+    }
+
+    @Override
+    public byte[] compress(byte[] src, int offset, int length, int headroom)
+    {
+        int[] table = tables.get();
+        Arrays.fill(table, -1);
+        // worst case: every byte is a literal.
+        byte[] out = new byte[headroom + length + length / 255 + 16];
+        int op = headroom;
+        int end = offset + length;
+        int matchLimit = end - LAST_LITERALS;
+        int anchor = offset;
+        int ip = offset;
+
+        while (ip < matchLimit - MIN_MATCH)
+        {
+            int seq = readInt(src, ip);
+            int h = (seq * -1640531535) >>> (32 - HASH_BITS);
+            int ref = table[h];
+            table[h] = ip;
+            if (ref < 0 || ip - ref > MAX_OFFSET || readInt(src, ref) != seq)
+            {
+                ip++;
+                continue;
+            }
+
+            int matchLength = MIN_MATCH;
+            while (ip + matchLength < matchLimit && src[ref + matchLength] == src[ip + matchLength])
+            {
+                matchLength++;
+            }
+            op = writeSequence(out, op, src, anchor, ip - anchor, ip - ref, matchLength);
+            ip += matchLength;
+            anchor = ip;
+        }
+
+        op = writeSequence(out, op, src, anchor, end - anchor, 0, 0);
+        if (op - headroom >= length)
+        {
+            return null;
+        }
+        return Arrays.copyOf(out, op);
+    }
+
+    private static int writeSequence(byte[] out, int op, byte[] src, int literals, int literalLength,
+                                     int matchOffset, int matchLength)
+    {
+        int tokenPos = op++;
+        int token = Math.min(literalLength, 15) << 4;
+        if (literalLength >= 15)
+        {
+            op = writeLength(out, op, literalLength - 15);
+        }
+        System.arraycopy(src, literals, out, op, literalLength);
+        op += literalLength;
+        if (matchLength > 0)
+        {
+            out[op++] = (byte) matchOffset;
+            out[op++] = (byte) (matchOffset >>> 8);
+            int extra = matchLength - MIN_MATCH;
+            token |= Math.min(extra, 15);
+            if (extra >= 15)
+            {
+                op = writeLength(out, op, extra - 15);
+            }
+        }
+        out[tokenPos] = (byte) token;
+        return op;
+    }
+
+    private static int writeLength(byte[] out, int op, int length)
+    {
+        while (length >= 255)
+        {
+            out[op++] = (byte) 255;
+            length -= 255;
+        }
+        out[op++] = (byte) length;
+        return op;
+    }
+
+    @Override
+    public void decompress(byte[] src, int offset, int length, byte[] dst)
+        throws IOException
+    {
+        int ip = offset;
+        int end = offset + length;
+        int op = 0;
+        try {
+            while (true)
+            {
+                int token = src[ip++] & 0xFF;
+                int literalLength = token >>> 4;
+                if (literalLength == 15)
+                {
+                    int b;
+                    do {
+                        b = src[ip++] & 0xFF;
+                        literalLength += b;
+                    } while (b == 255);
+                }
+                System.arraycopy(src, ip, dst, op, literalLength);
+                ip += literalLength;
+                op += literalLength;
+                if (op == dst.length)
+                {
+                    break;
+                }
+
+                int matchOffset = (src[ip++] & 0xFF) | (src[ip++] & 0xFF) << 8;
+                int matchLength = token & 0x0F;
+                if (matchLength == 15)
+                {
+                    int b;
+                    do {
+                        b = src[ip++] & 0xFF;
+                        matchLength += b;
+                    } while (b == 255);
+                }
+                matchLength += MIN_MATCH;
+                int ref = op - matchOffset;
+                if (matchOffset == 0 || ref < 0 || op + matchLength > dst.length)
+                {
+                    throw new IOException("Corrupt LZ payload");
+                }
+                // matches may overlap the bytes they produce, so copy forwards a byte at a time.
+                for (int i = 0; i < matchLength; i++)
+                {
+                    dst[op++] = dst[ref++];
+                }
+            }
+        } catch (ArrayIndexOutOfBoundsException e) {
+            throw new IOException("Truncated LZ payload", e);
+        }
+        if (ip != end)
+        {
+            throw new IOException("Corrupt LZ payload");
+        }
+    }
+
+    private static int readInt(byte[] b, int i)
+    {
+        return (b[i] & 0xFF) | (b[i + 1] & 0xFF) << 8 | (b[i + 2] & 0xFF) << 16 | (b[i + 3] & 0xFF) << 24;
+    }
+
+    @Override
+    public String toString()
+    {
+        return "lz";
+    }
+}
@@ -0,0 +1,126 @@
+/**
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.corfudb.runtime.view;
+
+import java.util.UUID;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Computes the point the log can be prefix-trimmed to, and trims it.
+ *
+ * Each stream which no longer needs its entries below some address (typically because a checkpoint covers
+ * them, see SimpleSMREngine) publishes that address as its low-water mark to the sequencer, which is shared
+ * by every runtime writing to the log. The sequencer answers the lowest mark of every stream it issued tokens
+ * to, so a stream no runtime has published a mark for, and which may still be read from its first entry,
+ * holds the trim point back. Trimming is off until enabled, since entries written without a stream token
+ * are not covered by any mark.
+ */
+public class LogTrimmer {
+
+    private static final Logger log = LoggerFactory.getLogger(LogTrimmer.class);
+
+    private final IWriteOnceAddressSpace addressSpace;
+    private final IStreamingSequencer sequencer;
+    private volatile boolean enabled = false;
+    private volatile long trimmed = 0;
+
+    private final Meter trims;
+
+    /**
+     * Create a log trimmer.
+     * @param addressSpace  The address space to trim.
+     * @param sequencer     The sequencer the low-water marks are published to.
+     * @param metrics       The registry to report trims to.
+     * @param name          The name the metrics are registered under.
+     */
+    public LogTrimmer(IWriteOnceAddressSpace addressSpace, IStreamingSequencer sequencer, MetricRegistry metrics,
+                      String name)
+    {
+        this.addressSpace = addressSpace;
+        this.sequencer = sequencer;
+        this.trims = metrics.meter(MetricRegistry.name(name, "trims"));
+        metrics.register(MetricRegistry.name(name, "trim-point"), (Gauge<Long>) () -> trimmed);
+    }
+
+    /**
+     * Enable or disable trimming. Low-water marks are published either way.
+     * @param enabled       True, to trim the log as the low-water marks of the streams move.
+     */
+    public void setEnabled(boolean enabled)
+    {
+        this.enabled = enabled;
+        if (enabled)
+        {
+            trim();
+        }
+    }
+
+    /**
+     * Publish the low-water mark of a stream. A mark lower than the one published before is ignored.
+     * @param streamID      The stream.
+     * @param address       The address below which no reader of the stream needs its entries.
+     */
+    public void reportLowWaterMark(UUID streamID, long address)
+    {
+        sequencer.setLowWaterMark(streamID, address);
+        if (enabled)
+        {
+            trim();
+        }
+    }
+
+    /**
+     * Get the point the log can safely be trimmed to.
+     * @return              The lowest low-water mark of every stream in the log, or 0 if some stream has not
+     *                      published one.
+     */
+    public long getTrimPoint()
+    {
+        return sequencer.getLowWaterMark();
+    }
+
+    /**
+     * Get the point the log was last trimmed to by this trimmer.
+     * @return              The address, exclusive, the log was trimmed to.
+     */
+    public long getTrimmed()
+    {
+        return trimmed;
+    }
+
+    /**
+     * Trim the log to the current trim point, if it has moved since the last trim.
+     * @return              The address, exclusive, the log has been trimmed to.
+     */
+    public synchronized long trim()
+    {
+        long point = getTrimPoint();
+        if (point > trimmed)
+        {
+            addressSpace.trim(point);
+            log.info("Trimmed log to {}", point);
+            trimmed = point;
+            trims.mark();
+        }
+        return trimmed;
+    }
+}
@@ -21,7 +21,10 @@ import org.corfudb.runtime.protocols.IServerProtocol;
 import org.corfudb.runtime.protocols.logunits.IWriteOnceLogUnit;
 
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 
+import com.codahale.metrics.MetricRegistry;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -43,12 +46,14 @@ public class ObjectCachedWriteOnceAddressSpace implements IWriteOnceAddressSpace
     private UUID logID;
     private CorfuDBView view;
     private Supplier<CorfuDBView> getView;
+    private AddressSpaceCache<Object> cache;
 
 	private final Logger log = LoggerFactory.getLogger(org.corfudb.runtime.view.CachedWriteOnceAddressSpace.class);
 
     public ObjectCachedWriteOnceAddressSpace(CorfuDBRuntime client)
     {
         this.client = client;
+        this.cache = client.getObjectCache();
         this.getView = () ->  {
             return this.client.getView();
         };
@@ -58,6 +63,7 @@ public class ObjectCachedWriteOnceAddressSpace implements IWriteOnceAddressSpace
     public ObjectCachedWriteOnceAddressSpace(CorfuDBRuntime client, UUID logID)
     {
         this.client = client;
+        this.cache = client.getObjectCache();
         this.logID = logID;
         this.getView = () -> {
             try {
@@ -74,16 +80,47 @@ public class ObjectCachedWriteOnceAddressSpace implements IWriteOnceAddressSpace
     public ObjectCachedWriteOnceAddressSpace(CorfuDBView view)
     {
         this.view = view;
+        this.cache = new AddressSpaceCache<Object>(AddressSpaceCache.DEFAULT_CAPACITY, new MetricRegistry(),
+                MetricRegistry.name(ObjectCachedWriteOnceAddressSpace.class, "cache"));
         this.getView = () -> {
             return this.view;
         };
         this.logID = getView.get().getUUID();
     }
 
+    /**
+     * Replace the cache used by this address space.
+     * @param cache     The cache to use.
+     */
+    public void setCache(AddressSpaceCache<Object> cache)
+    {
+        this.cache = cache;
+    }
+
+    /**
+     * Write an entry asynchronously, on the async write pool of the runtime.
+     * @param address       The address to write to.
+     * @param data          The payload to write.
+     * @return              A future which completes once the entry is written.
+     */
+    @Override
+    public CompletableFuture<Void> writeAsync(long address, byte[] data)
+    {
+        return writeAsync(address, data, client == null ? null : client.getPool("async-write"));
+    }
+
     public void write(long address, Serializable s)
         throws IOException, OverwriteException, TrimmedException
     {
-        write(address, Serializer.serialize_compressed(s));
+        if (client == null)
+        {
+            write(address, Serializer.serialize_compressed(s));
+        }
+        else
+        {
+            write(address, Serializer.serialize_compressed(s, client.getCompressionCodec(),
+                    client.getCompressionThreshold()));
+        }
 
         /*
         try (ByteArrayOutputStream bs = new ByteArrayOutputStream())
@@ -108,18 +145,9 @@ public class ObjectCachedWriteOnceAddressSpace implements IWriteOnceAddressSpace
         while (true)
         {
             try {
-                //TODO: handle multiple segments
-                CorfuDBViewSegment segments =  getView.get().getSegments().get(0);
-                int mod = segments.getGroups().size();
-                int groupnum =(int) (address % mod);
-                List<IServerProtocol> chain = segments.getGroups().get(groupnum);
-                //writes have to go to chain in order
-                long mappedAddress = address/mod;
-                for (IServerProtocol unit : chain)
-                {
-                    ((IWriteOnceLogUnit)unit).write(mappedAddress,data);
-                    return;
-                }
+                WriteOnceAddressSpace.write(getView.get().getRoutingTable(), address, data,
+                        WriteOnceAddressSpace.getReplicaPool(client));
+                return;
             }
             catch (NetworkException e)
             {
@@ -129,11 +157,26 @@ public class ObjectCachedWriteOnceAddressSpace implements IWriteOnceAddressSpace
         }
     }
 
+    @Override
+    public void trim(long address)
+    {
+        while (true)
+        {
+            try {
+                WriteOnceAddressSpace.trim(getView.get().getRoutingTable(), address);
+                return;
+            }
+            catch (NetworkException e)
+            {
+                log.warn("Unable to trim, requesting new view.", e);
+                client.invalidateViewAndWait(e);
+            }
+        }
+    }
+
     public byte[] read(long address)
         throws UnwrittenException, TrimmedException
     {
-        //TODO: cache the layout so we don't have to determine it on every write.
-
         while (true)
         {
             try {
@@ -144,16 +187,8 @@ public class ObjectCachedWriteOnceAddressSpace implements IWriteOnceAddressSpace
     //                return data;
       //          }
 
-                //TODO: handle multiple segments
-                CorfuDBViewSegment segments =  getView.get().getSegments().get(0);
-                int mod = segments.getGroups().size();
-                int groupnum =(int) (address % mod);
-                long mappedAddress = address/mod;
-
-                List<IServerProtocol> chain = segments.getGroups().get(groupnum);
-                //reads have to come from last unit in chain
-                IWriteOnceLogUnit wolu = (IWriteOnceLogUnit) chain.get(chain.size() - 1);
-                data = wolu.read(mappedAddress);
+                data = WriteOnceAddressSpace.read(getView.get().getRoutingTable(), address,
+                        WriteOnceAddressSpace.getReadPolicy(client), WriteOnceAddressSpace.getReplicaPool(client));
             //    stream.debug("Objcache MISS @ {}", address);
              //   AddressSpaceCache.put(logID, address, data);
                 return data;
@@ -166,16 +201,69 @@ public class ObjectCachedWriteOnceAddressSpace implements IWriteOnceAddressSpace
         }
     }
 
+    @Override
+    public void multiWrite(Map<Long, byte[]> entries)
+        throws OverwriteException, TrimmedException
+    {
+        while (true)
+        {
+            try {
+                WriteOnceAddressSpace.multiWrite(getView.get().getRoutingTable(), entries,
+                        WriteOnceAddressSpace.getReplicaPool(client));
+                return;
+            }
+            catch (NetworkException e)
+            {
+                log.warn("Unable to write, requesting new view.", e);
+                client.invalidateViewAndWait(e);
+            }
+        }
+    }
+
+    @Override
+    public Map<Long, byte[]> multiRead(List<Long> addresses)
+    {
+        while (true)
+        {
+            try {
+                return WriteOnceAddressSpace.multiRead(getView.get().getRoutingTable(), addresses,
+                        WriteOnceAddressSpace.getReadPolicy(client), WriteOnceAddressSpace.getReplicaPool(client));
+            }
+            catch (NetworkException e)
+            {
+                log.warn("Unable to read, requesting new view.", e);
+                client.invalidateViewAndWait(e);
+            }
+        }
+    }
+
+    @Override
+    public Map<Long, byte[]> readRange(long address, int count)
+    {
+        while (true)
+        {
+            try {
+                return WriteOnceAddressSpace.readRange(getView.get().getRoutingTable(), address, count,
+                        WriteOnceAddressSpace.getReplicaPool(client));
+            }
+            catch (NetworkException e)
+            {
+                log.warn("Unable to read, requesting new view.", e);
+                client.invalidateViewAndWait(e);
+            }
+        }
+    }
+
     public Object readObject(long address)
         throws UnwrittenException, TrimmedException, ClassNotFoundException, IOException
     {
-         Object o = AddressSpaceObjectCache.get(logID, address);
+         Object o = cache.get(logID, address);
          if (o != null) {
              return o; }
 
          byte[] data = read(address);
          o = Serializer.deserialize_compressed(data);
-        AddressSpaceObjectCache.put(logID, address ,o);
+        cache.put(logID, address, o, data.length);
         return o;
          /*
          Kryo k = Serializer.kryos.get();
@@ -189,7 +277,7 @@ public class ObjectCachedWriteOnceAddressSpace implements IWriteOnceAddressSpace
                 try (Input input = new Input(dis, 16384))
                 {
                     o = k.readClassAndObject(input);
-                    AddressSpaceObjectCache.put(logID, address ,o);
+                    cache.put(logID, address, o, data.length);
                     return o;
                 }
             }
@@ -0,0 +1,79 @@
+/**
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.corfudb.runtime.view;
+
+/**
+ * Chooses which unit of a replica group serves a read.
+ *
+ * Policies other than TAIL are only used for addresses the group knows to be committed (see
+ * RoutingTable.Group.isCommitted()); everything else is read from the tail of the chain. A unit
+ * which has not caught up with an address returns UnwrittenException, and the read falls back to
+ * the tail.
+ */
+public enum ReadPolicy {
+
+    /** Always read from the tail of the chain. */
+    TAIL {
+        @Override
+        int choose(RoutingTable.Group group)
+        {
+            return group.getChain().size() - 1;
+        }
+    },
+
+    /** Take turns between the units of the group. */
+    ROUND_ROBIN {
+        @Override
+        int choose(RoutingTable.Group group)
+        {
+            return Math.floorMod(group.nextReplica.getAndIncrement(), group.getChain().size());
+        }
+    },
+
+    /** Read from the unit with the fewest reads in flight from this client, preferring the tail on a tie. */
+    LEAST_OUTSTANDING {
+        @Override
+        int choose(RoutingTable.Group group)
+        {
+            int best = group.getChain().size() - 1;
+            for (int i = best - 1; i >= 0; i--)
+            {
+                if (group.outstanding[i].get() < group.outstanding[best].get())
+                {
+                    best = i;
+                }
+            }
+            return best;
+        }
+    },
+
+    /** Read from a unit on this host if the group has one, otherwise take turns. */
+    LOCAL {
+        @Override
+        int choose(RoutingTable.Group group)
+        {
+            int local = group.getLocalReplica();
+            return local >= 0 ? local : ROUND_ROBIN.choose(group);
+        }
+    };
+
+    /**
+     * Choose a unit of a group.
+     * @param group         The group to read from.
+     * @return              The index of the unit in the chain.
+     */
+    abstract int choose(RoutingTable.Group group);
+}
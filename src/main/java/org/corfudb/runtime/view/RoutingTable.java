@@ -0,0 +1,360 @@
+/**
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.corfudb.runtime.view;
+
+import org.corfudb.runtime.NetworkException;
+import org.corfudb.runtime.TrimmedException;
+import org.corfudb.runtime.UnwrittenException;
+import org.corfudb.runtime.protocols.IServerProtocol;
+import org.corfudb.runtime.protocols.logunits.IWriteOnceLogUnit;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.NetworkInterface;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Routes global log addresses to the replica groups of a layout. The table is built once per view
+ * (see CorfuDBView.getRoutingTable()), so the address spaces do not walk the layout on every operation.
+ *
+ * Each segment covers the addresses from its start up to the address it was sealed at. A segment which
+ * is not sealed (sealed is not past its start) covers every address from its start on, up to the start
+ * of the next segment. The addresses of a segment are striped across its groups:
+ *
+ *  group = (address - start) % groups,   mapped address = start + (address - start) / groups
+ *
+ * so the mapped addresses of a segment lie within its own range, and a unit which belongs to several
+ * segments never sees the same mapped address from two of them. For a single segment starting at 0,
+ * this is the layout the address spaces have always used.
+ */
+public class RoutingTable {
+
+    /**
+     * A replica group of a segment.
+     */
+    public static class Group {
+        final CorfuDBViewSegment segment;
+        final List<IServerProtocol> chain;
+        final int index;
+        final int groups;
+        final long start;
+
+        /* Reads in flight from this client to each unit, and the next unit to read from round-robin. */
+        final AtomicInteger[] outstanding;
+        final AtomicInteger nextReplica = new AtomicInteger();
+
+        /* The mapped addresses seen at the tail, or written to every unit, by this client: every address up to
+           committedPrefix, and those above it in committedAbove, which keeps at most MAX_COMMITTED_ABOVE. */
+        static final int MAX_COMMITTED_ABOVE = 4096;
+        final AtomicLong committedPrefix = new AtomicLong(-1L);
+        final ConcurrentSkipListSet<Long> committedAbove = new ConcurrentSkipListSet<Long>();
+
+        /* The index of a unit on this host, -1 if there is none, or -2 if not looked up yet. */
+        volatile int localReplica = -2;
+
+        Group(CorfuDBViewSegment segment, int index)
+        {
+            this.segment = segment;
+            this.chain = segment.getGroups().get(index);
+            this.index = index;
+            this.groups = segment.getGroups().size();
+            this.start = Math.max(segment.getStart(), 0);
+            this.outstanding = new AtomicInteger[chain.size()];
+            for (int i = 0; i < outstanding.length; i++)
+            {
+                outstanding[i] = new AtomicInteger();
+            }
+        }
+
+        public CorfuDBViewSegment getSegment()
+        {
+            return segment;
+        }
+
+        /**
+         * Get the units of the group, in chain order.
+         * @return          The units of the group.
+         */
+        public List<IServerProtocol> getChain()
+        {
+            return chain;
+        }
+
+        /**
+         * Get the last unit of the chain, which reads have to come from in chain replication.
+         * @return          The tail of the chain.
+         */
+        public IWriteOnceLogUnit getTail()
+        {
+            return (IWriteOnceLogUnit) chain.get(chain.size() - 1);
+        }
+
+        /**
+         * Read from one unit of the group, keeping count of the reads in flight to it.
+         * @param replica   The index of the unit in the chain.
+         * @param mapped    The address on the units.
+         * @return          The data at that address.
+         */
+        byte[] read(int replica, long mapped)
+            throws UnwrittenException, TrimmedException, NetworkException
+        {
+            outstanding[replica].incrementAndGet();
+            try {
+                return ((IWriteOnceLogUnit) chain.get(replica)).read(mapped);
+            } finally {
+                outstanding[replica].decrementAndGet();
+            }
+        }
+
+        /**
+         * Check whether an address is known to be committed, and so can be read from any unit of the group.
+         * Writes reach the units of a chain in order, and only one writer can win an address at the head, so
+         * every unit which holds an address holds the same entry, but an address is only committed once it
+         * has reached the tail. Commitment is tracked for each address this client has seen at the tail or
+         * written to every unit; seeing a later address committed says nothing about an earlier one, whose
+         * write may still be on its way down the chain.
+         * @param mapped    The address on the units.
+         * @return          True, if the address may be read from any unit.
+         */
+        public boolean isCommitted(long mapped)
+        {
+            return mapped <= committedPrefix.get() || committedAbove.contains(mapped);
+        }
+
+        /**
+         * Record that an address has been committed to every unit of the group. Addresses are folded into
+         * the committed prefix once every address below them is committed too. If too many addresses above
+         * the prefix are recorded, the lowest are forgotten, which only sends their reads back to the tail.
+         * @param mapped    The address on the units.
+         */
+        public void markCommitted(long mapped)
+        {
+            if (mapped <= committedPrefix.get())
+            {
+                return;
+            }
+            committedAbove.add(mapped);
+            long prefix;
+            while (committedAbove.remove((prefix = committedPrefix.get()) + 1))
+            {
+                committedPrefix.compareAndSet(prefix, prefix + 1);
+            }
+            while (committedAbove.size() > MAX_COMMITTED_ABOVE)
+            {
+                committedAbove.pollFirst();
+            }
+        }
+
+        /**
+         * Get a unit of this group which runs on this host.
+         * @return          The index of the unit in the chain, or -1 if no unit runs on this host.
+         */
+        int getLocalReplica()
+        {
+            int local = localReplica;
+            if (local == -2)
+            {
+                local = -1;
+                for (int i = 0; i < chain.size() && local == -1; i++)
+                {
+                    if (isLocal(chain.get(i).getHost()))
+                    {
+                        local = i;
+                    }
+                }
+                localReplica = local;
+            }
+            return local;
+        }
+
+        private static boolean isLocal(String host)
+        {
+            try {
+                InetAddress address = InetAddress.getByName(host);
+                return address.isLoopbackAddress() || NetworkInterface.getByInetAddress(address) != null;
+            } catch (IOException e) {
+                return false;
+            }
+        }
+
+        /**
+         * Map a global address of this group to the address it is stored at on the units of the group.
+         * @param address   The global address.
+         * @return          The address on the units.
+         */
+        public long map(long address)
+        {
+            return start + (address - start) / groups;
+        }
+
+        /**
+         * Map an address on the units of this group back to the global address.
+         * @param mapped    The address on the units.
+         * @return          The global address.
+         */
+        public long unmap(long mapped)
+        {
+            return start + (mapped - start) * groups + index;
+        }
+
+        /**
+         * Map a prefix trim to the units of this group.
+         * @param address   The global address, exclusive, to trim to.
+         * @return          The address on the units, exclusive, to trim to: the mapped address of the first
+         *                  address of this group at or after the global one.
+         */
+        long mapTrim(long address)
+        {
+            long below = Math.max(address - start - index, 0);
+            return start + (below + groups - 1) / groups;
+        }
+    }
+
+    final CorfuDBView view;
+    final long epoch;
+    final List<CorfuDBViewSegment> segments;
+    final long[] starts;
+    final long[] ends;
+    final Group[][] groups;
+
+    /**
+     * Build the routing table of a view.
+     * @param view          The view to route addresses of.
+     */
+    public RoutingTable(CorfuDBView view)
+    {
+        this(view, view.getEpoch(), view.getSegments());
+    }
+
+    /**
+     * Build a routing table over a list of segments.
+     * @param segments      The segments of the layout.
+     */
+    public RoutingTable(List<CorfuDBViewSegment> segments)
+    {
+        this(null, -1, segments);
+    }
+
+    private RoutingTable(CorfuDBView view, long epoch, List<CorfuDBViewSegment> layout)
+    {
+        this.view = view;
+        this.epoch = epoch;
+        this.segments = new ArrayList<CorfuDBViewSegment>(layout);
+        Collections.sort(this.segments, Comparator.comparingLong(CorfuDBViewSegment::getStart));
+        int n = segments.size();
+        starts = new long[n];
+        ends = new long[n];
+        groups = new Group[n][];
+        for (int i = 0; i < n; i++)
+        {
+            CorfuDBViewSegment s = segments.get(i);
+            starts[i] = Math.max(s.getStart(), 0);
+            ends[i] = s.getSealed() > s.getStart() ? s.getSealed() : Long.MAX_VALUE;
+            if (i > 0 && ends[i - 1] > starts[i])
+            {
+                ends[i - 1] = starts[i];
+            }
+            groups[i] = new Group[s.getGroups().size()];
+            for (int g = 0; g < groups[i].length; g++)
+            {
+                groups[i][g] = new Group(s, g);
+            }
+        }
+    }
+
+    /**
+     * Check whether this table was built for a view, in its current epoch.
+     */
+    boolean isFor(CorfuDBView view)
+    {
+        return this.view == view && this.epoch == view.getEpoch();
+    }
+
+    private int segmentOf(long address)
+    {
+        int lo = 0;
+        int hi = starts.length - 1;
+        int found = -1;
+        while (lo <= hi)
+        {
+            int mid = (lo + hi) >>> 1;
+            if (starts[mid] <= address)
+            {
+                found = mid;
+                lo = mid + 1;
+            }
+            else
+            {
+                hi = mid - 1;
+            }
+        }
+        if (found == -1 || address >= ends[found])
+        {
+            throw new IllegalStateException("No segment of the layout contains address " + address);
+        }
+        return found;
+    }
+
+    /**
+     * Get the group a global address is stored on.
+     * @param address       The global address.
+     * @return              The group the address is stored on. Use Group.map() to get the address on its units.
+     */
+    public Group route(long address)
+    {
+        int s = segmentOf(address);
+        Group[] g = groups[s];
+        return g[(int) ((address - starts[s]) % g.length)];
+    }
+
+    /**
+     * Map a prefix trim to the groups it reaches.
+     * @param address       The global address, exclusive, to trim to.
+     * @return              Every group of the segments which start below the address, in segment order, with
+     *                      the address on its units to trim to.
+     */
+    public Map<Group, Long> mapTrim(long address)
+    {
+        Map<Group, Long> trims = new LinkedHashMap<Group, Long>();
+        for (int i = 0; i < starts.length && starts[i] < address; i++)
+        {
+            long end = Math.min(address, ends[i]);
+            for (Group g : groups[i])
+            {
+                trims.put(g, g.mapTrim(end));
+            }
+        }
+        return trims;
+    }
+
+    /**
+     * Get the address at which the segment containing an address ends.
+     * @param address       The global address.
+     * @return              The first address after the segment, or Long.MAX_VALUE if the segment is open.
+     */
+    public long segmentEnd(long address)
+    {
+        return ends[segmentOf(address)];
+    }
+}
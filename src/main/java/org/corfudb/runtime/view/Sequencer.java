@@ -38,13 +38,28 @@ public class Sequencer {
         this.client = client;
     }
 
+    /**
+     * Get the next token. Concurrent requests through the same runtime share
+     * a sequencer request.
+     * @return              The next token in the sequence.
+     */
     public long getNext()
+    {
+        return client.getTokenCoalescer().getNext(1);
+    }
+
+    /**
+     * Issue tokens directly from the sequencer, without coalescing.
+     * @param numTokens     The number of tokens to issue.
+     * @return              The first token issued.
+     */
+    public long issue(int numTokens)
     {
         while (true)
         {
             try {
                 ISimpleSequencer sequencer = (ISimpleSequencer) client.getView().getSequencers().get(0);
-                return sequencer.sequenceGetNext();
+                return sequencer.sequenceGetNext(numTokens);
             }
             catch (NetworkException e)
             {
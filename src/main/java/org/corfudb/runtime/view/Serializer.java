@@ -1,19 +1,21 @@
 package org.corfudb.runtime.view;
 
 import com.esotericsoftware.kryo.Kryo;
+import com.esotericsoftware.kryo.serializers.JavaSerializer;
+import org.objenesis.strategy.StdInstantiatorStrategy;
 import org.corfudb.runtime.entries.*;
 import org.corfudb.runtime.stream.Timestamp;
 
-import java.io.ByteArrayOutputStream;
 import java.io.ByteArrayInputStream;
 import java.io.IOException;
+import java.nio.ByteBuffer;
 
 import com.esotericsoftware.kryo.io.UnsafeOutput;
 import com.esotericsoftware.kryo.io.UnsafeInput;
 
-import java.util.zip.DeflaterOutputStream;
 import java.util.zip.InflaterInputStream;
 
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.UUID;
 import java.util.concurrent.atomic.AtomicLong;
@@ -21,6 +23,7 @@ import java.util.Set;
 import java.util.Map;
 import java.util.HashSet;
 
+import org.corfudb.runtime.smr.ICorfuDBObject;
 import org.corfudb.runtime.smr.SMRCommandWrapper;
 import org.corfudb.runtime.smr.legacy.TxDec;
 import org.corfudb.runtime.smr.legacy.TxInt;
@@ -63,17 +66,67 @@ public class Serializer
         k.register(Triple.class);
         k.register(HashSet.class);
         k.register(Pair.class);
+        // objects stored in other objects are references to their streams, which Java serialization keeps.
+        k.addDefaultSerializer(ICorfuDBObject.class, JavaSerializer.class);
     }
 
     /** Get a thread local kryo instance for desrialization */
     public static ThreadLocal<Kryo> kryos = new ThreadLocal<Kryo>() {
         protected Kryo initialValue() {
             Kryo kryo = new Kryo();
+            // classes without a no-arg constructor (most Serializable values) are created without calling one.
+            kryo.setInstantiatorStrategy(new Kryo.DefaultInstantiatorStrategy(new StdInstantiatorStrategy()));
             Serializer.registerSerializer(kryo);
             return kryo;
         };
     };
 
+    /** The initial size of the pooled buffers. */
+    static final int BUFFER_SIZE = 16384;
+
+    /** Pooled buffers which have grown past this size are dropped after use. */
+    static final int MAX_POOLED_BUFFER_SIZE = 1024 * 1024;
+
+    /** The buffers of a thread. The buffers are reused by every call on the thread,
+     * except for calls made while the buffers are in use (by a serializer calling back into
+     * this class), which get buffers of their own.
+     */
+    static class Buffers {
+        UnsafeOutput output = new UnsafeOutput(BUFFER_SIZE, -1);
+        byte[] inputBuffer = new byte[BUFFER_SIZE];
+        UnsafeInput input = new UnsafeInput(inputBuffer);
+        boolean inUse = false;
+
+        void release()
+        {
+            if (output.getBuffer().length > MAX_POOLED_BUFFER_SIZE)
+            {
+                output = new UnsafeOutput(BUFFER_SIZE, -1);
+            }
+            output.setOutputStream(null);
+            // don't hold on to (or read a stream into) an array the input was pointed at.
+            input.setBuffer(inputBuffer);
+            inUse = false;
+        }
+    }
+
+    static ThreadLocal<Buffers> buffers = new ThreadLocal<Buffers>() {
+        protected Buffers initialValue() {
+            return new Buffers();
+        };
+    };
+
+    static Buffers acquire()
+    {
+        Buffers b = buffers.get();
+        if (b.inUse)
+        {
+            return new Buffers();
+        }
+        b.inUse = true;
+        return b;
+    }
+
     /** Deserialize a byte array.
      *
      * @param data      The array to be deserialized.
@@ -83,16 +136,48 @@ public class Serializer
     public static Object deserialize(byte[] data)
         throws IOException, ClassNotFoundException
     {
-        Object o;
+        return deserialize(data, 0, data.length);
+    }
+
+    /** Deserialize part of a byte array, without copying it.
+     *
+     * @param data      The array containing the serialized object.
+     * @param offset    The offset of the serialized object in the array.
+     * @param length    The length of the serialized object.
+     *
+     * @return          The deserialized object.
+     */
+    public static Object deserialize(byte[] data, int offset, int length)
+        throws IOException, ClassNotFoundException
+    {
         Kryo k = kryos.get();
-        try (ByteArrayInputStream bis = new ByteArrayInputStream(data))
+        Buffers b = acquire();
+        try {
+            b.input.setBuffer(data, offset, length);
+            return k.readClassAndObject(b.input);
+        }
+        finally {
+            b.release();
+        }
+    }
+
+    /** Deserialize the remaining bytes of a buffer, such as a buffer returned by Thrift.
+     * Heap buffers are read in place; the position of the buffer is not changed.
+     *
+     * @param data      The buffer to be deserialized.
+     *
+     * @return          The deserialized object.
+     */
+    public static Object deserialize(ByteBuffer data)
+        throws IOException, ClassNotFoundException
+    {
+        if (data.hasArray())
         {
-            try (UnsafeInput i = new UnsafeInput(bis, 16384))
-            {
-                o = k.readClassAndObject(i);
-                return o;
-            }
+            return deserialize(data.array(), data.arrayOffset() + data.position(), data.remaining());
         }
+        byte[] copy = new byte[data.remaining()];
+        data.duplicate().get(copy);
+        return deserialize(copy);
     }
 
     /** Serialize a object.
@@ -105,18 +190,55 @@ public class Serializer
         throws IOException
     {
         Kryo k = kryos.get();
-        try (ByteArrayOutputStream baos = new ByteArrayOutputStream())
-        {
-            try (UnsafeOutput output = new UnsafeOutput(baos, 16384))
+        Buffers b = acquire();
+        try {
+            b.output.clear();
+            k.writeClassAndObject(b.output, o);
+            return b.output.toBytes();
+        }
+        finally {
+            b.release();
+        }
+    }
+
+    /** Serialize an object into the pooled buffer of this thread, leaving room for a header.
+     * This avoids copying the object when it is written out with a header of its own: the caller
+     * fills in the first headroom bytes of the buffer, then writes or copies the buffer.
+     *
+     * The buffer is only valid until the next call to serialize on this thread, so it must not
+     * be retained.
+     *
+     * @param o         The object to be serialized.
+     * @param headroom  The number of bytes to leave before the serialized object.
+     *
+     * @return          A buffer over the header and the serialized object, with its position at 0.
+     */
+    public static ByteBuffer serialize (Object o, int headroom)
+        throws IOException
+    {
+        Kryo k = kryos.get();
+        Buffers b = acquire();
+        try {
+            b.output.clear();
+            if (headroom > b.output.getBuffer().length)
             {
-                k.writeClassAndObject(output, o);
-                output.flush();
-                return baos.toByteArray();
+                b.output.setBuffer(new byte[headroom + BUFFER_SIZE], -1);
             }
+            b.output.setPosition(headroom);
+            k.writeClassAndObject(b.output, o);
+            return ByteBuffer.wrap(b.output.getBuffer(), 0, b.output.position());
+        }
+        finally {
+            b.release();
         }
     }
 
+    /** The first byte of payloads compressed before codecs were recorded, which were deflate streams. */
+    static final byte LEGACY_DEFLATE_HEADER = 0x78;
+
     /** Deserialize an object using compresssion.
+     * The payload starts with the id of the codec it was compressed with and, if it was compressed,
+     * the uncompressed length (int).
      *
      * @param data      The array to be deserialized.
      *
@@ -125,22 +247,45 @@ public class Serializer
     public static Object deserialize_compressed(byte[] data)
         throws IOException, ClassNotFoundException
     {
-        Object o;
+        if (data.length == 0)
+        {
+            throw new IOException("Empty compressed payload");
+        }
+        byte id = data[0];
+        if (id == CompressionCodecs.NONE)
+        {
+            return deserialize(data, 1, data.length - 1);
+        }
+        if (id == LEGACY_DEFLATE_HEADER)
+        {
+            return deserialize_deflate_stream(data);
+        }
+        ICompressionCodec codec = CompressionCodecs.get(id);
+        if (codec == null)
+        {
+            throw new IOException("Payload compressed with unknown codec " + id);
+        }
+        byte[] uncompressed = new byte[ByteBuffer.wrap(data, 1, 4).getInt()];
+        codec.decompress(data, 5, data.length - 5, uncompressed);
+        return deserialize(uncompressed);
+    }
+
+    private static Object deserialize_deflate_stream(byte[] data)
+        throws IOException
+    {
         Kryo k = kryos.get();
-        try (ByteArrayInputStream bis = new ByteArrayInputStream(data))
+        Buffers b = acquire();
+        try (InflaterInputStream iis = new InflaterInputStream(new ByteArrayInputStream(data)))
         {
-            try (InflaterInputStream iis = new InflaterInputStream(bis))
-            {
-                try (UnsafeInput i = new UnsafeInput(iis, 16384))
-                {
-                    o = k.readClassAndObject(i);
-                    return o;
-                }
-            }
+            b.input.setInputStream(iis);
+            return k.readClassAndObject(b.input);
+        }
+        finally {
+            b.release();
         }
     }
 
-    /** Serialize an object using compression.
+    /** Serialize an object using compression, with the default codec and threshold.
      * @param o     The object to be serialized.
      *
      * @return      The serialized byte array.
@@ -148,20 +293,33 @@ public class Serializer
     public static byte[] serialize_compressed (Object o)
         throws IOException
     {
-        Kryo k = kryos.get();
-        try (ByteArrayOutputStream baos = new ByteArrayOutputStream())
+        return serialize_compressed(o, CompressionCodecs.LZ, CompressionCodecs.DEFAULT_THRESHOLD);
+    }
+
+    /** Serialize an object using compression.
+     * @param o         The object to be serialized.
+     * @param codec     The codec to compress with, or null to not compress.
+     * @param threshold The size below which objects are not compressed, in bytes.
+     *
+     * @return          The serialized byte array.
+     */
+    public static byte[] serialize_compressed (Object o, ICompressionCodec codec, int threshold)
+        throws IOException
+    {
+        ByteBuffer b = serialize(o, 1);
+        int length = b.limit() - 1;
+        if (codec != null && length >= threshold)
         {
-            try (DeflaterOutputStream dos = new DeflaterOutputStream(baos))
+            byte[] compressed = codec.compress(b.array(), 1, length, 5);
+            if (compressed != null)
             {
-                try (UnsafeOutput output = new UnsafeOutput(dos, 16384))
-                {
-                    k.writeClassAndObject(output, o);
-                    output.flush();
-                }
-                dos.finish();
+                compressed[0] = codec.getId();
+                ByteBuffer.wrap(compressed, 1, 4).putInt(length);
+                return compressed;
             }
-            return baos.toByteArray();
         }
+        b.put(0, CompressionCodecs.NONE);
+        return Arrays.copyOf(b.array(), b.limit());
     }
 
     /** Deep copy an object.
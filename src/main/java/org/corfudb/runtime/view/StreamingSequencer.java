@@ -19,9 +19,11 @@ import org.corfudb.runtime.CorfuDBRuntime;
 import org.corfudb.runtime.NetworkException;
 import org.corfudb.runtime.protocols.IServerProtocol;
 import org.corfudb.runtime.protocols.sequencers.ISimpleSequencer;
+import org.corfudb.runtime.protocols.sequencers.BackpointerToken;
 import org.corfudb.runtime.protocols.sequencers.IStreamSequencer;
 import org.corfudb.runtime.RemoteException;
 
+import java.util.List;
 import java.util.UUID;
 
 import org.slf4j.Logger;
@@ -78,6 +80,11 @@ public class StreamingSequencer implements IStreamingSequencer {
     @Override
     public long getNext(UUID streamID, int numTokens)
     {
+        if (streamID == null && numTokens > 0 && logID == null && client != null)
+        {
+            //global tokens are coalesced with other requests through this runtime
+            return client.getTokenCoalescer().getNext(numTokens);
+        }
         while (true)
         {
             try {
@@ -104,6 +111,69 @@ public class StreamingSequencer implements IStreamingSequencer {
         }
     }
 
+    @Override
+    public BackpointerToken getNextBackpointer(UUID streamID, int numTokens)
+    {
+        if (numTokens > 0 && logID == null && client != null)
+        {
+            return client.getTokenCoalescer(streamID).getNextBackpointer(numTokens);
+        }
+        return issueBackpointer(streamID, numTokens);
+    }
+
+    /**
+     * Issue tokens for a stream directly from the sequencer, without coalescing.
+     * @param streamID      The stream ID to issue tokens for.
+     * @param numTokens     The number of tokens to issue.
+     * @return              The first token issued, and its backpointer.
+     */
+    public BackpointerToken issueBackpointer(UUID streamID, int numTokens)
+    {
+        while (true)
+        {
+            try {
+                IServerProtocol sequencer = getView.get().getSequencers().get(0);
+                if (sequencer instanceof IStreamSequencer)
+                {
+                    return ((IStreamSequencer)sequencer).sequenceGetNextBackpointer(streamID, numTokens);
+                }
+                else
+                {
+                    return new BackpointerToken(((ISimpleSequencer)sequencer).sequenceGetNext(numTokens),
+                            BackpointerToken.UNKNOWN_PREVIOUS);
+                }
+            }
+            catch (NetworkException e)
+            {
+                log.warn("Unable to get next sequence, requesting new view.", e);
+                client.invalidateViewAndWait(e);
+            }
+        }
+    }
+
+    @Override
+    public List<BackpointerToken> getNextBackpointers(List<UUID> streams, int numTokens)
+    {
+        while (true)
+        {
+            try {
+                IServerProtocol sequencer = getView.get().getSequencers().get(0);
+                if (sequencer instanceof IStreamSequencer)
+                {
+                    return ((IStreamSequencer)sequencer).sequenceGetNextBackpointers(streams, numTokens);
+                }
+                else
+                {
+                    return IStreamingSequencer.super.getNextBackpointers(streams, numTokens);
+                }
+            }
+            catch (NetworkException e)
+            {
+                log.warn("Unable to get next sequence, requesting new view.", e);
+                client.invalidateViewAndWait(e);
+            }
+        }
+    }
 
     public void setAllocationSize(UUID streamID, int size)
     {
@@ -130,6 +200,45 @@ public class StreamingSequencer implements IStreamingSequencer {
 
     }
 
-}
-
+    @Override
+    public void setLowWaterMark(UUID streamID, long address)
+    {
+        while (true)
+        {
+            try {
+                IServerProtocol sequencer = getView.get().getSequencers().get(0);
+                if (sequencer instanceof IStreamSequencer)
+                {
+                    ((IStreamSequencer)sequencer).setLowWaterMark(streamID, address);
+                }
+                return;
+            }
+            catch (NetworkException e)
+            {
+                log.warn("Unable to publish low-water mark, requesting new view.", e);
+                client.invalidateViewAndWait(e);
+            }
+        }
+    }
 
+    @Override
+    public long getLowWaterMark()
+    {
+        while (true)
+        {
+            try {
+                IServerProtocol sequencer = getView.get().getSequencers().get(0);
+                if (sequencer instanceof IStreamSequencer)
+                {
+                    return ((IStreamSequencer)sequencer).getLowWaterMark();
+                }
+                return 0;
+            }
+            catch (NetworkException e)
+            {
+                log.warn("Unable to get low-water mark, requesting new view.", e);
+                client.invalidateViewAndWait(e);
+            }
+        }
+    }
+}
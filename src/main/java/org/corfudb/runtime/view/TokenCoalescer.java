@@ -0,0 +1,187 @@
+/**
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.corfudb.runtime.view;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.IntFunction;
+
+import com.codahale.metrics.Histogram;
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+
+import org.corfudb.runtime.protocols.sequencers.BackpointerToken;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Coalesces concurrent token requests into a single sequencer request.
+ *
+ * Each caller joins the open batch, reserving its tokens at an offset into the batch. The first caller
+ * to join a batch becomes its leader: it waits for the previous batch to be issued, waits out the
+ * coalescing window (if any), then closes the batch and requests all of its tokens at once. The tokens
+ * are handed back to the callers in the order they joined, so each caller gets a contiguous range.
+ * When the tokens are issued for a stream, the first caller gets the backpointer returned by the
+ * sequencer, and every other caller points back to the last token of the caller before it.
+ *
+ * Only one request is outstanding at a time, so callers arriving while a request is in flight are
+ * batched together even when the window is zero.
+ */
+public class TokenCoalescer {
+
+    private static final Logger log = LoggerFactory.getLogger(TokenCoalescer.class);
+
+    private static class Batch {
+        int requested = 0;
+        long base;
+        long previous;
+        boolean done = false;
+        RuntimeException error = null;
+    }
+
+    private final IntFunction<BackpointerToken> issuer;
+    private final Object issueLock = new Object();
+    private volatile long windowNanos = 0;
+    private Batch open = null;
+
+    private final Histogram batchSizes;
+    private final Meter requests;
+    private final Meter tokens;
+
+    /**
+     * Create a token coalescer.
+     * @param issuer        Issues the given number of tokens, returning the first one.
+     * @param metrics       The registry to report batch sizes to.
+     * @param name          The name the metrics are registered under.
+     */
+    public TokenCoalescer(IntFunction<BackpointerToken> issuer, MetricRegistry metrics, String name)
+    {
+        this.issuer = issuer;
+        this.batchSizes = metrics.histogram(MetricRegistry.name(name, "batch-size"));
+        this.requests = metrics.meter(MetricRegistry.name(name, "requests"));
+        this.tokens = metrics.meter(MetricRegistry.name(name, "tokens"));
+    }
+
+    /**
+     * Set the time a batch stays open for other callers to join.
+     * @param micros        The window, in microseconds. 0 issues a batch as soon as the previous one returns.
+     */
+    public void setWindow(long micros)
+    {
+        windowNanos = TimeUnit.MICROSECONDS.toNanos(micros);
+    }
+
+    /**
+     * Get tokens.
+     * @param numTokens     The number of tokens to get. Must be greater than 0.
+     * @return              The first of numTokens consecutive tokens.
+     */
+    public long getNext(int numTokens)
+    {
+        return getNextBackpointer(numTokens).position;
+    }
+
+    /**
+     * Get tokens, together with the previous token issued to the stream.
+     * @param numTokens     The number of tokens to get. Must be greater than 0.
+     * @return              The first of numTokens consecutive tokens, and its backpointer.
+     */
+    public BackpointerToken getNextBackpointer(int numTokens)
+    {
+        Batch b;
+        int offset;
+        boolean leader = false;
+        synchronized (this)
+        {
+            if (open == null)
+            {
+                open = new Batch();
+                leader = true;
+            }
+            b = open;
+            offset = b.requested;
+            b.requested += numTokens;
+        }
+
+        if (leader)
+        {
+            issue(b);
+        }
+        else
+        {
+            synchronized (b)
+            {
+                boolean interrupted = false;
+                while (!b.done)
+                {
+                    try {
+                        b.wait();
+                    } catch (InterruptedException ie) {
+                        interrupted = true;
+                    }
+                }
+                if (interrupted) { Thread.currentThread().interrupt(); }
+            }
+        }
+
+        if (b.error != null)
+        {
+            throw b.error;
+        }
+        return new BackpointerToken(b.base + offset, offset == 0 ? b.previous : b.base + offset - 1);
+    }
+
+    private void issue(Batch b)
+    {
+        synchronized (issueLock)
+        {
+            if (windowNanos > 0)
+            {
+                LockSupport.parkNanos(windowNanos);
+            }
+            int total;
+            synchronized (this)
+            {
+                open = null;
+                total = b.requested;
+            }
+
+            BackpointerToken token = null;
+            RuntimeException error = null;
+            try {
+                token = issuer.apply(total);
+            } catch (RuntimeException re) {
+                log.warn("Error issuing batch of {} tokens", total, re);
+                error = re;
+            }
+
+            batchSizes.update(total);
+            requests.mark();
+            tokens.mark(total);
+            synchronized (b)
+            {
+                if (token != null)
+                {
+                    b.base = token.position;
+                    b.previous = token.previous;
+                }
+                b.error = error;
+                b.done = true;
+                b.notifyAll();
+            }
+        }
+    }
+}
@@ -20,8 +20,12 @@ import org.corfudb.runtime.CorfuDBRuntime;
 import org.corfudb.runtime.protocols.IServerProtocol;
 import org.corfudb.runtime.protocols.logunits.IWriteOnceLogUnit;
 
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Map;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -34,6 +38,10 @@ import java.io.ObjectInputStream;
 import java.io.ObjectOutput;
 import java.io.IOException;
 
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
 import java.util.function.Supplier;
 
 import java.util.UUID;
@@ -51,6 +59,7 @@ public class WriteOnceAddressSpace implements IWriteOnceAddressSpace {
     private Supplier<CorfuDBView> getView;
 
 	private final Logger log = LoggerFactory.getLogger(WriteOnceAddressSpace.class);
+    private static final Logger staticLog = LoggerFactory.getLogger(WriteOnceAddressSpace.class);
 
     public WriteOnceAddressSpace(CorfuDBRuntime client)
     {
@@ -82,6 +91,18 @@ public class WriteOnceAddressSpace implements IWriteOnceAddressSpace {
         };
     }
 
+    /**
+     * Write an entry asynchronously, on the async write pool of the runtime.
+     * @param address       The address to write to.
+     * @param data          The payload to write.
+     * @return              A future which completes once the entry is written.
+     */
+    @Override
+    public CompletableFuture<Void> writeAsync(long address, byte[] data)
+    {
+        return writeAsync(address, data, client == null ? null : client.getPool("async-write"));
+    }
+
     public void write(long address, Serializable s)
         throws IOException, OverwriteException, TrimmedException
     {
@@ -101,17 +122,7 @@ public class WriteOnceAddressSpace implements IWriteOnceAddressSpace {
         while (true)
         {
             try {
-                //TODO: handle multiple segments
-                CorfuDBViewSegment segments =  getView.get().getSegments().get(0);
-                int mod = segments.getGroups().size();
-                int groupnum =(int) (address % mod);
-                List<IServerProtocol> chain = segments.getGroups().get(groupnum);
-                //writes have to go to chain in order
-                long mappedAddress = address/mod;
-                for (IServerProtocol unit : chain)
-                {
-                    ((IWriteOnceLogUnit)unit).write(mappedAddress,data);
-                }
+                write(getView.get().getRoutingTable(), address, data, getReplicaPool(client));
                 return;
             }
             catch (NetworkException e)
@@ -135,20 +146,75 @@ public class WriteOnceAddressSpace implements IWriteOnceAddressSpace {
     public byte[] read(long address)
         throws UnwrittenException, TrimmedException
     {
-        //TODO: cache the layout so we don't have to determine it on every write.
 
         while (true)
         {
             try {
-                //TODO: handle multiple segments
-                CorfuDBViewSegment segments =  getView.get().getSegments().get(0);
-                int mod = segments.getGroups().size();
-                int groupnum =(int) (address % mod);
-                List<IServerProtocol> chain = segments.getGroups().get(groupnum);
-                //reads have to come from last unit in chain
-                IWriteOnceLogUnit wolu = (IWriteOnceLogUnit) chain.get(chain.size() - 1);
-                long mappedAddress = address/mod;
-                return wolu.read(mappedAddress);
+                return read(getView.get().getRoutingTable(), address, getReadPolicy(client), getReplicaPool(client));
+            }
+            catch (NetworkException e)
+            {
+                log.warn("Unable to read, requesting new view.", e);
+                client.invalidateViewAndWait(e);
+            }
+        }
+    }
+
+    @Override
+    public void multiWrite(Map<Long, byte[]> entries)
+        throws OverwriteException, TrimmedException
+    {
+        try {
+            multiWrite(getView.get().getRoutingTable(), entries, getReplicaPool(client));
+        }
+        catch (NetworkException e)
+        {
+            log.warn("Unable to write batch, requesting new view.", e);
+            client.invalidateViewAndWait(e);
+            //part of the batch may have made it, so finish it one entry at a time.
+            for (Map.Entry<Long, byte[]> entry : entries.entrySet())
+            {
+                try {
+                    write(entry.getKey(), entry.getValue());
+                }
+                catch (OverwriteException oe)
+                {
+                    try {
+                        if (!Arrays.equals(read(entry.getKey()), entry.getValue())) { throw oe; }
+                    }
+                    catch (UnwrittenException ue)
+                    {
+                        throw oe;
+                    }
+                }
+            }
+        }
+    }
+
+    @Override
+    public Map<Long, byte[]> multiRead(List<Long> addresses)
+    {
+        while (true)
+        {
+            try {
+                return multiRead(getView.get().getRoutingTable(), addresses, getReadPolicy(client),
+                        getReplicaPool(client));
+            }
+            catch (NetworkException e)
+            {
+                log.warn("Unable to read, requesting new view.", e);
+                client.invalidateViewAndWait(e);
+            }
+        }
+    }
+
+    @Override
+    public Map<Long, byte[]> readRange(long address, int count)
+    {
+        while (true)
+        {
+            try {
+                return readRange(getView.get().getRoutingTable(), address, count, getReplicaPool(client));
             }
             catch (NetworkException e)
             {
@@ -158,6 +224,740 @@ public class WriteOnceAddressSpace implements IWriteOnceAddressSpace {
         }
     }
 
+    @Override
+    public void trim(long address)
+    {
+        while (true)
+        {
+            try {
+                trim(getView.get().getRoutingTable(), address);
+                return;
+            }
+            catch (NetworkException e)
+            {
+                log.warn("Unable to trim, requesting new view.", e);
+                client.invalidateViewAndWait(e);
+            }
+        }
+    }
+
+    /**
+     * Prefix-trim the log on every unit of every group which stores addresses below the trim point.
+     */
+    static void trim(RoutingTable routes, long address)
+        throws NetworkException
+    {
+        for (Map.Entry<RoutingTable.Group, Long> g : routes.mapTrim(address).entrySet())
+        {
+            for (IServerProtocol unit : g.getKey().getChain())
+            {
+                ((IWriteOnceLogUnit) unit).trim(g.getValue());
+            }
+        }
+    }
+
+    /**
+     * Fill a hole: an address whose token was issued, but which was never written, because its writer
+     * failed or gave up. The address is fixed on every unit of its group, see fill(RoutingTable, ...).
+     * @param address       The address to fill.
+     * @param junk          The entry to write if no unit holds an entry for the address.
+     * @return              The entry the address holds once filled: junk, or the entry the writer got
+     *                      to some units before it failed.
+     */
+    public byte[] fill(long address, byte[] junk)
+        throws TrimmedException
+    {
+        while (true)
+        {
+            try {
+                return fill(getView.get().getRoutingTable(), address, junk, getReplicaPool(client));
+            }
+            catch (NetworkException e)
+            {
+                log.warn("Unable to fill hole, requesting new view.", e);
+                client.invalidateViewAndWait(e);
+            }
+        }
+    }
+
+    /**
+     * Fill a hole on the units of its group. A writer which fails part way through leaves its entry on
+     * some units but not others, so if any unit holds an entry, that entry is copied to the rest of the
+     * group instead of the junk entry. The units are fixed in chain order, and whatever a unit returns is
+     * what the units after it are fixed with, so a writer which races the fill and wins the head of the
+     * chain still ends up with its entry on every unit.
+     *
+     * In PARALLEL mode, units may hold the entries of different writers, so each unit is fixed with the
+     * junk entry, which keeps whatever it already holds, and the entry the address is decided on is read
+     * back with a quorum read, which is final once every unit holds an entry. With a pool, the units are
+     * fixed at once, but the fill still waits for every one of them.
+     */
+    static byte[] fill(RoutingTable routes, long address, byte[] junk)
+        throws TrimmedException, NetworkException
+    {
+        return fill(routes, address, junk, null);
+    }
+
+    /**
+     * Fill a hole on the units of its group, reading PARALLEL groups back on a pool, see readQuorum.
+     */
+    static byte[] fill(RoutingTable routes, long address, byte[] junk, ExecutorService pool)
+        throws TrimmedException, NetworkException
+    {
+        RoutingTable.Group group = routes.route(address);
+        long mappedAddress = group.map(address);
+        if (isQuorumRead(group))
+        {
+            ReplicaCalls<byte[]> fixes = new ReplicaCalls<byte[]>(group, pool,
+                    i -> ((IWriteOnceLogUnit) group.getChain().get(i)).fix(mappedAddress, junk));
+            Exception failure = null;
+            while (fixes.hasNext())
+            {
+                int unit = fixes.next();
+                if (failure == null) { failure = fixes.getFailure(unit); }
+            }
+            if (failure instanceof TrimmedException) { throw (TrimmedException) failure; }
+            if (failure instanceof NetworkException) { throw (NetworkException) failure; }
+            if (failure != null)
+            {
+                throw failure instanceof RuntimeException ? (RuntimeException) failure : new RuntimeException(failure);
+            }
+            try {
+                return readQuorum(group, mappedAddress, pool);
+            }
+            catch (UnwrittenException ue)
+            {
+                throw new NetworkException("Filled address " + address + " is unwritten", null, address, false);
+            }
+        }
+        byte[] entry = junk;
+        for (IServerProtocol unit : group.getChain())
+        {
+            try {
+                entry = ((IWriteOnceLogUnit) unit).read(mappedAddress);
+                break;
+            }
+            catch (UnwrittenException ue)
+            {
+                // not on this unit, try the next one.
+            }
+        }
+        for (IServerProtocol unit : group.getChain())
+        {
+            entry = ((IWriteOnceLogUnit) unit).fix(mappedAddress, entry);
+        }
+        group.markCommitted(mappedAddress);
+        return entry;
+    }
+
+    /**
+     * Check whether reads from a group have to be quorum reads. In PARALLEL mode, a writer which loses the
+     * race for an address to another writer on a quorum of units still leaves its entry on the units it
+     * got to first, and there is no way to overwrite them, so no single unit can be trusted to hold the
+     * entry the address was decided on.
+     */
+    static boolean isQuorumRead(RoutingTable.Group group)
+    {
+        return group.getSegment().getReplication() == CorfuDBViewSegment.ReplicationMode.PARALLEL
+                && group.getChain().size() > 1;
+    }
+
+    /**
+     * Decide an address of a PARALLEL group from the entries its units hold. An entry held by a quorum of
+     * units is the entry the address was decided on, and since a quorum is a majority, no other entry can
+     * ever reach one. Once every unit holds an entry and none of them has reached a quorum, no writer can
+     * succeed anymore, and the address is settled on the entry held by the most units, the first of them
+     * in chain order on a tie. Like a write which fails part way through in CHAIN mode, the entry settled
+     * on may be one whose writer failed.
+     * @param copies        The entries held by the units which hold one, in chain order.
+     * @param quorum        The number of units which decide an entry.
+     * @param complete      Whether every unit of the group holds an entry.
+     * @return              The entry the address is decided on, or null if it is not decided yet.
+     */
+    static byte[] decide(List<byte[]> copies, int quorum, boolean complete)
+    {
+        byte[] best = null;
+        int bestCount = 0;
+        for (byte[] copy : copies)
+        {
+            int count = 0;
+            for (byte[] other : copies)
+            {
+                if (Arrays.equals(copy, other)) { count++; }
+            }
+            if (count >= quorum) { return copy; }
+            if (count > bestCount)
+            {
+                best = copy;
+                bestCount = count;
+            }
+        }
+        return complete ? best : null;
+    }
+
+    /**
+     * Collect the entries read from the units which hold one, in chain order.
+     */
+    static List<byte[]> inChainOrder(byte[][] copies)
+    {
+        List<byte[]> held = new ArrayList<byte[]>();
+        for (byte[] copy : copies)
+        {
+            if (copy != null) { held.add(copy); }
+        }
+        return held;
+    }
+
+    /**
+     * Read an address of a PARALLEL group, from every unit at once, until the entries read decide it.
+     */
+    static byte[] readQuorum(RoutingTable.Group group, long mappedAddress, ExecutorService pool)
+        throws UnwrittenException, TrimmedException, NetworkException
+    {
+        int size = group.getChain().size();
+        int quorum = group.getSegment().getQuorum(size);
+        ReplicaCalls<byte[]> reads = new ReplicaCalls<byte[]>(group, pool, i -> group.read(i, mappedAddress));
+        byte[][] copies = new byte[size][];
+        UnwrittenException unwritten = null;
+        NetworkException network = null;
+        while (reads.hasNext())
+        {
+            int unit = reads.next();
+            Exception e = reads.getFailure(unit);
+            if (e == null)
+            {
+                copies[unit] = reads.getResult(unit);
+                byte[] decided = decide(inChainOrder(copies), quorum, false);
+                if (decided != null)
+                {
+                    return decided;
+                }
+            }
+            else if (e instanceof UnwrittenException) { unwritten = (UnwrittenException) e; }
+            else if (e instanceof NetworkException) { network = (NetworkException) e; }
+            else if (e instanceof TrimmedException) { throw (TrimmedException) e; }
+            else { throw e instanceof RuntimeException ? (RuntimeException) e : new RuntimeException(e); }
+        }
+        // a unit which could not be read may hold the entry which decides the address.
+        if (network != null) { throw network; }
+        if (unwritten != null) { throw unwritten; }
+        return decide(inChainOrder(copies), quorum, true);
+    }
+
+    @FunctionalInterface
+    interface ReplicaRead {
+        Map<Long, byte[]> read(IWriteOnceLogUnit unit) throws NetworkException;
+    }
+
+    /**
+     * Read a batch of addresses of a PARALLEL group, with one request to each unit, all at once, until every
+     * address is decided. Addresses which are not decided are left out, as with any batch read, and can be
+     * read one at a time to find out why.
+     */
+    static Map<Long, byte[]> readQuorum(RoutingTable.Group group, List<Long> mapped, ReplicaRead read,
+                                        ExecutorService pool)
+        throws NetworkException
+    {
+        int size = group.getChain().size();
+        int quorum = group.getSegment().getQuorum(size);
+        ReplicaCalls<Map<Long, byte[]>> reads = new ReplicaCalls<Map<Long, byte[]>>(group, pool,
+                i -> read.read((IWriteOnceLogUnit) group.getChain().get(i)));
+        HashMap<Long, byte[][]> copies = new HashMap<Long, byte[][]>();
+        HashMap<Long, byte[]> decided = new HashMap<Long, byte[]>();
+        NetworkException network = null;
+        int failed = 0;
+        while (reads.hasNext() && decided.size() < mapped.size())
+        {
+            int unit = reads.next();
+            Exception failure = reads.getFailure(unit);
+            if (failure instanceof NetworkException)
+            {
+                network = (NetworkException) failure;
+                failed++;
+                continue;
+            }
+            else if (failure != null)
+            {
+                throw failure instanceof RuntimeException ? (RuntimeException) failure : new RuntimeException(failure);
+            }
+            for (Map.Entry<Long, byte[]> e : reads.getResult(unit).entrySet())
+            {
+                if (decided.containsKey(e.getKey())) { continue; }
+                byte[][] c = copies.computeIfAbsent(e.getKey(), k -> new byte[size][]);
+                c[unit] = e.getValue();
+                List<byte[]> held = inChainOrder(c);
+                byte[] d = decide(held, quorum, failed == 0 && held.size() == size);
+                if (d != null)
+                {
+                    decided.put(e.getKey(), d);
+                }
+            }
+        }
+        if (decided.isEmpty() && network != null && failed == size)
+        {
+            throw network;
+        }
+        return decided;
+    }
+
+    @FunctionalInterface
+    interface ReplicaCall<R> {
+        R call(int unit) throws Exception;
+    }
+
+    /**
+     * The calls made to every unit of a group. With a pool, the calls are all issued at once, and are taken
+     * in the order they complete; calls which are not taken carry on in the background. Without a pool, each
+     * call is made when it is taken, one at a time, in chain order.
+     */
+    static class ReplicaCalls<R> {
+
+        final int size;
+        final ReplicaCall<R> call;
+        final ExecutorCompletionService<Integer> issued;
+        final Object[] results;
+        final Exception[] failures;
+        int taken = 0;
+
+        ReplicaCalls(RoutingTable.Group group, ExecutorService pool, ReplicaCall<R> call)
+        {
+            this.size = group.getChain().size();
+            this.call = call;
+            this.results = new Object[size];
+            this.failures = new Exception[size];
+            this.issued = pool == null ? null : new ExecutorCompletionService<Integer>(pool);
+            if (issued != null)
+            {
+                for (int i = 0; i < size; i++)
+                {
+                    final int unit = i;
+                    issued.submit(() -> {
+                        make(unit);
+                        return unit;
+                    });
+                }
+            }
+        }
+
+        private void make(int unit)
+        {
+            try {
+                results[unit] = call.call(unit);
+            } catch (Exception e) {
+                failures[unit] = e;
+            }
+        }
+
+        /**
+         * Check whether the calls are made in the background, so calls which are not taken still complete.
+         */
+        boolean inBackground()
+        {
+            return issued != null;
+        }
+
+        boolean hasNext()
+        {
+            return taken < size;
+        }
+
+        /**
+         * Wait for the next call to complete.
+         * @return              The unit the call was made to, see getResult() and getFailure().
+         */
+        int next()
+        {
+            if (issued == null)
+            {
+                make(taken);
+                return taken++;
+            }
+            boolean interrupted = false;
+            try {
+                while (true)
+                {
+                    try {
+                        int unit = issued.take().get();
+                        taken++;
+                        return unit;
+                    } catch (InterruptedException ie) {
+                        interrupted = true;
+                    } catch (ExecutionException ee) {
+                        // make() keeps the failures of the calls, so this is a bug.
+                        throw new IllegalStateException(ee.getCause());
+                    }
+                }
+            } finally {
+                if (interrupted) { Thread.currentThread().interrupt(); }
+            }
+        }
+
+        @SuppressWarnings("unchecked")
+        R getResult(int unit)
+        {
+            return (R) results[unit];
+        }
+
+        Exception getFailure(int unit)
+        {
+            return failures[unit];
+        }
+    }
+
+    @FunctionalInterface
+    interface ReplicaWrite {
+        void write(IWriteOnceLogUnit unit) throws OverwriteException, TrimmedException, NetworkException;
+    }
+
+    @FunctionalInterface
+    interface ReplicaCheck {
+        boolean isWritten(IWriteOnceLogUnit unit) throws Exception;
+    }
+
+    /**
+     * Write an entry to the log, replicating it to each unit of its group as its segment is configured to,
+     * one unit at a time.
+     */
+    static void write(RoutingTable routes, long address, byte[] data)
+        throws OverwriteException, TrimmedException, NetworkException
+    {
+        write(routes, address, data, null);
+    }
+
+    /**
+     * Write an entry to the log, replicating it to each unit of its group as its segment is configured to,
+     * writing to the units of PARALLEL groups on a pool, see replicate().
+     */
+    static void write(RoutingTable routes, long address, byte[] data, ExecutorService pool)
+        throws OverwriteException, TrimmedException, NetworkException
+    {
+        RoutingTable.Group group = routes.route(address);
+        final long mappedAddress = group.map(address);
+        if (replicate(group,
+                unit -> unit.write(mappedAddress, data),
+                unit -> Arrays.equals(unit.read(mappedAddress), data), pool))
+        {
+            group.markCommitted(mappedAddress);
+        }
+    }
+
+    /**
+     * Get the read policy of a runtime.
+     */
+    static ReadPolicy getReadPolicy(CorfuDBRuntime client)
+    {
+        return client == null ? ReadPolicy.TAIL : client.getReadPolicy();
+    }
+
+    /**
+     * Get the pool of a runtime the units of PARALLEL groups are written to and read from.
+     * @return              The pool, or null, to call the units one at a time, if there is no runtime
+     *                      or it is closed.
+     */
+    static ExecutorService getReplicaPool(CorfuDBRuntime client)
+    {
+        return client == null ? null : client.getPool("replica-io");
+    }
+
+    /**
+     * Read an entry from the log. Addresses the group knows to be committed are read from the unit the
+     * read policy chooses, falling back to the tail if that unit has not caught up; other addresses are read
+     * from the tail. In PARALLEL mode, the entry is read from a quorum of units, see readQuorum.
+     */
+    static byte[] read(RoutingTable routes, long address, ReadPolicy policy)
+        throws UnwrittenException, TrimmedException, NetworkException
+    {
+        return read(routes, address, policy, null);
+    }
+
+    /**
+     * Read an entry from the log, reading PARALLEL groups on a pool, see readQuorum.
+     */
+    static byte[] read(RoutingTable routes, long address, ReadPolicy policy, ExecutorService pool)
+        throws UnwrittenException, TrimmedException, NetworkException
+    {
+        RoutingTable.Group group = routes.route(address);
+        long mappedAddress = group.map(address);
+        if (isQuorumRead(group))
+        {
+            return readQuorum(group, mappedAddress, pool);
+        }
+        int tail = group.getChain().size() - 1;
+        int replica = group.isCommitted(mappedAddress) ? policy.choose(group) : tail;
+        if (replica != tail)
+        {
+            try {
+                return group.read(replica, mappedAddress);
+            }
+            catch (UnwrittenException ue)
+            {
+                // the unit has not caught up with the tail yet.
+            }
+        }
+        byte[] data = group.read(tail, mappedAddress);
+        group.markCommitted(mappedAddress);
+        return data;
+    }
+
+    /**
+     * Write a batch of entries to the log, with one request to each unit of each group involved.
+     */
+    static void multiWrite(RoutingTable routes, Map<Long, byte[]> entries)
+        throws OverwriteException, TrimmedException, NetworkException
+    {
+        multiWrite(routes, entries, null);
+    }
+
+    /**
+     * Write a batch of entries to the log, writing to the units of PARALLEL groups on a pool.
+     */
+    static void multiWrite(RoutingTable routes, Map<Long, byte[]> entries, ExecutorService pool)
+        throws OverwriteException, TrimmedException, NetworkException
+    {
+        IdentityHashMap<RoutingTable.Group, Map<Long, byte[]>> groups = new IdentityHashMap<RoutingTable.Group, Map<Long, byte[]>>();
+        for (Map.Entry<Long, byte[]> e : entries.entrySet())
+        {
+            RoutingTable.Group group = routes.route(e.getKey());
+            groups.computeIfAbsent(group, k -> new HashMap<Long, byte[]>())
+                    .put(group.map(e.getKey()), e.getValue());
+        }
+        for (Map.Entry<RoutingTable.Group, Map<Long, byte[]>> g : groups.entrySet())
+        {
+            final Map<Long, byte[]> batch = g.getValue();
+            if (replicate(g.getKey(),
+                    unit -> unit.multiWrite(batch),
+                    unit -> {
+                        Map<Long, byte[]> written = unit.multiRead(new ArrayList<Long>(batch.keySet()));
+                        return batch.entrySet().stream().allMatch(e -> Arrays.equals(written.get(e.getKey()), e.getValue()));
+                    }, pool))
+            {
+                for (Long mapped : batch.keySet())
+                {
+                    g.getKey().markCommitted(mapped);
+                }
+            }
+        }
+    }
+
+    /**
+     * Write to one unit of a group. A unit which reports an overwrite but already holds the entry being
+     * written, because an earlier attempt of this write or a fill which copied it reached the unit,
+     * counts as written.
+     */
+    static void writeReplica(IWriteOnceLogUnit unit, ReplicaWrite write, ReplicaCheck check)
+        throws OverwriteException, TrimmedException, NetworkException
+    {
+        try {
+            write.write(unit);
+        } catch (OverwriteException oe) {
+            boolean written;
+            try {
+                written = check.isWritten(unit);
+            } catch (Exception e) {
+                written = false;
+            }
+            if (!written)
+            {
+                throw oe;
+            }
+        }
+    }
+
+    /**
+     * Replicate a write to the units of a group.
+     *
+     * In CHAIN mode, the write goes to each unit in turn, in chain order, so an entry which can be read from
+     * the tail has been written to every unit. Writers race for an address at the head of the chain; once
+     * a writer has won the head, a later unit which reports an overwrite is checked for the entry being
+     * written, as in PARALLEL mode, so a writer whose entry a fill copied down the chain still succeeds.
+     *
+     * In PARALLEL mode, the write goes to every unit at once, on the pool, and returns as soon as a quorum of
+     * units has acknowledged it; the remaining writes carry on in the background. Without a pool, the units
+     * are written one at a time, and all of them are written before this returns. A unit which reports an overwrite
+     * is checked for the entry being written: if it is there (because an earlier attempt of this write
+     * reached the unit), the unit counts as acknowledging the write. Otherwise another writer won the
+     * address on that unit, and once a quorum can no longer be reached, the write fails with an
+     * OverwriteException, which the caller handles as it would in CHAIN mode.
+     *
+     * @param group         The group to write to.
+     * @param write         Writes to one unit.
+     * @param check         Checks whether a unit which reported an overwrite holds the entry being written.
+     * @param pool          The pool to write to the units of a PARALLEL group on, or null.
+     * @return              True, if every unit of the group acknowledged the write before this returned.
+     */
+    static boolean replicate(RoutingTable.Group group, ReplicaWrite write, ReplicaCheck check, ExecutorService pool)
+        throws OverwriteException, TrimmedException, NetworkException
+    {
+        CorfuDBViewSegment segments = group.getSegment();
+        List<IServerProtocol> chain = group.getChain();
+        if (segments.getReplication() == CorfuDBViewSegment.ReplicationMode.CHAIN || chain.size() == 1)
+        {
+            //writes have to go to chain in order; the head decides which writer wins the address.
+            write.write((IWriteOnceLogUnit) chain.get(0));
+            for (IServerProtocol unit : chain.subList(1, chain.size()))
+            {
+                writeReplica((IWriteOnceLogUnit) unit, write, check);
+            }
+            return true;
+        }
+
+        int quorum = segments.getQuorum(chain.size());
+        ReplicaCalls<Void> writes = new ReplicaCalls<Void>(group, pool, i -> {
+            writeReplica((IWriteOnceLogUnit) chain.get(i), write, check);
+            return null;
+        });
+
+        int acks = 0;
+        int failures = 0;
+        OverwriteException overwrite = null;
+        TrimmedException trimmed = null;
+        NetworkException network = null;
+        while (writes.hasNext()
+                && (!writes.inBackground() || (acks < quorum && chain.size() - failures >= quorum)))
+        {
+            Exception e = writes.getFailure(writes.next());
+            if (e == null) { acks++; continue; }
+            failures++;
+            if (e instanceof OverwriteException) { overwrite = (OverwriteException) e; }
+            else if (e instanceof TrimmedException) { trimmed = (TrimmedException) e; }
+            else if (e instanceof NetworkException) { network = (NetworkException) e; }
+            else { throw e instanceof RuntimeException ? (RuntimeException) e : new RuntimeException(e); }
+        }
+
+        if (acks >= quorum)
+        {
+            if (failures > 0)
+            {
+                staticLog.warn("Write acknowledged by a quorum of {} units, but {} units failed", quorum, failures);
+            }
+            return acks == chain.size();
+        }
+        // another writer won the address on some units, so this write can never reach a quorum.
+        if (overwrite != null) { throw overwrite; }
+        if (trimmed != null) { throw trimmed; }
+        throw network;
+    }
+
+    /**
+     * Read a batch of addresses from the log, with one request to each group involved. As with single reads,
+     * a batch of committed addresses is read from the unit the read policy chooses, and whatever that unit
+     * has not caught up with is read from the tail. PARALLEL groups are read from a quorum of units.
+     */
+    static Map<Long, byte[]> multiRead(RoutingTable routes, List<Long> addresses, ReadPolicy policy)
+        throws NetworkException
+    {
+        return multiRead(routes, addresses, policy, null);
+    }
+
+    /**
+     * Read a batch of addresses from the log, reading PARALLEL groups on a pool.
+     */
+    static Map<Long, byte[]> multiRead(RoutingTable routes, List<Long> addresses, ReadPolicy policy,
+                                       ExecutorService pool)
+        throws NetworkException
+    {
+        IdentityHashMap<RoutingTable.Group, List<Long>> groups = new IdentityHashMap<RoutingTable.Group, List<Long>>();
+        for (Long address : addresses)
+        {
+            RoutingTable.Group group = routes.route(address);
+            groups.computeIfAbsent(group, k -> new ArrayList<Long>()).add(group.map(address));
+        }
+        HashMap<Long, byte[]> results = new HashMap<Long, byte[]>();
+        for (Map.Entry<RoutingTable.Group, List<Long>> g : groups.entrySet())
+        {
+            RoutingTable.Group group = g.getKey();
+            List<Long> mapped = g.getValue();
+            if (isQuorumRead(group))
+            {
+                for (Map.Entry<Long, byte[]> r : readQuorum(group, mapped, unit -> unit.multiRead(mapped), pool).entrySet())
+                {
+                    results.put(group.unmap(r.getKey()), r.getValue());
+                }
+                continue;
+            }
+            IWriteOnceLogUnit tail = group.getTail();
+            IWriteOnceLogUnit unit = mapped.stream().allMatch(group::isCommitted) ?
+                    (IWriteOnceLogUnit) group.getChain().get(policy.choose(group)) : tail;
+            Map<Long, byte[]> read = unit.multiRead(mapped);
+            if (unit == tail)
+            {
+                read.keySet().forEach(group::markCommitted);
+            }
+            else if (read.size() < mapped.size())
+            {
+                List<Long> missing = new ArrayList<Long>();
+                for (Long m : mapped)
+                {
+                    if (!read.containsKey(m)) { missing.add(m); }
+                }
+                Map<Long, byte[]> fromTail = tail.multiRead(missing);
+                fromTail.keySet().forEach(group::markCommitted);
+                read = new HashMap<Long, byte[]>(read);
+                read.putAll(fromTail);
+            }
+            for (Map.Entry<Long, byte[]> r : read.entrySet())
+            {
+                results.put(group.unmap(r.getKey()), r.getValue());
+            }
+        }
+        return results;
+    }
+
+    /**
+     * Read a range of consecutive addresses from the log. Within a segment, the addresses of each chain map
+     * to a range of consecutive addresses on its units, so this takes one range request to the tail of each
+     * chain of each segment the range covers, or to a quorum of the units of PARALLEL groups.
+     */
+    static Map<Long, byte[]> readRange(RoutingTable routes, long address, int count)
+        throws NetworkException
+    {
+        return readRange(routes, address, count, null);
+    }
+
+    /**
+     * Read a range of consecutive addresses from the log, reading PARALLEL groups on a pool.
+     */
+    static Map<Long, byte[]> readRange(RoutingTable routes, long address, int count, ExecutorService pool)
+        throws NetworkException
+    {
+        HashMap<Long, byte[]> results = new HashMap<Long, byte[]>();
+        long end = address + count;
+        while (address < end)
+        {
+            long segmentEnd = Math.min(routes.segmentEnd(address), end);
+            int n = (int) (segmentEnd - address);
+            int mod = routes.route(address).groups;
+            for (int i = 0; i < Math.min(mod, n); i++)
+            {
+                long first = address + i;
+                RoutingTable.Group group = routes.route(first);
+                final long mappedFirst = group.map(first);
+                final int mappedCount = (n - i + mod - 1) / mod;
+                Map<Long, byte[]> read;
+                if (isQuorumRead(group))
+                {
+                    List<Long> mapped = new ArrayList<Long>();
+                    for (long m = mappedFirst; m < mappedFirst + mappedCount; m++)
+                    {
+                        mapped.add(m);
+                    }
+                    read = readQuorum(group, mapped, unit -> unit.readRange(mappedFirst, mappedCount), pool);
+                }
+                else
+                {
+                    //reads have to come from last unit in chain
+                    read = group.getTail().readRange(mappedFirst, mappedCount);
+                }
+                for (Map.Entry<Long, byte[]> r : read.entrySet())
+                {
+                    results.put(group.unmap(r.getKey()), r.getValue());
+                }
+            }
+            address = segmentEnd;
+        }
+        return results;
+    }
+
     public Object readObject(long address)
     throws UnwrittenException, TrimmedException, ClassNotFoundException, IOException
     {
@@ -9,11 +9,19 @@ service SimpleLogUnitService {
 	Common.ErrorCode fix(1:Common.UnitServerHdr hdr),
 
 	Common.ExtntWrap read(1:Common.UnitServerHdr hdr),
+
+	list<Common.ErrorCode> multiWrite(1:Common.Epoch epoch, 2:list<i64> offsets, 3:list<Common.LogPayload> ctnt, 4:Common.ExtntMarkType et),
+
+	list<Common.ExtntWrap> multiRead(1:Common.Epoch epoch, 2:list<i64> offsets),
+
+	list<Common.ExtntWrap> readRange(1:Common.UnitServerHdr hdr, 2:i32 count),
 	
 	void sync(),
 	
 	Common.ExtntWrap readmeta(1:Common.UnitServerHdr hdr),
 
+	Common.ErrorCode trim(1:Common.UnitServerHdr hdr),
+
 	i64 querytrim(),
 	
 	i64 queryck(),
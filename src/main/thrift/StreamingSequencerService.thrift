@@ -5,11 +5,31 @@ struct StreamSequence {
    2:i32 totalTokens
 }
 
+struct StreamToken {
+   1:i64 position,
+   2:i64 previous
+}
+
+struct StreamID {
+   1:i64 msb,
+   2:i64 lsb
+}
+
+struct MultiStreamToken {
+   1:i64 position,
+   2:list<i64> previous
+}
+
 service StreamingSequencerService {
 
 	i64 nextpos(1:i32 ntokens);
     StreamSequence nextstreampos(1:string streamID, 2:i32 ntokens);
+    StreamToken nextbackpos(1:string streamID, 2:i32 ntokens);
+    StreamToken nextstreamtoken(1:StreamID streamID, 2:i32 ntokens);
+    MultiStreamToken nextmultistreampos(1:list<StreamID> streamIDs, 2:i32 ntokens);
     void setAllocationSize(1: string streamID, 2:i32 size);
+    void setlowwatermark(1:StreamID streamID, 2:i64 address);
+    i64 lowwatermark();
 	void recover(1:i64 lowbound);
 	void simulateFailure(1:bool fail, 2:i64 length),
     void reset();
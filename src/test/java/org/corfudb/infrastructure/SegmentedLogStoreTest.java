@@ -0,0 +1,210 @@
+package org.corfudb.infrastructure;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.corfudb.infrastructure.thrift.ErrorCode;
+import org.corfudb.infrastructure.thrift.ExtntMarkType;
+import org.corfudb.infrastructure.thrift.ExtntWrap;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class SegmentedLogStoreTest {
+
+    private File dir;
+
+    private static byte[] getTestPayload(int size)
+    {
+        byte[] test = new byte[size];
+        for (int i = 0; i < size; i++)
+        {
+            test[i] = (byte)(i % 255);
+        }
+        return test;
+    }
+
+    private static List<ByteBuffer> getTestPages(int size)
+    {
+        ArrayList<ByteBuffer> byteList = new ArrayList<ByteBuffer>();
+        byteList.add(ByteBuffer.wrap(getTestPayload(size)));
+        return byteList;
+    }
+
+    private static byte[] getPage(ExtntWrap ew)
+    {
+        byte[] data = new byte[ew.getCtnt().get(0).remaining()];
+        ew.getCtnt().get(0).get(data);
+        return data;
+    }
+
+    @Before
+    public void createDirectory() throws Exception
+    {
+        dir = Files.createTempDirectory("corfu-segments").toFile();
+    }
+
+    @After
+    public void deleteDirectory() throws Exception
+    {
+        for (File f : dir.listFiles())
+        {
+            f.delete();
+        }
+        dir.delete();
+    }
+
+    @Test
+    public void checkIfStoreIsWriteOnce() throws Exception
+    {
+        SegmentedLogStore store = new SegmentedLogStore(dir.getPath(), 1024 * 1024, false);
+        for (int i = 0; i < 100; i++)
+        {
+            assertEquals(ErrorCode.OK, store.append(i, getTestPages(4096), ExtntMarkType.EX_FILLED));
+        }
+        assertEquals(ErrorCode.ERR_OVERWRITE, store.append(42, getTestPages(4096), ExtntMarkType.EX_FILLED));
+        assertArrayEquals(getTestPayload(4096), getPage(store.read(42)));
+        assertEquals(ErrorCode.ERR_UNWRITTEN, store.read(100).getErr());
+        assertEquals(99L, store.getHighestOffset());
+        store.close();
+    }
+
+    @Test
+    public void checkIfSkippedEntriesAreReported() throws Exception
+    {
+        SegmentedLogStore store = new SegmentedLogStore(dir.getPath(), 1024 * 1024, false);
+        assertEquals(ErrorCode.OK, store.append(0, Collections.<ByteBuffer>emptyList(), ExtntMarkType.EX_SKIP));
+        assertEquals(ErrorCode.OK_SKIP, store.read(0).getErr());
+        assertEquals(ErrorCode.ERR_OVERWRITE, store.append(0, getTestPages(128), ExtntMarkType.EX_FILLED));
+        store.close();
+    }
+
+    @Test
+    public void checkIfTrimUnlinksSegments() throws Exception
+    {
+        // each segment holds 3 entries of 4KB
+        SegmentedLogStore store = new SegmentedLogStore(dir.getPath(), 3 * 4200, false);
+        for (int i = 0; i < 30; i++)
+        {
+            assertEquals(ErrorCode.OK, store.append(i, getTestPages(4096), ExtntMarkType.EX_FILLED));
+        }
+        assertTrue(new File(dir, "0.seg").exists());
+        store.trim(20);
+        assertFalse(new File(dir, "0.seg").exists());
+        assertFalse(new File(dir, "5.idx").exists());
+        assertTrue(new File(dir, "7.seg").exists());
+        assertEquals(ErrorCode.ERR_TRIMMED, store.read(5).getErr());
+        assertEquals(ErrorCode.ERR_TRIMMED, store.append(5, getTestPages(4096), ExtntMarkType.EX_FILLED));
+        assertArrayEquals(getTestPayload(4096), getPage(store.read(25)));
+        store.close();
+    }
+
+    @Test
+    public void checkIfStoreIsRecoverable() throws Exception
+    {
+        SegmentedLogStore store = new SegmentedLogStore(dir.getPath(), 3 * 4200, false);
+        for (int i = 0; i < 30; i++)
+        {
+            assertEquals(ErrorCode.OK, store.append(i, getTestPages(4096), ExtntMarkType.EX_FILLED));
+        }
+        store.trim(10);
+        store.close();
+
+        store = new SegmentedLogStore(dir.getPath(), 3 * 4200, true);
+        assertEquals(10L, store.getTrimMark());
+        assertEquals(29L, store.getHighestOffset());
+        assertEquals(ErrorCode.ERR_TRIMMED, store.read(9).getErr());
+        assertArrayEquals(getTestPayload(4096), getPage(store.read(29)));
+        assertEquals(ErrorCode.ERR_OVERWRITE, store.append(12, getTestPages(4096), ExtntMarkType.EX_FILLED));
+        assertEquals(ErrorCode.OK, store.append(30, getTestPages(4096), ExtntMarkType.EX_FILLED));
+        assertArrayEquals(getTestPayload(4096), getPage(store.read(30)));
+        store.close();
+    }
+
+    @Test
+    public void checkIfIndexWithoutDataIsDropped() throws Exception
+    {
+        SegmentedLogStore store = new SegmentedLogStore(dir.getPath(), 1024 * 1024, false);
+        for (int i = 0; i < 6; i++)
+        {
+            assertEquals(ErrorCode.OK, store.append(i, getTestPages(4096), ExtntMarkType.EX_FILLED));
+        }
+        store.close();
+
+        // the index was made durable, but the data of the last three entries was lost in a crash.
+        try (RandomAccessFile f = new RandomAccessFile(new File(dir, "0.seg"), "rw"))
+        {
+            f.setLength(3 * (2 * Integer.BYTES + 4096));
+        }
+
+        store = new SegmentedLogStore(dir.getPath(), 1024 * 1024, true);
+        assertEquals(2L, store.getHighestOffset());
+        assertArrayEquals(getTestPayload(4096), getPage(store.read(2)));
+        assertEquals(ErrorCode.ERR_UNWRITTEN, store.read(3).getErr());
+        assertEquals(ErrorCode.OK, store.append(3, getTestPages(4096), ExtntMarkType.EX_FILLED));
+        assertArrayEquals(getTestPayload(4096), getPage(store.read(3)));
+        assertArrayEquals(getTestPayload(4096), getPage(store.read(2)));
+        store.close();
+    }
+
+    @Test
+    public void checkIfIndexIsOnlyWrittenWhenForced() throws Exception
+    {
+        SegmentedLogStore store = new SegmentedLogStore(dir.getPath(), 1024 * 1024, false);
+        assertEquals(ErrorCode.OK, store.append(0, getTestPages(128), ExtntMarkType.EX_FILLED));
+        assertEquals(0L, new File(dir, "0.idx").length());
+        assertTrue(store.force());
+        assertEquals((long) SegmentedLogStore.INDEX_RECORD_SIZE, new File(dir, "0.idx").length());
+        store.close();
+    }
+
+    @Test
+    public void checkIfGroupCommitAcknowledgesWriters() throws Exception
+    {
+        final SegmentedLogStore store = new SegmentedLogStore(dir.getPath(), 1024 * 1024, false);
+        final GroupCommitter committer = new GroupCommitter(store, 8, 100);
+        Thread t = new Thread(committer);
+        t.setDaemon(true);
+        t.start();
+
+        final AtomicInteger acked = new AtomicInteger();
+        Thread[] writers = new Thread[4];
+        for (int w = 0; w < writers.length; w++)
+        {
+            final int base = w * 25;
+            writers[w] = new Thread(() -> {
+                try {
+                    for (int i = base; i < base + 25; i++)
+                    {
+                        assertEquals(ErrorCode.OK, store.append(i, getTestPages(128), ExtntMarkType.EX_FILLED));
+                        committer.awaitDurable(committer.register());
+                        acked.incrementAndGet();
+                    }
+                } catch (Exception e) {
+                    throw new RuntimeException(e);
+                }
+            });
+            writers[w].start();
+        }
+        for (Thread w : writers)
+        {
+            w.join();
+        }
+        committer.sync();
+        assertEquals(100, acked.get());
+        assertFalse(store.force());
+        t.interrupt();
+        store.close();
+    }
+}
@@ -0,0 +1,75 @@
+package org.corfudb.infrastructure;
+
+import org.corfudb.infrastructure.thrift.ErrorCode;
+import org.corfudb.infrastructure.thrift.ExtntMarkType;
+import org.corfudb.infrastructure.thrift.UnitServerHdr;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Measures the write+read throughput of an in-memory log unit as the number of clients grows.
+ * This only reports numbers, it does not check them: run it with main(), it is not a unit test.
+ */
+public class SimpleLogUnitServerBenchmark {
+
+    private static long runClients(final SimpleLogUnitServer slus, final int clients, final int opsPerClient,
+                                   final AtomicInteger failures)
+        throws InterruptedException
+    {
+        final byte[] test = new byte[4096];
+        final ArrayList<Integer> epochlist = new ArrayList<Integer>();
+        epochlist.add(0);
+        Thread[] threads = new Thread[clients];
+        long start = System.nanoTime();
+        for (int c = 0; c < clients; c++)
+        {
+            final int client = c;
+            threads[c] = new Thread(() -> {
+                try {
+                    for (int i = 0; i < opsPerClient; i++)
+                    {
+                        long off = (long) i * clients + client;
+                        if (slus.write(new UnitServerHdr(epochlist, off), Collections.singletonList(ByteBuffer.wrap(test)),
+                                    ExtntMarkType.EX_FILLED) != ErrorCode.OK
+                                || slus.read(new UnitServerHdr(epochlist, off)).getErr() != ErrorCode.OK)
+                        {
+                            failures.incrementAndGet();
+                        }
+                    }
+                } catch (Exception e) {
+                    failures.incrementAndGet();
+                }
+            });
+            threads[c].start();
+        }
+        for (Thread t : threads)
+        {
+            t.join();
+        }
+        return System.nanoTime() - start;
+    }
+
+    public static void main(String[] args) throws Exception
+    {
+        int totalOps = args.length > 0 ? Integer.parseInt(args[0]) : 40000;
+        int cores = Math.max(4, Runtime.getRuntime().availableProcessors());
+        SimpleLogUnitServer slus = new SimpleLogUnitServer();
+        AtomicInteger failures = new AtomicInteger();
+
+        // warm up, so the single client run is not the one paying for class loading and compilation.
+        slus.reset();
+        runClients(slus, cores, totalOps / cores, failures);
+
+        for (int clients = 1; clients <= cores; clients *= 2)
+        {
+            slus.reset();
+            failures.set(0);
+            long elapsed = runClients(slus, clients, totalOps / clients, failures);
+            System.out.printf("%d client(s): %d write+read ops/s, %d failed%n",
+                    clients, (long) (totalOps / (elapsed / 1000000000.0)), failures.get());
+        }
+    }
+}
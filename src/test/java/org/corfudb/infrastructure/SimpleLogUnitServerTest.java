@@ -1,19 +1,36 @@
 package org.corfudb.infrastructure;
 
+import static com.github.marschall.junitlambda.LambdaAssert.assertRaises;
 import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
 
 import org.corfudb.infrastructure.thrift.ErrorCode;
 import org.corfudb.infrastructure.thrift.ExtntMarkType;
 import org.corfudb.infrastructure.thrift.ExtntWrap;
 import org.corfudb.infrastructure.thrift.UnitServerHdr;
+import org.corfudb.runtime.NetworkException;
+import org.corfudb.runtime.protocols.logunits.CorfuDBSimpleLogUnitProtocol;
 import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
+import java.io.IOException;
+import java.net.ServerSocket;
 import java.nio.ByteBuffer;
+import java.nio.file.Files;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 public class SimpleLogUnitServerTest {
 
+    private static final Logger log = LoggerFactory.getLogger(SimpleLogUnitServerTest.class);
+
     private static byte[] getTestPayload(int size)
     {
         byte[] test = new byte[size];
@@ -85,6 +102,67 @@ public class SimpleLogUnitServerTest {
         assertArrayEquals(data, test);
     }
 
+    @Test
+    public void checkIfTrimReclaimsSpace() throws Exception
+    {
+        byte[] test = getTestPayload(4096);
+        ArrayList<Integer> epochlist = new ArrayList<Integer>();
+        epochlist.add(0);
+        ArrayList<ByteBuffer> byteList = new ArrayList<ByteBuffer>();
+        byteList.add(ByteBuffer.wrap(test));
+
+        SimpleLogUnitServer slus = new SimpleLogUnitServer();
+        slus.UNITCAPACITY = 10;
+        slus.reset();
+        for (int i = 0; i < 10; i++)
+        {
+            assertEquals(ErrorCode.OK, slus.write(new UnitServerHdr(epochlist, i), byteList, ExtntMarkType.EX_FILLED));
+        }
+        assertEquals(ErrorCode.ERR_FULL, slus.write(new UnitServerHdr(epochlist, 10), byteList, ExtntMarkType.EX_FILLED));
+
+        assertEquals(ErrorCode.OK, slus.trim(new UnitServerHdr(epochlist, 5)));
+        assertEquals(5, slus.querytrim());
+        assertEquals(ErrorCode.ERR_TRIMMED, slus.read(new UnitServerHdr(epochlist, 3)).getErr());
+        assertEquals(ErrorCode.ERR_TRIMMED, slus.write(new UnitServerHdr(epochlist, 3), byteList, ExtntMarkType.EX_FILLED));
+        assertEquals(ErrorCode.OK, slus.read(new UnitServerHdr(epochlist, 7)).getErr());
+
+        // the space of the trimmed extents is reused by the next ones.
+        for (int i = 10; i < 15; i++)
+        {
+            assertEquals(ErrorCode.OK, slus.write(new UnitServerHdr(epochlist, i), byteList, ExtntMarkType.EX_FILLED));
+        }
+        assertEquals(ErrorCode.ERR_UNWRITTEN, slus.read(new UnitServerHdr(epochlist, 15)).getErr());
+        ExtntWrap ew = slus.read(new UnitServerHdr(epochlist, 12));
+        byte[] data = new byte[ew.getCtnt().get(0).remaining()];
+        ew.getCtnt().get(0).get(data);
+        assertArrayEquals(data, test);
+    }
+
+    @Test
+    public void failedWritesDoNotAdvanceTheHighestAddress() throws Exception
+    {
+        byte[] test = getTestPayload(4096);
+        ArrayList<Integer> epochlist = new ArrayList<Integer>();
+        epochlist.add(0);
+        ArrayList<ByteBuffer> byteList = new ArrayList<ByteBuffer>();
+        byteList.add(ByteBuffer.wrap(test));
+
+        SimpleLogUnitServer slus = new SimpleLogUnitServer();
+        slus.UNITCAPACITY = 10;
+        slus.reset();
+        for (int i = 0; i < 5; i++)
+        {
+            assertEquals(ErrorCode.OK, slus.write(new UnitServerHdr(epochlist, i), byteList, ExtntMarkType.EX_FILLED));
+        }
+        assertEquals(ErrorCode.ERR_FULL, slus.write(new UnitServerHdr(epochlist, 10), byteList, ExtntMarkType.EX_FILLED));
+        assertEquals(4, slus.highestAddress());
+
+        List<ErrorCode> ecs = slus.multiWrite(epochlist, Collections.singletonList(12L),
+                Collections.singletonList(ByteBuffer.wrap(test)), ExtntMarkType.EX_FILLED);
+        assertEquals(ErrorCode.ERR_FULL, ecs.get(0));
+        assertEquals(4, slus.highestAddress());
+    }
+
     @Test
     public void checkIfEmptyAddressesAreUnwritten() throws Exception
     {
@@ -106,4 +184,150 @@ public class SimpleLogUnitServerTest {
         assertEquals(ew.getErr(), ErrorCode.ERR_UNWRITTEN);
     }
 
+    @Test
+    public void checkIfLogUnitIsBatchReadable() throws Exception
+    {
+        byte[] test = getTestPayload(4096);
+        ArrayList<Integer> epochlist = new ArrayList<Integer>();
+        epochlist.add(0);
+        ArrayList<Long> offsets = new ArrayList<Long>();
+        ArrayList<ByteBuffer> byteList = new ArrayList<ByteBuffer>();
+        for (long i = 0; i < 100; i++)
+        {
+            offsets.add(i);
+            byteList.add(ByteBuffer.wrap(test));
+        }
+
+        SimpleLogUnitServer slus = new SimpleLogUnitServer();
+        slus.reset();
+        List<ErrorCode> ecs = slus.multiWrite(epochlist, offsets, byteList, ExtntMarkType.EX_FILLED);
+        for (ErrorCode ec : ecs)
+        {
+            assertEquals(ec, ErrorCode.OK);
+        }
+
+        List<ExtntWrap> ews = slus.readRange(new UnitServerHdr(epochlist, 90), 20);
+        assertEquals(20, ews.size());
+        byte[] data = new byte[ews.get(5).getCtnt().get(0).remaining()];
+        ews.get(5).getCtnt().get(0).get(data);
+        assertArrayEquals(data, test);
+        assertEquals(ews.get(10).getErr(), ErrorCode.ERR_UNWRITTEN);
+    }
+
+    /**
+     * Start a disk mode log unit on a free port, with its store in a temporary directory.
+     *
+     * @param slus      The log unit to start.
+     * @return          A client connected to the log unit, once it answers pings.
+     */
+    private static CorfuDBSimpleLogUnitProtocol startDiskUnit(SimpleLogUnitServer slus) throws Exception
+    {
+        int port;
+        try (ServerSocket socket = new ServerSocket(0))
+        {
+            port = socket.getLocalPort();
+        }
+        Map<String,Object> config = new HashMap<String,Object>();
+        config.put("ramdisk", false);
+        config.put("port", port);
+        config.put("pagesize", 4096);
+        config.put("trim", 0);
+        config.put("drive", Files.createTempDirectory("slus").toString());
+        Thread serving = new Thread(slus.getInstance(config));
+        serving.setDaemon(true);
+        serving.start();
+
+        CorfuDBSimpleLogUnitProtocol lu = (CorfuDBSimpleLogUnitProtocol)
+                CorfuDBSimpleLogUnitProtocol.protocolFactory("localhost", port, new HashMap<String,String>(), 0L);
+        long deadline = System.currentTimeMillis() + 5000;
+        while (!lu.ping() && System.currentTimeMillis() < deadline)
+        {
+            Thread.sleep(5);
+        }
+        assertTrue(lu.ping());
+        return lu;
+    }
+
+    @Test(timeout = 10000)
+    public void readIsNotBlockedByAWriteWaitingForTheForce() throws Exception
+    {
+        final CountDownLatch forcing = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        final AtomicBoolean block = new AtomicBoolean(false);
+        SimpleLogUnitServer slus = new SimpleLogUnitServer() {
+            @Override
+            SegmentedLogStore openStore() throws IOException {
+                return new SegmentedLogStore(DRIVENAME, SEGMENTSIZE, RECOVERY) {
+                    @Override
+                    public boolean force() throws IOException {
+                        if (block.get())
+                        {
+                            forcing.countDown();
+                            try {
+                                release.await();
+                            } catch (InterruptedException ie) {
+                                throw new IOException(ie);
+                            }
+                        }
+                        return super.force();
+                    }
+                };
+            }
+        };
+        startDiskUnit(slus);
+
+        final byte[] test = getTestPayload(4096);
+        final ArrayList<Integer> epochlist = new ArrayList<Integer>();
+        epochlist.add(0);
+        assertEquals(ErrorCode.OK, slus.write(new UnitServerHdr(epochlist, 0), Collections.singletonList(ByteBuffer.wrap(test)),
+                ExtntMarkType.EX_FILLED));
+
+        // park a writer inside write(), waiting for its batch to be forced.
+        block.set(true);
+        final ErrorCode[] blocked = new ErrorCode[1];
+        Thread writer = new Thread(() -> {
+            try {
+                blocked[0] = slus.write(new UnitServerHdr(epochlist, 1), Collections.singletonList(ByteBuffer.wrap(test)),
+                        ExtntMarkType.EX_FILLED);
+            } catch (Exception e) {
+                log.error("blocked write failed", e);
+            }
+        });
+        writer.start();
+        forcing.await();
+
+        // without a global monitor, the unit still serves reads while the writer waits.
+        ExtntWrap ew = slus.read(new UnitServerHdr(epochlist, 0));
+        assertEquals(ErrorCode.OK, ew.getErr());
+        byte[] data = new byte[ew.getCtnt().get(0).remaining()];
+        ew.getCtnt().get(0).get(data);
+        assertArrayEquals(test, data);
+        assertEquals(ErrorCode.ERR_UNWRITTEN, slus.read(new UnitServerHdr(epochlist, 2)).getErr());
+
+        release.countDown();
+        writer.join();
+        assertEquals(ErrorCode.OK, blocked[0]);
+    }
+
+    @Test
+    public void clientThrowsWhenTheServerFailsTheForce() throws Exception
+    {
+        SimpleLogUnitServer slus = new SimpleLogUnitServer() {
+            @Override
+            SegmentedLogStore openStore() throws IOException {
+                return new SegmentedLogStore(DRIVENAME, SEGMENTSIZE, RECOVERY) {
+                    @Override
+                    public boolean force() throws IOException {
+                        throw new IOException("Simulated force failure!");
+                    }
+                };
+            }
+        };
+        CorfuDBSimpleLogUnitProtocol lu = startDiskUnit(slus);
+
+        // the entries were appended, but never made durable, so the writes must not be acknowledged.
+        byte[] test = getTestPayload(4096);
+        assertRaises(() -> lu.multiWrite(Collections.singletonMap(0L, test)), NetworkException.class);
+        assertRaises(() -> lu.write(1, test), NetworkException.class);
+    }
 }
@@ -2,6 +2,9 @@ package org.corfudb.infrastructure;
 
 import org.junit.Test;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
 
 public class SimpleSequencerServerTest {
 
@@ -66,4 +69,43 @@ public class SimpleSequencerServerTest {
         assertEquals(ss.nextpos(1), 0);
     }
 
+    @Test
+    public void restartResumesPastIssuedTokens() throws Exception {
+        File lease = File.createTempFile("corfu-sequencer", ".lease");
+        lease.delete();
+        try {
+            SimpleSequencerServer ss = new SimpleSequencerServer();
+            ss.useLease(new SequencerLease(lease, 10));
+            long last = 0;
+            for (int i = 0; i < 25; i++)
+            {
+                last = ss.nextpos(1);
+            }
+            // the lease is only extended once per chunk of tokens.
+            long bound = new SequencerLease(lease, 10).getBound();
+            assertTrue(bound > last && bound <= last + 10);
+
+            SimpleSequencerServer restarted = new SimpleSequencerServer();
+            restarted.useLease(new SequencerLease(lease, 10));
+            assertTrue(restarted.nextpos(1) > last);
+        } finally {
+            lease.delete();
+        }
+    }
+
+    @Test
+    public void recoveredSequenceIsLeased() throws Exception {
+        File lease = File.createTempFile("corfu-sequencer", ".lease");
+        lease.delete();
+        try {
+            SimpleSequencerServer ss = new SimpleSequencerServer();
+            ss.useLease(new SequencerLease(lease, 10));
+            ss.recover(1000);
+            SimpleSequencerServer restarted = new SimpleSequencerServer();
+            restarted.useLease(new SequencerLease(lease, 10));
+            assertTrue(restarted.nextpos(1) >= 1000);
+        } finally {
+            lease.delete();
+        }
+    }
 }
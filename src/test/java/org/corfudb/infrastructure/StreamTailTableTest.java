@@ -0,0 +1,112 @@
+package org.corfudb.infrastructure;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class StreamTailTableTest {
+
+    private static long next(StreamTailTable table, long id, int range, long[] previous)
+    {
+        return table.next(new long[] {id}, new long[] {~id}, range, previous);
+    }
+
+    @Test
+    public void tailsSurviveGrowth() throws Exception
+    {
+        AtomicLong global = new AtomicLong();
+        StreamTailTable table = new StreamTailTable(global, 4);
+        long[] previous = new long[1];
+        for (long id = 0; id < 100; id++)
+        {
+            assertThat(next(table, id, 1, previous))
+                    .isEqualTo(id);
+            assertThat(previous[0])
+                    .isEqualTo(StreamTailTable.NO_PREVIOUS);
+        }
+        for (long id = 0; id < 100; id++)
+        {
+            next(table, id, 1, previous);
+            assertThat(previous[0])
+                    .isEqualTo(id);
+        }
+        assertThat(table.size())
+                .isEqualTo(100);
+    }
+
+    @Test
+    public void clearedTailsAreUnknown() throws Exception
+    {
+        StreamTailTable table = new StreamTailTable(new AtomicLong(), 16);
+        long[] previous = new long[1];
+        next(table, 1, 1, previous);
+        table.clear(StreamTailTable.UNKNOWN_PREVIOUS);
+        next(table, 1, 1, previous);
+        assertThat(previous[0])
+                .isEqualTo(StreamTailTable.UNKNOWN_PREVIOUS);
+    }
+
+    @Test
+    public void concurrentBackpointersFormChains() throws Exception
+    {
+        StreamTailTable table = new StreamTailTable(new AtomicLong(), 2);
+        final int streams = 64;
+        final int perThread = 2000;
+        // the previous address of every address issued, which must point backwards within the stream.
+        ConcurrentHashMap<Long, Long> backpointers = new ConcurrentHashMap<Long, Long>();
+        List<Thread> threads = new ArrayList<Thread>();
+        for (int t = 0; t < 8; t++)
+        {
+            final int seed = t;
+            threads.add(new Thread(() -> {
+                long[] previous = new long[2];
+                for (int i = 0; i < perThread; i++)
+                {
+                    long a = (seed * 31 + i) % streams;
+                    long b = (seed * 17 + i * 7) % streams;
+                    if (i % 3 == 0 && a != b)
+                    {
+                        long position = table.next(new long[] {a, b}, new long[] {~a, ~b}, 1, previous);
+                        backpointers.put(position * streams + a, previous[0]);
+                        backpointers.put(position * streams + b, previous[1]);
+                    }
+                    else
+                    {
+                        long position = next(table, a, 1, previous);
+                        backpointers.put(position * streams + a, previous[0]);
+                    }
+                }
+            }));
+        }
+        threads.forEach(Thread::start);
+        for (Thread t : threads)
+        {
+            t.join();
+        }
+
+        // walk each stream back from its tail, and check that every address of it is reached in order.
+        long[] previous = new long[1];
+        int reached = 0;
+        for (long s = 0; s < streams; s++)
+        {
+            next(table, s, 0, previous);
+            long address = previous[0];
+            long last = Long.MAX_VALUE;
+            while (address != StreamTailTable.NO_PREVIOUS)
+            {
+                assertThat(address)
+                        .isLessThan(last);
+                last = address;
+                reached++;
+                address = backpointers.get(address * streams + s);
+            }
+        }
+        assertThat(reached)
+                .isEqualTo(backpointers.size());
+    }
+}
@@ -1,7 +1,32 @@
 package org.corfudb.infrastructure;
 
+import org.apache.thrift.server.TServer;
+import org.corfudb.infrastructure.thrift.MultiStreamToken;
+import org.corfudb.infrastructure.thrift.StreamID;
+import org.corfudb.infrastructure.thrift.StreamingSequencerService;
+import org.corfudb.infrastructure.thrift.StreamToken;
+import org.corfudb.runtime.CorfuDBRuntime;
+import org.corfudb.runtime.UnwrittenException;
+import org.corfudb.runtime.entries.SimpleStreamEntry;
+import org.corfudb.runtime.protocols.configmasters.MemoryConfigMasterProtocol;
+import org.corfudb.runtime.stream.SimpleStream;
+import org.corfudb.runtime.stream.SimpleTimestamp;
+import org.corfudb.runtime.view.CorfuDBView;
+import org.corfudb.runtime.view.StreamingSequencer;
+import org.corfudb.runtime.view.WriteOnceAddressSpace;
 import org.junit.Test;
+import static com.github.marschall.junitlambda.LambdaAssert.assertRaises;
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.net.ServerSocket;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.UUID;
 
 public class StreamingSequencerServerTest {
     @Test
@@ -28,6 +53,28 @@ public class StreamingSequencerServerTest {
         }
     }
 
+    @Test
+    public void lowWaterMarkCoversEveryStream() throws Exception {
+        StreamingSequencerServer ss = new StreamingSequencerServer();
+        StreamID a = new StreamID(1, 1);
+        StreamID b = new StreamID(2, 2);
+        ss.nextstreamtoken(a, 4);
+        ss.nextstreamtoken(b, 4);
+        // a stream which was only queried has no entries to hold back.
+        ss.nextstreamtoken(new StreamID(3, 3), 0);
+        ss.setlowwatermark(a, 5);
+        // b has not published a mark.
+        assertEquals(0, ss.lowwatermark());
+        ss.setlowwatermark(b, 3);
+        ss.setlowwatermark(b, 2);
+        assertEquals(3, ss.lowwatermark());
+        // streams with entries below the recovered position are no longer known.
+        ss.recover(8);
+        assertEquals(0, ss.lowwatermark());
+        ss.reset();
+        assertEquals(0, ss.lowwatermark());
+    }
+
     @Test
     public void tokenReturnCurrent() throws Exception {
         StreamingSequencerServer ss = new StreamingSequencerServer();
@@ -64,4 +111,174 @@ public class StreamingSequencerServerTest {
         ss.reset();
         assertEquals(ss.nextpos(1), 0);
     }
+
+    @Test
+    public void backpointersFollowStream() throws Exception {
+        StreamingSequencerServer ss = new StreamingSequencerServer();
+        String s1 = UUID.randomUUID().toString();
+        String s2 = UUID.randomUUID().toString();
+        StreamToken t = ss.nextbackpos(s1, 1);
+        assertEquals(0, t.position);
+        assertEquals(-1, t.previous);
+        assertEquals(1, ss.nextpos(1));
+        t = ss.nextbackpos(s2, 1);
+        assertEquals(2, t.position);
+        assertEquals(-1, t.previous);
+        t = ss.nextbackpos(s1, 3);
+        assertEquals(3, t.position);
+        assertEquals(0, t.previous);
+        t = ss.nextbackpos(s1, 0);
+        assertEquals(6, t.position);
+        assertEquals(5, t.previous);
+
+        ss.recover(10);
+        t = ss.nextbackpos(s1, 1);
+        assertEquals(10, t.position);
+        assertEquals(StreamingSequencerServer.UNKNOWN_PREVIOUS, t.previous);
+        t = ss.nextbackpos(s1, 1);
+        assertEquals(10, t.previous);
+    }
+
+    private static StreamID id(UUID uuid)
+    {
+        return new StreamID(uuid.getMostSignificantBits(), uuid.getLeastSignificantBits());
+    }
+
+    @Test
+    public void binaryAndStringIDsShareTails() throws Exception {
+        StreamingSequencerServer ss = new StreamingSequencerServer();
+        UUID s1 = UUID.randomUUID();
+        StreamToken t = ss.nextstreamtoken(id(s1), 2);
+        assertEquals(0, t.position);
+        assertEquals(-1, t.previous);
+        t = ss.nextbackpos(s1.toString(), 1);
+        assertEquals(2, t.position);
+        assertEquals(1, t.previous);
+    }
+
+    @Test
+    public void multiStreamTokenCoversEveryStream() throws Exception {
+        StreamingSequencerServer ss = new StreamingSequencerServer();
+        UUID s1 = UUID.randomUUID();
+        UUID s2 = UUID.randomUUID();
+        UUID s3 = UUID.randomUUID();
+        ss.nextstreamtoken(id(s1), 1);
+        ss.nextstreamtoken(id(s2), 1);
+        MultiStreamToken t = ss.nextmultistreampos(Arrays.asList(id(s1), id(s2), id(s3)), 1);
+        assertEquals(2, t.position);
+        assertEquals(Arrays.asList(0L, 1L, -1L), t.previous);
+        assertEquals(2, ss.nextstreamtoken(id(s1), 1).previous);
+        assertEquals(2, ss.nextstreamtoken(id(s3), 1).previous);
+    }
+
+    @Test
+    public void streamPositionsFollowStream() throws Exception {
+        StreamingSequencerServer ss = new StreamingSequencerServer();
+        UUID s1 = UUID.randomUUID();
+        assertEquals(0, ss.nextstreampos(s1.toString(), 2).position);
+        assertEquals(1, ss.nextstreamtoken(id(s1), 1).previous);
+        assertEquals(3, ss.nextstreampos(s1.toString(), 1).position);
+        assertEquals(3, ss.nextstreamtoken(id(s1), 0).previous);
+    }
+
+    @Test
+    public void entriesAppendedThroughThriftSequencerAreRead() throws Exception {
+        int port;
+        try (ServerSocket socket = new ServerSocket(0))
+        {
+            port = socket.getLocalPort();
+        }
+        TServer server = ThriftServerFactory.createServer(new HashMap<String,Object>(), port,
+                new StreamingSequencerService.Processor<StreamingSequencerServer>(new StreamingSequencerServer()));
+        Thread serving = new Thread(server::serve);
+        serving.setDaemon(true);
+        serving.start();
+        long deadline = System.currentTimeMillis() + 5000;
+        while (!server.isServing() && System.currentTimeMillis() < deadline)
+        {
+            Thread.sleep(5);
+        }
+        assertTrue(server.isServing());
+
+        HashMap<String,Object> view = new HashMap<String,Object>();
+        view.put("epoch", 0L);
+        view.put("logid", UUID.randomUUID().toString());
+        view.put("pagesize", 4096);
+        LinkedList<String> configMasters = new LinkedList<String>();
+        configMasters.add("mcm://localhost:0");
+        view.put("configmasters", configMasters);
+        LinkedList<String> sequencers = new LinkedList<String>();
+        sequencers.add("cdbsts://localhost:" + port);
+        view.put("sequencers", sequencers);
+        HashMap<String,Object> group = new HashMap<String,Object>();
+        group.put("nodes", new LinkedList<String>(Arrays.asList("mlu://localhost:0")));
+        HashMap<String,Object> segment = new HashMap<String,Object>();
+        segment.put("start", 0L);
+        segment.put("sealed", 0L);
+        segment.put("groups", new LinkedList<HashMap<String,Object>>(Arrays.asList(group)));
+        HashMap<String,Object> layout = new HashMap<String,Object>();
+        layout.put("segments", new LinkedList<HashMap<String,Object>>(Arrays.asList(segment)));
+        view.put("layout", layout);
+
+        MemoryConfigMasterProtocol.inMemoryClear();
+        CorfuDBView initial = new CorfuDBView(view);
+        MemoryConfigMasterProtocol.memoryConfigMasters.get(0).setInitialView(initial);
+        CorfuDBRuntime runtime = CorfuDBRuntime.createRuntime("custom");
+        try {
+            UUID streamID = UUID.randomUUID();
+            // a position taken without a backpointer must still become the tail of the stream.
+            long address = new StreamingSequencer(runtime).getNext(streamID);
+            new WriteOnceAddressSpace(runtime).write(address,
+                    new SimpleStreamEntry(streamID, "hello", new SimpleTimestamp(address)).serialize());
+            SimpleStream stream = new SimpleStream(streamID, runtime);
+            stream.append("world");
+
+            SimpleStream reader = new SimpleStream(streamID, runtime);
+            assertEquals("hello", reader.readNextEntry().getPayload());
+            assertEquals("world", reader.readNextEntry().getPayload());
+            assertNull(reader.readNextEntry());
+        } finally {
+            runtime.close();
+            server.stop();
+            // later in-memory runtimes must not pick up the view of the stopped sequencer.
+            MemoryConfigMasterProtocol.inMemoryClear();
+        }
+    }
+
+    @Test
+    public void restartFillsSkippedTokens() throws Exception {
+        File lease = File.createTempFile("corfu-sequencer", ".lease");
+        lease.delete();
+        MemoryConfigMasterProtocol.inMemoryClear();
+        CorfuDBRuntime runtime = CorfuDBRuntime.createRuntime("memory");
+        try {
+            StreamingSequencerServer ss = new StreamingSequencerServer();
+            ss.useLease(new SequencerLease(lease, 10));
+            for (int i = 0; i < 5; i++)
+            {
+                ss.nextpos(1);
+            }
+            WriteOnceAddressSpace woas = new WriteOnceAddressSpace(runtime);
+            woas.write(0, new byte[] {1});
+            woas.write(2, new byte[] {1});
+
+            // the lease was last extended for token 0, so tokens 1 to 10 may have been skipped.
+            StreamingSequencerServer restarted = new StreamingSequencerServer();
+            restarted.useLease(new SequencerLease(lease, 10));
+            restarted.fillSkipped(woas);
+            assertArrayEquals(new byte[] {1}, woas.read(2));
+            for (long address = 1; address <= 10; address++)
+            {
+                if (address != 2)
+                {
+                    assertTrue(SimpleStreamEntry.isHole(woas.read(address)));
+                }
+            }
+            assertRaises(() -> woas.read(11), UnwrittenException.class);
+            assertEquals(11, restarted.nextpos(1));
+        } finally {
+            runtime.close();
+            lease.delete();
+        }
+    }
 }
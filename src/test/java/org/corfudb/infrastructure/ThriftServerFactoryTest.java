@@ -0,0 +1,120 @@
+package org.corfudb.infrastructure;
+
+import org.apache.thrift.server.TServer;
+import org.corfudb.infrastructure.thrift.SimpleSequencerService;
+import org.corfudb.runtime.protocols.sequencers.CorfuDBSimpleSequencerProtocol;
+import org.junit.Test;
+
+import java.net.ServerSocket;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class ThriftServerFactoryTest {
+
+    static final int CLIENTS = 8;
+    static final int TOKENS_PER_CLIENT = 200;
+
+    private static int freePort() throws Exception
+    {
+        try (ServerSocket s = new ServerSocket(0))
+        {
+            return s.getLocalPort();
+        }
+    }
+
+    /**
+     * Serve a simple sequencer in the given mode, and have several clients take tokens from it at once.
+     */
+    private void serveConcurrentClients(String mode, boolean framed) throws Exception
+    {
+        int port = freePort();
+        Map<String,Object> config = new HashMap<String,Object>();
+        config.put("servermode", mode);
+        if (!mode.equals(ThriftServerFactory.MODE_THREADPOOL))
+        {
+            // the non-blocking servers serve more connections than they have workers.
+            config.put("workers", CLIENTS / 2);
+        }
+        TServer server = ThriftServerFactory.createServer(config, port,
+                new SimpleSequencerService.Processor<SimpleSequencerServer>(new SimpleSequencerServer()));
+        Thread serving = new Thread(server::serve);
+        serving.setDaemon(true);
+        serving.start();
+        long deadline = System.currentTimeMillis() + 5000;
+        while (!server.isServing() && System.currentTimeMillis() < deadline)
+        {
+            Thread.sleep(5);
+        }
+        assertTrue(server.isServing());
+
+        Map<String,String> options = new HashMap<String,String>();
+        if (framed)
+        {
+            options.put("transport", "framed");
+        }
+        CorfuDBSimpleSequencerProtocol sequencer = (CorfuDBSimpleSequencerProtocol)
+                CorfuDBSimpleSequencerProtocol.protocolFactory("localhost", port, options, 0L);
+        try {
+            Set<Long> tokens = ConcurrentHashMap.newKeySet();
+            AtomicInteger failures = new AtomicInteger();
+            Thread[] clients = new Thread[CLIENTS];
+            for (int c = 0; c < CLIENTS; c++)
+            {
+                clients[c] = new Thread(() -> {
+                    try {
+                        for (int i = 0; i < TOKENS_PER_CLIENT; i++)
+                        {
+                            tokens.add(sequencer.sequenceGetNext());
+                        }
+                    } catch (Exception e) {
+                        failures.incrementAndGet();
+                    }
+                });
+                clients[c].start();
+            }
+            for (Thread t : clients)
+            {
+                t.join();
+            }
+            assertEquals(0, failures.get());
+            assertEquals(CLIENTS * TOKENS_PER_CLIENT, tokens.size());
+            assertEquals((long) CLIENTS * TOKENS_PER_CLIENT, sequencer.sequenceGetCurrent());
+        } finally {
+            server.stop();
+        }
+    }
+
+    @Test
+    public void threadPoolServerServesConcurrentClients() throws Exception
+    {
+        serveConcurrentClients(ThriftServerFactory.MODE_THREADPOOL, false);
+    }
+
+    @Test
+    public void hshaServerServesConcurrentClients() throws Exception
+    {
+        serveConcurrentClients(ThriftServerFactory.MODE_HSHA, true);
+    }
+
+    @Test
+    public void selectorServerServesConcurrentClients() throws Exception
+    {
+        serveConcurrentClients(ThriftServerFactory.MODE_SELECTOR, true);
+    }
+
+    @Test
+    public void threadPoolServerTakesFewWorkers() throws Exception
+    {
+        Map<String,Object> config = new HashMap<String,Object>();
+        config.put("workers", 2);
+        TServer server = ThriftServerFactory.createServer(config, freePort(),
+                new SimpleSequencerService.Processor<SimpleSequencerServer>(new SimpleSequencerServer()));
+        server.stop();
+    }
+}
@@ -1,19 +1,26 @@
 package org.corfudb.runtime.collections;
 
 import org.corfudb.runtime.CorfuDBRuntime;
+import org.corfudb.runtime.HoleEncounteredException;
 import org.corfudb.runtime.smr.*;
 import org.corfudb.runtime.stream.IStream;
 import org.corfudb.runtime.stream.ITimestamp;
 import org.corfudb.runtime.stream.SimpleStream;
 import org.corfudb.runtime.stream.SimpleTimestamp;
 import org.corfudb.runtime.view.*;
+import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
 import sun.java2d.pipe.SpanShapeRenderer;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.Supplier;
 
+import static com.github.marschall.junitlambda.LambdaAssert.assertRaises;
 import static org.assertj.core.api.Assertions.*;
 /**
  * Created by mwei on 5/1/15.
@@ -38,6 +45,12 @@ public class CDBSimpleMapTest {
         testMap = new CDBSimpleMap<Integer, Integer>(s);
     }
 
+    @After
+    public void closeRuntime()
+    {
+        cdr.close();
+    }
+
     @Test
     public void mapIsPuttableGettable()
     {
@@ -71,6 +84,25 @@ public class CDBSimpleMapTest {
                 .isEqualTo(10);
     }
 
+    @Test
+    public void asyncMutationsArePipelined() throws Exception
+    {
+        List<CompletableFuture<Integer>> puts = new ArrayList<CompletableFuture<Integer>>();
+        for (int i = 0; i < 100; i++)
+        {
+            puts.add(testMap.putAsync(i, i * 10));
+        }
+        CompletableFuture.allOf(puts.toArray(new CompletableFuture[puts.size()])).get();
+        assertThat(testMap.size())
+                .isEqualTo(100);
+        assertThat(testMap.get(42))
+                .isEqualTo(420);
+        assertThat(testMap.putAsync(42, 0).get())
+                .isEqualTo(420);
+        assertThat(testMap.removeAsync(42).get())
+                .isEqualTo(0);
+    }
+
     @Test
     public void DeferredTransactionalTest() throws Exception
     {
@@ -118,6 +150,114 @@ public class CDBSimpleMapTest {
                 .isEqualTo(100);
     }
 
+    @Test
+    public void registeredStreamsTransactionalTest() throws Exception
+    {
+        DeferredTransaction tx = new DeferredTransaction(cdr);
+        IStream s2 = cdr.openStream(UUID.randomUUID(), SimpleStream.class);
+        IStream s3 = cdr.openStream(UUID.randomUUID(), SimpleStream.class);
+        CDBSimpleMap<Integer,Integer> testMap2 = new CDBSimpleMap<Integer,Integer>(s2);
+
+        testMap.put(10, 100);
+        testMap2.put(10, 1000);
+
+        final CDBSimpleMap<Integer, Integer> testMapLocal = testMap;
+        tx.registerStream(testMap.getStreamID());
+        tx.registerStream(testMap2.getStreamID());
+        tx.setTransaction((ITransactionCommand) (opts) -> {
+            Integer old1 = testMapLocal.get(10);
+            Integer old2 = testMap2.put(10, old1);
+            testMapLocal.put(10, old2);
+            return true;
+        });
+
+        ITimestamp txStamp = tx.propose();
+        testMap.getSMREngine().sync(txStamp);
+        testMap2.getSMREngine().sync(txStamp);
+        assertThat(testMap.get(10))
+                .isEqualTo(1000);
+        assertThat(testMap2.get(10))
+                .isEqualTo(100);
+        assertThat(s.readEntry(txStamp).containsStream(testMap2.getStreamID()))
+                .isTrue();
+        assertRaises(() -> s3.readEntry(txStamp), HoleEncounteredException.class);
+    }
+
+    @Test
+    public void optimisticTransactionalTest() throws Exception
+    {
+        OptimisticTransaction tx = new OptimisticTransaction(cdr);
+        final CDBSimpleMap<Integer, Integer> testMapLocal = testMap;
+        final AtomicInteger executions = new AtomicInteger();
+        testMap.put(10, 100);
+        tx.setTransaction((ITransactionCommand) (opts) -> {
+            executions.incrementAndGet();
+            testMapLocal.put(10, testMapLocal.get(10) + 1);
+            return true;
+        });
+        ITimestamp txStamp = tx.propose();
+        assertThat(tx.isCommitted())
+                .isTrue();
+        testMap.getSMREngine().sync(txStamp);
+        assertThat(testMap.get(10))
+                .isEqualTo(101);
+
+        // another replica applies the write set, without executing the command again.
+        CDBSimpleMap<Integer,Integer> replica = new CDBSimpleMap<Integer,Integer>(
+                cdr.openStream(streamID, SimpleStream.class));
+        assertThat(replica.get(10))
+                .isEqualTo(101);
+        assertThat(executions.get())
+                .isEqualTo(1);
+    }
+
+    @Test
+    public void optimisticTransactionAbortsOnConflictingWrite() throws Exception
+    {
+        OptimisticTransaction tx = new OptimisticTransaction(cdr);
+        IStream s2 = cdr.openStream(UUID.randomUUID(), SimpleStream.class);
+        CDBSimpleMap<Integer,Integer> testMap2 = new CDBSimpleMap<Integer,Integer>(s2);
+        testMap.put(10, 100);
+        testMap2.put(10, 1000);
+
+        final CDBSimpleMap<Integer, Integer> testMapLocal = testMap;
+        tx.setTransaction((ITransactionCommand) (opts) -> {
+            Integer old2 = testMap2.get(10);
+            // another client writes the stream read, after the transaction has read it.
+            CompletableFuture.runAsync(() -> testMap2.put(10, 42)).join();
+            testMapLocal.put(10, old2);
+            return true;
+        });
+        ITimestamp txStamp = tx.propose();
+        assertThat(tx.isCommitted())
+                .isFalse();
+        testMap.getSMREngine().sync(txStamp);
+        assertThat(testMap.get(10))
+                .isEqualTo(100);
+        assertThat(testMap2.get(10))
+                .isEqualTo(42);
+    }
+
+    @Test
+    public void optimisticTransactionAbortedByCommandIsNotWritten() throws Exception
+    {
+        OptimisticTransaction tx = new OptimisticTransaction(cdr);
+        final CDBSimpleMap<Integer, Integer> testMapLocal = testMap;
+        testMap.put(10, 100);
+        tx.setTransaction((ITransactionCommand) (opts) -> {
+            testMapLocal.put(10, 42);
+            assertThat(testMapLocal.get(10))
+                    .isEqualTo(42);
+            return false;
+        });
+        assertThat(tx.propose())
+                .isNull();
+        assertThat(tx.isCommitted())
+                .isFalse();
+        assertThat(testMap.get(10))
+                .isEqualTo(100);
+    }
+
     @Test
     public void mapOfMapsTest() throws Exception
     {
@@ -0,0 +1,133 @@
+package org.corfudb.runtime.entries;
+
+import org.corfudb.runtime.CorfuDBRuntime;
+import org.corfudb.runtime.protocols.sequencers.BackpointerToken;
+import org.corfudb.runtime.smr.ISMREngine;
+import org.corfudb.runtime.smr.ISMREngineCommand;
+import org.corfudb.runtime.smr.SMRCommandTable;
+import org.corfudb.runtime.stream.SimpleTimestamp;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class SimpleStreamEntryTest {
+
+    @Test
+    public void headerIsDecodedWithoutPayload() throws Exception
+    {
+        UUID stream = UUID.randomUUID();
+        byte[] data = new SimpleStreamEntry(stream, "hello world", new SimpleTimestamp(10), 7).serialize();
+
+        SimpleStreamEntry entry = SimpleStreamEntry.deserializeHeader(data);
+        assertThat(entry.containsStream(stream))
+                .isTrue();
+        assertThat(entry.containsStream(UUID.randomUUID()))
+                .isFalse();
+        assertThat(entry.getBackpointer(stream))
+                .isEqualTo(7);
+        assertThat(entry.getBackpointer(UUID.randomUUID()))
+                .isEqualTo(BackpointerToken.UNKNOWN_PREVIOUS);
+        assertThat(entry.getTimestamp())
+                .isEqualTo(new SimpleTimestamp(10));
+        assertThat(entry.payload)
+                .isNull();
+        assertThat(entry.getPayload())
+                .isEqualTo("hello world");
+    }
+
+    @Test
+    public void entriesWithoutHeaderAreNotDecoded() throws Exception
+    {
+        ByteArrayOutputStream bs = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(bs))
+        {
+            out.writeObject("hello world");
+        }
+        assertThat(SimpleStreamEntry.deserializeHeader(bs.toByteArray()))
+                .isNull();
+        assertThat(SimpleStreamEntry.deserializeHeader(new byte[0]))
+                .isNull();
+    }
+
+    @Test
+    public void allStreamsEntriesBelongToEveryStream() throws Exception
+    {
+        SimpleStreamEntry entry = SimpleStreamEntry.deserializeHeader(
+                new SimpleStreamEntry(IStreamEntry.ALL_STREAMS, "tx", new SimpleTimestamp(0)).serialize());
+        assertThat(entry.containsStream(UUID.randomUUID()))
+                .isTrue();
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void commandsAreEncodedCompactly() throws Exception
+    {
+        SMRCommandTable<Map> table = new SMRCommandTable<Map>(100, "test")
+                .register(0, (map, args) -> map.put(args[0], args[1]));
+        try {
+            UUID stream = UUID.randomUUID();
+            ISMREngineCommand<Map> lambda = (ISMREngineCommand<Map>) (map, opts) -> map.put("key", 42);
+            byte[] lambdaData = new SimpleStreamEntry(stream, lambda, new SimpleTimestamp(0)).serialize();
+            byte[] data = new SimpleStreamEntry(stream, table.command(0, "key", 42), new SimpleTimestamp(0)).serialize();
+            assertThat(data.length * 4)
+                    .isLessThan(lambdaData.length);
+
+            SimpleStreamEntry entry = SimpleStreamEntry.deserializeHeader(data);
+            assertThat(entry.getType())
+                    .isEqualTo(SimpleStreamEntry.TYPE_COMMAND);
+            HashMap<Object, Object> map = new HashMap<Object, Object>();
+            CompletableFuture<Object> result = new CompletableFuture<Object>();
+            ((ISMREngineCommand<Map>) entry.getPayload()).accept(map, new ISMREngine.ISMREngineOptions() {
+                public CompletableFuture<Object> getReturnResult() { return result; }
+                public CorfuDBRuntime getRuntime() { return null; }
+            });
+            assertThat(map.get("key"))
+                    .isEqualTo(42);
+            assertThat(result.isDone())
+                    .isTrue();
+        } finally {
+            table.unregister();
+        }
+    }
+
+    static class Point implements Serializable {
+        final int x;
+        final int y;
+
+        Point(int x, int y)
+        {
+            this.x = x;
+            this.y = y;
+        }
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void commandArgumentsNeedNoNoArgConstructor() throws Exception
+    {
+        SMRCommandTable<Map> table = new SMRCommandTable<Map>(101, "test-points")
+                .register(0, (map, args) -> map.put(args[0], ((Point) args[1]).x + ((Point) args[1]).y));
+        try {
+            byte[] data = new SimpleStreamEntry(UUID.randomUUID(), table.command(0, "key", new Point(3, 4)),
+                    new SimpleTimestamp(0)).serialize();
+            HashMap<Object, Object> map = new HashMap<Object, Object>();
+            ((ISMREngineCommand<Map>) SimpleStreamEntry.deserializeHeader(data).getPayload()).accept(map,
+                    new ISMREngine.ISMREngineOptions() {
+                        public CompletableFuture<Object> getReturnResult() { return null; }
+                        public CorfuDBRuntime getRuntime() { return null; }
+                    });
+            assertThat(map.get("key"))
+                    .isEqualTo(7);
+        } finally {
+            table.unregister();
+        }
+    }
+}
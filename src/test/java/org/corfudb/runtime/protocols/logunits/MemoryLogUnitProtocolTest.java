@@ -4,7 +4,9 @@ import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertTrue;
 import static com.github.marschall.junitlambda.LambdaAssert.assertRaises;
 
+import org.corfudb.runtime.NetworkException;
 import org.corfudb.runtime.OverwriteException;
+import org.corfudb.runtime.TrimmedException;
 import org.corfudb.runtime.UnwrittenException;
 import org.junit.Test;
 
@@ -84,4 +86,21 @@ public class MemoryLogUnitProtocolTest {
 
         assertRaises(() -> mlup.read(101), UnwrittenException.class);
     }
+
+    @Test(timeout = 10000)
+    public void fixGivesUpOnAnAddressWhichIsNeitherWrittenNorUnwritten() throws Exception
+    {
+        MemoryLogUnitProtocol mlup = new MemoryLogUnitProtocol() {
+            @Override
+            public void write(long address, byte[] payload) throws OverwriteException, TrimmedException, NetworkException {
+                throw new OverwriteException("Overwrite error", address);
+            }
+
+            @Override
+            public byte[] read(long address) throws UnwrittenException, TrimmedException, NetworkException {
+                throw new UnwrittenException("Unwritten error", address);
+            }
+        };
+        assertRaises(() -> mlup.fix(0, getTestPayload(16)), NetworkException.class);
+    }
 }
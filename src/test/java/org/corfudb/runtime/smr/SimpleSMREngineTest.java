@@ -1,6 +1,7 @@
 package org.corfudb.runtime.smr;
 
 import org.corfudb.runtime.CorfuDBRuntime;
+import org.corfudb.runtime.TrimmedException;
 import org.corfudb.runtime.protocols.configmasters.MemoryConfigMasterProtocol;
 import org.corfudb.runtime.stream.ITimestamp;
 import org.corfudb.runtime.stream.SimpleStream;
@@ -8,12 +9,15 @@ import org.corfudb.runtime.view.*;
 import org.junit.Before;
 import org.junit.Test;
 
+import java.util.Set;
 import java.util.UUID;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.BiConsumer;
 
 import static org.assertj.core.api.Assertions.*;
+import static com.github.marschall.junitlambda.LambdaAssert.assertRaises;
 /**
  * Created by mwei on 5/1/15.
  */
@@ -72,4 +76,178 @@ public class SimpleSMREngineTest {
         assertThat(previous.get())
                 .isEqualTo(1);
     }
+
+    @Test
+    public void engineRestoresFromCheckpoint() throws Exception
+    {
+        SimpleSMREngine<AtomicInteger> smr = new SimpleSMREngine<AtomicInteger>(s, AtomicInteger.class);
+        ISMREngineCommand<AtomicInteger> increment = (ISMREngineCommand<AtomicInteger>) (a,o) -> a.getAndIncrement();
+        ITimestamp last = null;
+        for (int i = 0; i < 10; i++)
+        {
+            last = smr.propose(increment, null);
+        }
+        smr.sync(last);
+        smr.checkpoint();
+        for (int i = 0; i < 5; i++)
+        {
+            last = smr.propose(increment, null);
+        }
+
+        SimpleStream s2 = new SimpleStream(s.getStreamID(), ss, woas, s.getRuntime());
+        SimpleSMREngine<AtomicInteger> smr2 = new SimpleSMREngine<AtomicInteger>(s2, AtomicInteger.class);
+        smr2.sync(last);
+        assertThat(smr2.getObject().get())
+                .isEqualTo(15);
+        assertThat(smr2.commandsSinceCheckpoint)
+                .isEqualTo(5);
+    }
+
+    @Test
+    public void checkpointTrimsTheLog() throws Exception
+    {
+        s.getRuntime().getLogTrimmer().setEnabled(true);
+        SimpleSMREngine<AtomicInteger> smr = new SimpleSMREngine<AtomicInteger>(s, AtomicInteger.class);
+        smr.setTrimOnCheckpoint(true);
+        ISMREngineCommand<AtomicInteger> increment = (ISMREngineCommand<AtomicInteger>) (a,o) -> a.getAndIncrement();
+        ITimestamp first = smr.propose(increment, null);
+        SimpleStream lagging = new SimpleStream(s.getStreamID(), ss, woas, s.getRuntime());
+        SimpleSMREngine<AtomicInteger> smr2 = new SimpleSMREngine<AtomicInteger>(lagging, AtomicInteger.class);
+        smr2.sync(first);
+
+        ITimestamp last = null;
+        for (int i = 0; i < 9; i++)
+        {
+            last = smr.propose(increment, null);
+        }
+        smr.sync(last);
+        smr.checkpoint();
+        assertThat(s.getRuntime().getLogTrimmer().getTrimmed())
+                .isEqualTo(last.getAddress() + 1);
+        assertRaises(() -> woas.read(first.getAddress()), TrimmedException.class);
+
+        // the lagging engine can no longer replay the trimmed commands, so it restores from the checkpoint.
+        last = smr.propose(increment, null);
+        smr2.sync(last);
+        assertThat(smr2.getObject().get())
+                .isEqualTo(11);
+    }
+
+    @Test
+    public void checkpointDoesNotTrimByDefault() throws Exception
+    {
+        s.getRuntime().getLogTrimmer().setEnabled(true);
+        SimpleSMREngine<AtomicInteger> smr = new SimpleSMREngine<AtomicInteger>(s, AtomicInteger.class);
+        ISMREngineCommand<AtomicInteger> increment = (ISMREngineCommand<AtomicInteger>) (a,o) -> a.getAndIncrement();
+        ITimestamp first = smr.propose(increment, null);
+        smr.sync(first);
+        smr.checkpoint();
+        assertThat(s.getRuntime().getLogTrimmer().getTrimmed())
+                .isEqualTo(0);
+        assertThat(woas.read(first.getAddress()))
+                .isNotNull();
+    }
+
+    @Test(timeout = 10000)
+    public void trimUnderAnInFlightProposalDoesNotStallTheEngine() throws Exception
+    {
+        s.getRuntime().getLogTrimmer().setEnabled(true);
+        SimpleSMREngine<AtomicInteger> smr = new SimpleSMREngine<AtomicInteger>(s, AtomicInteger.class);
+        smr.setTrimOnCheckpoint(true);
+        ISMREngineCommand<AtomicInteger> getAndIncrement =
+                (ISMREngineCommand<AtomicInteger>) (a,o) -> {
+                    if (o.getReturnResult() != null) { o.getReturnResult().complete(a.getAndIncrement()); }
+                    else { a.getAndIncrement(); }
+                };
+        SimpleStream lagging = new SimpleStream(s.getStreamID(), ss, woas, s.getRuntime());
+        SimpleSMREngine<AtomicInteger> smr2 = new SimpleSMREngine<AtomicInteger>(lagging, AtomicInteger.class);
+        smr2.sync(null);
+
+        // the lagging engine proposes, but does not apply its proposal before the log is trimmed past it.
+        CompletableFuture<Object> inFlight = new CompletableFuture<Object>();
+        smr2.proposeAsync(getAndIncrement, inFlight, false).join();
+        ITimestamp last = null;
+        for (int i = 0; i < 5; i++)
+        {
+            last = smr.propose(getAndIncrement, null);
+        }
+        smr.sync(last);
+        smr.checkpoint();
+        assertThat(s.getRuntime().getLogTrimmer().getTrimmed())
+                .isEqualTo(last.getAddress() + 1);
+
+        last = smr.propose(getAndIncrement, null);
+        smr2.sync(last);
+        assertThat(smr2.getObject().get())
+                .isEqualTo(7);
+        assertThat(inFlight.isCompletedExceptionally())
+                .isTrue();
+        assertThat(smr2.completionTable)
+                .isEmpty();
+
+        // the engine keeps following the stream after it restored.
+        last = smr.propose(getAndIncrement, null);
+        smr2.sync(last);
+        assertThat(smr2.getObject().get())
+                .isEqualTo(8);
+    }
+
+    @Test
+    public void checkpointsAreAppendedInBackground() throws Exception
+    {
+        SimpleSMREngine<AtomicInteger> smr = new SimpleSMREngine<AtomicInteger>(s, AtomicInteger.class);
+        smr.setCheckpointInterval(5, 0);
+        ISMREngineCommand<AtomicInteger> increment = (ISMREngineCommand<AtomicInteger>) (a,o) -> a.getAndIncrement();
+        ITimestamp last = null;
+        for (int i = 0; i < 8; i++)
+        {
+            last = smr.propose(increment, null);
+        }
+        smr.sync(last);
+
+        SimpleStream s2 = new SimpleStream(s.getStreamID(), ss, woas, s.getRuntime());
+        for (int i = 0; i < 100 && s2.readLastCheckpoint() == null; i++)
+        {
+            Thread.sleep(10);
+        }
+        assertThat(s2.readLastCheckpoint())
+                .isNotNull();
+
+        SimpleSMREngine<AtomicInteger> smr2 = new SimpleSMREngine<AtomicInteger>(s2, AtomicInteger.class);
+        smr2.sync(null);
+        assertThat(smr2.getObject().get())
+                .isEqualTo(8);
+    }
+
+    @Test
+    public void concurrentProposersAreCompleted() throws Exception
+    {
+        final SimpleSMREngine<AtomicInteger> smr = new SimpleSMREngine<AtomicInteger>(s, AtomicInteger.class);
+        final ISMREngineCommand<AtomicInteger> getAndIncrement =
+                (ISMREngineCommand<AtomicInteger>) (a,o) -> {o.getReturnResult().complete(a.getAndIncrement());};
+        final Set<Object> results = ConcurrentHashMap.newKeySet();
+        Thread[] threads = new Thread[16];
+        for (int t = 0; t < threads.length; t++)
+        {
+            threads[t] = new Thread(() -> {
+                for (int i = 0; i < 50; i++)
+                {
+                    CompletableFuture<Object> result = new CompletableFuture<Object>();
+                    smr.sync(smr.propose(getAndIncrement, result));
+                    results.add(result.join());
+                }
+            });
+            threads[t].start();
+        }
+        for (Thread t : threads)
+        {
+            t.join();
+        }
+        assertThat(results)
+                .hasSize(800);
+        assertThat(smr.getObject().get())
+                .isEqualTo(800);
+        assertThat(smr.completionTable)
+                .isEmpty();
+    }
 }
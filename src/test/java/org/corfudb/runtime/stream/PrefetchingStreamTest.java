@@ -0,0 +1,117 @@
+package org.corfudb.runtime.stream;
+
+import org.corfudb.runtime.CorfuDBRuntime;
+import org.corfudb.runtime.TrimmedException;
+import org.corfudb.runtime.UnwrittenException;
+import org.corfudb.runtime.protocols.configmasters.MemoryConfigMasterProtocol;
+import org.corfudb.runtime.view.IStreamingSequencer;
+import org.corfudb.runtime.view.IWriteOnceAddressSpace;
+import org.corfudb.runtime.view.StreamingSequencer;
+import org.corfudb.runtime.view.WriteOnceAddressSpace;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class PrefetchingStreamTest {
+
+    IWriteOnceAddressSpace woas;
+    IStreamingSequencer ss;
+    CorfuDBRuntime cdr;
+
+    @Before
+    public void generateStream()
+    {
+        MemoryConfigMasterProtocol.inMemoryClear();
+        cdr = CorfuDBRuntime.createRuntime("memory");
+        woas = new WriteOnceAddressSpace(cdr);
+        ss = new StreamingSequencer(cdr);
+    }
+
+    @Test
+    public void interleavedStreamsAreReadInOrder() throws Exception
+    {
+        PrefetchingStream s = new PrefetchingStream(UUID.randomUUID(), ss, woas, cdr, 4, 1024 * 1024);
+        SimpleStream s2 = new SimpleStream(UUID.randomUUID(), ss, woas, cdr);
+        for (int i = 0; i < 100; i++)
+        {
+            s.append("hello world " + i);
+            if (i % 3 == 0)
+            {
+                s2.append("other " + i);
+            }
+        }
+        for (int i = 0; i < 100; i++)
+        {
+            assertEquals("hello world " + i, s.readNextObject());
+        }
+        assertNull(s.readNextObject());
+    }
+
+    @Test
+    public void closeCancelsReadAhead() throws Exception
+    {
+        PrefetchingStream s = new PrefetchingStream(UUID.randomUUID(), ss, woas, cdr, 8, 1024 * 1024);
+        for (int i = 0; i < 20; i++)
+        {
+            s.append("hello world " + i);
+        }
+        assertEquals("hello world 0", s.readNextObject());
+        s.close();
+        synchronized (s.prefetched)
+        {
+            assertThat(s.prefetched)
+                    .isEmpty();
+        }
+    }
+
+    @Test
+    public void readAheadFollowsBackpointers() throws Exception
+    {
+        Set<Long> reads = ConcurrentHashMap.newKeySet();
+        WriteOnceAddressSpace recording = new WriteOnceAddressSpace(cdr) {
+            @Override
+            public byte[] read(long address) throws UnwrittenException, TrimmedException {
+                reads.add(address);
+                return super.read(address);
+            }
+
+            @Override
+            public Map<Long, byte[]> multiRead(List<Long> addresses) {
+                reads.addAll(addresses);
+                return super.multiRead(addresses);
+            }
+        };
+        UUID streamID = UUID.randomUUID();
+        SimpleStream writer = new SimpleStream(streamID, ss, woas, cdr);
+        SimpleStream other = new SimpleStream(UUID.randomUUID(), ss, woas, cdr);
+        Set<Long> own = new HashSet<Long>();
+        for (int i = 0; i < 20; i++)
+        {
+            own.add(((SimpleTimestamp) writer.append("hello world " + i)).address);
+            for (int j = 0; j < 4; j++)
+            {
+                other.append("other " + j);
+            }
+        }
+
+        PrefetchingStream s = new PrefetchingStream(streamID, ss, recording, cdr, 4, 1024 * 1024);
+        for (int i = 0; i < 20; i++)
+        {
+            assertEquals("hello world " + i, s.readNextObject());
+        }
+        s.close();
+        // the entries of the other stream are between those of the stream, and are never read ahead.
+        assertThat(own)
+                .containsAll(reads);
+    }
+}
@@ -6,6 +6,7 @@ import org.corfudb.runtime.entries.IStreamEntry;
 import org.corfudb.runtime.protocols.configmasters.MemoryConfigMasterProtocol;
 import org.corfudb.runtime.view.*;
 
+import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
 
@@ -14,7 +15,10 @@ import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNull;
 import static com.github.marschall.junitlambda.LambdaAssert.assertRaises;
 
+import java.util.Arrays;
+import java.util.HashSet;
 import java.util.UUID;
+import java.util.concurrent.ExecutorService;
 
 /**
  * Created by mwei on 4/30/15.
@@ -36,6 +40,12 @@ public class SimpleStreamTest {
         s = new SimpleStream(UUID.randomUUID(), ss, woas, cdr);
     }
 
+    @After
+    public void closeRuntime()
+    {
+        cdr.close();
+    }
+
     @Test
     public void streamIsReadableWritable() throws Exception
     {
@@ -101,6 +111,20 @@ public class SimpleStreamTest {
         assertRaises(s::readNextObject, HoleEncounteredException.class);
     }
 
+    @Test
+    public void holesInOtherStreamsAreSkipped() throws Exception
+    {
+        SimpleStream s2 = new SimpleStream(UUID.randomUUID(), ss, woas, cdr);
+        s.append("hello world 0");
+        ss.getNext(s2.getStreamID(), 1);
+        s2.append("hello world 1");
+        s.append("hello world 2");
+        assertEquals("hello world 0", s.readNextObject());
+        assertEquals("hello world 2", s.readNextObject());
+        assertNull(s.readNextObject());
+        assertRaises(s2::readNextObject, HoleEncounteredException.class);
+    }
+
     @Test
     public void entriesAreOrdered() throws Exception
     {
@@ -209,4 +233,54 @@ public class SimpleStreamTest {
                 .isGreaterThan(chk5_2)
                 .isLessThanOrEqualTo(chk6);
     }
+
+    @Test
+    public void multiStreamAppendIsReadByItsStreamsOnly() throws Exception
+    {
+        SimpleStream s2 = new SimpleStream(UUID.randomUUID(), ss, woas, cdr);
+        SimpleStream s3 = new SimpleStream(UUID.randomUUID(), ss, woas, cdr);
+        s.append("hello world 0");
+        s2.append("hello world 1");
+        long before = ss.getCurrent();
+        ITimestamp ts = s.append("both", new HashSet<UUID>(Arrays.asList(s.getStreamID(), s2.getStreamID())));
+        assertThat(ss.getCurrent())
+                .isEqualTo(before + 1);
+        s3.append("hello world 2");
+
+        assertEquals(s.readNextObject(), "hello world 0");
+        assertEquals(s.readNextObject(), "both");
+        assertNull(s.readNextObject());
+        assertEquals(s2.readNextObject(), "hello world 1");
+        assertEquals(s2.readNextObject(), "both");
+        assertNull(s2.readNextObject());
+        assertEquals(s3.readNextObject(), "hello world 2");
+        assertNull(s3.readNextObject());
+
+        // the entry is chained on both streams, so later entries of either stream link back to it.
+        SimpleStream s4 = new SimpleStream(s2.getStreamID(), ss, woas, cdr);
+        s2.append("hello world 3");
+        assertThat(((SimpleTimestamp) s4.readNextEntry().getTimestamp()).address)
+                .isEqualTo(1);
+        assertThat(s4.readNextEntry().getTimestamp())
+                .isEqualTo(ts);
+    }
+
+    @Test
+    public void appendAsyncRunsOnPoolsOfTheRuntime() throws Exception
+    {
+        ITimestamp ts = s.appendAsync("hello world", t -> {}).get();
+        assertThat(cdr.getPool("stream-append").isShutdown())
+                .isFalse();
+        assertEquals(s.readNextEntry().getTimestamp(), ts);
+
+        // once the runtime is closed, its pools are shut down, and appends are written before returning.
+        ExecutorService pool = cdr.getPool("async-write");
+        cdr.close();
+        assertThat(pool.isShutdown())
+                .isTrue();
+        assertNull(cdr.getPool("stream-append"));
+        assertThat(s.appendAsync("hello world 2", t -> {}).isDone())
+                .isTrue();
+        assertEquals(s.readNextObject(), "hello world 2");
+    }
 }
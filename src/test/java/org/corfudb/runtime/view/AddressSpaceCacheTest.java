@@ -0,0 +1,66 @@
+package org.corfudb.runtime.view;
+
+import com.codahale.metrics.MetricRegistry;
+import org.junit.Test;
+
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class AddressSpaceCacheTest {
+
+    @Test
+    public void cacheIsBoundedByBytes()
+    {
+        MetricRegistry metrics = new MetricRegistry();
+        AddressSpaceCache<byte[]> cache = new AddressSpaceCache<byte[]>(64 * 1024, metrics, "test");
+        UUID log = UUID.randomUUID();
+        for (long i = 0; i < 100; i++)
+        {
+            cache.put(log, i, new byte[4096], 4096);
+        }
+        assertThat(cache.getWeightedSize())
+                .isLessThanOrEqualTo(64 * 1024);
+        assertThat(metrics.meter("test.evictions").getCount())
+                .isGreaterThan(0);
+        assertThat(cache.get(log, 99L))
+                .isNotNull();
+    }
+
+    @Test
+    public void entriesOfDifferentLogsAreDistinct()
+    {
+        AddressSpaceCache<byte[]> cache = new AddressSpaceCache<byte[]>(AddressSpaceCache.DEFAULT_CAPACITY,
+                new MetricRegistry(), "test");
+        UUID log1 = UUID.randomUUID();
+        UUID log2 = UUID.randomUUID();
+        cache.put(log1, 0L, new byte[] {1}, 1);
+        cache.put(log2, 0L, new byte[] {2}, 1);
+        cache.put(null, 0L, new byte[] {3}, 1);
+        assertThat(cache.get(log1, 0L))
+                .containsExactly((byte) 1);
+        assertThat(cache.get(log2, 0L))
+                .containsExactly((byte) 2);
+        assertThat(cache.get(null, 0L))
+                .containsExactly((byte) 3);
+    }
+
+    @Test
+    public void hitsAndMissesAreCounted()
+    {
+        MetricRegistry metrics = new MetricRegistry();
+        AddressSpaceCache<byte[]> cache = new AddressSpaceCache<byte[]>(AddressSpaceCache.DEFAULT_CAPACITY, metrics, "test");
+        UUID log = UUID.randomUUID();
+        assertThat(cache.get(log, 0L))
+                .isNull();
+        cache.put(log, 0L, new byte[16], 16);
+        cache.get(log, 0L);
+        cache.get(log, 0L);
+        assertThat(metrics.meter("test.hits").getCount())
+                .isEqualTo(2);
+        assertThat(metrics.meter("test.misses").getCount())
+                .isEqualTo(1);
+        assertThat(metrics.getGauges().get("test.entries").getValue())
+                .isEqualTo(1);
+    }
+}
@@ -0,0 +1,113 @@
+package org.corfudb.runtime.view;
+
+import com.esotericsoftware.kryo.io.UnsafeOutput;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Random;
+import java.util.zip.DeflaterOutputStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.fail;
+
+public class CompressionCodecTest {
+
+    static byte[] repetitive(int size)
+    {
+        byte[] data = new byte[size];
+        Random r = new Random(0);
+        for (int i = 0; i < size; i++)
+        {
+            // short runs and repeated words, so there are overlapping and long matches.
+            data[i] = i % 1000 < 300 ? 7 : (byte) ("corfu-map-update-" + (i % 13)).charAt(i % 17 % 5);
+            if (r.nextInt(50) == 0) { data[i] = (byte) r.nextInt(); }
+        }
+        return data;
+    }
+
+    static void roundTrip(ICompressionCodec codec, byte[] data) throws IOException
+    {
+        byte[] compressed = codec.compress(data, 0, data.length, 3);
+        assertThat(compressed)
+                .isNotNull();
+        assertThat(compressed.length)
+                .isLessThan(data.length + 3);
+        byte[] out = new byte[data.length];
+        codec.decompress(compressed, 3, compressed.length - 3, out);
+        assertThat(out)
+                .isEqualTo(data);
+    }
+
+    @Test
+    public void codecsRoundTrip() throws IOException
+    {
+        for (int size : new int[] {64, 1024, 70000, 1 << 20})
+        {
+            roundTrip(CompressionCodecs.LZ, repetitive(size));
+            roundTrip(CompressionCodecs.DEFLATE, repetitive(size));
+        }
+    }
+
+    @Test
+    public void incompressibleDataIsNotCompressed() throws Exception
+    {
+        byte[] data = new byte[4096];
+        new Random(1).nextBytes(data);
+        assertThat(CompressionCodecs.LZ.compress(data, 0, data.length, 0))
+                .isNull();
+        byte[] payload = Serializer.serialize_compressed(data, CompressionCodecs.LZ, 0);
+        assertThat(payload[0])
+                .isEqualTo(CompressionCodecs.NONE);
+        assertThat((byte[]) Serializer.deserialize_compressed(payload))
+                .isEqualTo(data);
+    }
+
+    @Test
+    public void smallPayloadsSkipCompression() throws Exception
+    {
+        byte[] small = repetitive(512);
+        byte[] payload = Serializer.serialize_compressed(small, CompressionCodecs.DEFLATE, 1024);
+        assertThat(payload[0])
+                .isEqualTo(CompressionCodecs.NONE);
+
+        byte[] large = repetitive(8192);
+        payload = Serializer.serialize_compressed(large, CompressionCodecs.DEFLATE, 1024);
+        assertThat(payload[0])
+                .isEqualTo(CompressionCodecs.DEFLATE.getId());
+        assertThat((byte[]) Serializer.deserialize_compressed(payload))
+                .isEqualTo(large);
+
+        payload = Serializer.serialize_compressed(large);
+        assertThat(payload[0])
+                .isEqualTo(CompressionCodecs.LZ.getId());
+        assertThat((byte[]) Serializer.deserialize_compressed(payload))
+                .isEqualTo(large);
+    }
+
+    @Test
+    public void legacyDeflatePayloadsAreRead() throws Exception
+    {
+        ByteArrayOutputStream bs = new ByteArrayOutputStream();
+        try (DeflaterOutputStream dos = new DeflaterOutputStream(bs))
+        {
+            UnsafeOutput output = new UnsafeOutput(dos, 16384);
+            Serializer.kryos.get().writeClassAndObject(output, "legacy");
+            output.flush();
+        }
+        assertThat(Serializer.deserialize_compressed(bs.toByteArray()))
+                .isEqualTo("legacy");
+    }
+
+    @Test
+    public void unknownCodecsAreRejected() throws Exception
+    {
+        try {
+            Serializer.deserialize_compressed(new byte[] {99, 0, 0, 0, 1, 0});
+            fail("Expected an IOException");
+        } catch (IOException e) {
+            assertThat(e.getMessage())
+                    .contains("99");
+        }
+    }
+}
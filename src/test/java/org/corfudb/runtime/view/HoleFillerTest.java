@@ -0,0 +1,129 @@
+package org.corfudb.runtime.view;
+
+import com.codahale.metrics.Meter;
+import org.corfudb.runtime.CorfuDBRuntime;
+import org.corfudb.runtime.HoleEncounteredException;
+import org.corfudb.runtime.OverwriteException;
+import org.corfudb.runtime.UnwrittenException;
+import org.corfudb.runtime.entries.SimpleStreamEntry;
+import org.corfudb.runtime.protocols.IServerProtocol;
+import org.corfudb.runtime.protocols.configmasters.MemoryConfigMasterProtocol;
+import org.corfudb.runtime.protocols.logunits.MemoryLogUnitProtocol;
+import org.corfudb.runtime.stream.SimpleStream;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.UUID;
+
+import static com.github.marschall.junitlambda.LambdaAssert.assertRaises;
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class HoleFillerTest {
+
+    static int port = 7300;
+
+    CorfuDBRuntime cdr;
+    IStreamingSequencer ss;
+    WriteOnceAddressSpace woas;
+
+    @Before
+    public void generateRuntime()
+    {
+        MemoryConfigMasterProtocol.inMemoryClear();
+        cdr = CorfuDBRuntime.createRuntime("memory");
+        ss = new StreamingSequencer(cdr);
+        woas = new WriteOnceAddressSpace(cdr);
+    }
+
+    @After
+    public void closeRuntime()
+    {
+        cdr.close();
+    }
+
+    @Test
+    public void readerMovesPastAbandonedToken() throws Exception
+    {
+        cdr.getHoleFiller().setTimeout(20);
+        SimpleStream s = new SimpleStream(UUID.randomUUID(), ss, woas, cdr);
+        // a writer takes a token and fails before writing it.
+        long hole = ss.getNextBackpointer(s.getStreamID(), 1).position;
+        s.append("hello world");
+        assertRaises(s::readNextObject, HoleEncounteredException.class);
+        assertThat(cdr.getHoleFiller().isPending(hole))
+                .isTrue();
+
+        Object read = null;
+        long deadline = System.currentTimeMillis() + 5000;
+        while (read == null && System.currentTimeMillis() < deadline)
+        {
+            try {
+                read = s.readNextObject();
+            } catch (HoleEncounteredException he) {
+                Thread.sleep(5);
+            }
+        }
+        assertThat(read)
+                .isEqualTo("hello world");
+        assertThat(SimpleStreamEntry.isHole(woas.read(hole)))
+                .isTrue();
+        // the filler counts the hole once its fill returns, which may be after the reader has moved on.
+        Meter filled = cdr.getMetrics().meter("org.corfudb.runtime.view.HoleFiller.holes.filled");
+        while (filled.getCount() == 0 && System.currentTimeMillis() < deadline)
+        {
+            Thread.sleep(5);
+        }
+        assertThat(filled.getCount())
+                .isEqualTo(1);
+    }
+
+    @Test
+    public void slowWriterLosesFilledAddress() throws Exception
+    {
+        long hole = ss.getNext();
+        woas.fill(hole, SimpleStreamEntry.holeEntry());
+        assertRaises(() -> woas.write(hole, new byte[] {1}), OverwriteException.class);
+    }
+
+    @Test
+    public void addressesPastTheTailAreNotFilled() throws Exception
+    {
+        HoleFiller filler = new HoleFiller(woas, () -> 0L, cdr.getMetrics(), "test");
+        filler.setTimeout(0);
+        filler.report(0);
+        filler.check();
+        filler.close();
+        assertThat(filler.isPending(0))
+                .isFalse();
+        assertRaises(() -> woas.read(0), UnwrittenException.class);
+    }
+
+    @Test
+    public void partialChainWriteIsCompleted() throws Exception
+    {
+        List<MemoryLogUnitProtocol> units = new ArrayList<MemoryLogUnitProtocol>();
+        List<IServerProtocol> chain = new ArrayList<IServerProtocol>();
+        for (int i = 0; i < 3; i++)
+        {
+            MemoryLogUnitProtocol unit = new MemoryLogUnitProtocol("localhost", port++, new HashMap<String,String>(), 0L);
+            units.add(unit);
+            chain.add(unit);
+        }
+        RoutingTable routes = new RoutingTable(Collections.singletonList(
+                new CorfuDBViewSegment(0, -1, Collections.singletonList(chain))));
+        // the writer failed after writing to the head of the chain.
+        units.get(0).write(0, new byte[] {1});
+        assertThat(WriteOnceAddressSpace.fill(routes, 0, SimpleStreamEntry.holeEntry()))
+                .containsExactly((byte) 1);
+        for (MemoryLogUnitProtocol unit : units)
+        {
+            assertThat(unit.read(0))
+                    .containsExactly((byte) 1);
+        }
+    }
+}
@@ -0,0 +1,92 @@
+package org.corfudb.runtime.view;
+
+import org.corfudb.runtime.CorfuDBRuntime;
+import org.corfudb.runtime.TrimmedException;
+import org.corfudb.runtime.protocols.configmasters.MemoryConfigMasterProtocol;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.UUID;
+
+import static com.github.marschall.junitlambda.LambdaAssert.assertRaises;
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class LogTrimmerTest {
+
+    CorfuDBRuntime cdr;
+    WriteOnceAddressSpace woas;
+    StreamingSequencer sequencer;
+    UUID s1;
+    UUID s2;
+
+    @Before
+    public void generateRuntime() throws Exception
+    {
+        MemoryConfigMasterProtocol.inMemoryClear();
+        cdr = CorfuDBRuntime.createRuntime("memory");
+        woas = new WriteOnceAddressSpace(cdr);
+        sequencer = new StreamingSequencer(cdr);
+        s1 = UUID.randomUUID();
+        s2 = UUID.randomUUID();
+        for (long i = 0; i < 10; i++)
+        {
+            long address = sequencer.issueBackpointer(i % 2 == 0 ? s1 : s2, 1).position;
+            woas.write(address, new byte[] {(byte) address});
+        }
+    }
+
+    @After
+    public void closeRuntime()
+    {
+        cdr.close();
+    }
+
+    @Test
+    public void logIsTrimmedToTheLowestMark() throws Exception
+    {
+        LogTrimmer trimmer = cdr.getLogTrimmer();
+        trimmer.reportLowWaterMark(s1, 5);
+        // a stream which has not published a mark holds the trim point back.
+        assertThat(trimmer.getTrimPoint())
+                .isEqualTo(0);
+        trimmer.reportLowWaterMark(s2, 3);
+        // marks only move forward.
+        trimmer.reportLowWaterMark(s2, 2);
+        assertThat(trimmer.getTrimPoint())
+                .isEqualTo(3);
+        assertThat(trimmer.getTrimmed())
+                .isEqualTo(0);
+
+        trimmer.setEnabled(true);
+        assertRaises(() -> woas.read(2), TrimmedException.class);
+        assertThat(woas.read(3))
+                .containsExactly((byte) 3);
+
+        UUID s3 = UUID.randomUUID();
+        woas.write(sequencer.issueBackpointer(s3, 1).position, new byte[] {10});
+        trimmer.reportLowWaterMark(s2, 7);
+        assertThat(trimmer.getTrimmed())
+                .isEqualTo(3);
+        trimmer.reportLowWaterMark(s3, 8);
+        assertThat(trimmer.getTrimmed())
+                .isEqualTo(5);
+        assertRaises(() -> woas.read(4), TrimmedException.class);
+    }
+
+    @Test
+    public void marksArePublishedToEveryRuntime() throws Exception
+    {
+        CorfuDBRuntime other = CorfuDBRuntime.createRuntime("memory");
+        try {
+            other.getLogTrimmer().reportLowWaterMark(s1, 6);
+            cdr.getLogTrimmer().reportLowWaterMark(s2, 4);
+            assertThat(other.getLogTrimmer().getTrimPoint())
+                    .isEqualTo(4);
+            assertThat(cdr.getLogTrimmer().getTrimPoint())
+                    .isEqualTo(4);
+        } finally {
+            other.close();
+        }
+    }
+}
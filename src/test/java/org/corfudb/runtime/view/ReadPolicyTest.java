@@ -0,0 +1,153 @@
+package org.corfudb.runtime.view;
+
+import org.corfudb.runtime.NetworkException;
+import org.corfudb.runtime.TrimmedException;
+import org.corfudb.runtime.UnwrittenException;
+import org.corfudb.runtime.protocols.IServerProtocol;
+import org.corfudb.runtime.protocols.logunits.MemoryLogUnitProtocol;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static com.github.marschall.junitlambda.LambdaAssert.assertRaises;
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class ReadPolicyTest {
+
+    static int port = 7200;
+
+    static class CountingLogUnit extends MemoryLogUnitProtocol {
+        final AtomicInteger reads = new AtomicInteger();
+
+        CountingLogUnit()
+        {
+            super("localhost", port++, new HashMap<String,String>(), 0L);
+        }
+
+        @Override
+        public byte[] read(long address) throws UnwrittenException, TrimmedException, NetworkException {
+            reads.incrementAndGet();
+            return super.read(address);
+        }
+    }
+
+    List<CountingLogUnit> units = new ArrayList<CountingLogUnit>();
+
+    RoutingTable layout(CorfuDBViewSegment.ReplicationMode mode, int quorum)
+    {
+        List<IServerProtocol> chain = new ArrayList<IServerProtocol>();
+        for (int i = 0; i < 3; i++)
+        {
+            CountingLogUnit unit = new CountingLogUnit();
+            units.add(unit);
+            chain.add(unit);
+        }
+        return new RoutingTable(Collections.singletonList(
+                new CorfuDBViewSegment(0, -1, Collections.singletonList(chain), mode, quorum)));
+    }
+
+    @Test
+    public void committedReadsAreSpreadAcrossReplicas() throws Exception
+    {
+        RoutingTable routes = layout(CorfuDBViewSegment.ReplicationMode.CHAIN, 0);
+        WriteOnceAddressSpace.write(routes, 0, new byte[] {1});
+        for (int i = 0; i < 30; i++)
+        {
+            assertThat(WriteOnceAddressSpace.read(routes, 0, ReadPolicy.ROUND_ROBIN))
+                    .containsExactly((byte) 1);
+        }
+        for (CountingLogUnit unit : units)
+        {
+            assertThat(unit.reads.get())
+                    .isEqualTo(10);
+        }
+    }
+
+    @Test
+    public void uncommittedReadsGoToTheTail() throws Exception
+    {
+        RoutingTable routes = layout(CorfuDBViewSegment.ReplicationMode.CHAIN, 0);
+        // written by another client, so this client does not know it is committed.
+        for (CountingLogUnit unit : units)
+        {
+            unit.write(0, new byte[] {1});
+        }
+        WriteOnceAddressSpace.read(routes, 0, ReadPolicy.ROUND_ROBIN);
+        assertThat(units.get(2).reads.get())
+                .isEqualTo(1);
+        assertThat(routes.route(0).isCommitted(0))
+                .isTrue();
+    }
+
+    @Test
+    public void commitmentIsTrackedPerAddress() throws Exception
+    {
+        RoutingTable routes = layout(CorfuDBViewSegment.ReplicationMode.CHAIN, 0);
+        RoutingTable.Group group = routes.route(0);
+        // address 1 is still on its way down the chain when address 2 reaches the tail.
+        units.get(0).write(1, new byte[] {1});
+        WriteOnceAddressSpace.write(routes, 2, new byte[] {2});
+        assertThat(group.isCommitted(2))
+                .isTrue();
+        assertThat(group.isCommitted(1))
+                .isFalse();
+        assertRaises(() -> WriteOnceAddressSpace.read(routes, 1, ReadPolicy.ROUND_ROBIN), UnwrittenException.class);
+        assertThat(units.get(2).reads.get())
+                .isEqualTo(1);
+
+        group.markCommitted(0);
+        group.markCommitted(1);
+        assertThat(group.committedPrefix.get())
+                .isEqualTo(2);
+        assertThat(group.committedAbove)
+                .isEmpty();
+    }
+
+    @Test
+    public void replicasBehindTheTailFallBack() throws Exception
+    {
+        RoutingTable routes = layout(CorfuDBViewSegment.ReplicationMode.CHAIN, 0);
+        units.get(2).write(0, new byte[] {1});
+        routes.route(0).markCommitted(0);
+        for (int i = 0; i < 3; i++)
+        {
+            assertThat(WriteOnceAddressSpace.read(routes, 0, ReadPolicy.ROUND_ROBIN))
+                    .containsExactly((byte) 1);
+        }
+        assertThat(units.get(2).reads.get())
+                .isEqualTo(3);
+        assertThat(WriteOnceAddressSpace.multiRead(routes, Arrays.asList(0L), ReadPolicy.ROUND_ROBIN).get(0L))
+                .containsExactly((byte) 1);
+    }
+
+    @Test
+    public void leastOutstandingAvoidsBusyReplicas()
+    {
+        RoutingTable routes = layout(CorfuDBViewSegment.ReplicationMode.CHAIN, 0);
+        RoutingTable.Group group = routes.route(0);
+        assertThat(ReadPolicy.LEAST_OUTSTANDING.choose(group))
+                .isEqualTo(2);
+        group.outstanding[2].set(3);
+        group.outstanding[0].set(1);
+        assertThat(ReadPolicy.LEAST_OUTSTANDING.choose(group))
+                .isEqualTo(1);
+        assertThat(ReadPolicy.LOCAL.choose(group))
+                .isEqualTo(0);
+    }
+
+    @Test
+    public void quorumWritesMissingFromTheTailAreFound() throws Exception
+    {
+        RoutingTable routes = layout(CorfuDBViewSegment.ReplicationMode.PARALLEL, 2);
+        units.get(2).simulateFailure(true);
+        WriteOnceAddressSpace.write(routes, 0, new byte[] {1});
+        units.get(2).simulateFailure(false);
+        assertThat(WriteOnceAddressSpace.read(routes, 0, ReadPolicy.TAIL))
+                .containsExactly((byte) 1);
+    }
+}
@@ -0,0 +1,208 @@
+package org.corfudb.runtime.view;
+
+import org.corfudb.runtime.NetworkException;
+import org.corfudb.runtime.OverwriteException;
+import org.corfudb.runtime.TrimmedException;
+import org.corfudb.runtime.UnwrittenException;
+import org.corfudb.runtime.protocols.IServerProtocol;
+import org.corfudb.runtime.protocols.logunits.MemoryLogUnitProtocol;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static com.github.marschall.junitlambda.LambdaAssert.assertRaises;
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class ReplicationTest {
+
+    static int port = 7000;
+
+    List<MemoryLogUnitProtocol> units = new ArrayList<MemoryLogUnitProtocol>();
+
+    RoutingTable segment(CorfuDBViewSegment.ReplicationMode mode, int quorum, int replicas)
+    {
+        List<IServerProtocol> chain = new ArrayList<IServerProtocol>();
+        for (int i = 0; i < replicas; i++)
+        {
+            MemoryLogUnitProtocol unit = new MemoryLogUnitProtocol("localhost", port++, new HashMap<String,String>(), 0L);
+            units.add(unit);
+            chain.add(unit);
+        }
+        return new RoutingTable(Collections.singletonList(
+                new CorfuDBViewSegment(0, -1, Collections.singletonList(chain), mode, quorum)));
+    }
+
+    @Test
+    public void parallelWritesReachEveryReplica() throws Exception
+    {
+        RoutingTable s = segment(CorfuDBViewSegment.ReplicationMode.PARALLEL, 0, 3);
+        WriteOnceAddressSpace.write(s, 0, new byte[] {1});
+        Map<Long, byte[]> batch = new HashMap<Long, byte[]>();
+        batch.put(1L, new byte[] {2});
+        batch.put(2L, new byte[] {3});
+        WriteOnceAddressSpace.multiWrite(s, batch);
+        for (MemoryLogUnitProtocol unit : units)
+        {
+            assertThat(unit.read(0))
+                    .containsExactly((byte) 1);
+            assertThat(unit.read(2))
+                    .containsExactly((byte) 3);
+        }
+    }
+
+    @Test
+    public void chainWritesReachEveryReplica() throws Exception
+    {
+        RoutingTable s = segment(CorfuDBViewSegment.ReplicationMode.CHAIN, 0, 3);
+        WriteOnceAddressSpace.write(s, 0, new byte[] {1});
+        for (MemoryLogUnitProtocol unit : units)
+        {
+            assertThat(unit.read(0))
+                    .containsExactly((byte) 1);
+        }
+    }
+
+    @Test
+    public void chainWritesAlreadyOnAUnitAreAcknowledged() throws Exception
+    {
+        RoutingTable s = segment(CorfuDBViewSegment.ReplicationMode.CHAIN, 0, 3);
+        // the writer wins the head, and a fill copies its entry down the chain before it gets to the next unit.
+        units.get(1).write(0, new byte[] {1});
+        units.get(2).write(0, new byte[] {1});
+        WriteOnceAddressSpace.write(s, 0, new byte[] {1});
+        assertThat(units.get(0).read(0))
+                .containsExactly((byte) 1);
+
+        units.get(1).write(1, new byte[] {9});
+        assertRaises(() -> WriteOnceAddressSpace.write(s, 1, new byte[] {1}), OverwriteException.class);
+        // the head decides the address, even for an entry with the same bytes.
+        assertRaises(() -> WriteOnceAddressSpace.write(s, 0, new byte[] {1}), OverwriteException.class);
+    }
+
+    @Test
+    public void lostOverwriteRaceFails() throws Exception
+    {
+        RoutingTable s = segment(CorfuDBViewSegment.ReplicationMode.PARALLEL, 0, 3);
+        units.get(1).write(0, new byte[] {9});
+        assertRaises(() -> WriteOnceAddressSpace.write(s, 0, new byte[] {1}), OverwriteException.class);
+    }
+
+    @Test
+    public void retriedWritesAreAcknowledged() throws Exception
+    {
+        RoutingTable s = segment(CorfuDBViewSegment.ReplicationMode.PARALLEL, 0, 3);
+        // an earlier attempt of the same write reached one replica.
+        units.get(2).write(0, new byte[] {1});
+        WriteOnceAddressSpace.write(s, 0, new byte[] {1});
+        assertThat(units.get(0).read(0))
+                .containsExactly((byte) 1);
+    }
+
+    @Test
+    public void quorumToleratesFailedReplica() throws Exception
+    {
+        RoutingTable s = segment(CorfuDBViewSegment.ReplicationMode.PARALLEL, 2, 3);
+        units.get(0).simulateFailure(true);
+        WriteOnceAddressSpace.write(s, 0, new byte[] {1});
+
+        RoutingTable all = segment(CorfuDBViewSegment.ReplicationMode.PARALLEL, 0, 3);
+        units.get(3).simulateFailure(true);
+        assertRaises(() -> WriteOnceAddressSpace.write(all, 0, new byte[] {1}), NetworkException.class);
+    }
+
+    @Test
+    public void readsReturnTheEntryOfTheQuorum() throws Exception
+    {
+        RoutingTable s = segment(CorfuDBViewSegment.ReplicationMode.PARALLEL, 2, 3);
+        // a losing writer got to the tail first.
+        units.get(2).write(0, new byte[] {9});
+        WriteOnceAddressSpace.write(s, 0, new byte[] {1});
+        assertThat(WriteOnceAddressSpace.read(s, 0, ReadPolicy.TAIL))
+                .containsExactly((byte) 1);
+        assertThat(WriteOnceAddressSpace.multiRead(s, Arrays.asList(0L), ReadPolicy.TAIL).get(0L))
+                .containsExactly((byte) 1);
+        assertThat(WriteOnceAddressSpace.readRange(s, 0, 1).get(0L))
+                .containsExactly((byte) 1);
+    }
+
+    @Test
+    public void undecidedAddressesAreSettledByFill() throws Exception
+    {
+        RoutingTable s = segment(CorfuDBViewSegment.ReplicationMode.PARALLEL, 2, 3);
+        // two writers split the units, and neither reached a quorum.
+        units.get(0).write(0, new byte[] {1});
+        units.get(1).write(0, new byte[] {2});
+        assertRaises(() -> WriteOnceAddressSpace.read(s, 0, ReadPolicy.TAIL), UnwrittenException.class);
+        assertThat(WriteOnceAddressSpace.multiRead(s, Arrays.asList(0L), ReadPolicy.TAIL))
+                .isEmpty();
+
+        byte[] filled = WriteOnceAddressSpace.fill(s, 0, new byte[] {0});
+        assertThat(WriteOnceAddressSpace.read(s, 0, ReadPolicy.TAIL))
+                .isEqualTo(filled);
+        assertThat(WriteOnceAddressSpace.readRange(s, 0, 1).get(0L))
+                .isEqualTo(filled);
+    }
+
+    @Test
+    public void quorumMustBeAMajority() throws Exception
+    {
+        assertRaises(() -> segment(CorfuDBViewSegment.ReplicationMode.PARALLEL, 2, 4), IllegalArgumentException.class);
+        assertRaises(() -> segment(CorfuDBViewSegment.ReplicationMode.PARALLEL, 1, 3), IllegalArgumentException.class);
+        segment(CorfuDBViewSegment.ReplicationMode.PARALLEL, 3, 4);
+    }
+
+    @Test(timeout = 10000)
+    public void parallelCallsDoNotWaitForASlowReplica() throws Exception
+    {
+        CountDownLatch release = new CountDownLatch(1);
+        MemoryLogUnitProtocol slow = new MemoryLogUnitProtocol("localhost", port++, new HashMap<String,String>(), 0L) {
+            @Override
+            public void write(long address, byte[] payload) throws OverwriteException, TrimmedException, NetworkException {
+                awaitRelease();
+                super.write(address, payload);
+            }
+
+            @Override
+            public byte[] read(long address) throws UnwrittenException, TrimmedException, NetworkException {
+                awaitRelease();
+                return super.read(address);
+            }
+
+            void awaitRelease() {
+                try {
+                    release.await();
+                } catch (InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        };
+        List<IServerProtocol> chain = new ArrayList<IServerProtocol>();
+        chain.add(slow);
+        for (int i = 0; i < 2; i++)
+        {
+            chain.add(new MemoryLogUnitProtocol("localhost", port++, new HashMap<String,String>(), 0L));
+        }
+        RoutingTable s = new RoutingTable(Collections.singletonList(new CorfuDBViewSegment(0, -1,
+                Collections.singletonList(chain), CorfuDBViewSegment.ReplicationMode.PARALLEL, 2)));
+        ExecutorService pool = Executors.newFixedThreadPool(3);
+        try {
+            // the first unit in chain order never answers, so these only return if the units are called at once.
+            WriteOnceAddressSpace.write(s, 0, new byte[] {1}, pool);
+            assertThat(WriteOnceAddressSpace.read(s, 0, ReadPolicy.TAIL, pool))
+                    .containsExactly((byte) 1);
+            assertThat(WriteOnceAddressSpace.multiRead(s, Arrays.asList(0L), ReadPolicy.TAIL, pool).get(0L))
+                    .containsExactly((byte) 1);
+        } finally {
+            release.countDown();
+            pool.shutdown();
+        }
+    }
+}
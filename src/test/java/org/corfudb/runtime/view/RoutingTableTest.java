@@ -0,0 +1,158 @@
+package org.corfudb.runtime.view;
+
+import org.corfudb.runtime.protocols.IServerProtocol;
+import org.corfudb.runtime.protocols.logunits.MemoryLogUnitProtocol;
+import org.junit.Test;
+
+import javax.json.Json;
+import javax.json.JsonObject;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class RoutingTableTest {
+
+    static MemoryLogUnitProtocol unit(int port)
+    {
+        return new MemoryLogUnitProtocol("localhost", port, new HashMap<String,String>(), 0L);
+    }
+
+    static List<List<IServerProtocol>> groups(IServerProtocol... units)
+    {
+        List<List<IServerProtocol>> groups = new ArrayList<List<IServerProtocol>>();
+        for (IServerProtocol u : units)
+        {
+            groups.add(new ArrayList<IServerProtocol>(Arrays.asList(u)));
+        }
+        return groups;
+    }
+
+    @Test
+    public void addressesAreRoutedAcrossSegments() throws Exception
+    {
+        MemoryLogUnitProtocol a = unit(7100);
+        MemoryLogUnitProtocol b = unit(7101);
+        // the log started on a alone, then b was added at address 100.
+        RoutingTable routes = new RoutingTable(Arrays.asList(
+                new CorfuDBViewSegment(100, -1, groups(a, b)),
+                new CorfuDBViewSegment(0, 100, groups(a))));
+
+        assertThat(routes.route(99).getTail())
+                .isSameAs(a);
+        assertThat(routes.route(99).map(99))
+                .isEqualTo(99);
+        assertThat(routes.route(100).getTail())
+                .isSameAs(a);
+        assertThat(routes.route(101).getTail())
+                .isSameAs(b);
+        assertThat(routes.route(102).map(102))
+                .isEqualTo(101);
+        assertThat(routes.route(103).unmap(routes.route(103).map(103)))
+                .isEqualTo(103);
+        assertThat(routes.segmentEnd(5))
+                .isEqualTo(100);
+
+        Map<Long, byte[]> entries = new HashMap<Long, byte[]>();
+        for (long i = 90; i < 110; i++)
+        {
+            entries.put(i, new byte[] {(byte) i});
+        }
+        // the units of a are shared by both segments, so no address may be written twice.
+        WriteOnceAddressSpace.multiWrite(routes, entries);
+
+        Map<Long, byte[]> range = WriteOnceAddressSpace.readRange(routes, 85, 30);
+        assertThat(range.keySet())
+                .hasSize(20);
+        for (long i = 90; i < 110; i++)
+        {
+            assertThat(range.get(i))
+                    .containsExactly((byte) i);
+        }
+        assertThat(WriteOnceAddressSpace.multiRead(routes, Arrays.asList(95L, 104L, 200L), ReadPolicy.TAIL).keySet())
+                .containsOnly(95L, 104L);
+    }
+
+    @Test
+    public void trimReachesEveryGroup() throws Exception
+    {
+        MemoryLogUnitProtocol a = unit(7113);
+        MemoryLogUnitProtocol b = unit(7114);
+        RoutingTable routes = new RoutingTable(Arrays.asList(
+                new CorfuDBViewSegment(100, -1, groups(a, b)),
+                new CorfuDBViewSegment(0, 100, groups(a))));
+        Map<Long, byte[]> entries = new HashMap<Long, byte[]>();
+        for (long i = 90; i < 110; i++)
+        {
+            entries.put(i, new byte[] {(byte) i});
+        }
+        WriteOnceAddressSpace.multiWrite(routes, entries);
+
+        WriteOnceAddressSpace.trim(routes, 105);
+        assertThat(WriteOnceAddressSpace.multiRead(routes, Arrays.asList(99L, 103L, 104L, 105L, 106L), ReadPolicy.TAIL).keySet())
+                .containsOnly(105L, 106L);
+        assertThat(routes.mapTrim(105).values())
+                .containsExactly(100L, 103L, 102L);
+    }
+
+    @Test
+    public void routingTableIsRebuiltOnViewChange()
+    {
+        HashMap<String, Object> config = new HashMap<String, Object>();
+        config.put("epoch", 0L);
+        config.put("pagesize", 4096);
+        config.put("sequencers", new LinkedList<String>(Arrays.asList("ms://localhost:7110")));
+        config.put("configmasters", new LinkedList<String>(Arrays.asList("mcm://localhost:7111")));
+        HashMap<String, Object> segment = new HashMap<String, Object>();
+        segment.put("start", 0L);
+        segment.put("sealed", -1L);
+        HashMap<String, Object> group = new HashMap<String, Object>();
+        group.put("nodes", new LinkedList<String>(Arrays.asList("mlu://localhost:7112")));
+        segment.put("groups", new LinkedList<Object>(Arrays.asList(group)));
+        HashMap<String, Object> layout = new HashMap<String, Object>();
+        layout.put("segments", new LinkedList<Object>(Arrays.asList(segment)));
+        config.put("layout", layout);
+
+        CorfuDBView view = new CorfuDBView(config);
+        RoutingTable routes = view.getRoutingTable();
+        assertThat(view.getRoutingTable())
+                .isSameAs(routes);
+        view.resetEpoch(1);
+        assertThat(view.getRoutingTable())
+                .isNotSameAs(routes);
+        CorfuDBView copy = (CorfuDBView) Serializer.copyShallow(view);
+        assertThat(copy.getRoutingTable())
+                .isNotSameAs(view.getRoutingTable());
+    }
+
+    @Test
+    public void parallelSegmentsWithoutQuorumWriteToEveryUnit()
+    {
+        JsonObject json = Json.createObjectBuilder()
+                .add("epoch", 0L)
+                .add("pagesize", 4096)
+                .add("logid", UUID.randomUUID().toString())
+                .add("sequencer", Json.createArrayBuilder().add("ms://localhost:7120"))
+                .add("configmaster", Json.createArrayBuilder().add("mcm://localhost:7121"))
+                .add("segments", Json.createArrayBuilder().add(Json.createObjectBuilder()
+                        .add("start", 0L)
+                        .add("sealed", -1L)
+                        .add("replication", "parallel")
+                        .add("groups", Json.createArrayBuilder().add(Json.createArrayBuilder()
+                                .add("mlu://localhost:7122")
+                                .add("mlu://localhost:7123")))))
+                .build();
+
+        CorfuDBViewSegment segment = new CorfuDBView(json).getSegments().get(0);
+        assertThat(segment.getReplication())
+                .isEqualTo(CorfuDBViewSegment.ReplicationMode.PARALLEL);
+        assertThat(segment.getQuorum(2))
+                .isEqualTo(2);
+    }
+}
@@ -0,0 +1,109 @@
+package org.corfudb.runtime.view;
+
+import org.junit.Test;
+
+import java.io.Serializable;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class SerializerTest {
+
+    static class Point implements Serializable {
+        final int x;
+        final int y;
+
+        Point(int x, int y)
+        {
+            this.x = x;
+            this.y = y;
+        }
+
+        @Override
+        public boolean equals(Object o)
+        {
+            return o instanceof Point && ((Point) o).x == x && ((Point) o).y == y;
+        }
+
+        @Override
+        public int hashCode()
+        {
+            return 31 * x + y;
+        }
+    }
+
+    @Test
+    public void objectsWithoutNoArgConstructorRoundTrip() throws Exception
+    {
+        Point p = new Point(3, 4);
+        assertThat(Serializer.deserialize(Serializer.serialize(p)))
+                .isEqualTo(p);
+        assertThat(Serializer.copy(p))
+                .isEqualTo(p);
+        Object[] args = new Object[] { "key", p };
+        assertThat((Object[]) Serializer.deserialize(Serializer.serialize(args)))
+                .containsExactly("key", p);
+    }
+
+    @Test
+    public void objectsRoundTrip() throws Exception
+    {
+        HashMap<String, Integer> map = new HashMap<String, Integer>();
+        map.put("a", 1);
+        map.put("b", 2);
+        assertThat(Serializer.deserialize(Serializer.serialize(map)))
+                .isEqualTo(map);
+        assertThat(Serializer.deserialize_compressed(Serializer.serialize_compressed(map)))
+                .isEqualTo(map);
+    }
+
+    @Test
+    public void objectsAreReadInPlace() throws Exception
+    {
+        UUID id = UUID.randomUUID();
+        byte[] serialized = Serializer.serialize(id);
+        byte[] padded = new byte[serialized.length + 10];
+        System.arraycopy(serialized, 0, padded, 7, serialized.length);
+        assertThat(Serializer.deserialize(padded, 7, serialized.length))
+                .isEqualTo(id);
+
+        ByteBuffer b = ByteBuffer.wrap(padded, 7, serialized.length).slice();
+        assertThat(Serializer.deserialize(b))
+                .isEqualTo(id);
+        assertThat(b.remaining())
+                .isEqualTo(serialized.length);
+
+        ByteBuffer direct = ByteBuffer.allocateDirect(serialized.length);
+        direct.put(serialized).flip();
+        assertThat(Serializer.deserialize(direct))
+                .isEqualTo(id);
+    }
+
+    @Test
+    public void headroomIsLeftForTheCaller() throws Exception
+    {
+        ArrayList<Integer> list = new ArrayList<Integer>(Arrays.asList(1, 2, 3));
+        ByteBuffer b = Serializer.serialize(list, 8);
+        b.putLong(0, 42L);
+        assertThat(b.getLong(0))
+                .isEqualTo(42L);
+        assertThat(Serializer.deserialize(b.array(), 8, b.limit() - 8))
+                .isEqualTo(list);
+    }
+
+    @Test
+    public void pooledBuffersGrowAndAreReused() throws Exception
+    {
+        byte[] large = new byte[4 * 1024 * 1024];
+        large[large.length - 1] = 1;
+        byte[] out = (byte[]) Serializer.deserialize(Serializer.serialize(large));
+        assertThat(out[out.length - 1])
+                .isEqualTo((byte) 1);
+        assertThat(Serializer.deserialize(Serializer.serialize("small")))
+                .isEqualTo("small");
+    }
+}
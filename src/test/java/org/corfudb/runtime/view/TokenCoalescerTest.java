@@ -0,0 +1,97 @@
+package org.corfudb.runtime.view;
+
+import com.codahale.metrics.MetricRegistry;
+import org.corfudb.runtime.CorfuDBRuntime;
+import org.corfudb.runtime.protocols.sequencers.BackpointerToken;
+import org.junit.Test;
+
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class TokenCoalescerTest {
+
+    @Test
+    public void concurrentRequestsGetDistinctTokens() throws Exception
+    {
+        final AtomicLong sequence = new AtomicLong();
+        final AtomicLong rpcs = new AtomicLong();
+        MetricRegistry metrics = new MetricRegistry();
+        final TokenCoalescer tc = new TokenCoalescer(n -> {
+            rpcs.incrementAndGet();
+            try { Thread.sleep(1); } catch (InterruptedException ie) {}
+            return new BackpointerToken(sequence.getAndAdd(n), BackpointerToken.UNKNOWN_PREVIOUS);
+        }, metrics, "test");
+
+        final Set<Long> tokens = ConcurrentHashMap.newKeySet();
+        Thread[] threads = new Thread[8];
+        for (int t = 0; t < threads.length; t++)
+        {
+            threads[t] = new Thread(() -> {
+                for (int i = 0; i < 100; i++)
+                {
+                    long token = tc.getNext(2);
+                    tokens.add(token);
+                    tokens.add(token + 1);
+                }
+            });
+            threads[t].start();
+        }
+        for (Thread t : threads)
+        {
+            t.join();
+        }
+
+        assertThat(tokens.size())
+                .isEqualTo(1600);
+        assertThat(sequence.get())
+                .isEqualTo(1600);
+        assertThat(metrics.histogram("test.batch-size").getCount())
+                .isEqualTo(rpcs.get());
+        assertThat(metrics.meter("test.tokens").getCount())
+                .isEqualTo(1600);
+    }
+
+    @Test
+    public void sequencerTokensAreCoalescedPerRuntime() throws Exception
+    {
+        CorfuDBRuntime cdr = CorfuDBRuntime.createRuntime("memory");
+        new ConfigurationMaster(cdr).resetAll();
+        IStreamingSequencer s1 = new StreamingSequencer(cdr);
+        Sequencer s2 = new Sequencer(cdr);
+        long first = s1.getNext();
+        assertThat(s2.getNext())
+                .isEqualTo(first + 1);
+        assertThat(cdr.getTokenCoalescer())
+                .isSameAs(cdr.getTokenCoalescer());
+    }
+
+    @Test
+    public void streamCoalescersAreBounded() throws Exception
+    {
+        CorfuDBRuntime cdr = CorfuDBRuntime.createRuntime("memory");
+        try {
+            new ConfigurationMaster(cdr).resetAll();
+            UUID stream = UUID.randomUUID();
+            TokenCoalescer first = cdr.getTokenCoalescer(stream);
+            assertThat(cdr.getTokenCoalescer(stream))
+                    .isSameAs(first);
+            BackpointerToken before = first.getNextBackpointer(1);
+            for (int i = 0; i < CorfuDBRuntime.MAX_STREAM_COALESCERS; i++)
+            {
+                cdr.getTokenCoalescer(UUID.randomUUID());
+            }
+            // the least recently used coalescer was dropped, the stream gets a new one which still chains its tokens.
+            TokenCoalescer second = cdr.getTokenCoalescer(stream);
+            assertThat(second)
+                    .isNotSameAs(first);
+            assertThat(second.getNextBackpointer(1).previous)
+                    .isEqualTo(before.position);
+        } finally {
+            cdr.close();
+        }
+    }
+}
@@ -7,7 +7,11 @@ import org.corfudb.runtime.smr.Pair;
 import org.junit.Before;
 import org.junit.Test;
 
+import java.util.HashMap;
+import java.util.Map;
+
 import static com.github.marschall.junitlambda.LambdaAssert.assertRaises;
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
 
 /**
@@ -59,4 +63,23 @@ public class WriteOnceAddressSpaceTest {
         woas.write(0, testString);
         assertRaises(() -> woas.read(1), UnwrittenException.class);
     }
+
+    @Test
+    public void AddressSpaceIsBatchReadable() throws Exception
+    {
+        WriteOnceAddressSpace woas = new WriteOnceAddressSpace(cdr);
+        Map<Long, byte[]> entries = new HashMap<Long, byte[]>();
+        for (long i = 0; i < 10; i++)
+        {
+            entries.put(i, new byte[] {(byte) i});
+        }
+        woas.multiWrite(entries);
+        Map<Long, byte[]> read = woas.readRange(0, 12);
+        assertEquals(10, read.size());
+        for (long i = 0; i < 10; i++)
+        {
+            assertArrayEquals(new byte[] {(byte) i}, read.get(i));
+        }
+        assertRaises(() -> woas.multiWrite(entries), OverwriteException.class);
+    }
 }